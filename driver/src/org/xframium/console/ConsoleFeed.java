@@ -0,0 +1,133 @@
+package org.xframium.console;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A ring buffer of serialized console events.  Each event is given a sequence number and clients read everything after their own cursor.  Events for the same
+ * session are coalesced so a client only sees the latest state of each execution and a client that falls too far behind is sent the latest state of every
+ * execution instead
+ */
+public class ConsoleFeed
+{
+    public static class FeedBatch
+    {
+        private final long cursor;
+        private final boolean reset;
+        private final List<String> eventList;
+
+        public FeedBatch( long cursor, boolean reset, List<String> eventList )
+        {
+            this.cursor = cursor;
+            this.reset = reset;
+            this.eventList = eventList;
+        }
+
+        public long getCursor()
+        {
+            return cursor;
+        }
+
+        public boolean isReset()
+        {
+            return reset;
+        }
+
+        public List<String> getEventList()
+        {
+            return eventList;
+        }
+    }
+
+    private final int capacity;
+    private final String[] keyRing;
+    private final String[] eventRing;
+    private final Map<String, String> latestEvents = new LinkedHashMap<String, String>( 25 );
+
+    private long headSequence = 0;
+    private long tailSequence = 0;
+    private long signalCount = 0;
+
+    public ConsoleFeed( int capacity )
+    {
+        this.capacity = capacity;
+        this.keyRing = new String[ capacity ];
+        this.eventRing = new String[ capacity ];
+    }
+
+    /**
+     * Adds an event and wakes any waiting clients
+     *
+     * @param eventKey the key events are coalesced by
+     * @param eventData the serialized event
+     * @return the sequence after the event
+     */
+    public synchronized long publish( String eventKey, String eventData )
+    {
+        int ringIndex = (int) ( headSequence % capacity );
+        keyRing[ ringIndex ] = eventKey;
+        eventRing[ ringIndex ] = eventData;
+        headSequence++;
+
+        latestEvents.remove( eventKey );
+        latestEvents.put( eventKey, eventData );
+
+        notifyAll();
+        return headSequence;
+    }
+
+    /**
+     * Wakes waiting clients without adding an event
+     */
+    public synchronized void signal()
+    {
+        signalCount++;
+        notifyAll();
+    }
+
+    /**
+     * Drops the current events.  Sequence numbers are not reused so existing client cursors remain valid
+     */
+    public synchronized void clear()
+    {
+        latestEvents.clear();
+        tailSequence = headSequence;
+        signal();
+    }
+
+    /**
+     * Reads the events after a cursor waiting for new events if there are none
+     *
+     * @param cursor the cursor returned by the previous read or a negative value for the current state
+     * @param waitTime the number of milliseconds to wait for an event
+     * @return the coalesced events and the cursor to use for the next read
+     * @throws InterruptedException
+     */
+    public synchronized FeedBatch read( long cursor, long waitTime ) throws InterruptedException
+    {
+        long startSignal = signalCount;
+        long waitUntil = System.currentTimeMillis() + waitTime;
+        while ( cursor >= 0 && cursor == headSequence && startSignal == signalCount )
+        {
+            long remainingTime = waitUntil - System.currentTimeMillis();
+            if ( remainingTime <= 0 )
+                break;
+            wait( remainingTime );
+        }
+
+        if ( cursor < Math.max( tailSequence, headSequence - capacity ) || cursor > headSequence )
+            return new FeedBatch( headSequence, true, new ArrayList<String>( latestEvents.values() ) );
+
+        Map<String, String> coalescedEvents = new LinkedHashMap<String, String>( 25 );
+        for ( long currentSequence = cursor; currentSequence < headSequence; currentSequence++ )
+        {
+            int ringIndex = (int) ( currentSequence % capacity );
+            coalescedEvents.remove( keyRing[ ringIndex ] );
+            coalescedEvents.put( keyRing[ ringIndex ], eventRing[ ringIndex ] );
+        }
+
+        return new FeedBatch( headSequence, false, new ArrayList<String>( coalescedEvents.values() ) );
+    }
+}
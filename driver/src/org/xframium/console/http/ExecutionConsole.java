@@ -5,10 +5,14 @@ import java.io.File;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openqa.selenium.Capabilities;
@@ -18,6 +22,8 @@ import org.xframium.application.ApplicationDescriptor;
 import org.xframium.application.ApplicationDescriptor.AppType;
 import org.xframium.application.ApplicationVersion;
 import org.xframium.artifact.ArtifactType;
+import org.xframium.console.ConsoleFeed;
+import org.xframium.console.ConsoleFeed.FeedBatch;
 import org.xframium.console.ExecutionContainer;
 import org.xframium.console.http.handler.spi.ExecuteTest;
 import org.xframium.console.http.handler.spi.KillSwitch;
@@ -26,8 +32,10 @@ import org.xframium.console.http.handler.spi.OpenConsole;
 import org.xframium.console.http.handler.spi.OpenFile;
 import org.xframium.console.http.handler.spi.OpenHTML;
 import org.xframium.console.http.handler.spi.OpenSuite;
+import org.xframium.console.http.handler.spi.TestFeed;
 import org.xframium.console.http.handler.spi.TestStatus;
 import org.xframium.console.http.handler.spi.ThreadStatus;
+import org.xframium.console.http.handler.spi.DeviceStatus;
 import org.xframium.container.ApplicationContainer;
 import org.xframium.container.CloudContainer;
 import org.xframium.container.DeviceContainer;
@@ -40,6 +48,7 @@ import org.xframium.container.SiteContainer;
 import org.xframium.container.SuiteContainer;
 import org.xframium.container.TagContainer;
 import org.xframium.container.ThreadContainer;
+import org.xframium.container.DeviceStatusContainer;
 import org.xframium.device.DeviceCap;
 import org.xframium.device.DeviceManager;
 import org.xframium.device.cloud.CloudDescriptor;
@@ -92,8 +101,16 @@ public class ExecutionConsole implements KeyWordListener, SuiteListener
     private Log log = LogFactory.getLog(ExecutionConsole.class);
     private static ExecutionConsole singleton = new ExecutionConsole();
     
-    private Map<String,ExecutionContainer> syncMap = new HashMap<String,ExecutionContainer>( 25 );
-    private Map<String,ExecutionContainer> executionMap = new HashMap<String,ExecutionContainer>( 25 );
+    private static final int SERVER_THREADS = 16;
+    private static final int FEED_CAPACITY = 2048;
+    private static final long FEED_WAIT = 25000;
+    
+    private Map<String,ExecutionContainer> executionMap = new ConcurrentHashMap<String,ExecutionContainer>( 25 );
+    private ConsoleFeed consoleFeed = new ConsoleFeed( FEED_CAPACITY );
+    
+    /** Long polling clients may only hold half of the server threads */
+    private Semaphore feedWaiters = new Semaphore( SERVER_THREADS / 2 );
+    private ThreadPoolExecutor serverExecutor;
     
     public static ExecutionConsole instance()
     {
@@ -118,25 +135,99 @@ public class ExecutionConsole implements KeyWordListener, SuiteListener
     
     public void addSync( ExecutionContainer eContain )
     {
-        synchronized ( syncMap )
+        consoleFeed.publish( eContain.getSessionId(), toEvent( eContain ) );
+    }
+
+    /**
+     * Reads the console events after the cursor as a status response
+     * 
+     * @param cursor the cursor returned by the previous read or a negative value for the current state of each execution
+     * @param waitForEvents true to hold the request until an event is published
+     */
+    public byte[] readFeed( long cursor, boolean waitForEvents )
+    {
+        boolean waiting = waitForEvents && testExecuting && feedWaiters.tryAcquire();
+        try
+        {
+            FeedBatch feedBatch = consoleFeed.read( cursor, waiting ? FEED_WAIT : 0 );
+            
+            StringBuilder feedData = new StringBuilder( 256 );
+            feedData.append( "{\"pageData\": {\"cursor\": " ).append( feedBatch.getCursor() ).append( ", \"reset\": " ).append( feedBatch.isReset() ).append( ", \"status\": " ).append( testExecuting ).append( ", \"test\": [" );
+            for ( int i = 0; i < feedBatch.getEventList().size(); i++ )
+            {
+                if ( i > 0 )
+                    feedData.append( ", " );
+                feedData.append( feedBatch.getEventList().get( i ) );
+            }
+            feedData.append( "]}}" );
+            
+            return feedData.toString().getBytes( "UTF-8" );
+        }
+        catch( Exception e )
         {
-            syncMap.put( eContain.getSessionId(), eContain );
+            log.warn( "Error reading console feed", e );
+            return null;
+        }
+        finally
+        {
+            if ( waiting )
+                feedWaiters.release();
         }
-        
-
-        
     }
-
     
-    public List<ExecutionContainer> drainSync()
+    private String toEvent( ExecutionContainer eContain )
+    {
+        StringBuilder eventData = new StringBuilder( 256 );
+        eventData.append( "{\"sessionId\": " ).append( quote( eContain.getSessionId() ) );
+        eventData.append( ", \"testName\": " ).append( quote( eContain.getTestName() ) );
+        eventData.append( ", \"fullTestName\": " ).append( quote( eContain.getFullTestName() ) );
+        eventData.append( ", \"stepCount\": " ).append( eContain.getStepCount() );
+        eventData.append( ", \"testStatus\": " ).append( quote( String.valueOf( eContain.getTestStatus() ) ) );
+        eventData.append( ", \"startTime\": " ).append( eContain.getStartTime() );
+        eventData.append( ", \"stopTime\": " ).append( eContain.getStopTime() );
+        eventData.append( ", \"folderName\": " ).append( quote( eContain.getFolderName() ) );
+        eventData.append( ", \"rootFolder\": " ).append( quote( eContain.getRootFolder() ) );
+        if ( eContain.getDevice() != null )
+            eventData.append( ", \"device\": {\"key\": " ).append( quote( eContain.getDevice().getKey() ) ).append( ", \"environment\": " ).append( quote( eContain.getDevice().getEnvironment() ) ).append( "}" );
+        eventData.append( "}" );
+        return eventData.toString();
+    }
+    
+    private String quote( String value )
     {
-        synchronized ( syncMap )
+        if ( value == null )
+            return "null";
+        
+        StringBuilder quotedValue = new StringBuilder( value.length() + 2 );
+        quotedValue.append( '"' );
+        for ( int i = 0; i < value.length(); i++ )
         {
-            List<ExecutionContainer> eList = new ArrayList<ExecutionContainer>( 10 );
-            eList.addAll( syncMap.values() );
-            syncMap.clear();
-            return eList;
+            char currentChar = value.charAt( i );
+            switch ( currentChar )
+            {
+                case '"':
+                    quotedValue.append( "\\\"" );
+                    break;
+                case '\\':
+                    quotedValue.append( "\\\\" );
+                    break;
+                case '\n':
+                    quotedValue.append( "\\n" );
+                    break;
+                case '\r':
+                    quotedValue.append( "\\r" );
+                    break;
+                case '\t':
+                    quotedValue.append( "\\t" );
+                    break;
+                default:
+                    if ( currentChar < 0x20 )
+                        quotedValue.append( String.format( "\\u%04x", (int) currentChar ) );
+                    else
+                        quotedValue.append( currentChar );
+            }
         }
+        return quotedValue.append( '"' ).toString();
     }
     
     private ExecutionConsole() 
@@ -192,12 +283,28 @@ public class ExecutionConsole implements KeyWordListener, SuiteListener
         SerializationManager.instance().getAdapter( SerializationManager.JSON_SERIALIZATION ).addCustomMapping( ElementUsage.class, new ReflectionSerializer() );
         SerializationManager.instance().getAdapter( SerializationManager.JSON_SERIALIZATION ).addCustomMapping( ThreadContainer.class, new ReflectionSerializer() );
         SerializationManager.instance().getAdapter( SerializationManager.JSON_SERIALIZATION ).addCustomMapping( Thread.State.class, new ReflectionSerializer() );
+        SerializationManager.instance().getAdapter( SerializationManager.JSON_SERIALIZATION ).addCustomMapping( DeviceStatusContainer.class, new ReflectionSerializer() );
         
     }
     
     private void createServer( String ipAddress, int portNumber ) throws Exception
     {
         httpServer = HttpServer.create( new InetSocketAddress( ipAddress, portNumber ), 1000 );
+        
+        serverExecutor = new ThreadPoolExecutor( SERVER_THREADS, SERVER_THREADS, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>( 256 ), new ThreadFactory()
+        {
+            private final AtomicInteger threadNumber = new AtomicInteger( 0 );
+            
+            public Thread newThread( Runnable r )
+            {
+                Thread serverThread = new Thread( r, "EC-Console " + threadNumber.incrementAndGet() );
+                serverThread.setDaemon( true );
+                return serverThread;
+            }
+        } );
+        serverExecutor.allowCoreThreadTimeOut( true );
+        httpServer.setExecutor( serverExecutor );
+        
         httpServer.createContext( "/executionConsole", new OpenConsole() );
         httpServer.createContext( "/js", new OpenFile() );
         httpServer.createContext( "/css", new OpenFile() );
@@ -206,7 +313,9 @@ public class ExecutionConsole implements KeyWordListener, SuiteListener
         httpServer.createContext( "/executionConsole/folderList", new ListFolder() );
         httpServer.createContext( "/executionConsole/executeTest", new ExecuteTest() );
         httpServer.createContext( "/executionConsole/status", new TestStatus() );
+        httpServer.createContext( "/executionConsole/feed", new TestFeed() );
         httpServer.createContext( "/executionConsole/threadStatus", new ThreadStatus() );
+        httpServer.createContext( "/executionConsole/deviceStatus", new DeviceStatus() );
         httpServer.createContext( "/executionConsole/kill", new KillSwitch() );
         httpServer.createContext( "/html", new OpenHTML() );
         httpServer.start();
@@ -217,7 +326,7 @@ public class ExecutionConsole implements KeyWordListener, SuiteListener
         try
         {
             if ( httpServer != null )
-                httpServer.stop( 0 );
+                shutDown();
             
             
             try
@@ -248,6 +357,8 @@ public class ExecutionConsole implements KeyWordListener, SuiteListener
     public void shutDown()
     {
         httpServer.stop( 0 );
+        if ( serverExecutor != null )
+            serverExecutor.shutdownNow();
     }
     
     @Override
@@ -281,6 +392,7 @@ public class ExecutionConsole implements KeyWordListener, SuiteListener
         eContain.setStartTime( System.currentTimeMillis() );
         eContain.setRootFolder( ExecutionContext.instance().getReportFolder().getAbsolutePath() );
         executionMap.put( executionId, eContain );
+        addSync( eContain );
         
         return true;
     }
@@ -295,7 +407,7 @@ public class ExecutionConsole implements KeyWordListener, SuiteListener
         addSync( executionMap.get( executionId ) );
     }
 
-    private boolean testExecuting = false;
+    private volatile boolean testExecuting = false;
     
     
     
@@ -310,7 +422,7 @@ public class ExecutionConsole implements KeyWordListener, SuiteListener
         DeviceManager.instance().clear();
         testExecuting = true;
         executionMap.clear();
-        syncMap.clear();
+        consoleFeed.clear();
         ExecutionContext.instance().clear();
     }
 
@@ -318,5 +430,6 @@ public class ExecutionConsole implements KeyWordListener, SuiteListener
     public void afterSuite( String suiteName, File fileName, File outputFolder )
     {
         testExecuting = false;
+        consoleFeed.signal();
     }
 }
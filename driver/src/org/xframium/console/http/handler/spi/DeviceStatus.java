@@ -0,0 +1,39 @@
+package org.xframium.console.http.handler.spi;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.xframium.console.http.handler.ECHandler;
+import org.xframium.container.DeviceStatusContainer;
+import org.xframium.device.DeviceCircuitBreaker;
+import org.xframium.device.DeviceManager;
+import com.sun.net.httpserver.HttpExchange;
+import com.xframium.serialization.SerializationManager;
+
+@SuppressWarnings("restriction")
+public class DeviceStatus extends ECHandler
+{
+
+	@Override
+	protected byte[] _handle(HttpExchange httpExchange) 
+	{	
+	    try
+	    {
+	        return SerializationManager.instance().toByteArray( SerializationManager.instance().getAdapter( SerializationManager.JSON_SERIALIZATION ), getDevices(), 0 );
+	    }
+	    catch( Exception e )
+	    {
+	        e.printStackTrace();
+	        return e.getMessage().getBytes();
+	    }
+	}
+	
+	public List<DeviceStatusContainer> getDevices()
+    {
+        List<DeviceStatusContainer> dList = new ArrayList<DeviceStatusContainer>( 10 );
+        for ( DeviceCircuitBreaker circuitBreaker : DeviceManager.instance().getCircuitBreakers() )
+            dList.add( new DeviceStatusContainer( circuitBreaker ) );
+        
+        return dList;
+    }
+	
+}
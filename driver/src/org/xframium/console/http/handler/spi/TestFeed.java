@@ -0,0 +1,20 @@
+package org.xframium.console.http.handler.spi;
+
+import java.util.Map;
+import org.xframium.console.http.ExecutionConsole;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * Long polling version of the test status.  The request is held until an execution changes or the suite completes
+ */
+@SuppressWarnings("restriction")
+public class TestFeed extends TestStatus
+{
+
+	@Override
+	protected byte[] _handle(HttpExchange httpExchange) 
+	{	
+	    Map<String,String> queryMap = queryToMap( httpExchange.getRequestURI().getQuery() );
+	    return ExecutionConsole.instance().readFeed( getCursor( queryMap ), true );
+	}
+}
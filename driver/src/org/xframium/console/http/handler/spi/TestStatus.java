@@ -1,11 +1,9 @@
 package org.xframium.console.http.handler.spi;
 
-import java.util.HashMap;
 import java.util.Map;
 import org.xframium.console.http.ExecutionConsole;
 import org.xframium.console.http.handler.ECHandler;
 import com.sun.net.httpserver.HttpExchange;
-import com.xframium.serialization.SerializationManager;
 
 @SuppressWarnings("restriction")
 public class TestStatus extends ECHandler
@@ -14,18 +12,21 @@ public class TestStatus extends ECHandler
 	@Override
 	protected byte[] _handle(HttpExchange httpExchange) 
 	{	
+	    Map<String,String> queryMap = queryToMap( httpExchange.getRequestURI().getQuery() );
+	    return ExecutionConsole.instance().readFeed( getCursor( queryMap ), false );
+	}
+	
+	protected long getCursor( Map<String,String> queryMap )
+	{
 	    try
 	    {
-	        Map<String,Object> returnMap = new HashMap<String,Object>( 10 );
-	        returnMap.put( "test", ExecutionConsole.instance().drainSync() );
-	        returnMap.put( "status", ExecutionConsole.instance().isTestExecuting() );
-    		
-	        return SerializationManager.instance().toByteArray( SerializationManager.instance().getAdapter( SerializationManager.JSON_SERIALIZATION ), returnMap, 0 );
+	        if ( queryMap.get( "cursor" ) != null )
+	            return Long.parseLong( queryMap.get( "cursor" ) );
 	    }
-	    catch( Exception e )
+	    catch( NumberFormatException e )
 	    {
-	        e.printStackTrace();
-	        return e.getMessage().getBytes();
 	    }
+	    
+	    return -1;
 	}
 }
@@ -44,6 +44,7 @@ xConsole
                     $scope.deviceTagList = [];
                     
                     $scope.threadList = [];
+                    $scope.deviceStatusList = [];
                     
                     $scope.intervalPromise;
                     $scope.intervalThreadPromise;
@@ -182,21 +183,27 @@ xConsole
                         {
                             $scope.threadList = returnValue.pageData;
                         });
+                        
+                        xConsoleService.checkDeviceStatus().then(function( returnValue )
+                        {
+                            $scope.deviceStatusList = returnValue.pageData;
+                        });
                     }
                     
                     $scope.checkStatus = function()
                     {
-                        xConsoleService.checkStatus().then(function( returnValue )
+                        xConsoleService.checkStatus( $scope.feedCursor ).then(function( returnValue )
                         {
                             if ( returnValue == null )
                             {
-                                $interval.cancel($scope.intervalPromise);
                                 $interval.cancel($scope.intervalThreadPromise);
+                                return;
                             }
                             
+                            $scope.feedCursor = returnValue.pageData.cursor;
+                            
                             if ( !returnValue.pageData.status )
                             {
-                                $interval.cancel($scope.intervalPromise);
                                 $interval.cancel($scope.intervalThreadPromise);
                                 
                                 $scope.executionStatus = 'idle';
@@ -226,6 +233,22 @@ xConsole
                                     }
                                 }
                             }
+                            
+                            //
+                            // The feed holds the request until something changes so poll again straight away.  An empty batch means that the wait expired or that the
+                            // server had no room to hold the request so back off before polling again
+                            //
+                            if ( returnValue.pageData.status )
+                            {
+                                if ( returnValue.pageData.test.length > 0 )
+                                    $scope.checkStatus();
+                                else
+                                {
+                                    $scope.intervalPromise = $interval(function() {
+                                        $scope.checkStatus();
+                                    }, 2000, 1);
+                                }
+                            }
                         } );
                     }
                     
@@ -435,9 +458,10 @@ xConsole
                         xConsoleService.executeTest( configData ).then(function( returnValue )
                         {
                             $scope.hideSystemProcessing();
+                            $scope.feedCursor = -1;
                             $scope.intervalPromise = $interval(function() {
                                 $scope.checkStatus();
-                            }, 1000);
+                            }, 1000, 1);
                             
                             $scope.intervalThreadPromise = $interval(function() {
                                 $scope.checkThreadStatus();
@@ -6,15 +6,17 @@ xConsole.service("xConsoleService", function($http, $location) {
 		executeTest : executeTest,
 		getHtml : getHtml,
 		checkThreadStatus : checkThreadStatus,
+		checkDeviceStatus : checkDeviceStatus,
 		checkStatus : checkStatus
 	});
 	
-	function checkStatus( )
+	function checkStatus( cursor )
     {
 
         var request = $http({
             method : "get",
-            url : "/executionConsole/status",
+            url : "/executionConsole/feed",
+            params : { "cursor" : cursor }
         });
 
         return request.then(handleSuccess, handleError);
@@ -28,6 +30,17 @@ xConsole.service("xConsoleService", function($http, $location) {
             url : "/executionConsole/threadStatus",
         });
 
+        return request.then(handleSuccess, handleError);
+    }
+	
+	function checkDeviceStatus( )
+    {
+
+        var request = $http({
+            method : "get",
+            url : "/executionConsole/deviceStatus",
+        });
+
         return request.then(handleSuccess, handleError);
     }
 	
@@ -32,14 +32,17 @@ import org.xframium.device.DeviceManager;
 import org.xframium.device.cloud.CloudDescriptor;
 import org.xframium.device.cloud.CloudRegistry;
 import org.xframium.device.data.DataManager;
+import org.xframium.device.factory.HubClientFactory;
 import org.xframium.device.logging.ThreadedFileHandler;
 import org.xframium.device.ng.AbstractSeleniumTest;
+import org.xframium.device.ng.ExecutorTestRunner;
 import org.xframium.device.proxy.ProxyRegistry;
 import org.xframium.exception.ScriptConfigurationException;
 import org.xframium.gesture.GestureManager;
 import org.xframium.gesture.device.action.DeviceActionManager;
 import org.xframium.gesture.device.action.spi.perfecto.PerfectoDeviceActionFactory;
 import org.xframium.gesture.factory.spi.PerfectoGestureFactory;
+import org.xframium.history.TestDurations;
 import org.xframium.integrations.perfectoMobile.rest.PerfectoMobile;
 import org.xframium.integrations.rest.bean.factory.BeanManager;
 import org.xframium.integrations.rest.bean.factory.XMLBeanFactory;
@@ -48,6 +51,7 @@ import org.xframium.page.PageManager;
 import org.xframium.page.StepStatus;
 import org.xframium.page.data.PageData;
 import org.xframium.page.data.PageDataManager;
+import org.xframium.page.data.provider.PageDataPool;
 import org.xframium.page.data.provider.PageDataProvider;
 import org.xframium.page.element.provider.ElementProvider;
 import org.xframium.page.element.provider.XMLElementProvider;
@@ -60,7 +64,9 @@ import org.xframium.page.listener.KeyWordListener;
 import org.xframium.reporting.ExecutionContext;
 import org.xframium.reporting.ExecutionContextTest;
 import org.xframium.spi.Device;
+import org.xframium.utility.SQLConnectionPool;
 import org.xframium.utility.SeleniumSessionManager;
+import org.xframium.utility.XPathCache;
 
 public abstract class AbstractConfigurationReader implements ConfigurationReader
 {
@@ -266,6 +272,7 @@ public abstract class AbstractConfigurationReader implements ConfigurationReader
                 CloudRegistry.instance().addCloudDescriptor( c );
             
             CloudRegistry.instance().setCloud( cC.getCloudName() );
+            HubClientFactory.configure( getConfigurationProperties() );
             
             log.info( "Cloud: configured as " + CloudRegistry.instance().getCloud().getName() + " at " + CloudRegistry.instance().getCloud().getHostName() );
             
@@ -351,6 +358,7 @@ public abstract class AbstractConfigurationReader implements ConfigurationReader
             if ( !configurePropertyAdapters() ) return;
             
             log.info( "Data: Configuring Data Driven Testing" );
+            SQLConnectionPool.configure( getConfigurationProperties() );
             PageDataProvider pdp = configureData();
             
             if ( pdp != null )
@@ -395,8 +403,10 @@ public abstract class AbstractConfigurationReader implements ConfigurationReader
 
             log.info( "Artifact: Configuring Artifact Production" );
             if ( !configureArtifacts( driverC ) ) return;
+            ArtifactManager.instance().getPipeline().configure( getConfigurationProperties() );
             
             DataManager.instance().setReportFolder( new File( configFolder, driverC.getReportFolder() ) );
+            TestDurations.instance().configure( getConfigurationProperties() );
             PageManager.instance().setStoreImages( true );
             PageManager.instance().setImageLocation( new File( configFolder, driverC.getReportFolder() ).getAbsolutePath() );
             
@@ -537,6 +547,24 @@ public abstract class AbstractConfigurationReader implements ConfigurationReader
 
     public void afterSuite()
     {
+        DeviceManager.instance().getSessionPool().shutdown();
+        ArtifactManager.instance().getPipeline().flush();
+        if ( log.isInfoEnabled() )
+        {
+            log.info( XPathCache.instance().toString() );
+            if ( PageDataManager.instance().getDataProvider() != null )
+            {
+                for ( PageDataPool recordPool : PageDataManager.instance().getDataProvider().getRecordPools() )
+                    log.info( "Page Data Pool " + recordPool );
+            }
+            for ( SQLConnectionPool connectionPool : SQLConnectionPool.getPools() )
+                log.info( "SQL Connection Pool " + connectionPool );
+            for ( HubClientFactory clientFactory : HubClientFactory.getFactories() )
+                log.info( "Hub Clients " + clientFactory );
+            log.info( "Execution Journal: " + ExecutionContext.instance().getExecutionJournal().getRecordCount() + " tests (" + ExecutionContext.instance().getExecutionJournal().getByteCount() + " bytes)" );
+        }
+        log.warn( "Test Durations " + TestDurations.instance() );
+        TestDurations.instance().save();
         ExecutionContext.instance().setEndTime( new Date( System.currentTimeMillis()) );
         List<String> aList = ArtifactManager.instance().getEnabledArtifacts( ArtifactTime.BEFORE_SUITE_ARTIFACTS );
         if ( aList != null )
@@ -568,6 +596,10 @@ public abstract class AbstractConfigurationReader implements ConfigurationReader
                 ArtifactManager.instance().generateArtifact( artifactType, ExecutionContext.instance().getReportFolder().getParent(), null );
             }
         }
+        
+        ExecutionContext.instance().getExecutionJournal().close();
+        SQLConnectionPool.closeAll();
+        HubClientFactory.closeAll();
     }
     
     public boolean executeTest( SuiteContainer sC )
@@ -620,6 +652,26 @@ public abstract class AbstractConfigurationReader implements ConfigurationReader
 
     protected void runTest( String outputFolder, Class theTest, SuiteContainer sC )
     {
+        //
+        // The executor runner bypasses the TestNG data provider threads and runs the tests on virtual threads when the JVM supports them
+        //
+        if ( "EXECUTOR".equalsIgnoreCase( System.getProperty( "xF-Runner", "TESTNG" ) ) && AbstractSeleniumTest.class.isAssignableFrom( theTest ) )
+        {
+            long stackSize = Long.parseLong( System.getProperty( "xF-StackSize", "256" ) ) * 1024;
+            long runTimeout = Long.parseLong( System.getProperty( "xF-RunTimeout", "0" ) ) * 60000;
+
+            try
+            {
+                new ExecutorTestRunner( theTest, stackSize, runTimeout ).run();
+            }
+            catch ( Exception e )
+            {
+                log.fatal( "Error executing " + theTest.getName(), e );
+            }
+
+            return;
+        }
+
         int threadCount = Integer.parseInt( System.getProperty( "xF-ThreadCount", "10" ) );
         int verboseLevel = Integer.parseInt( System.getProperty( "xF-VerboseLevel", "10" ) );
 
@@ -12,7 +12,6 @@ import java.util.Properties;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.Unmarshaller;
-import javax.xml.xpath.XPathFactory;
 import org.openqa.selenium.Platform;
 import org.xframium.Initializable;
 import org.xframium.application.ApplicationDescriptor;
@@ -115,6 +114,7 @@ import org.xframium.page.keyWord.provider.SQLKeyWordProvider;
 import org.xframium.page.keyWord.provider.XMLKeyWordProvider;
 import org.xframium.page.keyWord.step.KeyWordStepFactory;
 import org.xframium.spi.Device;
+import org.xframium.utility.XPathCache;
 import gherkin.parser.Parser;
 
 public class XMLConfigurationReader extends AbstractConfigurationReader implements ElementProvider
@@ -133,7 +133,6 @@ public class XMLConfigurationReader extends AbstractConfigurationReader implemen
     
     private Map<String,Element> elementMap = new HashMap<String,Element>(20);
     
-    private static XPathFactory xPathFactory = XPathFactory.newInstance();
     private String siteName;
     
     private Map<String,SiteContainer> siteTree = new HashMap<String,SiteContainer>( 20 );
@@ -443,7 +442,7 @@ public class XMLConfigurationReader extends AbstractConfigurationReader implemen
                         try
                         {
                             if ( currentElement.getBy() == BY.XPATH )
-                                xPathFactory.newXPath().compile( currentElement.getKey().replace( "{", "" ).replace( "}", "" ) );
+                                XPathCache.instance().compile( currentElement.getKey().replace( "{", "" ).replace( "}", "" ) );
                             
                             SiteContainer siteContainer = siteTree.get( elementDescriptor.getSiteName() );
                             
@@ -21,16 +21,12 @@
 package org.xframium.application;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import org.apache.poi.xssf.usermodel.XSSFCell;
-import org.apache.poi.xssf.usermodel.XSSFRow;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.xframium.utility.ExcelSheetReader;
+import org.xframium.utility.ExcelSheetReader.ExcelRow;
+import org.xframium.utility.ExcelSheetReader.RowHandler;
 
 // TODO: Auto-generated Javadoc
 /**
@@ -77,13 +73,19 @@ public class ExcelApplicationProvider extends AbstractApplicationProvider
 	 */
 	public List<ApplicationDescriptor> readData()
 	{
-	    List<ApplicationDescriptor> appList = new ArrayList<ApplicationDescriptor>( 10 );
-	    
 		if ( fileName == null )
 		{
 			if ( log.isInfoEnabled() )
 				log.info( "Reading from CLASSPATH as " + resourceName );
-			return readElements( getClass().getClassLoader().getResourceAsStream( resourceName ) );
+			try
+			{
+				return readElements( new ExcelSheetReader( getClass().getClassLoader().getResourceAsStream( resourceName ) ) );
+			}
+			catch( Exception e )
+			{
+				log.fatal( "Could not read from " + resourceName, e );
+				return null;
+			}
 		}
 		else
 		{
@@ -91,9 +93,9 @@ public class ExcelApplicationProvider extends AbstractApplicationProvider
 			{
 				if ( log.isInfoEnabled() )
 					log.info( "Reading from FILE SYSTEM as [" + fileName + "]" );
-				return readElements( new FileInputStream( fileName ) );
+				return readElements( new ExcelSheetReader( fileName ) );
 			}
-			catch( FileNotFoundException e )
+			catch( Exception e )
 			{
 				log.fatal( "Could not read from " + fileName, e );
 				return null;
@@ -107,50 +109,38 @@ public class ExcelApplicationProvider extends AbstractApplicationProvider
 	 * @param cell the cell
 	 * @return the cell value
 	 */
-	private String getCellValue( XSSFCell cell )
+	private String getCellValue( Object cell )
 	{
 		if (cell != null)
-		{
-			switch (cell.getCellType())
-			{
-				case XSSFCell.CELL_TYPE_BLANK:
-					return null;
-				case XSSFCell.CELL_TYPE_BOOLEAN:
-					return String.valueOf( cell.getBooleanCellValue() );
-				case XSSFCell.CELL_TYPE_NUMERIC:
-					return String.valueOf( cell.getNumericCellValue() );
-				case XSSFCell.CELL_TYPE_STRING:
-					return cell.getRichStringCellValue().toString();
-			}
-		}
+			return String.valueOf( cell );
 		return null;
 	}
 	
 	/**
 	 * Read elements.
 	 *
-	 * @param inputStream the input stream
+	 * @param sheetReader the sheet reader
 	 */
-	private List<ApplicationDescriptor> readElements( InputStream inputStream )
+	private List<ApplicationDescriptor> readElements( ExcelSheetReader sheetReader )
 	{
-	    List<ApplicationDescriptor> appList = new ArrayList<ApplicationDescriptor>( 10 );
-		XSSFWorkbook workbook = null;
+	    final List<ApplicationDescriptor> appList = new ArrayList<ApplicationDescriptor>( 10 );
 
 		try
 		{
-			workbook = new XSSFWorkbook( inputStream );
-			XSSFSheet sheet = workbook.getSheet( tabName );
-
-			for (int i = 1; i <= sheet.getLastRowNum(); i++)
+			sheetReader.readSheet( tabName, new RowHandler()
 			{
-				XSSFRow currentRow = sheet.getRow( i );
+				public boolean handleRow( String sheetName, ExcelRow currentRow )
+				{
+					if ( currentRow.getRowNumber() == 0 )
+						return true;
 
-				if ( getCellValue( currentRow.getCell( 0 ) ) == null || getCellValue( currentRow.getCell( 0 ) ).isEmpty() )
-					break;
-				
-				appList.add( new ApplicationDescriptor( getCellValue( currentRow.getCell( 0 ) ), getCellValue( currentRow.getCell( 4 ) ), getCellValue( currentRow.getCell( 1 ) ), getCellValue( currentRow.getCell( 2 ) ), getCellValue( currentRow.getCell( 3 ) ), getCellValue( currentRow.getCell( 5 ) ), getCellValue( currentRow.getCell( 6 ) ), new HashMap<String,Object>( 0 ), 0, "", true ) );
-				
-			}
+					if ( getCellValue( currentRow.getCell( 0 ) ) == null || getCellValue( currentRow.getCell( 0 ) ).isEmpty() )
+						return false;
+					
+					appList.add( new ApplicationDescriptor( getCellValue( currentRow.getCell( 0 ) ), getCellValue( currentRow.getCell( 4 ) ), getCellValue( currentRow.getCell( 1 ) ), getCellValue( currentRow.getCell( 2 ) ), getCellValue( currentRow.getCell( 3 ) ), getCellValue( currentRow.getCell( 5 ) ), getCellValue( currentRow.getCell( 6 ) ), new HashMap<String,Object>( 0 ), 0, "", true ) );
+					return true;
+				}
+			} );
 
 			return appList;
 		}
@@ -161,13 +151,7 @@ public class ExcelApplicationProvider extends AbstractApplicationProvider
 		}
 		finally
 		{
-			try
-			{
-				workbook.close();
-			}
-			catch (Exception e)
-			{
-			}
+			sheetReader.close();
 		}
 	}
 }
@@ -118,7 +118,8 @@ public class SQLApplicationProvider extends AbstractApplicationProvider
         
         try
         {
-            Object[][] data = SQLUtil.getResults( username, password, url, driver, query, null );
+            Object[][][] queryData = SQLUtil.getResults( username, password, url, driver, new String[] { query, capQuery }, null );
+            Object[][] data = queryData[ 0 ];
 
             for( int i = 0; i < data.length; ++i )
             {
@@ -144,7 +145,7 @@ public class SQLApplicationProvider extends AbstractApplicationProvider
                                                                                                     capabilities, version, "", true ));
             }
 
-            data = SQLUtil.getResults( username, password, url, driver, capQuery, null );
+            data = queryData[ 1 ];
 
             for( int i = 0; i < data.length; ++i )
             {
@@ -7,4 +7,21 @@ public interface Artifact
 {
     public static final String URL  = "ARTIFACT_URL";
     File generateArtifact( String rootFolder, DeviceWebDriver webDriver );
+    
+    /**
+     * @return true if the artifact needs the live device session and has to be generated before the device is released
+     */
+    default boolean isSessionBound()
+    {
+        return false;
+    }
+
+    /**
+     * @param webDriver the driver for the test
+     * @return true if the artifact needs the live device session of this driver and has to be generated before the device is released
+     */
+    default boolean isSessionBound( DeviceWebDriver webDriver )
+    {
+        return isSessionBound();
+    }
 }
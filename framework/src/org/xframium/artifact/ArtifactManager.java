@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.xframium.artifact.spi.ALMDefectArtifact;
@@ -127,6 +128,7 @@ public class ArtifactManager
         log.info( "Registering artifact " + aType );
         
         artifactMap.put( aType, artifactImplementation );
+        boundArtifactMap.remove( aType );
         classTimeMap.put( artifactImplementation, artifactTime );
         
         List<Class> timeList = timeMap.get( artifactTime );
@@ -145,6 +147,9 @@ public class ArtifactManager
     
     private Map<ArtifactTime,List<String>> enabledArtifactMap = new HashMap<ArtifactTime,List<String>>( 10 );
     private List<String> enabledArtifacts = new ArrayList<String>( 10 );
+    private Map<String,Artifact> boundArtifactMap = new ConcurrentHashMap<String,Artifact>( 10 );
+    
+    private ArtifactPipeline artifactPipeline = new ArtifactPipeline();
     
     public boolean isTime( String artifactName, ArtifactTime aTime )
     {
@@ -207,6 +212,42 @@ public class ArtifactManager
         return enabledArtifactMap.get( aTime );
     }
     
+    public ArtifactPipeline getPipeline()
+    {
+        return artifactPipeline;
+    }
+    
+    /**
+     * Determines if the artifact needs the live device session
+     *
+     * @param artifactType the artifact type
+     * @param webDriver the driver for the test
+     * @return true if the artifact has to be generated before the device is released
+     */
+    public boolean isSessionBound( String artifactType, DeviceWebDriver webDriver )
+    {
+        Artifact artifact = boundArtifactMap.get( artifactType );
+        if ( artifact == null )
+        {
+            Class artifactImpl = artifactMap.get( artifactType );
+            if ( artifactImpl == null )
+                return true;
+            
+            try
+            {
+                artifact = (Artifact) artifactImpl.newInstance();
+            }
+            catch( Exception e )
+            {
+                log.warn( "Error creating artifact for " + artifactType, e );
+                return true;
+            }
+            boundArtifactMap.put( artifactType, artifact );
+        }
+        
+        return artifact.isSessionBound( webDriver );
+    }
+    
     public Artifact generateArtifact( String artifactType, String rootFolder, DeviceWebDriver webDriver )
     {
         Class artifactImpl = artifactMap.get( artifactType );
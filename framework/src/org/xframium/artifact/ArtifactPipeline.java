@@ -0,0 +1,291 @@
+/*******************************************************************************
+ * xFramium
+ *
+ * Copyright 2016 by Moreland Labs, Ltd. (http://www.morelandlabs.com)
+ *
+ * Some open source application is free software: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Some open source application is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with xFramium.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @license GPL-3.0+ <http://spdx.org/licenses/GPL-3.0+>
+ *******************************************************************************/
+package org.xframium.artifact;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.xframium.device.factory.DeviceWebDriver;
+
+/**
+ * Generates test artifacts after the device has been released.  Artifacts that need the live session are generated immediately and the remainder are generated
+ * on a bounded pool of threads against a detached copy of the driver.  When the queue is full the artifacts are generated on the calling thread.  The deferred
+ * artifacts still update the execution context of the test so anything that reads the context afterwards is passed in as the completion
+ */
+public class ArtifactPipeline
+{
+    public static final String THREADS = "driver.artifactPipeline.threads";
+    public static final String QUEUE_SIZE = "driver.artifactPipeline.queueSize";
+    public static final String FLUSH_TIMEOUT = "driver.artifactPipeline.flushTimeout";
+
+    private Log log = LogFactory.getLog( ArtifactPipeline.class );
+
+    private int threadCount = 4;
+    private int queueSize = 100;
+    private long flushTimeout = 600000;
+
+    private ExecutorService artifactService;
+    private final Object pendingLock = new Object();
+    private int pendingCount = 0;
+
+    public void configure( Map<String, String> configurationProperties )
+    {
+        if ( configurationProperties == null )
+            return;
+
+        int newThreadCount = getIntProperty( configurationProperties, THREADS, threadCount );
+        int newQueueSize = getIntProperty( configurationProperties, QUEUE_SIZE, queueSize );
+        flushTimeout = getIntProperty( configurationProperties, FLUSH_TIMEOUT, (int) flushTimeout );
+
+        synchronized ( this )
+        {
+            if ( artifactService != null && ( newThreadCount != threadCount || newQueueSize != queueSize ) )
+            {
+                //
+                // Queued artifacts are still generated by the previous service
+                //
+                artifactService.shutdown();
+                artifactService = null;
+            }
+
+            threadCount = newThreadCount;
+            queueSize = newQueueSize;
+        }
+
+        if ( log.isInfoEnabled() )
+            log.info( threadCount > 0 ? "Artifact pipeline using " + threadCount + " thread(s) with a queue of " + queueSize : "Artifact pipeline disabled" );
+    }
+
+    private int getIntProperty( Map<String,String> configurationProperties, String keyName, int defaultValue )
+    {
+        String value = configurationProperties.get( keyName );
+        if ( value != null )
+        {
+            try
+            {
+                return Integer.parseInt( value.trim() );
+            }
+            catch( Exception e )
+            {
+                log.warn( "Invalid value for " + keyName + " [" + value + "]" );
+            }
+        }
+        return defaultValue;
+    }
+
+    public boolean isEnabled()
+    {
+        return threadCount > 0;
+    }
+
+    /**
+     * Generates the enabled artifacts for the specified times in order.  Session bound artifacts are generated before this method returns
+     *
+     * @param rootFolder the folder to write the artifacts to
+     * @param webDriver the driver for the test
+     * @param completion run once every artifact of the test has been generated or null
+     * @param artifactTimes the artifact times to generate
+     */
+    public void generateArtifacts( final String rootFolder, DeviceWebDriver webDriver, final Runnable completion, ArtifactTime... artifactTimes )
+    {
+        final List<String> deferredList = new ArrayList<String>( 10 );
+
+        for ( ArtifactTime artifactTime : artifactTimes )
+        {
+            List<String> aList = ArtifactManager.instance().getEnabledArtifacts( artifactTime );
+            if ( aList == null )
+                continue;
+
+            for ( String artifactType : aList )
+            {
+                if ( !isEnabled() || ArtifactManager.instance().isSessionBound( artifactType, webDriver ) )
+                    ArtifactManager.instance().generateArtifact( artifactType, rootFolder, webDriver );
+                else
+                    deferredList.add( artifactType );
+            }
+        }
+
+        if ( deferredList.isEmpty() )
+        {
+            try
+            {
+                complete( completion );
+            }
+            finally
+            {
+                releaseReport( webDriver );
+            }
+            return;
+        }
+
+        final DeviceWebDriver detachedDriver = webDriver.detach();
+
+        synchronized ( pendingLock )
+        {
+            pendingCount++;
+        }
+
+        try
+        {
+            getArtifactService().execute( new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        for ( String artifactType : deferredList )
+                            ArtifactManager.instance().generateArtifact( artifactType, rootFolder, detachedDriver );
+                    }
+                    finally
+                    {
+                        try
+                        {
+                            complete( completion );
+                        }
+                        finally
+                        {
+                            releaseReport( detachedDriver );
+                            synchronized ( pendingLock )
+                            {
+                                pendingCount--;
+                                pendingLock.notifyAll();
+                            }
+                        }
+                    }
+                }
+            } );
+        }
+        catch( RuntimeException e )
+        {
+            synchronized ( pendingLock )
+            {
+                pendingCount--;
+                pendingLock.notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    private void complete( Runnable completion )
+    {
+        if ( completion == null )
+            return;
+
+        try
+        {
+            completion.run();
+        }
+        catch( Exception e )
+        {
+            log.error( "Error completing the artifacts of a test", e );
+        }
+    }
+
+    /**
+     * Lets the cloud provider discard anything it cached while generating the artifacts of the test
+     */
+    private void releaseReport( DeviceWebDriver webDriver )
+    {
+        try
+        {
+            if ( webDriver.getCloud() != null )
+                webDriver.getCloud().getCloudActionProvider().releaseReport( webDriver );
+        }
+        catch( Exception e )
+        {
+            log.warn( "Error releasing execution report", e );
+        }
+    }
+
+    /**
+     * Waits for all queued artifacts to be generated
+     *
+     * @return true if all of the artifacts were generated before the flush timeout
+     */
+    public boolean flush()
+    {
+        long endTime = System.currentTimeMillis() + flushTimeout;
+
+        synchronized ( pendingLock )
+        {
+            if ( pendingCount > 0 && log.isInfoEnabled() )
+                log.info( "Waiting for " + pendingCount + " test(s) to finish generating artifacts" );
+
+            while ( pendingCount > 0 )
+            {
+                long waitTime = endTime - System.currentTimeMillis();
+                if ( waitTime <= 0 )
+                {
+                    log.warn( "Timed out waiting for " + pendingCount + " test(s) to finish generating artifacts" );
+                    return false;
+                }
+
+                try
+                {
+                    pendingLock.wait( waitTime );
+                }
+                catch( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    public int getPendingCount()
+    {
+        synchronized ( pendingLock )
+        {
+            return pendingCount;
+        }
+    }
+
+    private synchronized ExecutorService getArtifactService()
+    {
+        if ( artifactService == null )
+        {
+            artifactService = new ThreadPoolExecutor( threadCount, threadCount, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>( Math.max( 1, queueSize ) ), new ThreadFactory()
+            {
+                private AtomicInteger threadCount = new AtomicInteger( 0 );
+
+                public Thread newThread( Runnable r )
+                {
+                    Thread newThread = new Thread( r, "xF-Artifact " + threadCount.incrementAndGet() );
+                    newThread.setDaemon( true );
+                    return newThread;
+                }
+            }, new ThreadPoolExecutor.CallerRunsPolicy() );
+            ( (ThreadPoolExecutor) artifactService ).allowCoreThreadTimeOut( true );
+        }
+        return artifactService;
+    }
+}
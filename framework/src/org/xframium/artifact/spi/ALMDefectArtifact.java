@@ -25,6 +25,12 @@ public class ALMDefectArtifact extends AbstractArtifact
         setArtifactType( ArtifactType.ALM_DEFECT.name() );
     }
     
+    @Override
+    public boolean isSessionBound()
+    {
+        return true;
+    }
+    
     @Override
     protected File _generateArtifact( File rootFolder, DeviceWebDriver webDriver ) throws Exception
     {
@@ -13,13 +13,22 @@ public class DeviceLogArtifact extends AbstractArtifact
         setArtifactType( ArtifactType.DEVICE_LOG.name() );
     }
     
+    /**
+     * Only some clouds read the device log through the session - the others download it from their reports
+     */
+    @Override
+    public boolean isSessionBound( DeviceWebDriver webDriver )
+    {
+        return webDriver.getCloud() == null || webDriver.getCloud().getCloudActionProvider().isLogSessionBound();
+    }
+    
     @Override
     protected File _generateArtifact( File rootFolder, DeviceWebDriver webDriver )
     {
         
-        String logData = webDriver.getCloud().getCloudActionProvider().getLog( webDriver );
-        if ( logData != null )
-            return writeToDisk( rootFolder, FILE_NAME, logData.getBytes() );
+        File logFile = new File( rootFolder, FILE_NAME );
+        if ( webDriver.getCloud().getCloudActionProvider().writeLog( webDriver, logFile ) )
+            return logFile;
         else
             return null;
     }
@@ -13,6 +13,12 @@ public class HTMLSourceArtifact extends AbstractArtifact
         setArtifactType( ArtifactType.FAILURE_SOURCE_HTML.name() );
     }
     
+    @Override
+    public boolean isSessionBound()
+    {
+        return true;
+    }
+    
     @Override
     protected File _generateArtifact( File rootFolder, DeviceWebDriver webDriver )
     {
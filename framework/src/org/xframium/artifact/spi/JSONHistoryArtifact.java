@@ -1,24 +1,19 @@
 package org.xframium.artifact.spi;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileFilter;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.LinkedList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 import org.xframium.artifact.AbstractArtifact;
 import org.xframium.artifact.ArtifactType;
 import org.xframium.device.factory.DeviceWebDriver;
+import org.xframium.history.HistoryIndex;
 import org.xframium.reporting.ExecutionContext;
 import com.xframium.serialization.SerializationManager;
 
 public class JSONHistoryArtifact extends AbstractArtifact
 {
-    private static final int MAX_HISTORY = 20;
     private static final String FILE_NAME = "History.js";
     public JSONHistoryArtifact()
     {
@@ -26,107 +21,67 @@ public class JSONHistoryArtifact extends AbstractArtifact
     }
     
     @Override
-    protected File _generateArtifact( File rootFolder, DeviceWebDriver webDriver )
+    protected File _generateArtifact( File rootFolder, DeviceWebDriver webDriver ) throws Exception
     {
-        File[] suiteList = rootFolder.listFiles( new FolderFilter() );
+        HistoryIndex historyIndex = new HistoryIndex( rootFolder );
         
-        List<File> fileList = new LinkedList<File>(  );
-        for ( File currentFile : suiteList )
+        ExecutionContext executionContext = ExecutionContext.instance();
+        if ( executionContext.isEnabled() )
         {
-            fileList.add( new File( currentFile, "Suite.js" ) );
-        }
-        
-        Collections.sort( fileList, new FileComparator() );
-        
-        int currentIndex = 0;
-        
-        StringBuilder stringBuilder = new StringBuilder();
-        stringBuilder.append( "var suiteData = [" );
-        for ( File currentFile : fileList )
-        {
-            if ( log.isInfoEnabled() )
-                log.info( "Reading: " + currentFile.getAbsolutePath() );
-            
-            String fileData = readFile( currentFile );
-            if ( fileData != null )
-            {
-                String mapData = fileData.substring( 15, fileData.length() - 1 );
-                stringBuilder.append( mapData ).append( ", " );
-            }
-            
-            if ( currentIndex++ > MAX_HISTORY )
-                break;
-        }
-        
-        stringBuilder.append( " ];" );
-
-        return writeToDisk( rootFolder, FILE_NAME, stringBuilder.toString().getBytes() );
-        
-    }
-    
-    private String readFile( File currentFile )
-    {
-        try
-        {
-            StringBuilder stringBuilder = new StringBuilder();
-            BufferedInputStream inputStream = new BufferedInputStream( new FileInputStream( currentFile ) );
+            List<Map<String, Object>> executionSummary = executionContext.getExecutionSummary();
             
-            int bytesRead = 0;
-            byte[] buffer = new byte[ 512 ];
+            Map<String,Object> suiteData = new HashMap<String,Object>( 10 );
+            suiteData.put( "suiteName", executionContext.getSuiteName() );
+            suiteData.put( "reportFolder", executionContext.getReportFolder().getAbsolutePath() );
+            suiteData.put( "startTime", executionContext.getStartTime() );
+            suiteData.put( "endTime", executionContext.getEndTime() );
+            suiteData.put( "testTags", executionContext.getTestTags() );
+            suiteData.put( "phase", executionContext.getPhase() );
+            suiteData.put( "domain", executionContext.getDomain() );
+            suiteData.put( "executionSummary", executionSummary );
             
-            while ( ( bytesRead = inputStream.read( buffer ) ) != -1 )
+            Properties suiteTotals = new Properties();
+            int passed = 0, failed = 0, skipped = 0, stepsPassed = 0, stepsFailed = 0, stepsIgnored = 0;
+            for ( Map<String, Object> testSummary : executionSummary )
             {
-                stringBuilder.append( new String( buffer, 0, bytesRead ) );
+                String testStatus = String.valueOf( testSummary.get( "testStatus" ) );
+                if ( "PASSED".equals( testStatus ) )
+                    passed++;
+                else if ( "SKIPPED".equals( testStatus ) )
+                    skipped++;
+                else
+                    failed++;
+                
+                stepsPassed += getCount( testSummary, "passed" );
+                stepsFailed += getCount( testSummary, "failed" );
+                stepsIgnored += getCount( testSummary, "ignored" );
             }
             
-            inputStream.close();
+            suiteTotals.setProperty( "suites", "1" );
+            suiteTotals.setProperty( "tests", executionSummary.size() + "" );
+            suiteTotals.setProperty( "passed", passed + "" );
+            suiteTotals.setProperty( "failed", failed + "" );
+            suiteTotals.setProperty( "skipped", skipped + "" );
+            suiteTotals.setProperty( "stepsPassed", stepsPassed + "" );
+            suiteTotals.setProperty( "stepsFailed", stepsFailed + "" );
+            suiteTotals.setProperty( "stepsIgnored", stepsIgnored + "" );
+            if ( executionContext.getStartTime() != null )
+                suiteTotals.setProperty( "lastRun", executionContext.getStartTime().getTime() + "" );
             
-            return stringBuilder.toString();
-        }
-        catch( Exception e )
-        {
-            e.printStackTrace();
+            historyIndex.addSuite( executionContext.getReportFolder(), SerializationManager.instance().toByteArray( SerializationManager.instance().getAdapter( SerializationManager.JSON_SERIALIZATION ), suiteData, 0 ), suiteTotals );
         }
         
-        return null;
-    }
-    
-    public class FileComparator implements Comparator<File>
-    {
-        @Override
-        public int compare( File fileOne, File fileTwo )
-        {
-            return Long.compare( fileTwo.lastModified(), fileOne.lastModified() );
-        }
-        
-    }
-    
-    public class FolderFilter implements FileFilter
-    {
+        if ( log.isInfoEnabled() )
+            log.info( "Writing " + FILE_NAME + " from " + historyIndex.getAggregate().getProperty( "suites", "0" ) + " indexed suites" );
 
-        @Override
-        public boolean accept( File pathname )
-        {
-            if ( pathname.isDirectory() )
-            {
-                File[] fileList = pathname.listFiles( new SuiteFilter() );
-                if ( fileList != null && fileList.length > 0 )
-                    return true;
-            }
-            
-            return false;
-        }
+        return historyIndex.writeHistory();
     }
     
-    public class SuiteFilter implements FileFilter
+    private int getCount( Map<String, Object> testSummary, String countName )
     {
-        @Override
-        public boolean accept( File pathname )
-        {
-            if ( pathname.getName().equals( "Suite.js" ) )
-                return true;
-            else
-                return false;
-        }
+        Object countValue = testSummary.get( countName );
+        if ( countValue instanceof Number )
+            return ((Number) countValue).intValue();
+        return 0;
     }
 }
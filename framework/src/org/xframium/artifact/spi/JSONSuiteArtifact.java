@@ -1,10 +1,15 @@
 package org.xframium.artifact.spi;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Vector;
 import org.xframium.artifact.AbstractArtifact;
 import org.xframium.artifact.ArtifactType;
 import org.xframium.device.factory.DeviceWebDriver;
 import org.xframium.reporting.ExecutionContext;
+import org.xframium.reporting.ExecutionJournal;
 import com.xframium.serialization.SerializationManager;
 
 public class JSONSuiteArtifact extends AbstractArtifact
@@ -17,9 +22,34 @@ public class JSONSuiteArtifact extends AbstractArtifact
     }
     
     @Override
-    protected File _generateArtifact( File rootFolder, DeviceWebDriver webDriver )
+    protected File _generateArtifact( File rootFolder, DeviceWebDriver webDriver ) throws Exception
     {
-        return writeToDisk( rootFolder, FILE_NAME, ("var testData = " + new String( SerializationManager.instance().toByteArray( SerializationManager.instance().getAdapter( SerializationManager.JSON_SERIALIZATION ), ExecutionContext.instance(), 0 ) ) + ";").getBytes() );
+        String suiteData = "var testData = " + new String( SerializationManager.instance().toByteArray( SerializationManager.instance().getAdapter( SerializationManager.JSON_SERIALIZATION ), ExecutionContext.instance(), 0 ) ) + ";";
+        
+        //
+        // Stream the test records from the journal in place of the execution summary marker
+        //
+        String journalMarker = "\"" + ExecutionContext.EXECUTION_JOURNAL + "\"";
+        int markerIndex = suiteData.indexOf( journalMarker );
+        if ( markerIndex < 0 )
+            return writeToDisk( rootFolder, FILE_NAME, suiteData.getBytes() );
+        
+        ExecutionJournal executionJournal = ExecutionContext.instance().getExecutionJournal();
+        
+        Vector<InputStream> suiteStreams = new Vector<InputStream>( 3 );
+        suiteStreams.add( new ByteArrayInputStream( ( suiteData.substring( 0, markerIndex ) + "[" ).getBytes() ) );
+        suiteStreams.add( executionJournal.openRecordStream() );
+        suiteStreams.add( new ByteArrayInputStream( ( "]" + suiteData.substring( markerIndex + journalMarker.length() ) ).getBytes() ) );
+        
+        InputStream suiteStream = new SequenceInputStream( suiteStreams.elements() );
+        try
+        {
+            return writeToDisk( rootFolder, FILE_NAME, suiteStream );
+        }
+        finally
+        {
+            suiteStream.close();
+        }
     }
     
     
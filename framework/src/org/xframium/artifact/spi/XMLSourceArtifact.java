@@ -14,6 +14,12 @@ public class XMLSourceArtifact extends AbstractArtifact implements Artifact
         setArtifactType( ArtifactType.FAILURE_SOURCE.name() );
     }
     
+    @Override
+    public boolean isSessionBound()
+    {
+        return true;
+    }
+    
     @Override
     protected File _generateArtifact( File rootFolder, DeviceWebDriver webDriver )
     {
@@ -0,0 +1,95 @@
+package org.xframium.container;
+
+import org.xframium.device.DeviceCircuitBreaker;
+
+public class DeviceStatusContainer
+{
+    private String deviceKey;
+    private String circuitState;
+    private boolean exhausted;
+    private int consecutiveFailures;
+    private int totalFailures;
+    private int tripCount;
+    private long retryDelay;
+    
+    public DeviceStatusContainer( DeviceCircuitBreaker circuitBreaker )
+    {
+        deviceKey = circuitBreaker.getDeviceKey();
+        circuitState = circuitBreaker.getState().name();
+        exhausted = circuitBreaker.isExhausted();
+        consecutiveFailures = circuitBreaker.getConsecutiveFailures();
+        totalFailures = circuitBreaker.getTotalFailures();
+        tripCount = circuitBreaker.getTripCount();
+        retryDelay = circuitBreaker.getRetryDelay();
+    }
+
+    public String getDeviceKey()
+    {
+        return deviceKey;
+    }
+
+    public void setDeviceKey( String deviceKey )
+    {
+        this.deviceKey = deviceKey;
+    }
+
+    public String getCircuitState()
+    {
+        return circuitState;
+    }
+
+    public void setCircuitState( String circuitState )
+    {
+        this.circuitState = circuitState;
+    }
+
+    public boolean isExhausted()
+    {
+        return exhausted;
+    }
+
+    public void setExhausted( boolean exhausted )
+    {
+        this.exhausted = exhausted;
+    }
+
+    public int getConsecutiveFailures()
+    {
+        return consecutiveFailures;
+    }
+
+    public void setConsecutiveFailures( int consecutiveFailures )
+    {
+        this.consecutiveFailures = consecutiveFailures;
+    }
+
+    public int getTotalFailures()
+    {
+        return totalFailures;
+    }
+
+    public void setTotalFailures( int totalFailures )
+    {
+        this.totalFailures = totalFailures;
+    }
+
+    public int getTripCount()
+    {
+        return tripCount;
+    }
+
+    public void setTripCount( int tripCount )
+    {
+        this.tripCount = tripCount;
+    }
+
+    public long getRetryDelay()
+    {
+        return retryDelay;
+    }
+
+    public void setRetryDelay( long retryDelay )
+    {
+        this.retryDelay = retryDelay;
+    }
+}
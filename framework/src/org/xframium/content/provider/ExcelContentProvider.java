@@ -21,16 +21,12 @@
 package org.xframium.content.provider;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.InputStream;
-import org.apache.poi.xssf.usermodel.XSSFCell;
-import org.apache.poi.xssf.usermodel.XSSFRow;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.xframium.content.ContentData;
 import org.xframium.content.ContentManager;
 import org.xframium.content.DefaultContentData;
+import org.xframium.utility.ExcelSheetReader;
+import org.xframium.utility.ExcelSheetReader.ExcelRow;
+import org.xframium.utility.ExcelSheetReader.RowHandler;
 
 // TODO: Auto-generated Javadoc
 /**
@@ -96,7 +92,14 @@ public class ExcelContentProvider extends AbstractContentProvider
 		{
 			if ( log.isInfoEnabled() )
 				log.info( "Reading from CLASSPATH as " + resourceName );
-			readElements( getClass().getClassLoader().getResourceAsStream( resourceName ) );
+			try
+			{
+				readElements( new ExcelSheetReader( getClass().getClassLoader().getResourceAsStream( resourceName ) ) );
+			}
+			catch( Exception e )
+			{
+				log.fatal( "Could not read from " + resourceName, e );
+			}
 		}
 		else
 		{
@@ -104,9 +107,9 @@ public class ExcelContentProvider extends AbstractContentProvider
 			{
 				if ( log.isInfoEnabled() )
 					log.info( "Reading from FILE SYSTEM as [" + fileName + "]" );
-				readElements( new FileInputStream( fileName ) );
+				readElements( new ExcelSheetReader( fileName ) );
 			}
-			catch( FileNotFoundException e )
+			catch( Exception e )
 			{
 				log.fatal( "Could not read from " + fileName, e );
 			}
@@ -119,68 +122,52 @@ public class ExcelContentProvider extends AbstractContentProvider
 	 * @param cell the cell
 	 * @return the cell value
 	 */
-	private String getCellValue( XSSFCell cell )
+	private String getCellValue( Object cell )
 	{
 		if (cell != null)
-		{
-			switch (cell.getCellType())
-			{
-				case XSSFCell.CELL_TYPE_BLANK:
-					return null;
-				case XSSFCell.CELL_TYPE_BOOLEAN:
-					return String.valueOf( cell.getBooleanCellValue() );
-				case XSSFCell.CELL_TYPE_NUMERIC:
-					return String.valueOf( cell.getNumericCellValue() );
-				case XSSFCell.CELL_TYPE_STRING:
-					return cell.getRichStringCellValue().toString();
-			}
-		}
+			return String.valueOf( cell );
 		return null;
 	}
 	
 	/**
 	 * Read elements.
 	 *
-	 * @param inputStream the input stream
+	 * @param sheetReader the sheet reader
 	 */
-	private void readElements( InputStream inputStream )
+	private void readElements( ExcelSheetReader sheetReader )
 	{
-		
-		XSSFWorkbook workbook = null;
-
 		try
 		{
-			workbook = new XSSFWorkbook( inputStream );
-			
-			XSSFSheet sheet = workbook.getSheet( tabName );
-	
-			XSSFRow headerRow = sheet.getRow( 0 );
-			String[] headerList = new String[ lookupColumns.length ];
-			for ( int i=1; i<lookupColumns.length + 1; i++ )
+			sheetReader.readSheet( tabName, new RowHandler()
 			{
-			    headerList[ i-1 ] = getCellValue( headerRow.getCell( i ) );
-			}
-			ContentManager.instance().setMatrixData( headerList );
-			
-			for (int i = 1; i <= sheet.getLastRowNum(); i++)
-			{
-				XSSFRow currentRow = sheet.getRow( i );
-
-				String keyName = getCellValue( currentRow.getCell( keyColumn ) );
-				
-				String[] valueList = new String[ lookupColumns.length ];
-				
-				for ( int x=0; x<lookupColumns.length; x++ )
+				public boolean handleRow( String sheetName, ExcelRow currentRow )
 				{
-					valueList[ x ] = getCellValue( currentRow.getCell( lookupColumns[ x ] ) );
-				}
-				
-				ContentData contentData = new DefaultContentData( keyName, valueList );
-				
-				ContentManager.instance().addContentData( contentData );	
-			}
+					if ( currentRow.getRowNumber() == 0 )
+					{
+						String[] headerList = new String[ lookupColumns.length ];
+						for ( int i=1; i<lookupColumns.length + 1; i++ )
+						{
+						    headerList[ i-1 ] = getCellValue( currentRow.getCell( i ) );
+						}
+						ContentManager.instance().setMatrixData( headerList );
+						return true;
+					}
 
-			
+					String keyName = getCellValue( currentRow.getCell( keyColumn ) );
+					
+					String[] valueList = new String[ lookupColumns.length ];
+					
+					for ( int x=0; x<lookupColumns.length; x++ )
+					{
+						valueList[ x ] = getCellValue( currentRow.getCell( lookupColumns[ x ] ) );
+					}
+					
+					ContentData contentData = new DefaultContentData( keyName, valueList );
+					
+					ContentManager.instance().addContentData( contentData );
+					return true;
+				}
+			} );
 		}
 		catch (Exception e)
 		{
@@ -188,13 +175,7 @@ public class ExcelContentProvider extends AbstractContentProvider
 		}
 		finally
 		{
-			try
-			{
-				workbook.close();
-			}
-			catch (Exception e)
-			{
-			}
+			sheetReader.close();
 		}
 	}
 }
@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * xFramium
+ *
+ * Copyright 2016 by Moreland Labs, Ltd. (http://www.morelandlabs.com)
+ *
+ * Some open source application is free software: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Some open source application is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with xFramium.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @license GPL-3.0+ <http://spdx.org/licenses/GPL-3.0+>
+ *******************************************************************************/
+package org.xframium.device;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tracks connection failures for a single device.  After a number of consecutive failures the circuit opens and no connections are attempted until the back off
+ * period has passed.  A single probe connection is then allowed (half open) and its result either closes the circuit or opens it again with twice the back off.
+ * Once the circuit has tripped the maximum number of times without a successful connection the device is considered invalid
+ */
+public class DeviceCircuitBreaker
+{
+    public enum CircuitState
+    {
+        CLOSED,
+        OPEN,
+        HALF_OPEN;
+    }
+
+    private final String deviceKey;
+    private final int failureThreshold;
+    private final long baseDelay;
+    private final long maxDelay;
+    private final int maxTrips;
+
+    private final AtomicReference<CircuitState> circuitState = new AtomicReference<CircuitState>( CircuitState.CLOSED );
+    private final AtomicInteger consecutiveFailures = new AtomicInteger( 0 );
+    private final AtomicInteger tripCount = new AtomicInteger( 0 );
+    private final AtomicInteger totalFailures = new AtomicInteger( 0 );
+    private volatile long retryTime = 0;
+
+    public DeviceCircuitBreaker( String deviceKey, int failureThreshold, long baseDelay, long maxDelay, int maxTrips )
+    {
+        this.deviceKey = deviceKey;
+        this.failureThreshold = failureThreshold;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        this.maxTrips = maxTrips;
+    }
+
+    /**
+     * Requests permission to connect to the device.  When the back off period of an open circuit has expired only the first caller is allowed through as the probe
+     *
+     * @return true if a connection may be attempted
+     */
+    public boolean tryAcquire()
+    {
+        switch ( circuitState.get() )
+        {
+            case CLOSED:
+                return true;
+
+            case OPEN:
+                if ( isExhausted() || System.currentTimeMillis() < retryTime )
+                    return false;
+                return circuitState.compareAndSet( CircuitState.OPEN, CircuitState.HALF_OPEN );
+
+            default:
+                return false;
+        }
+    }
+
+    public void recordSuccess()
+    {
+        consecutiveFailures.set( 0 );
+        tripCount.set( 0 );
+        circuitState.set( CircuitState.CLOSED );
+    }
+
+    public void recordFailure()
+    {
+        totalFailures.incrementAndGet();
+        int failureCount = consecutiveFailures.incrementAndGet();
+
+        if ( circuitState.compareAndSet( CircuitState.HALF_OPEN, CircuitState.OPEN ) )
+            trip();
+        else if ( failureCount >= failureThreshold && circuitState.compareAndSet( CircuitState.CLOSED, CircuitState.OPEN ) )
+            trip();
+    }
+
+    private void trip()
+    {
+        int trips = tripCount.incrementAndGet();
+        long backOff = baseDelay << Math.min( trips - 1, 20 );
+        retryTime = System.currentTimeMillis() + Math.min( backOff, maxDelay );
+    }
+
+    /**
+     * @return true if the circuit has tripped too many times for the device to be used again
+     */
+    public boolean isExhausted()
+    {
+        return tripCount.get() >= maxTrips;
+    }
+
+    /**
+     * @return true if a test should be dispatched to this device - either a connection may be attempted or the device is exhausted and the test will be failed
+     */
+    public boolean isDispatchable()
+    {
+        switch ( circuitState.get() )
+        {
+            case CLOSED:
+                return true;
+            case OPEN:
+                return isExhausted() || System.currentTimeMillis() >= retryTime;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return the number of milliseconds until an open circuit will allow a probe or 0 if it is not waiting
+     */
+    public long getRetryDelay()
+    {
+        if ( circuitState.get() != CircuitState.OPEN || isExhausted() )
+            return 0;
+        return Math.max( 0, retryTime - System.currentTimeMillis() );
+    }
+
+    public String getDeviceKey()
+    {
+        return deviceKey;
+    }
+
+    public CircuitState getState()
+    {
+        return circuitState.get();
+    }
+
+    public int getConsecutiveFailures()
+    {
+        return consecutiveFailures.get();
+    }
+
+    public int getTotalFailures()
+    {
+        return totalFailures.get();
+    }
+
+    public int getTripCount()
+    {
+        return tripCount.get();
+    }
+
+    public String toString()
+    {
+        return deviceKey + " [" + circuitState.get() + (isExhausted() ? " - EXHAUSTED" : "") + "] failures: " + consecutiveFailures.get() + " trips: " + tripCount.get();
+    }
+}
@@ -32,6 +32,7 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openqa.selenium.WebDriver;
@@ -88,10 +89,17 @@ public class DeviceManager
 
     private String[] tagNames;
 
-    private Map<Device, Integer> failureMap = new HashMap<Device, Integer>( 10 );
+    /** Connection failure tracking by device key */
+    private ConcurrentHashMap<String, DeviceCircuitBreaker> breakerMap = new ConcurrentHashMap<String, DeviceCircuitBreaker>( 10 );
+    private long breakerBaseDelay = 30000;
+    private long breakerMaxDelay = 600000;
+    private int breakerMaxTrips = 3;
+    private int breakerThreshold = -1;
 
     private Map<String, Boolean> initializationMap = new HashMap<String, Boolean>( 10 );
 
+    private SessionPool sessionPool = new SessionPool();
+
     private String initializationName;
     private Log testFlow = LogFactory.getLog( "testFlow" );
 
@@ -178,6 +186,85 @@ public class DeviceManager
     public void setConfigurationProperties( Map<String, String> configurationProperties )
     {
         this.configurationProperties = configurationProperties;
+        sessionPool.configure( configurationProperties );
+
+        if ( configurationProperties != null )
+        {
+            breakerThreshold = getIntProperty( configurationProperties, "driver.circuitBreaker.failureThreshold", -1 );
+            breakerBaseDelay = getIntProperty( configurationProperties, "driver.circuitBreaker.baseDelay", 30000 );
+            breakerMaxDelay = getIntProperty( configurationProperties, "driver.circuitBreaker.maxDelay", 600000 );
+            breakerMaxTrips = getIntProperty( configurationProperties, "driver.circuitBreaker.maxTrips", 3 );
+        }
+    }
+
+    private int getIntProperty( Map<String, String> configurationProperties, String propertyName, int defaultValue )
+    {
+        String propertyValue = configurationProperties.get( propertyName );
+        if ( propertyValue == null || propertyValue.trim().isEmpty() )
+            return defaultValue;
+
+        try
+        {
+            return Integer.parseInt( propertyValue.trim() );
+        }
+        catch ( NumberFormatException e )
+        {
+            log.warn( "Invalid value for " + propertyName + " - " + propertyValue );
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Gets the circuit breaker tracking connection failures for a device.  Devices that share a key share the breaker
+     *
+     * @param currentDevice the device
+     * @return the circuit breaker
+     */
+    public DeviceCircuitBreaker getCircuitBreaker( Device currentDevice )
+    {
+        DeviceCircuitBreaker circuitBreaker = breakerMap.get( currentDevice.getKey() );
+        if ( circuitBreaker == null )
+        {
+            //
+            // By default the key trips after the same number of failures that used to invalidate it - the retry count for each of its devices
+            //
+            int failureThreshold = breakerThreshold > 0 ? breakerThreshold : Math.max( 1, retryCount * currentDevice.getAvailableDevices() );
+            circuitBreaker = new DeviceCircuitBreaker( currentDevice.getKey(), failureThreshold, breakerBaseDelay, breakerMaxDelay, breakerMaxTrips );
+            DeviceCircuitBreaker existingBreaker = breakerMap.putIfAbsent( currentDevice.getKey(), circuitBreaker );
+            if ( existingBreaker != null )
+                circuitBreaker = existingBreaker;
+        }
+
+        return circuitBreaker;
+    }
+
+    public List<DeviceCircuitBreaker> getCircuitBreakers()
+    {
+        return new ArrayList<DeviceCircuitBreaker>( breakerMap.values() );
+    }
+
+    public SessionPool getSessionPool()
+    {
+        return sessionPool;
+    }
+
+    /**
+     * Returns a WebDriver at the end of a test.  If the session came from the session pool it is reset and kept for the next test, otherwise it is ended
+     *
+     * @param webDriver the web driver
+     */
+    public void releaseDriver( DeviceWebDriver webDriver )
+    {
+        if ( sessionPool.checkIn( webDriver ) )
+            return;
+
+        try
+        {
+            webDriver.quit();
+        }
+        catch ( Exception e )
+        {
+        }
     }
 
     public String getDeviceInterrupts()
@@ -320,11 +407,10 @@ public class DeviceManager
         selectedDevice = null;
         holdList.clear();
         tagNames = null;
-        failureMap.clear();
+        breakerMap.clear();
         initializationMap.clear();
         deviceMap.clear();
         deviceList.clear();
-        failureMap.clear();
         initializationMap.clear();
     }
 
@@ -415,14 +501,7 @@ public class DeviceManager
     
     public boolean isDeviceInvalid( Device currentDevice )
     {
-        Integer deviceFailures = failureMap.get( currentDevice );
-        if ( deviceFailures == null )
-            return false;
-        
-        if ( deviceFailures >= (currentDevice.getAvailableDevices() * retryCount) )
-            return true;
-        
-        return false;
+        return getCircuitBreaker( currentDevice ).isExhausted();
     }
     
     public ConnectedDevice getDevice( TestPackage testPackage, boolean attachDevice )
@@ -433,17 +512,11 @@ public class DeviceManager
         try
         {
             Device currentDevice = testPackage.getDevice();
-            int currentFailures = 0;
-            Integer deviceFailures = failureMap.get( currentDevice );
-            if ( deviceFailures != null )
-                currentFailures = deviceFailures;
+            DeviceCircuitBreaker circuitBreaker = getCircuitBreaker( currentDevice );
 
-            if ( currentFailures >= (currentDevice.getAvailableDevices() * retryCount) )
+            if ( attachDevice && !dryRun && !circuitBreaker.tryAcquire() )
             {
-                testFlow.warn( "Device has too many issues - " + currentDevice.getEnvironment() );
-                //
-                // This device has failed too many times
-                //
+                testFlow.warn( "Device connections are suspended - " + circuitBreaker );
                 return null;
             }
 
@@ -463,6 +536,13 @@ public class DeviceManager
                     if ( testPackage.getTestName().getPersonaName() != null && !testPackage.getTestName().getPersonaName().isEmpty() )
                         currentDevice.addCapability( "windTunnelPersona", testPackage.getTestName().getPersonaName(), "STRING" );
 
+                    webDriver = sessionPool.checkOut( currentDevice );
+                    if ( webDriver != null )
+                    {
+                        circuitBreaker.recordSuccess();
+                        return new ConnectedDevice( webDriver, currentDevice, testPackage.getTestName().getPersonaName() );
+                    }
+
                     webDriver = DriverManager.instance().getDriverFactory( currentDevice.getDriverType() ).createDriver( currentDevice );
 
                     if ( webDriver != null )
@@ -471,6 +551,8 @@ public class DeviceManager
                             testFlow.debug( Thread.currentThread().getName() + ": WebDriver Created - Creating Connected Device for " + currentDevice );
 
                         DeviceManager.instance().notifyPropertyAdapter( configurationProperties, webDriver );
+                        sessionPool.register( currentDevice, webDriver );
+                        circuitBreaker.recordSuccess();
 
                         return new ConnectedDevice( webDriver, currentDevice, testPackage.getTestName().getPersonaName() );
                     }
@@ -480,11 +562,7 @@ public class DeviceManager
                         //
                         // We got a null web driver here
                         //
-                        Integer failureCount = failureMap.get( currentDevice );
-                        if ( failureCount == null )
-                            failureMap.put( currentDevice, 1 );
-                        else
-                            failureMap.put( currentDevice, failureCount + 1 );
+                        circuitBreaker.recordFailure();
                     }
                 }
                 catch ( Exception e )
@@ -511,11 +589,16 @@ public class DeviceManager
                     catch ( Exception e2 )
                     {
                     }
-                    Integer failureCount = failureMap.get( currentDevice );
-                    if ( failureCount == null )
-                        failureMap.put( currentDevice, 1 );
-                    else
-                        failureMap.put( currentDevice, failureCount + 1 );
+                    circuitBreaker.recordFailure();
+                }
+                catch ( Error e )
+                {
+                    //
+                    // The outcome must be recorded or a half open circuit would wait for a probe result that never arrives
+                    //
+                    testFlow.error( Thread.currentThread().getName() + ": Error creating factory instance", e );
+                    circuitBreaker.recordFailure();
+                    throw e;
                 }
             }
             else
@@ -0,0 +1,481 @@
+/*******************************************************************************
+ * xFramium
+ *
+ * Copyright 2016 by Moreland Labs, Ltd. (http://www.morelandlabs.com)
+ *
+ * Some open source application is free software: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Some open source application is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with xFramium.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @license GPL-3.0+ <http://spdx.org/licenses/GPL-3.0+>
+ *******************************************************************************/
+package org.xframium.device;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.xframium.application.ApplicationDescriptor;
+import org.xframium.application.ApplicationRegistry;
+import org.xframium.device.factory.DeviceWebDriver;
+import org.xframium.device.factory.DriverManager;
+import org.xframium.spi.Device;
+
+/**
+ * An opt-in pool of live WebDriver sessions.  Sessions are keyed by the device and the capabilities that were used to create them and are reset (cookies,
+ * application restart and context) before they are handed to the next test.  Idle sessions are discarded after a configurable period and every session is retired
+ * after a maximum number of uses.  When warming is enabled, replacement sessions are created in the background while the current test is running but never more
+ * than the number of available devices for that key.
+ * <br>
+ * Note that a reused session keeps its cloud execution id so cloud side reports will cover every test that ran on the session
+ */
+public class SessionPool
+{
+    public static final String ENABLED = "driver.sessionPool.enabled";
+    public static final String WARM_SESSIONS = "driver.sessionPool.warmSessions";
+    public static final String MAX_IDLE = "driver.sessionPool.maxIdle";
+    public static final String MAX_USES = "driver.sessionPool.maxUses";
+    public static final String RESET = "driver.sessionPool.reset";
+
+    public enum ResetType
+    {
+        COOKIES,
+        APPLICATION,
+        CONTEXT;
+    }
+
+    private Log log = LogFactory.getLog( SessionPool.class );
+
+    private volatile boolean enabled = false;
+    private int warmSessions = 0;
+    private long maxIdle = 60000;
+    private int maxUses = 10;
+    private ResetType[] resetTypes = new ResetType[] { ResetType.COOKIES, ResetType.CONTEXT };
+
+    private ConcurrentHashMap<String, ConcurrentLinkedDeque<PooledSession>> idleMap = new ConcurrentHashMap<String, ConcurrentLinkedDeque<PooledSession>>( 20 );
+    private ConcurrentHashMap<String, AtomicInteger> sessionCount = new ConcurrentHashMap<String, AtomicInteger>( 20 );
+    private Map<DeviceWebDriver, PooledSession> leaseMap = new ConcurrentHashMap<DeviceWebDriver, PooledSession>( 20 );
+
+    private ExecutorService warmingService;
+    private Set<Future<?>> warmingTasks = Collections.newSetFromMap( new ConcurrentHashMap<Future<?>, Boolean>( 20 ) );
+
+    public void configure( Map<String, String> configurationProperties )
+    {
+        if ( configurationProperties == null )
+            return;
+
+        enabled = Boolean.parseBoolean( configurationProperties.get( ENABLED ) );
+        warmSessions = getIntProperty( configurationProperties, WARM_SESSIONS, warmSessions );
+        maxIdle = getIntProperty( configurationProperties, MAX_IDLE, (int) maxIdle );
+        maxUses = getIntProperty( configurationProperties, MAX_USES, maxUses );
+
+        String resetValue = configurationProperties.get( RESET );
+        if ( resetValue != null )
+        {
+            String[] resetArray = resetValue.split( "," );
+            ResetType[] newTypes = new ResetType[ resetArray.length ];
+            for ( int i = 0; i < resetArray.length; i++ )
+                newTypes[ i ] = ResetType.valueOf( resetArray[ i ].trim().toUpperCase() );
+            resetTypes = newTypes;
+        }
+
+        if ( enabled )
+            log.warn( "Session pooling enabled - warming " + warmSessions + " session(s) per device, idle timeout of " + maxIdle + "ms and " + maxUses + " uses per session" );
+    }
+
+    private int getIntProperty( Map<String,String> configurationProperties, String keyName, int defaultValue )
+    {
+        String value = configurationProperties.get( keyName );
+        if ( value != null )
+        {
+            try
+            {
+                return Integer.parseInt( value.trim() );
+            }
+            catch( Exception e )
+            {
+                log.warn( "Invalid value for " + keyName + " [" + value + "]" );
+            }
+        }
+        return defaultValue;
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Creates the pool key from the device and the capabilities that will be sent when creating a session for it
+     */
+    public String getSessionKey( Device currentDevice )
+    {
+        StringBuilder keyBuilder = new StringBuilder();
+        keyBuilder.append( currentDevice.getKey() ).append( "|" ).append( currentDevice.getDriverType() ).append( "|" ).append( currentDevice.getCloud() );
+
+        if ( currentDevice.getCapabilities() != null )
+            keyBuilder.append( "|" ).append( new TreeMap<String,Object>( currentDevice.getCapabilities() ) );
+
+        return keyBuilder.toString();
+    }
+
+    /**
+     * Checks out an idle session for the device
+     *
+     * @param currentDevice the device
+     * @return the session or null if there were no usable idle sessions
+     */
+    public DeviceWebDriver checkOut( Device currentDevice )
+    {
+        if ( !enabled )
+            return null;
+
+        String sessionKey = getSessionKey( currentDevice );
+        ConcurrentLinkedDeque<PooledSession> idleList = idleMap.get( sessionKey );
+
+        if ( idleList != null )
+        {
+            PooledSession pooledSession = null;
+            while ( ( pooledSession = idleList.pollFirst() ) != null )
+            {
+                if ( System.currentTimeMillis() - pooledSession.lastUsed > maxIdle )
+                {
+                    if ( log.isInfoEnabled() )
+                        log.info( Thread.currentThread().getName() + ": Discarding idle session for " + currentDevice.getEnvironment() );
+                    destroy( pooledSession );
+                    continue;
+                }
+
+                int useCount = pooledSession.useCount.incrementAndGet();
+                leaseMap.put( pooledSession.webDriver, pooledSession );
+
+                if ( log.isInfoEnabled() )
+                    log.info( Thread.currentThread().getName() + ": Reusing session for " + currentDevice.getEnvironment() + " (use " + useCount + ")" );
+
+                warm( currentDevice );
+                return pooledSession.webDriver;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Registers a newly created session with the pool so that it will be reused when the test completes
+     */
+    public void register( Device currentDevice, DeviceWebDriver webDriver )
+    {
+        if ( !enabled || webDriver == null )
+            return;
+
+        PooledSession pooledSession = new PooledSession( getSessionKey( currentDevice ), currentDevice, webDriver );
+        pooledSession.useCount.incrementAndGet();
+        getCount( pooledSession.sessionKey ).incrementAndGet();
+        leaseMap.put( webDriver, pooledSession );
+
+        warm( currentDevice );
+    }
+
+    public boolean isPooled( DeviceWebDriver webDriver )
+    {
+        return webDriver != null && leaseMap.containsKey( webDriver );
+    }
+
+    /**
+     * Returns a session to the pool.  The session is reset and stored unless it has exceeded its use count or could not be reset in which case it is ended
+     *
+     * @param webDriver the session
+     * @return true if the pool took ownership of the session
+     */
+    public boolean checkIn( DeviceWebDriver webDriver )
+    {
+        PooledSession pooledSession = webDriver != null ? leaseMap.remove( webDriver ) : null;
+        if ( pooledSession == null )
+            return false;
+
+        if ( !enabled || !webDriver.isConnected() || pooledSession.useCount.get() >= maxUses )
+        {
+            destroy( pooledSession );
+            warm( pooledSession.device );
+            return true;
+        }
+
+        try
+        {
+            reset( pooledSession );
+        }
+        catch( Exception e )
+        {
+            log.warn( Thread.currentThread().getName() + ": Could not reset session for " + pooledSession.device.getEnvironment() + " - " + e.getMessage() );
+            destroy( pooledSession );
+            warm( pooledSession.device );
+            return true;
+        }
+
+        pooledSession.lastUsed = System.currentTimeMillis();
+        getIdleList( pooledSession.sessionKey ).offerFirst( pooledSession );
+        return true;
+    }
+
+    private void reset( PooledSession pooledSession )
+    {
+        DeviceWebDriver webDriver = pooledSession.webDriver;
+        webDriver.clearCache();
+
+        for ( ResetType resetType : resetTypes )
+        {
+            switch ( resetType )
+            {
+                case COOKIES:
+                    if ( webDriver.getDevice().getBrowserName() != null && !webDriver.getDevice().getBrowserName().isEmpty() )
+                        webDriver.manage().deleteAllCookies();
+                    break;
+
+                case APPLICATION:
+                    ApplicationDescriptor aut = ApplicationRegistry.instance().getAUT();
+                    if ( aut != null && !aut.isWeb() && webDriver.getCloud() != null )
+                    {
+                        webDriver.getCloud().getCloudActionProvider().closeApplication( aut.getName(), webDriver );
+                        webDriver.getCloud().getCloudActionProvider().openApplication( aut.getName(), webDriver );
+                    }
+                    break;
+
+                case CONTEXT:
+                    if ( pooledSession.initialContext != null )
+                        webDriver.context( pooledSession.initialContext );
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Creates idle sessions in the background until the configured number of warm sessions exist for this device.  The total number of sessions for a key is
+     * never allowed to exceed the number of available devices
+     */
+    private void warm( final Device currentDevice )
+    {
+        if ( !enabled || warmSessions <= 0 )
+            return;
+
+        final String sessionKey = getSessionKey( currentDevice );
+        int idleCount = getIdleList( sessionKey ).size();
+        final AtomicInteger totalCount = getCount( sessionKey );
+
+        for ( int i = idleCount; i < warmSessions; i++ )
+        {
+            int currentCount = totalCount.get();
+            if ( currentCount >= currentDevice.getAvailableDevices() )
+                return;
+
+            if ( !totalCount.compareAndSet( currentCount, currentCount + 1 ) )
+            {
+                i--;
+                continue;
+            }
+
+            WarmingTask warmingTask = new WarmingTask( sessionKey, currentDevice, totalCount );
+            warmingTask.future = getWarmingService().submit( warmingTask );
+            warmingTasks.add( warmingTask.future );
+            if ( warmingTask.isComplete() )
+                warmingTasks.remove( warmingTask.future );
+        }
+    }
+
+    /**
+     * Creates a single idle session.  A session that is created after the pool was shut down is ended rather than pooled
+     */
+    private class WarmingTask implements Runnable
+    {
+        private final String sessionKey;
+        private final Device currentDevice;
+        private final AtomicInteger totalCount;
+        private volatile Future<?> future;
+        private volatile boolean complete = false;
+
+        public WarmingTask( String sessionKey, Device currentDevice, AtomicInteger totalCount )
+        {
+            this.sessionKey = sessionKey;
+            this.currentDevice = currentDevice;
+            this.totalCount = totalCount;
+        }
+
+        public boolean isComplete()
+        {
+            return complete;
+        }
+
+        public void run()
+        {
+            try
+            {
+                DeviceWebDriver webDriver = null;
+                try
+                {
+                    if ( enabled )
+                        webDriver = DriverManager.instance().getDriverFactory( currentDevice.getDriverType() ).createDriver( currentDevice );
+                }
+                catch( Exception e )
+                {
+                    log.warn( "Could not warm session for " + currentDevice.getEnvironment() + " - " + e.getMessage() );
+                }
+
+                if ( webDriver == null )
+                {
+                    totalCount.decrementAndGet();
+                    return;
+                }
+
+                PooledSession pooledSession = new PooledSession( sessionKey, currentDevice, webDriver );
+                if ( !enabled )
+                {
+                    destroy( pooledSession );
+                    return;
+                }
+
+                DeviceManager.instance().notifyPropertyAdapter( DeviceManager.instance().getConfigurationProperties(), webDriver );
+                ConcurrentLinkedDeque<PooledSession> idleList = getIdleList( sessionKey );
+                idleList.offerLast( pooledSession );
+
+                //
+                // The pool may have been drained between the check above and the offer - only one of shutdown and this task will remove the session
+                //
+                if ( !enabled && idleList.remove( pooledSession ) )
+                {
+                    destroy( pooledSession );
+                    return;
+                }
+
+                if ( log.isInfoEnabled() )
+                    log.info( "Warmed session for " + currentDevice.getEnvironment() );
+            }
+            finally
+            {
+                complete = true;
+                if ( future != null )
+                    warmingTasks.remove( future );
+            }
+        }
+    }
+
+    /**
+     * Ends all idle sessions.  Leased sessions are ended as they are checked in
+     */
+    public void shutdown()
+    {
+        enabled = false;
+
+        for ( Future<?> warmingTask : warmingTasks )
+            warmingTask.cancel( true );
+        warmingTasks.clear();
+
+        if ( warmingService != null )
+            warmingService.shutdown();
+
+        for ( ConcurrentLinkedDeque<PooledSession> idleList : idleMap.values() )
+        {
+            PooledSession pooledSession = null;
+            while ( ( pooledSession = idleList.pollFirst() ) != null )
+                destroy( pooledSession );
+        }
+    }
+
+    private void destroy( PooledSession pooledSession )
+    {
+        getCount( pooledSession.sessionKey ).decrementAndGet();
+        try
+        {
+            pooledSession.webDriver.close();
+        }
+        catch( Exception e )
+        {
+        }
+        try
+        {
+            pooledSession.webDriver.quit();
+        }
+        catch( Exception e )
+        {
+        }
+    }
+
+    private ConcurrentLinkedDeque<PooledSession> getIdleList( String sessionKey )
+    {
+        ConcurrentLinkedDeque<PooledSession> idleList = idleMap.get( sessionKey );
+        if ( idleList == null )
+        {
+            idleList = new ConcurrentLinkedDeque<PooledSession>();
+            ConcurrentLinkedDeque<PooledSession> existingList = idleMap.putIfAbsent( sessionKey, idleList );
+            if ( existingList != null )
+                idleList = existingList;
+        }
+        return idleList;
+    }
+
+    private AtomicInteger getCount( String sessionKey )
+    {
+        AtomicInteger count = sessionCount.get( sessionKey );
+        if ( count == null )
+        {
+            count = new AtomicInteger( 0 );
+            AtomicInteger existingCount = sessionCount.putIfAbsent( sessionKey, count );
+            if ( existingCount != null )
+                count = existingCount;
+        }
+        return count;
+    }
+
+    private synchronized ExecutorService getWarmingService()
+    {
+        if ( warmingService == null )
+        {
+            warmingService = Executors.newCachedThreadPool( new ThreadFactory()
+            {
+                private AtomicInteger threadCount = new AtomicInteger( 0 );
+
+                public Thread newThread( Runnable r )
+                {
+                    Thread newThread = new Thread( r, "xF-Session Warming " + threadCount.incrementAndGet() );
+                    newThread.setDaemon( true );
+                    return newThread;
+                }
+            } );
+        }
+        return warmingService;
+    }
+
+    private static class PooledSession
+    {
+        private final String sessionKey;
+        private final Device device;
+        private final DeviceWebDriver webDriver;
+        private final String initialContext;
+        private final AtomicInteger useCount = new AtomicInteger( 0 );
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        public PooledSession( String sessionKey, Device device, DeviceWebDriver webDriver )
+        {
+            this.sessionKey = sessionKey;
+            this.device = device;
+            this.webDriver = webDriver;
+            this.initialContext = webDriver.getContext();
+        }
+    }
+}
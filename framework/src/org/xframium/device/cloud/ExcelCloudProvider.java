@@ -24,15 +24,11 @@
 package org.xframium.device.cloud;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
-import org.apache.poi.xssf.usermodel.XSSFCell;
-import org.apache.poi.xssf.usermodel.XSSFRow;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.xframium.utility.ExcelSheetReader;
+import org.xframium.utility.ExcelSheetReader.ExcelRow;
+import org.xframium.utility.ExcelSheetReader.RowHandler;
 
 // TODO: Auto-generated Javadoc
 /**
@@ -86,7 +82,15 @@ public class ExcelCloudProvider extends AbstractCloudProvider
 		{
 			if (log.isInfoEnabled())
 				log.info( "Reading from CLASSPATH as " + resourceName );
-			return readElements( getClass().getClassLoader().getResourceAsStream( resourceName ) );
+			try
+			{
+				return readElements( new ExcelSheetReader( getClass().getClassLoader().getResourceAsStream( resourceName ) ) );
+			}
+			catch (Exception e)
+			{
+				log.fatal( "Could not read from " + resourceName, e );
+				return null;
+			}
 		}
 		else
 		{
@@ -94,9 +98,9 @@ public class ExcelCloudProvider extends AbstractCloudProvider
 			{
 				if (log.isInfoEnabled())
 					log.info( "Reading from FILE SYSTEM as [" + fileName + "]" );
-				return readElements( new FileInputStream( fileName ) );
+				return readElements( new ExcelSheetReader( fileName ) );
 			}
-			catch (FileNotFoundException e)
+			catch (Exception e)
 			{
 				log.fatal( "Could not read from " + fileName, e );
 				return null;
@@ -110,53 +114,40 @@ public class ExcelCloudProvider extends AbstractCloudProvider
 	 * @param cell the cell
 	 * @return the cell value
 	 */
-	private String getCellValue( XSSFCell cell )
+	private String getCellValue( Object cell )
 	{
 		if (cell != null)
-		{
-			switch (cell.getCellType())
-			{
-				case XSSFCell.CELL_TYPE_BLANK:
-					return null;
-				case XSSFCell.CELL_TYPE_BOOLEAN:
-					return String.valueOf( cell.getBooleanCellValue() );
-				case XSSFCell.CELL_TYPE_NUMERIC:
-					return String.valueOf( cell.getNumericCellValue() );
-				case XSSFCell.CELL_TYPE_STRING:
-					return cell.getRichStringCellValue().toString();
-			}
-		}
+			return String.valueOf( cell );
 		return null;
 	}
 
 	/**
 	 * Read elements.
 	 *
-	 * @param inputStream the input stream
+	 * @param sheetReader the sheet reader
 	 */
-	private List<CloudDescriptor> readElements( InputStream inputStream )
+	private List<CloudDescriptor> readElements( ExcelSheetReader sheetReader )
 	{
-	    List<CloudDescriptor> cList = new ArrayList<CloudDescriptor>( 10 );
-		XSSFWorkbook workbook = null;
+	    final List<CloudDescriptor> cList = new ArrayList<CloudDescriptor>( 10 );
 
 		try
 		{
-			workbook = new XSSFWorkbook( inputStream );
-			XSSFSheet sheet = workbook.getSheet( tabName );
-
-			for (int i = 1; i <= sheet.getLastRowNum(); i++)
+			sheetReader.readSheet( tabName, new RowHandler()
 			{
-				XSSFRow currentRow = sheet.getRow( i );
+				public boolean handleRow( String sheetName, ExcelRow currentRow )
+				{
+					if ( currentRow.getRowNumber() == 0 )
+						return true;
 
-				if ( getCellValue( currentRow.getCell( 0 ) ) == null || getCellValue( currentRow.getCell( 0 ) ).isEmpty() )
-					break;
-				
-				cList.add( new CloudDescriptor( getCellValue( currentRow.getCell( 0 ) ), getCellValue( currentRow.getCell( 1 ) ), getCellValue( currentRow.getCell( 2 ) ), getCellValue( currentRow.getCell( 3 ) ), getCellValue( currentRow.getCell( 4  ) ), getCellValue( currentRow.getCell( 5  ) ), getCellValue( currentRow.getCell( 7 ) ), getCellValue( currentRow.getCell( 6 ) ), getCellValue( currentRow.getCell( 8 ) ), getCellValue( currentRow.getCell( 9 ) ), getCellValue( currentRow.getCell( 10 ) ) ) );
-			}
+					if ( getCellValue( currentRow.getCell( 0 ) ) == null || getCellValue( currentRow.getCell( 0 ) ).isEmpty() )
+						return false;
+					
+					cList.add( new CloudDescriptor( getCellValue( currentRow.getCell( 0 ) ), getCellValue( currentRow.getCell( 1 ) ), getCellValue( currentRow.getCell( 2 ) ), getCellValue( currentRow.getCell( 3 ) ), getCellValue( currentRow.getCell( 4  ) ), getCellValue( currentRow.getCell( 5  ) ), getCellValue( currentRow.getCell( 7 ) ), getCellValue( currentRow.getCell( 6 ) ), getCellValue( currentRow.getCell( 8 ) ), getCellValue( currentRow.getCell( 9 ) ), getCellValue( currentRow.getCell( 10 ) ) ) );
+					return true;
+				}
+			} );
 			
 			return cList;
-
-			
 		}
 		catch (Exception e)
 		{
@@ -165,13 +156,7 @@ public class ExcelCloudProvider extends AbstractCloudProvider
 		}
 		finally
 		{
-			try
-			{
-				workbook.close();
-			}
-			catch (Exception e)
-			{
-			}
+			sheetReader.close();
 		}
 	}
 }
@@ -1,22 +1,22 @@
 package org.xframium.device.cloud.action;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Map;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathFactory;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openqa.selenium.Rectangle;
 import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
 import org.xframium.device.factory.DeviceWebDriver;
+import org.xframium.utility.XPathCache;
 
 public abstract class AbstractCloudActionProvider implements CloudActionProvider
 {
-    private static XPathFactory xPathFactory = XPathFactory.newInstance();
     protected static DateFormat dateFormat = new SimpleDateFormat( "MM-dd_HH-mm-ss");
     protected Log log = LogFactory.getLog( CloudActionProvider.class );
     
@@ -27,8 +27,7 @@ public abstract class AbstractCloudActionProvider implements CloudActionProvider
             if (log.isDebugEnabled())
                 log.debug( "Attempting to return Nodes for [" + xPathExpression + "]" );
 
-            XPath xPath = xPathFactory.newXPath();
-            return ( NodeList ) xPath.evaluate( xPathExpression, xmlDocument, XPathConstants.NODESET );
+            return XPathCache.instance().getNodes( xmlDocument, xPathExpression );
         }
         catch (Exception e)
         {
@@ -42,6 +41,42 @@ public abstract class AbstractCloudActionProvider implements CloudActionProvider
         return null;
     }
     
+    public void releaseReport( DeviceWebDriver webDriver )
+    {
+    }
+    
+    public boolean isLogSessionBound()
+    {
+        return true;
+    }
+    
+    public boolean writeLog( DeviceWebDriver webDriver, File logFile )
+    {
+        String logData = getLog( webDriver );
+        if ( logData == null )
+            return false;
+        
+        try
+        {
+            logFile.getParentFile().mkdirs();
+            OutputStream outputStream = new FileOutputStream( logFile );
+            try
+            {
+                outputStream.write( logData.getBytes() );
+            }
+            finally
+            {
+                outputStream.close();
+            }
+            return true;
+        }
+        catch( Exception e )
+        {
+            log.error( "Could not write device log to " + logFile.getAbsolutePath(), e );
+            return false;
+        }
+    }
+    
     @Override
     public String getVitals( DeviceWebDriver webDriver )
     {
@@ -1,5 +1,6 @@
 package org.xframium.device.cloud.action;
 
+import java.io.File;
 import java.io.InputStream;
 import java.util.Map;
 import org.openqa.selenium.Rectangle;
@@ -32,9 +33,16 @@ public interface CloudActionProvider
 
     public void tap( DeviceWebDriver webDriver, PercentagePoint location, int lengthInMillis );
     public String getLog( DeviceWebDriver webDriver );
+    public boolean writeLog( DeviceWebDriver webDriver, File logFile );
+    
+    /**
+     * @return true if writeLog reads the log through the live session and has to be called before the device is released
+     */
+    public boolean isLogSessionBound();
     public String getVitals( DeviceWebDriver webDriver );
     
     public InputStream getReport( DeviceWebDriver webDriver, String reportType );
+    public void releaseReport( DeviceWebDriver webDriver );
     
     public Rectangle findImage( DeviceWebDriver webDriver, String imageName, Map<String,String> propertyMap );
     public Rectangle findText( DeviceWebDriver webDriver, String text, Map<String,String> propertyMap );
@@ -0,0 +1,209 @@
+package org.xframium.device.cloud.action;
+
+import java.io.ByteArrayInputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+import org.xframium.utility.XPathCache;
+
+/**
+ * Holds the execution report of each test so the report is downloaded and parsed once no matter how many artifacts read it.  Attachments are downloaded on a
+ * small shared pool so they can be fetched in parallel.  Entries are removed when the artifacts of the test have been generated and failed downloads are dropped
+ * so the next caller tries again
+ */
+class ExecutionReportCache
+{
+    private static final int MAX_ENTRIES = 32;
+    private static final int DOWNLOAD_THREADS = 4;
+
+    private static final ExecutionReportCache singleton = new ExecutionReportCache();
+
+    static ExecutionReportCache instance()
+    {
+        return singleton;
+    }
+
+    private ExecutionReportCache() {}
+
+    private final Map<String, ReportEntry> reportMap = new LinkedHashMap<String, ReportEntry>( 16, 0.75f, true )
+    {
+        private static final long serialVersionUID = 1L;
+
+        protected boolean removeEldestEntry( Map.Entry<String, ReportEntry> eldestEntry )
+        {
+            if ( size() > MAX_ENTRIES )
+            {
+                eldestEntry.getValue().cancel();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private ThreadPoolExecutor downloadService;
+
+    /**
+     * Gets the cached report
+     *
+     * @param reportKey the report key of the execution
+     * @param reportDownload downloads the report when it is not cached
+     * @return the report entry
+     */
+    synchronized ReportEntry getEntry( String reportKey, Callable<byte[]> reportDownload )
+    {
+        ReportEntry reportEntry = reportMap.get( reportKey );
+        if ( reportEntry == null )
+        {
+            reportEntry = new ReportEntry( reportKey, reportDownload );
+            reportMap.put( reportKey, reportEntry );
+        }
+        return reportEntry;
+    }
+
+    synchronized void evict( String reportKey )
+    {
+        ReportEntry reportEntry = reportMap.remove( reportKey );
+        if ( reportEntry != null )
+            reportEntry.cancel();
+    }
+
+    private synchronized void discard( String reportKey, ReportEntry reportEntry )
+    {
+        if ( reportMap.get( reportKey ) == reportEntry )
+            reportMap.remove( reportKey );
+    }
+
+    private synchronized ThreadPoolExecutor getDownloadService()
+    {
+        if ( downloadService == null )
+        {
+            downloadService = new ThreadPoolExecutor( DOWNLOAD_THREADS, DOWNLOAD_THREADS, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+            {
+                private AtomicInteger threadCount = new AtomicInteger( 0 );
+
+                public Thread newThread( Runnable r )
+                {
+                    Thread newThread = new Thread( r, "xF-Report Download " + threadCount.incrementAndGet() );
+                    newThread.setDaemon( true );
+                    return newThread;
+                }
+            } );
+            downloadService.allowCoreThreadTimeOut( true );
+        }
+        return downloadService;
+    }
+
+    class ReportEntry
+    {
+        private final String reportKey;
+        private final FutureTask<byte[]> reportData;
+        private final ConcurrentHashMap<String, Future<byte[]>> attachmentMap = new ConcurrentHashMap<String, Future<byte[]>>( 5 );
+        private Document reportDocument;
+        private boolean parsed = false;
+
+        private ReportEntry( String reportKey, Callable<byte[]> reportDownload )
+        {
+            this.reportKey = reportKey;
+            reportData = new FutureTask<byte[]>( reportDownload );
+        }
+
+        /**
+         * @return the raw report - the first caller downloads it and any concurrent callers wait for that download.  A failed download removes the entry
+         */
+        byte[] getReportData() throws Exception
+        {
+            reportData.run();
+            try
+            {
+                return reportData.get();
+            }
+            catch ( ExecutionException e )
+            {
+                discard( reportKey, this );
+                throw e;
+            }
+        }
+
+        /**
+         * Evaluates an XPath against the parsed report.  DOM instances are not safe for concurrent reads so queries on the same report are serialized
+         */
+        synchronized NodeList getNodes( String xPathExpression ) throws Exception
+        {
+            if ( !parsed )
+            {
+                byte[] reportBytes = getReportData();
+                parsed = true;
+                if ( reportBytes != null )
+                {
+                    DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
+                    dbFactory.setNamespaceAware( true );
+                    reportDocument = dbFactory.newDocumentBuilder().parse( new ByteArrayInputStream( reportBytes ) );
+                }
+            }
+
+            if ( reportDocument == null )
+                return null;
+
+            return XPathCache.instance().getNodes( reportDocument, xPathExpression );
+        }
+
+        /**
+         * Starts downloading an attachment on the shared download pool if it has not already been requested
+         *
+         * @param attachmentName the attachment path from the report
+         * @param attachmentDownload downloads the attachment
+         * @return the pending download
+         */
+        Future<byte[]> getAttachment( final String attachmentName, Callable<byte[]> attachmentDownload )
+        {
+            Future<byte[]> attachmentData = attachmentMap.get( attachmentName );
+            if ( attachmentData == null )
+            {
+                FutureTask<byte[]> newDownload = new FutureTask<byte[]>( attachmentDownload )
+                {
+                    @Override
+                    protected void done()
+                    {
+                        try
+                        {
+                            get();
+                        }
+                        catch ( ExecutionException e )
+                        {
+                            attachmentMap.remove( attachmentName, this );
+                        }
+                        catch ( Exception e )
+                        {
+                        }
+                    }
+                };
+                attachmentData = attachmentMap.putIfAbsent( attachmentName, newDownload );
+                if ( attachmentData == null )
+                {
+                    getDownloadService().execute( newDownload );
+                    attachmentData = newDownload;
+                }
+            }
+            return attachmentData;
+        }
+
+        private void cancel()
+        {
+            reportData.cancel( false );
+            for ( Future<byte[]> attachmentData : attachmentMap.values() )
+                attachmentData.cancel( false );
+        }
+    }
+}
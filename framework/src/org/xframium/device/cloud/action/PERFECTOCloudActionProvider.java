@@ -1,30 +1,35 @@
 package org.xframium.device.cloud.action;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import org.openqa.selenium.ContextAware;
 import org.openqa.selenium.Dimension;
 import org.openqa.selenium.Point;
 import org.openqa.selenium.Rectangle;
-import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
 import org.xframium.application.ApplicationDescriptor;
 import org.xframium.application.ApplicationRegistry;
+import org.xframium.artifact.ArtifactManager;
+import org.xframium.artifact.ArtifactType;
 import org.xframium.device.SimpleDevice;
 import org.xframium.device.cloud.CloudDescriptor;
+import org.xframium.device.cloud.action.ExecutionReportCache.ReportEntry;
 import org.xframium.device.factory.DeviceWebDriver;
 import org.xframium.exception.DeviceConfigurationException;
 import org.xframium.exception.DeviceException;
@@ -49,6 +54,10 @@ public class PERFECTOCloudActionProvider extends AbstractCloudActionProvider
 {
     private static final Pattern REPO_PATTERN = Pattern.compile( "\\?(\\w*):\\(([^\\\\)]*)\\)(\\w*)(?::\\((.*))*" );
     
+    private static final String LOG_ATTACHMENT = "//dataItem[@type='log']/attachment";
+    private static final String VITALS_ATTACHMENT = "//dataItem[@type='monitor']/attachment";
+    private static final int BUFFER_SIZE = 8192;
+    
 	/** The Constant PLATFORM_NAME. */
 	public static final String PLATFORM_NAME = "platformName";
 	
@@ -87,34 +96,92 @@ public class PERFECTOCloudActionProvider extends AbstractCloudActionProvider
 	    return null;
 	}
 	
-	private Document getExecutionReport( DeviceWebDriver webDriver )
+	/**
+	 * Gets the cached execution report for the driver.  The report and the attachments of the enabled artifacts are downloaded once per execution
+	 */
+	private ReportEntry getReportEntry( DeviceWebDriver webDriver )
+	{
+	    final CloudDescriptor currentCloud = webDriver.getCloud();
+	    final String reportKey = webDriver.getReportKey();
+	    if ( currentCloud == null || reportKey == null )
+	        return null;
+	    
+	    ReportEntry reportEntry = ExecutionReportCache.instance().getEntry( reportKey, new Callable<byte[]>()
+	    {
+	        public byte[] call() throws Exception
+	        {
+	            return downloadReport( currentCloud, reportKey );
+	        }
+	    } );
+	    
+	    //
+	    // Start the attachment downloads together
+	    //
+	    if ( ArtifactManager.instance().isArtifactEnabled( ArtifactType.DEVICE_LOG.name() ) )
+	        getAttachment( reportEntry, reportKey, LOG_ATTACHMENT );
+	    if ( ArtifactManager.instance().isArtifactEnabled( ArtifactType.STATISTICS.name() ) )
+	        getAttachment( reportEntry, reportKey, VITALS_ATTACHMENT );
+	    
+	    return reportEntry;
+	}
+	
+	private Future<byte[]> getAttachment( ReportEntry reportEntry, final String reportKey, String xPathExpression )
 	{
 	    try
-        {  
-            DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-            dbFactory.setNamespaceAware( true );
-            DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-            return dBuilder.parse( getReport( webDriver, "xml" ) );
-        }
-        catch (Exception e)
-        {
-            log.error( "Error download artifact data - " + e.getMessage());
-            return null;
-        }
+	    {
+	        NodeList nodeList = reportEntry.getNodes( xPathExpression );
+	        if ( nodeList == null || nodeList.getLength() == 0 )
+	            return null;
+	        
+	        final String attachmentName = nodeList.item( 0 ).getTextContent();
+	        return reportEntry.getAttachment( attachmentName, new Callable<byte[]>()
+	        {
+	            public byte[] call() throws Exception
+	            {
+	                return PerfectoMobile.instance().reports().download( reportKey, attachmentName, false );
+	            }
+	        } );
+	    }
+	    catch( Exception e )
+	    {
+	        log.error( "Error reading execution report for " + reportKey + " - " + e.getMessage() );
+	        return null;
+	    }
+	}
+	
+	private byte[] downloadReport( CloudDescriptor currentCloud, String reportKey ) throws Exception
+	{
+	    StringBuilder urlBuilder = new StringBuilder();
+	    urlBuilder.append( "https://" ).append( currentCloud.getHostName() ).append( "/services/reports/" ).append( reportKey );
+	    urlBuilder.append( "?operation=download" ).append( "&user=" ).append( currentCloud.getUserName() ).append( "&password=" ).append( currentCloud.getPassword() );
+	    urlBuilder.append( "&format=xml" );
+	    
+	    InputStream inputStream = new URL( urlBuilder.toString() ).openStream();
+	    try
+	    {
+	        ByteArrayOutputStream outputStream = new ByteArrayOutputStream( BUFFER_SIZE * 8 );
+	        byte[] buffer = new byte[ BUFFER_SIZE ];
+	        int bytesRead = 0;
+	        while ( ( bytesRead = inputStream.read( buffer ) ) != -1 )
+	            outputStream.write( buffer, 0, bytesRead );
+	        return outputStream.toByteArray();
+	    }
+	    finally
+	    {
+	        inputStream.close();
+	    }
 	}
 	
 	public InputStream getReport( DeviceWebDriver webDriver, String reportType )
 	{
 	    try
         {
-            CloudDescriptor currentCloud = webDriver.getCloud();
+            ReportEntry reportEntry = getReportEntry( webDriver );
+            if ( reportEntry == null )
+                return null;
             
-            StringBuilder urlBuilder = new StringBuilder();
-            urlBuilder.append( "https://" ).append( currentCloud.getHostName() ).append( "/services/reports/" ).append( webDriver.getReportKey());
-            urlBuilder.append( "?operation=download" ).append( "&user=" ).append( currentCloud.getUserName() ).append( "&password=" ).append( currentCloud.getPassword() );
-            urlBuilder.append( "&format=xml" );
-            
-            return new URL( urlBuilder.toString() ).openStream();
+            byte[] reportData = reportEntry.getReportData();
+            return reportData == null ? null : new ByteArrayInputStream( reportData );
         }
         catch (Exception e)
         {
@@ -123,32 +190,47 @@ public class PERFECTOCloudActionProvider extends AbstractCloudActionProvider
         }
 	}
 	
+	/**
+	 * Unzips the device log attachment into the output stream
+	 *
+	 * @return true if the log was found
+	 */
+	private boolean copyLog( DeviceWebDriver webDriver, OutputStream outputStream ) throws Exception
+	{
+	    ReportEntry reportEntry = getReportEntry( webDriver );
+	    if ( reportEntry == null )
+	        return false;
+	    
+	    Future<byte[]> zipFile = getAttachment( reportEntry, webDriver.getReportKey(), LOG_ATTACHMENT );
+	    if ( zipFile == null || zipFile.get() == null )
+	        return false;
+	    
+	    ZipInputStream zipStream = new ZipInputStream( new ByteArrayInputStream( zipFile.get() ) );
+	    try
+	    {
+	        zipStream.getNextEntry();
+	        
+	        byte[] bytesIn = new byte[ BUFFER_SIZE ];
+	        int bytesRead = 0;
+	        while ( ( bytesRead = zipStream.read( bytesIn ) ) != -1 )
+	            outputStream.write( bytesIn, 0, bytesRead );
+	        
+	        return true;
+	    }
+	    finally
+	    {
+	        zipStream.close();
+	    }
+	}
+	
 	@Override
 	public String getLog( DeviceWebDriver webDriver )
 	{
 	    try
         {
-            Document xmlDocument = getExecutionReport( webDriver );
-            
-            NodeList nodeList = getNodes( xmlDocument, "//dataItem[@type='log']/attachment" );
-            if ( nodeList != null && nodeList.getLength() > 0 )
-            {
-                byte[] zipFile = PerfectoMobile.instance().reports().download( webDriver.getReportKey() , nodeList.item( 0 ).getTextContent(), false );
-                ZipInputStream zipStream = new ZipInputStream( new ByteArrayInputStream( zipFile ) );
-                ZipEntry entry = zipStream.getNextEntry();
-                
-                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                byte[] bytesIn = new byte[ 512 ];
-                int bytesRead = 0;
-                while ( ( bytesRead = zipStream.read( bytesIn ) ) != -1 )
-                {
-                    outputStream.write( bytesIn, 0, bytesRead );
-                }
-                
-                zipStream.close();
-                
-                return outputStream.toString();
-            }
+	        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+	        if ( copyLog( webDriver, outputStream ) )
+	            return outputStream.toString();
             
             return null;
             
@@ -160,21 +242,56 @@ public class PERFECTOCloudActionProvider extends AbstractCloudActionProvider
         return null;
 	}
 	
+	/**
+	 * The log is downloaded from the execution report so it does not need the session
+	 */
+	@Override
+	public boolean isLogSessionBound()
+	{
+	    return false;
+	}
+	
+	@Override
+	public boolean writeLog( DeviceWebDriver webDriver, File logFile )
+	{
+	    try
+	    {
+	        logFile.getParentFile().mkdirs();
+	        OutputStream outputStream = new BufferedOutputStream( new FileOutputStream( logFile ), BUFFER_SIZE );
+	        boolean logWritten = false;
+	        try
+	        {
+	            logWritten = copyLog( webDriver, outputStream );
+	        }
+	        finally
+	        {
+	            outputStream.close();
+	        }
+	        
+	        if ( !logWritten )
+	            logFile.delete();
+	        
+	        return logWritten;
+	    }
+	    catch( Exception e )
+	    {
+	        log.error( "Error download device log data", e );
+	        return false;
+	    }
+	}
+	
 	@Override
     public String getVitals( DeviceWebDriver webDriver )
     {
         try
         {
-            Document xmlDocument = getExecutionReport( webDriver );
+            ReportEntry reportEntry = getReportEntry( webDriver );
+            if ( reportEntry == null )
+                return null;
             
-            NodeList nodeList = getNodes( xmlDocument, "//dataItem[@type='monitor']/attachment" );
-            if ( nodeList != null && nodeList.getLength() > 0 )
-            {
-                byte[] zipFile = PerfectoMobile.instance().reports().download( webDriver.getReportKey() , nodeList.item( 0 ).getTextContent(), false );
-                
-                
-                return new String( zipFile );
-            }
+            Future<byte[]> zipFile = getAttachment( reportEntry, webDriver.getReportKey(), VITALS_ATTACHMENT );
+            if ( zipFile != null && zipFile.get() != null )
+                return new String( zipFile.get() );
             
             return null;
             
@@ -185,6 +302,13 @@ public class PERFECTOCloudActionProvider extends AbstractCloudActionProvider
         }
         return null;
     }
+	
+	@Override
+	public void releaseReport( DeviceWebDriver webDriver )
+	{
+	    if ( webDriver.getReportKey() != null )
+	        ExecutionReportCache.instance().evict( webDriver.getReportKey() );
+	}
 
 	@Override
 	public void tap( DeviceWebDriver webDriver, PercentagePoint location, int lengthInMillis )
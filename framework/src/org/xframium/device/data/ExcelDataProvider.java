@@ -23,21 +23,17 @@
  */
 package org.xframium.device.data;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.poi.xssf.usermodel.XSSFCell;
-import org.apache.poi.xssf.usermodel.XSSFRow;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.xframium.device.DeviceManager;
 import org.xframium.device.SimpleDevice;
 import org.xframium.spi.Device;
+import org.xframium.utility.ExcelSheetReader;
+import org.xframium.utility.ExcelSheetReader.ExcelRow;
+import org.xframium.utility.ExcelSheetReader.RowHandler;
 
 // TODO: Auto-generated Javadoc
 /**
@@ -101,13 +97,21 @@ public class ExcelDataProvider implements DataProvider
 			if (log.isInfoEnabled())
 				log.info( "Reading Device Data from Resource " + resourceName );
 
-			return readData( getClass().getClassLoader().getResourceAsStream( resourceName ) );
+			try
+			{
+				return readData( new ExcelSheetReader( getClass().getClassLoader().getResourceAsStream( resourceName ) ) );
+			}
+			catch (Exception e)
+			{
+				log.fatal( "Could mot read from " + resourceName, e );
+				return null;
+			}
 		}
 		else
 		{
 			try
 			{
-				return readData( new FileInputStream( fileName ) );
+				return readData( new ExcelSheetReader( fileName ) );
 			}
 			catch (Exception e)
 			{
@@ -123,86 +127,73 @@ public class ExcelDataProvider implements DataProvider
 	 * @param cell the cell
 	 * @return the cell value
 	 */
-	private String getCellValue( XSSFCell cell )
+	private String getCellValue( Object cell )
 	{
-		if (cell != null)
-		{
-			switch (cell.getCellType())
-			{
-				case XSSFCell.CELL_TYPE_BLANK:
-					return null;
-				case XSSFCell.CELL_TYPE_BOOLEAN:
-					return String.valueOf( cell.getBooleanCellValue() );
-				case XSSFCell.CELL_TYPE_NUMERIC:
-					return String.valueOf( ( int ) cell.getNumericCellValue() );
-				case XSSFCell.CELL_TYPE_STRING:
-					return cell.getRichStringCellValue().toString();
-
-			}
-		}
+		if (cell instanceof Double)
+			return String.valueOf( ( (Double) cell ).intValue() );
+		else if (cell != null)
+			return String.valueOf( cell );
 		return null;
 	}
 
 	/**
 	 * Read data.
 	 *
-	 * @param inputStream the input stream
+	 * @param sheetReader the sheet reader
 	 */
-	private List<Device> readData( InputStream inputStream )
+	private List<Device> readData( ExcelSheetReader sheetReader )
 	{
-	    List<Device> deviceList = new ArrayList<Device>( 10 );
-		BufferedReader fileReader = null;
-
-		XSSFWorkbook workbook = null;
+	    final List<Device> deviceList = new ArrayList<Device>( 10 );
 
 		try
 		{
-			workbook = new XSSFWorkbook( inputStream );
-			XSSFSheet sheet = workbook.getSheet( tabName );
-
-			for (int i = 1; i <= sheet.getLastRowNum(); i++)
+			sheetReader.readSheet( tabName, new RowHandler()
 			{
-				XSSFRow currentRow = sheet.getRow( i );
-
-				if (getCellValue( currentRow.getCell( 0 ) ) == null || getCellValue( currentRow.getCell( 0 ) ).isEmpty())
-					break;
-
-				String driverName = "";
-				switch (driverType)
+				public boolean handleRow( String sheetName, ExcelRow currentRow )
 				{
-					case APPIUM:
-						if (getCellValue( currentRow.getCell( 3 ) ).toUpperCase().equals( "IOS" ))
-							driverName = "IOS";
-						else if (getCellValue( currentRow.getCell( 3 ) ).toUpperCase().equals( "ANDROID" ))
-							driverName = "ANDROID";
-						else
-							throw new IllegalArgumentException( "Appium is not supported on the following OS " + getCellValue( currentRow.getCell( 3 ) ).toUpperCase() );
-						break;
-
-					case PERFECTO:
-						driverName = "PERFECTO";
-						break;
-
-					case WEB:
-						driverName = "WEB";
-						break;
-				}
-
-				SimpleDevice currentDevice = new SimpleDevice( getCellValue( currentRow.getCell( 0 ) ), getCellValue( currentRow.getCell( 1 ) ), getCellValue( currentRow.getCell( 2 ) ), getCellValue( currentRow.getCell( 3 ) ), getCellValue( currentRow.getCell( 4 ) ), getCellValue( currentRow.getCell( 5 ) ), getCellValue(
-						currentRow.getCell( 6 ) ), Integer.parseInt( getCellValue( currentRow.getCell( 7 ) ) ), driverName, Boolean.parseBoolean( getCellValue( currentRow.getCell( 8 ) ) ), null );
+					if ( currentRow.getRowNumber() == 0 )
+						return true;
+
+					if (getCellValue( currentRow.getCell( 0 ) ) == null || getCellValue( currentRow.getCell( 0 ) ).isEmpty())
+						return false;
+
+					String driverName = "";
+					switch (driverType)
+					{
+						case APPIUM:
+							if (getCellValue( currentRow.getCell( 3 ) ).toUpperCase().equals( "IOS" ))
+								driverName = "IOS";
+							else if (getCellValue( currentRow.getCell( 3 ) ).toUpperCase().equals( "ANDROID" ))
+								driverName = "ANDROID";
+							else
+								throw new IllegalArgumentException( "Appium is not supported on the following OS " + getCellValue( currentRow.getCell( 3 ) ).toUpperCase() );
+							break;
+
+						case PERFECTO:
+							driverName = "PERFECTO";
+							break;
+
+						case WEB:
+							driverName = "WEB";
+							break;
+					}
+
+					SimpleDevice currentDevice = new SimpleDevice( getCellValue( currentRow.getCell( 0 ) ), getCellValue( currentRow.getCell( 1 ) ), getCellValue( currentRow.getCell( 2 ) ), getCellValue( currentRow.getCell( 3 ) ), getCellValue( currentRow.getCell( 4 ) ), getCellValue( currentRow.getCell( 5 ) ), getCellValue(
+							currentRow.getCell( 6 ) ), Integer.parseInt( getCellValue( currentRow.getCell( 7 ) ) ), driverName, Boolean.parseBoolean( getCellValue( currentRow.getCell( 8 ) ) ), null );
 				
-				String cloud = getCellValue( currentRow.getCell( 9 ) );
-				String tagNames = getCellValue( currentRow.getCell( 10 ) );
+					String cloud = getCellValue( currentRow.getCell( 9 ) );
+					String tagNames = getCellValue( currentRow.getCell( 10 ) );
 				
-				if ( tagNames != null && !tagNames.trim().isEmpty() )
-                    currentDevice.setTagNames( tagNames.split( "," ) );
+					if ( tagNames != null && !tagNames.trim().isEmpty() )
+	                    currentDevice.setTagNames( tagNames.split( "," ) );
                 
-                if ( cloud != null && !cloud.trim().isEmpty() )
-                    currentDevice.setCloud( cloud );
+	                if ( cloud != null && !cloud.trim().isEmpty() )
+	                    currentDevice.setCloud( cloud );
 				
-				deviceList.add( currentDevice );
-
-			}
+					deviceList.add( currentDevice );
+					return true;
+				}
+			} );
 			return deviceList;
 		}
 		catch (Exception e)
@@ -212,13 +203,7 @@ public class ExcelDataProvider implements DataProvider
 		}
 		finally
 		{
-			try
-			{
-				workbook.close();
-			}
-			catch (Exception e)
-			{
-			}
+			sheetReader.close();
 		}
 	}
 }
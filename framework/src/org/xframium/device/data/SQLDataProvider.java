@@ -117,8 +117,9 @@ public class SQLDataProvider implements DataProvider
         List<Device> deviceList = new ArrayList<Device>( 10 );
         try
         {
-            Object[][] deviceData = SQLUtil.getResults( username, password, url, driver, deviceQuery, null );
-            Object[][] capabilityData = SQLUtil.getResults( username, password, url, driver, capabilityQuery, null );
+            Object[][][] queryData = SQLUtil.getResults( username, password, url, driver, new String[] { deviceQuery, capabilityQuery }, null );
+            Object[][] deviceData = queryData[ 0 ];
+            Object[][] capabilityData = queryData[ 1 ];
             HashMap devicesByName = new HashMap();
 
             for ( int i = 0; i < deviceData.length; ++i )
@@ -23,9 +23,7 @@
  */
 package org.xframium.device.factory;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.InputStreamReader;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -33,14 +31,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathFactory;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openqa.selenium.By;
@@ -66,9 +60,7 @@ import org.openqa.selenium.remote.DriverCommand;
 import org.openqa.selenium.remote.ExecuteMethod;
 import org.openqa.selenium.remote.RemoteExecuteMethod;
 import org.openqa.selenium.remote.RemoteWebDriver;
-import org.w3c.dom.Document;
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 import org.xframium.application.ApplicationDescriptor;
 import org.xframium.device.DeviceManager;
 import org.xframium.device.cloud.CloudDescriptor;
@@ -87,7 +79,6 @@ import org.xframium.spi.driver.DeviceProvider;
 import org.xframium.spi.driver.NativeDriverProvider;
 import org.xframium.spi.driver.ReportiumProvider;
 import org.xframium.utility.XMLEscape;
-import org.xml.sax.InputSource;
 import com.perfecto.reportium.client.ReportiumClient;
 import io.appium.java_client.AppiumDriver;
 
@@ -127,6 +118,8 @@ public class DeviceWebDriver
     
     private long implicitWait = 0;
     private long scriptTimeout = 0;
+    private boolean implicitWaitSet = false;
+    private boolean scriptTimeoutSet = false;
     private long pageLoadTimeout = 0;
     private DesiredCapabilities dC;
     
@@ -141,6 +134,9 @@ public class DeviceWebDriver
     
     private File artifactFolder = null;
     
+    /** The console log captured when this driver was detached */
+    private String detachedLog = null;
+    
     public void setArtifactFolder( File artifactFolder )
     {
         this.artifactFolder = artifactFolder;
@@ -275,8 +271,33 @@ public class DeviceWebDriver
     
     public String getLog()
     {
+        if ( detachedLog != null )
+            return detachedLog;
         return DeviceManager.instance().getLog();
     }
+    
+    /**
+     * Creates a copy of the reporting state of this driver that is not connected to the device.  The copy stays valid after this driver has been released and
+     * reused by another test and can be handed to another thread
+     *
+     * @return the detached driver
+     */
+    public DeviceWebDriver detach()
+    {
+        DeviceWebDriver detachedDriver = new DeviceWebDriver( (WebDriver) null, cachingEnabled, currentDevice, dC );
+        detachedDriver.executionId = executionId;
+        detachedDriver.reportKey = reportKey;
+        detachedDriver.windTunnelReport = windTunnelReport;
+        detachedDriver.deviceName = deviceName;
+        detachedDriver.populatedDevice = populatedDevice;
+        detachedDriver.cloud = cloud;
+        detachedDriver.aut = aut;
+        detachedDriver.executionContext = executionContext;
+        detachedDriver.artifactFolder = artifactFolder;
+        detachedDriver.reportiumClient = reportiumClient;
+        detachedDriver.detachedLog = getLog();
+        return detachedDriver;
+    }
 
     public ApplicationDescriptor getAut()
     {
@@ -337,11 +358,17 @@ public class DeviceWebDriver
     /** The caching enabled. */
     private boolean cachingEnabled = true;
 
-    /** The x path factory. */
-    private XPathFactory xPathFactory = XPathFactory.newInstance();
+    /** The cached page source. */
+    private PageSourceCache pageCache = new PageSourceCache();
+
+    /** The frame key used for screenshots taken through this driver */
+    public static final String SCREENSHOT_FRAME = "SCREENSHOT";
 
-    /** The cached document. */
-    private Document cachedDocument = null;
+    /** The last screenshot taken on this session */
+    private ScreenFrameCache frameCache = new ScreenFrameCache();
+
+    /** Locators resolved by the elements used on this session */
+    private Map<String, By> locatorCache = new ConcurrentHashMap<String, By>( 64 );
 
     /** The context switch supported. */
     private boolean contextSwitchSupported = true;
@@ -406,21 +433,15 @@ public class DeviceWebDriver
     {
         try
         {
-            DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-
-            InputStreamReader streamReader = new InputStreamReader( new ByteArrayInputStream( pageSource.getBytes() ), "UTF-8" );
-            InputSource inputSource = new InputSource( streamReader );
-            inputSource.setEncoding( "UTF-8" );
-
-            cachedDocument = dBuilder.parse( inputSource );
+            if ( !pageCache.update( pageSource ) && log.isInfoEnabled() )
+                log.info( Thread.currentThread().getName() + ": Page source unchanged - reusing cached page data" );
             cachingEnabled = true;
         }
         catch ( Exception e )
         {
             log.warn( "CACHING HAS BEEN DISABLED", e );
             cachingEnabled = false;
-            cachedDocument = null;
+            pageCache.clear();
         }
     }
 
@@ -585,6 +606,7 @@ public class DeviceWebDriver
      */
     public void get( String url )
     {
+        frameCache.invalidate();
         webDriver.get( url );
     }
 
@@ -618,26 +640,25 @@ public class DeviceWebDriver
         if ( log.isInfoEnabled() )
             log.info( Thread.currentThread().getName() + ": Locating element using [" + by + "]" );
         
-        if ( cachingEnabled && cachedDocument == null )
+        if ( cachingEnabled && !pageCache.isCurrent() )
             cacheData();
 
-        if ( cachingEnabled && cachedDocument != null )
+        if ( cachingEnabled && pageCache.isCurrent() )
         {
             try
             {
-                XPath xPath = xPathFactory.newXPath();
                 String path = by.toString();
                 path = path.substring( path.indexOf( ": " ) + 2 );
-                NodeList nodes = (NodeList) xPath.evaluate( path, cachedDocument, XPathConstants.NODESET );
+                List<Node> nodes = pageCache.findNodes( path );
 
-                List<WebElement> elementList = new ArrayList<WebElement>( 10 );
+                List<WebElement> elementList = new ArrayList<WebElement>( nodes.size() );
 
-                for ( int i = 0; i < nodes.getLength(); i++ )
+                for ( Node node : nodes )
                 {
                     if ( reportingElement )
-                        elementList.add( new ReportingWebElementAdapter( new CachedWebElement( this, webDriver, by, nodes.item( i ) ), this, by ) );
+                        elementList.add( new ReportingWebElementAdapter( new CachedWebElement( this, webDriver, by, node ), this, by ) );
                     else
-                        elementList.add( new CachedWebElement( this, webDriver, by, nodes.item( i ) ) );
+                        elementList.add( new CachedWebElement( this, webDriver, by, node ) );
                 }
 
                 return elementList;
@@ -648,7 +669,7 @@ public class DeviceWebDriver
                 if ( !syntheticConnection )
                 {
                     cachingEnabled = false;
-                    cachedDocument = null;
+                    pageCache.clear();
                 }
                 else
                     return null;
@@ -675,7 +696,34 @@ public class DeviceWebDriver
 
     public void clearCache()
     {
-        cachedDocument = null;
+        pageCache.invalidate();
+        frameCache.invalidate();
+    }
+    
+    /**
+     * Gets the screenshot cache for this session
+     *
+     * @return the frame cache
+     */
+    public ScreenFrameCache getFrameCache()
+    {
+        return frameCache;
+    }
+
+    /**
+     * Gets a locator that was resolved earlier on this session
+     *
+     * @param locatorKey the key describing the element and the state it was resolved with
+     * @return the resolved locator or null
+     */
+    public By getCachedLocator( String locatorKey )
+    {
+        return locatorCache.get( locatorKey );
+    }
+
+    public void cacheLocator( String locatorKey, By resolvedBy )
+    {
+        locatorCache.put( locatorKey, resolvedBy );
     }
 
     /*
@@ -690,17 +738,16 @@ public class DeviceWebDriver
         
         if ( by instanceof ByXPath )
         {
-            if ( cachingEnabled && cachedDocument == null )
+            if ( cachingEnabled && !pageCache.isCurrent() )
                 cacheData();
 
-            if ( cachingEnabled && cachedDocument != null )
+            if ( cachingEnabled && pageCache.isCurrent() )
             {
                 try
                 {
-                    XPath xPath = xPathFactory.newXPath();
                     String path = by.toString();
                     path = path.substring( path.indexOf( ": " ) + 2 );
-                    Node node = (Node) xPath.evaluate( path, cachedDocument, XPathConstants.NODE );
+                    Node node = pageCache.findNode( path );
 
                     if ( node != null )
                     {
@@ -710,13 +757,13 @@ public class DeviceWebDriver
                             return new CachedWebElement( this, webDriver, by, node );
                     }
                     else
-                        cachedDocument = null;
+                        pageCache.invalidate();
                 }
                 catch ( Exception e )
                 {
                     log.warn( "Error reading from cache ", e );
                     cachingEnabled = false;
-                    cachedDocument = null;
+                    pageCache.clear();
                 }
             }
         }
@@ -830,6 +877,7 @@ public class DeviceWebDriver
      */
     public Navigation navigate()
     {
+        frameCache.invalidate();
         return webDriver.navigate();
     }
 
@@ -1021,17 +1069,36 @@ public class DeviceWebDriver
             throw new IllegalArgumentException( "Screenshot functionality not supported" );
     }
 
+    /**
+     * Takes a screenshot for the imaging steps.  The current frame is reused until an action that can change the screen invalidates it - screenshots taken
+     * as evidence should use getScreenshotAs
+     *
+     * @return the encoded frame
+     */
+    public byte[] getScreenFrame()
+    {
+        byte[] imageData = frameCache.getImageData( SCREENSHOT_FRAME );
+        if ( imageData == null )
+        {
+            imageData = getScreenshotAs( OutputType.BYTES );
+            frameCache.setImageData( SCREENSHOT_FRAME, imageData );
+        }
+        return imageData;
+    }
+
     //
     // JavascriptExecutor Implementation
     //
 
     public Object executeScript( String script, Object... args )
     {
+        frameCache.invalidate();
         return ((JavascriptExecutor) webDriver).executeScript( script, args );
     }
 
     public Object executeAsyncScript( String script, Object... args )
     {
+        frameCache.invalidate();
         return ((JavascriptExecutor) webDriver).executeAsyncScript( script, args );
     }
 
@@ -1084,9 +1151,15 @@ public class DeviceWebDriver
         @Override
         public Timeouts implicitlyWait( long time, TimeUnit unit )
         {
+            //
+            // Skip the round trip when the driver is already using this value
+            //
+            if ( implicitWaitSet && implicitWait == unit.toMillis( time ) )
+                return this;
             
             timeouts.implicitlyWait( time, unit );
             implicitWait = unit.toMillis( time );
+            implicitWaitSet = true;
             if ( log.isInfoEnabled() )
                 log.info( "Setting IMPLICIT WAIT to " + implicitWait );
             return this;
@@ -1095,8 +1168,12 @@ public class DeviceWebDriver
         @Override
         public Timeouts setScriptTimeout( long time, TimeUnit unit )
         {
+            if ( scriptTimeoutSet && scriptTimeout == unit.toMillis( time ) )
+                return this;
+            
             timeouts.setScriptTimeout( time, unit );
             scriptTimeout = unit.toMillis( time );
+            scriptTimeoutSet = true;
             return this;
         }
 
@@ -0,0 +1,409 @@
+/*******************************************************************************
+ * xFramium
+ *
+ * Copyright 2016 by Moreland Labs, Ltd. (http://www.morelandlabs.com)
+ *
+ * Some open source application is free software: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Some open source application is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with xFramium.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @license GPL-3.0+ <http://spdx.org/licenses/GPL-3.0+>
+ *******************************************************************************/
+package org.xframium.device.factory;
+
+import java.io.IOException;
+import java.net.ProxySelector;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.AuthState;
+import org.apache.http.auth.Credentials;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.impl.auth.BasicScheme;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.conn.SystemDefaultRoutePlanner;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.openqa.selenium.remote.CommandInfo;
+import org.openqa.selenium.remote.HttpCommandExecutor;
+import org.openqa.selenium.remote.http.HttpClient;
+import org.openqa.selenium.remote.http.HttpRequest;
+import org.openqa.selenium.remote.http.HttpResponse;
+import org.openqa.selenium.remote.internal.ApacheHttpClient;
+import org.xframium.device.cloud.CloudDescriptor;
+import org.xframium.utility.LatencyHistogram;
+
+/**
+ * Creates the HTTP clients used by the WebDriver sessions of a cloud.  Every session against the cloud shares one pool of keep-alive connections so new sessions
+ * and new commands reuse the connections (and TLS sessions) that are already open to the hub.  The latency of each command is recorded in a histogram keyed by
+ * the HTTP method and the command path with the session and element identifiers removed.  Credentials in the user information of a hub URL are sent to that
+ * host with every request as basic authentication.
+ * <p>
+ * The factory used for each cloud can be replaced by naming a subclass with a CloudDescriptor constructor in driver.hubClient.factory
+ */
+public class HubClientFactory implements HttpClient.Factory
+{
+    public static final String ENABLED = "driver.hubClient.enabled";
+    public static final String FACTORY = "driver.hubClient.factory";
+    public static final String MAX_CONNECTIONS = "driver.hubClient.maxConnections";
+    public static final String CONNECTION_TIMEOUT = "driver.hubClient.connectionTimeout";
+    public static final String SOCKET_TIMEOUT = "driver.hubClient.socketTimeout";
+    public static final String IDLE_TIMEOUT = "driver.hubClient.idleTimeout";
+
+    private static Log log = LogFactory.getLog( HubClientFactory.class );
+    private static final Map<String, HubClientFactory> factoryMap = new ConcurrentHashMap<String, HubClientFactory>( 10 );
+
+    private static volatile boolean enabled = true;
+    private static volatile String factoryClass = null;
+    private static volatile int maxConnections = 200;
+    private static volatile int connectionTimeout = 120000;
+    private static volatile int socketTimeout = 10800000;
+    private static volatile int idleTimeout = 60000;
+
+    /**
+     * Returns the client factory for a cloud creating it on first use
+     *
+     * @param cloudDescriptor the cloud
+     * @return the client factory or null if shared clients are disabled
+     */
+    public static HubClientFactory getFactory( CloudDescriptor cloudDescriptor )
+    {
+        if ( !enabled )
+            return null;
+
+        String factoryKey = cloudDescriptor.getName() + "|" + cloudDescriptor.getHostName();
+        HubClientFactory clientFactory = factoryMap.get( factoryKey );
+        if ( clientFactory == null )
+        {
+            synchronized ( factoryMap )
+            {
+                clientFactory = factoryMap.get( factoryKey );
+                if ( clientFactory == null )
+                {
+                    clientFactory = createFactory( cloudDescriptor );
+                    factoryMap.put( factoryKey, clientFactory );
+                }
+            }
+        }
+        return clientFactory;
+    }
+
+    private static HubClientFactory createFactory( CloudDescriptor cloudDescriptor )
+    {
+        if ( factoryClass != null )
+        {
+            try
+            {
+                return (HubClientFactory) Class.forName( factoryClass ).getConstructor( CloudDescriptor.class ).newInstance( cloudDescriptor );
+            }
+            catch ( Exception e )
+            {
+                log.error( "Could not create the hub client factory " + factoryClass + " - using the default factory", e );
+            }
+        }
+
+        return new HubClientFactory( cloudDescriptor );
+    }
+
+    public static void configure( Map<String, String> configurationProperties )
+    {
+        if ( configurationProperties == null )
+            return;
+
+        if ( configurationProperties.get( ENABLED ) != null )
+            enabled = Boolean.parseBoolean( configurationProperties.get( ENABLED ).trim() );
+        if ( configurationProperties.get( FACTORY ) != null && !configurationProperties.get( FACTORY ).trim().isEmpty() )
+            factoryClass = configurationProperties.get( FACTORY ).trim();
+
+        maxConnections = getIntProperty( configurationProperties, MAX_CONNECTIONS, maxConnections );
+        connectionTimeout = getIntProperty( configurationProperties, CONNECTION_TIMEOUT, connectionTimeout );
+        socketTimeout = getIntProperty( configurationProperties, SOCKET_TIMEOUT, socketTimeout );
+        idleTimeout = getIntProperty( configurationProperties, IDLE_TIMEOUT, idleTimeout );
+    }
+
+    public static List<HubClientFactory> getFactories()
+    {
+        return new ArrayList<HubClientFactory>( factoryMap.values() );
+    }
+
+    /**
+     * Closes the connection pools of every factory and forgets the factories
+     */
+    public static void closeAll()
+    {
+        synchronized ( factoryMap )
+        {
+            for ( HubClientFactory clientFactory : factoryMap.values() )
+                clientFactory.close();
+            factoryMap.clear();
+        }
+    }
+
+    private static int getIntProperty( Map<String, String> configurationProperties, String keyName, int defaultValue )
+    {
+        String value = configurationProperties.get( keyName );
+        if ( value != null )
+        {
+            try
+            {
+                return Integer.parseInt( value.trim() );
+            }
+            catch ( Exception e )
+            {
+                log.warn( "Invalid value for " + keyName + " [" + value + "]" );
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Builds the name that a request is recorded under - the HTTP method followed by the path with the session and element identifiers replaced
+     *
+     * @param httpMethod the HTTP method
+     * @param requestUri the path of the request relative to the hub
+     * @return the command name
+     */
+    public static String getCommandName( String httpMethod, String requestUri )
+    {
+        StringBuilder commandName = new StringBuilder();
+        String[] uriParts = requestUri.split( "\\?" )[ 0 ].split( "/" );
+
+        String previousPart = null;
+        for ( String uriPart : uriParts )
+        {
+            if ( uriPart.isEmpty() )
+                continue;
+
+            commandName.append( '/' );
+            if ( "session".equals( previousPart ) )
+                commandName.append( ":sessionId" );
+            else if ( "element".equals( previousPart ) && !"active".equals( uriPart ) )
+                commandName.append( ":id" );
+            else
+                commandName.append( uriPart );
+
+            previousPart = uriPart;
+        }
+
+        return httpMethod + " " + ( commandName.length() > 0 ? commandName.toString() : "/" );
+    }
+
+    private final String cloudName;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final BasicCredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+    private final ConcurrentHashMap<String, LatencyHistogram> commandLatency = new ConcurrentHashMap<String, LatencyHistogram>( 64 );
+    private final AtomicInteger clientCount = new AtomicInteger( 0 );
+
+    public HubClientFactory( CloudDescriptor cloudDescriptor )
+    {
+        cloudName = cloudDescriptor.getName();
+
+        connectionManager = new PoolingHttpClientConnectionManager( idleTimeout * 2, TimeUnit.MILLISECONDS );
+        connectionManager.setMaxTotal( maxConnections );
+        connectionManager.setDefaultMaxPerRoute( maxConnections );
+        connectionManager.setValidateAfterInactivity( 2000 );
+        connectionManager.setDefaultSocketConfig( SocketConfig.custom().setTcpNoDelay( true ).setSoKeepAlive( true ).setSoTimeout( socketTimeout ).build() );
+
+        //
+        // Commands are never retried - a failed POST may already have been applied by the hub
+        //
+        httpClient = HttpClientBuilder.create().setConnectionManager( connectionManager )
+                .setDefaultRequestConfig( RequestConfig.custom().setConnectTimeout( connectionTimeout ).setSocketTimeout( socketTimeout ).build() )
+                .setRetryHandler( new DefaultHttpRequestRetryHandler( 0, false ) )
+                .setDefaultCredentialsProvider( credentialsProvider ).addInterceptorFirst( new PreemptiveAuthInterceptor() )
+                .setRoutePlanner( new SystemDefaultRoutePlanner( ProxySelector.getDefault() ) )
+                .evictIdleConnections( idleTimeout, TimeUnit.MILLISECONDS ).build();
+    }
+
+    public HttpClient createClient( URL url )
+    {
+        clientCount.incrementAndGet();
+        addCredentials( url );
+        return new TimedHttpClient( createDelegate( url ) );
+    }
+
+    /**
+     * Registers the user name and password from the user information of the hub URL for its host and port
+     *
+     * @param url the hub URL
+     */
+    protected void addCredentials( URL url )
+    {
+        String userInfo = url.getUserInfo();
+        if ( userInfo == null || userInfo.isEmpty() )
+            return;
+
+        try
+        {
+            int splitIndex = userInfo.indexOf( ':' );
+            String userName = URLDecoder.decode( splitIndex >= 0 ? userInfo.substring( 0, splitIndex ) : userInfo, "UTF-8" );
+            String password = splitIndex >= 0 ? URLDecoder.decode( userInfo.substring( splitIndex + 1 ), "UTF-8" ) : null;
+            credentialsProvider.setCredentials( new AuthScope( url.getHost(), url.getPort() ), new UsernamePasswordCredentials( userName, password ) );
+        }
+        catch ( Exception e )
+        {
+            log.warn( "Could not read the credentials for " + url.getHost(), e );
+        }
+    }
+
+    /**
+     * Creates the client that sends the commands to the hub.  Subclasses can override this to use a different HTTP client
+     *
+     * @param url the hub URL
+     * @return the HTTP client
+     */
+    protected HttpClient createDelegate( URL url )
+    {
+        return new ApacheHttpClient( httpClient, url );
+    }
+
+    /**
+     * @param hubUrl the hub URL
+     * @return a command executor for a new RemoteWebDriver session that uses the shared clients
+     */
+    public HttpCommandExecutor createExecutor( URL hubUrl )
+    {
+        return new HttpCommandExecutor( Collections.<String, CommandInfo>emptyMap(), hubUrl, this );
+    }
+
+    public void cleanupIdleClients()
+    {
+        connectionManager.closeExpiredConnections();
+        connectionManager.closeIdleConnections( idleTimeout, TimeUnit.MILLISECONDS );
+    }
+
+    public void close()
+    {
+        try
+        {
+            httpClient.close();
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Error closing the hub connections for " + cloudName, e );
+        }
+    }
+
+    public String getCloudName()
+    {
+        return cloudName;
+    }
+
+    public LatencyHistogram getLatency( String commandName )
+    {
+        return commandLatency.get( commandName );
+    }
+
+    public Map<String, LatencyHistogram> getCommandLatency()
+    {
+        return Collections.unmodifiableMap( commandLatency );
+    }
+
+    private void recordLatency( String commandName, long elapsedTime )
+    {
+        LatencyHistogram latencyHistogram = commandLatency.get( commandName );
+        if ( latencyHistogram == null )
+        {
+            latencyHistogram = new LatencyHistogram();
+            LatencyHistogram existingHistogram = commandLatency.putIfAbsent( commandName, latencyHistogram );
+            if ( existingHistogram != null )
+                latencyHistogram = existingHistogram;
+        }
+
+        latencyHistogram.record( elapsedTime );
+    }
+
+    public String toString()
+    {
+        PoolStats poolStats = connectionManager.getTotalStats();
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append( cloudName ).append( " - Sessions: " ).append( clientCount.get() ).append( " - Connections leased: " ).append( poolStats.getLeased() ).append( " available: " ).append( poolStats.getAvailable() ).append( " max: " ).append( poolStats.getMax() );
+
+        for ( Map.Entry<String, LatencyHistogram> latencyEntry : new TreeMap<String, LatencyHistogram>( commandLatency ).entrySet() )
+            stringBuilder.append( "\r\n\t" ).append( latencyEntry.getKey() ).append( " - " ).append( latencyEntry.getValue() );
+
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Attaches the credentials for the target host to the request up front.  Waiting for the challenge would cost every command a second round trip since
+     * each request runs in a new context, and a POST body cannot always be sent twice
+     */
+    private class PreemptiveAuthInterceptor implements HttpRequestInterceptor
+    {
+        public void process( org.apache.http.HttpRequest request, HttpContext context )
+        {
+            HttpClientContext clientContext = HttpClientContext.adapt( context );
+            AuthState authState = clientContext.getTargetAuthState();
+            HttpHost targetHost = clientContext.getTargetHost();
+            if ( authState == null || authState.getAuthScheme() != null || targetHost == null )
+                return;
+
+            Credentials credentials = credentialsProvider.getCredentials( new AuthScope( targetHost.getHostName(), targetHost.getPort() ) );
+            if ( credentials != null )
+                authState.update( new BasicScheme(), credentials );
+        }
+    }
+
+    /**
+     * Records the latency of each request before handing back the response
+     */
+    private class TimedHttpClient implements HttpClient
+    {
+        private final HttpClient httpClient;
+
+        public TimedHttpClient( HttpClient httpClient )
+        {
+            this.httpClient = httpClient;
+        }
+
+        public HttpResponse execute( HttpRequest request, boolean followRedirects ) throws IOException
+        {
+            long startTime = System.nanoTime();
+            try
+            {
+                return httpClient.execute( request, followRedirects );
+            }
+            finally
+            {
+                recordLatency( getCommandName( request.getMethod().name(), request.getUri() ), TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - startTime ) );
+            }
+        }
+
+        /**
+         * The connections belong to the factory so they are left open for the next session
+         */
+        public void close() throws IOException
+        {
+        }
+    }
+}
@@ -78,6 +78,7 @@ public class MorelandWebElement implements WebElement, Locatable, HasIdentity
 	public void sendKeys( CharSequence... keysToSend )
 	{
 	    webElement.sendKeys( keysToSend );
+	    deviceDriver.getFrameCache().invalidate();
 	}
 
 	/* (non-Javadoc)
@@ -87,7 +88,7 @@ public class MorelandWebElement implements WebElement, Locatable, HasIdentity
 	public void clear()
 	{
 		webElement.clear();
-		
+		deviceDriver.getFrameCache().invalidate();
 	}
 
 	/* (non-Javadoc)
@@ -0,0 +1,212 @@
+/*******************************************************************************
+ * xFramium
+ *
+ * Copyright 2016 by Moreland Labs, Ltd. (http://www.morelandlabs.com)
+ *
+ * Some open source application is free software: you can redistribute 
+ * it and/or modify it under the terms of the GNU General Public 
+ * License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ *  
+ * Some open source application is distributed in the hope that it will 
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty 
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with xFramium.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @license GPL-3.0+ <http://spdx.org/licenses/GPL-3.0+>
+ *******************************************************************************/
+package org.xframium.device.factory;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPathExpressionException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xframium.utility.XPathCache;
+import org.xml.sax.InputSource;
+
+/**
+ * The parsed page source used by smart caching.  The parser is kept between snapshots and a refresh that returns the same page
+ * source as the current snapshot is not parsed again.  Locators that match a single id, name, class or resource-id value are resolved from an attribute index that
+ * is built once per snapshot instead of walking the document.  An instance belongs to a single DeviceWebDriver and is not thread safe
+ */
+public class PageSourceCache
+{
+    private static final String[] INDEXED_ATTRIBUTES = new String[] { "id", "name", "class", "resource-id" };
+
+    /** Matches //tag[@attribute='value'] where the attribute is one of the indexed attributes */
+    private static final Pattern INDEXED_XPATH = Pattern.compile( "^//(\\*|[\\w\\.\\-:]+)\\[@(id|name|class|resource-id)\\s*=\\s*(?:'([^']+)'|\"([^\"]+)\")\\]$" );
+
+    private DocumentBuilder documentBuilder;
+
+    private Document document;
+    private long fingerprint;
+    private String pageSource;
+    private boolean stale;
+    private Map<String, Map<String, List<Node>>> attributeIndex;
+
+    /**
+     * Makes the current snapshot the given page source.  The page source is only parsed if it differs from the current snapshot - the fingerprint is compared
+     * first and the full text only when the fingerprints match
+     *
+     * @param pageSource the page source
+     * @return true if the page source was parsed
+     * @throws Exception if the page source could not be parsed
+     */
+    public boolean update( String pageSource ) throws Exception
+    {
+        long newFingerprint = fingerprint( pageSource );
+        if ( document != null && newFingerprint == fingerprint && pageSource.equals( this.pageSource ) )
+        {
+            stale = false;
+            return false;
+        }
+
+        clear();
+
+        if ( documentBuilder == null )
+            documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        else
+            documentBuilder.reset();
+
+        document = documentBuilder.parse( new InputSource( new StringReader( pageSource ) ) );
+        fingerprint = newFingerprint;
+        this.pageSource = pageSource;
+        stale = false;
+        return true;
+    }
+
+    /**
+     * @return true if there is a snapshot that has not been invalidated
+     */
+    public boolean isCurrent()
+    {
+        return document != null && !stale;
+    }
+
+    /**
+     * Marks the snapshot as out of date.  It is kept so that an unchanged page source can reuse it
+     */
+    public void invalidate()
+    {
+        stale = true;
+    }
+
+    public void clear()
+    {
+        document = null;
+        attributeIndex = null;
+        fingerprint = 0;
+        pageSource = null;
+        stale = false;
+    }
+
+    public Document getDocument()
+    {
+        return document;
+    }
+
+    public List<Node> findNodes( String path ) throws XPathExpressionException
+    {
+        List<Node> nodeList = findIndexed( path );
+        if ( nodeList != null )
+            return nodeList;
+
+        NodeList nodes = XPathCache.instance().getNodes( document, path );
+        nodeList = new ArrayList<Node>( nodes.getLength() );
+        for ( int i = 0; i < nodes.getLength(); i++ )
+            nodeList.add( nodes.item( i ) );
+
+        return nodeList;
+    }
+
+    public Node findNode( String path ) throws XPathExpressionException
+    {
+        List<Node> nodeList = findIndexed( path );
+        if ( nodeList != null )
+            return nodeList.isEmpty() ? null : nodeList.get( 0 );
+
+        return XPathCache.instance().getNode( document, path );
+    }
+
+    /**
+     * Resolves a single attribute locator from the attribute index
+     *
+     * @param path the XPath
+     * @return the matching nodes in document order or null if the XPath cannot be resolved from the index
+     */
+    private List<Node> findIndexed( String path )
+    {
+        Matcher matcher = INDEXED_XPATH.matcher( path.trim() );
+        if ( !matcher.matches() )
+            return null;
+
+        String tagName = matcher.group( 1 );
+        String attributeValue = matcher.group( 3 ) != null ? matcher.group( 3 ) : matcher.group( 4 );
+
+        if ( attributeIndex == null )
+            buildIndex();
+
+        List<Node> nodeList = attributeIndex.get( matcher.group( 2 ) ).get( attributeValue );
+        if ( nodeList == null )
+            return Collections.emptyList();
+
+        if ( tagName.equals( "*" ) )
+            return nodeList;
+
+        List<Node> tagList = new ArrayList<Node>( nodeList.size() );
+        for ( Node node : nodeList )
+        {
+            if ( tagName.equals( node.getNodeName() ) )
+                tagList.add( node );
+        }
+
+        return tagList;
+    }
+
+    private void buildIndex()
+    {
+        attributeIndex = new HashMap<String, Map<String, List<Node>>>( INDEXED_ATTRIBUTES.length * 2 );
+        for ( String attributeName : INDEXED_ATTRIBUTES )
+            attributeIndex.put( attributeName, new HashMap<String, List<Node>>( 64 ) );
+
+        NodeList elementList = document.getElementsByTagName( "*" );
+        for ( int i = 0; i < elementList.getLength(); i++ )
+        {
+            Element element = (Element) elementList.item( i );
+            for ( String attributeName : INDEXED_ATTRIBUTES )
+            {
+                String attributeValue = element.getAttribute( attributeName );
+                if ( attributeValue.isEmpty() )
+                    continue;
+
+                Map<String, List<Node>> valueMap = attributeIndex.get( attributeName );
+                List<Node> nodeList = valueMap.get( attributeValue );
+                if ( nodeList == null )
+                {
+                    nodeList = new ArrayList<Node>( 2 );
+                    valueMap.put( attributeValue, nodeList );
+                }
+                nodeList.add( element );
+            }
+        }
+    }
+
+    private static long fingerprint( String pageSource )
+    {
+        return ( (long) pageSource.length() << 32 ) ^ ( pageSource.hashCode() & 0xFFFFFFFFL );
+    }
+}
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * xFramium
+ *
+ * Copyright 2016 by Moreland Labs, Ltd. (http://www.morelandlabs.com)
+ *
+ * Some open source application is free software: you can redistribute 
+ * it and/or modify it under the terms of the GNU General Public 
+ * License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ *  
+ * Some open source application is distributed in the hope that it will 
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty 
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with xFramium.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @license GPL-3.0+ <http://spdx.org/licenses/GPL-3.0+>
+ *******************************************************************************/
+package org.xframium.device.factory;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import javax.imageio.ImageIO;
+import org.openqa.selenium.Rectangle;
+
+/**
+ * The last screenshot taken on a session along with the bounds of the elements that were cropped from it.  Imaging steps reuse the frame until an action
+ * that can change the screen invalidates it.  The encoded image is decoded once on first use
+ */
+public class ScreenFrameCache
+{
+    private String frameKey;
+    private byte[] imageData;
+    private BufferedImage image;
+    private Map<String, Rectangle> rectangleMap = new HashMap<String, Rectangle>( 10 );
+
+    /**
+     * @param frameKey identifies how the frame was captured (for example the resolution)
+     * @return the encoded frame or null if no current frame was captured that way
+     */
+    public synchronized byte[] getImageData( String frameKey )
+    {
+        if ( imageData != null && frameKey.equals( this.frameKey ) )
+            return imageData;
+        return null;
+    }
+
+    public synchronized void setImageData( String frameKey, byte[] imageData )
+    {
+        this.frameKey = frameKey;
+        this.imageData = imageData;
+        this.image = null;
+    }
+
+    /**
+     * @return the decoded frame or null if no current frame was captured using the frame key
+     */
+    public synchronized BufferedImage getImage( String frameKey ) throws IOException
+    {
+        if ( getImageData( frameKey ) == null )
+            return null;
+
+        if ( image == null )
+            image = ImageIO.read( new ByteArrayInputStream( imageData ) );
+
+        return image;
+    }
+
+    public synchronized Rectangle getRectangle( String elementKey )
+    {
+        return rectangleMap.get( elementKey );
+    }
+
+    public synchronized void putRectangle( String elementKey, Rectangle rectangle )
+    {
+        rectangleMap.put( elementKey, rectangle );
+    }
+
+    /**
+     * Discards the frame and element bounds after the screen may have changed
+     */
+    public synchronized void invalidate()
+    {
+        frameKey = null;
+        imageData = null;
+        image = null;
+        rectangleMap.clear();
+    }
+}
@@ -34,6 +34,7 @@ import org.xframium.device.DeviceManager;
 import org.xframium.device.cloud.CloudDescriptor;
 import org.xframium.device.factory.AbstractDriverFactory;
 import org.xframium.device.factory.DeviceWebDriver;
+import org.xframium.device.factory.HubClientFactory;
 import org.xframium.exception.DeviceConfigurationException;
 import org.xframium.spi.Device;
 import io.appium.java_client.android.AndroidDriver;
@@ -96,7 +97,8 @@ public class ANDROIDDriverFactory extends AbstractDriverFactory
             if ( log.isDebugEnabled() )
                 log.debug( Thread.currentThread().getName() + ": Acquiring Device as: \r\n" + capabilitiesToString( dc ) + "\r\nagainst " + hubUrl );
 			
-			webDriver = new DeviceWebDriver( new AndroidDriver( hubUrl, dc ), DeviceManager.instance().isCachingEnabled(), currentDevice, dc );
+			HubClientFactory clientFactory = HubClientFactory.getFactory( useCloud );
+			webDriver = new DeviceWebDriver( clientFactory != null ? new AndroidDriver( hubUrl, clientFactory, dc ) : new AndroidDriver( hubUrl, dc ), DeviceManager.instance().isCachingEnabled(), currentDevice, dc );
 	
 			webDriver.manage().timeouts().implicitlyWait( 10, TimeUnit.SECONDS );
 			
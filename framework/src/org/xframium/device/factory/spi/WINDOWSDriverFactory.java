@@ -31,6 +31,7 @@ import org.xframium.device.DeviceManager;
 import org.xframium.device.cloud.CloudDescriptor;
 import org.xframium.device.factory.AbstractDriverFactory;
 import org.xframium.device.factory.DeviceWebDriver;
+import org.xframium.device.factory.HubClientFactory;
 import org.xframium.spi.Device;
 import io.appium.java_client.ios.IOSDriver;
 
@@ -65,7 +66,8 @@ public class WINDOWSDriverFactory extends AbstractDriverFactory
 			if ( log.isInfoEnabled() )
 			    log.info( "Acquiring Windows Application as: \r\n" + capabilitiesToString( dc ) + "\r\nagainst " + hubUrl );
 			
-			webDriver = new DeviceWebDriver( new IOSDriver( hubUrl, dc ), DeviceManager.instance().isCachingEnabled(), currentDevice, dc );
+			HubClientFactory clientFactory = HubClientFactory.getFactory( useCloud );
+			webDriver = new DeviceWebDriver( clientFactory != null ? new IOSDriver( hubUrl, clientFactory, dc ) : new IOSDriver( hubUrl, dc ), DeviceManager.instance().isCachingEnabled(), currentDevice, dc );
 			webDriver.manage().timeouts().implicitlyWait( 10, TimeUnit.SECONDS );
 			
 			
@@ -30,6 +30,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openqa.selenium.remote.DesiredCapabilities;
@@ -51,6 +52,7 @@ import org.xframium.device.data.DataManager;
 import org.xframium.device.factory.DeviceWebDriver;
 import org.xframium.exception.ScriptConfigurationException;
 import org.xframium.exception.ScriptException;
+import org.xframium.history.TestDurations;
 import org.xframium.page.StepStatus;
 import org.xframium.page.data.PageData;
 import org.xframium.page.data.PageDataManager;
@@ -108,7 +110,7 @@ public abstract class AbstractSeleniumTest
      * @return the device data
      */
     @DataProvider ( name = "deviceManager", parallel = true)
-    public Object[][] getDeviceData( ITestContext testContext )
+    public Iterator<Object[]> getDeviceData( ITestContext testContext )
     {
         List<Device> deviceList = DeviceManager.instance().getDevices();
 
@@ -154,18 +156,46 @@ public abstract class AbstractSeleniumTest
 
     }
 
-    protected Object[][] getDeviceData( List<Device> deviceList, ITestContext testContext )
+    /**
+     * Sizes the TestNG data provider thread pool to the number of device slots and creates the test rows
+     *
+     * @param deviceList the devices to run against
+     * @param testContext the TestNG context
+     * @return the test rows
+     */
+    protected Iterator<Object[]> getDeviceData( List<Device> deviceList, ITestContext testContext )
     {
-        List<TestName> rawList = new ArrayList<TestName>( 10 );
-        List<TestName> finalList = new ArrayList<TestName>( 10 );
-        List<TestKey> personaList = new ArrayList<TestKey>( 10 );
-        List<TestKey> testList = new ArrayList<TestKey>( 10 );
+        int threadCount = 0;
+        for ( Device d : deviceList )
+            threadCount += d.getAvailableDevices();
 
-        if ( DataManager.instance().getPersonas() != null && DataManager.instance().getPersonas().length > 0 )
+        try
+        {
+            testContext.getSuite().getXmlSuite().setDataProviderThreadCount( threadCount );
+            log.warn( "Thread count configured as " + threadCount );
+        }
+        catch( Exception e )
         {
-            for ( String pN : DataManager.instance().getPersonas() )
-                personaList.add( new TestKey( pN, KeyType.PERSONA ) );
+            System.setProperty( "dataproviderthreadcount", threadCount + "" );
+            log.warn( "Thread count configured as " + threadCount + " via system property" );
         }
+
+        return getDeviceData( deviceList );
+    }
+
+    /**
+     * Creates the test rows - every row holds the container that hands out the next test when the invocation starts
+     *
+     * @param deviceList the devices to run against
+     * @return the test rows
+     */
+    protected Iterator<Object[]> getDeviceData( List<Device> deviceList )
+    {
+        List<TestKey> testList = new ArrayList<TestKey>( 10 );
+
+        TestPlan testPlan = new TestPlan( DataManager.instance().getPersonas(), deviceList.size() );
+
+        StringBuilder testOut = new StringBuilder();
         
         if ( xmlMode )
         {
@@ -195,141 +225,18 @@ public abstract class AbstractSeleniumTest
                     continue;
                 }
                 
-                if ( kT.getContentKeys() != null && kT.getContentKeys().length > 0 )
-                {
-                    for ( String contentKey : kT.getContentKeys() )
-                    {
-                        if ( kT.getCount() > 1 )
-                        {
-                            for ( int i = 0; i < kT.getCount(); i++ )
-                            {
-                                if ( kT.getDataDriver() != null && kT.getDataDriver().trim().length() > 0 )
-                                {
-                                    PageData[] pageData = PageDataManager.instance().getRecords( kT.getDataDriver() );
-                                    for ( PageData pD : pageData )
-                                    {
-                                        TestName testName = new TestName( tK.getKey() );
-                                        testName.setIteration( i + 1 );
-                                        testName.setTestContext( contentKey );
-                                        testName.setDataDriven( pD );
-                                        rawList.add( testName );
-                                    }
-                                }
-                                else
-                                {
-                                    TestName testName = new TestName( tK.getKey() );
-                                    testName.setIteration( i + 1 );
-                                    testName.setTestContext( contentKey );
-                                    rawList.add( testName );
-                                }
-                            }
-                        }
-                        else
-                        {
-                            if ( kT.getDataDriver() != null && kT.getDataDriver().trim().length() > 0 )
-                            {
-                                PageData[] pageData = PageDataManager.instance().getRecords( kT.getDataDriver() );
-                                for ( PageData pD : pageData )
-                                {
-                                    TestName testName = new TestName( tK.getKey() );
-                                    testName.setTestContext( contentKey );
-                                    testName.setDataDriven( pD );
-                                    rawList.add( testName );
-                                }
-                            }
-                            else
-                            {
-                                TestName testName = new TestName( tK.getKey() );
-                                testName.setTestContext( contentKey );
-                                rawList.add( testName );
-                            }
-                        }
-                    }
-                }
-                else
+                PageData[] pageData = null;
+                if ( kT.getDataDriver() != null && kT.getDataDriver().trim().length() > 0 )
                 {
-                    if ( kT.getCount() > 1 )
-                    {
-                        for ( int i = 0; i < kT.getCount(); i++ )
-                        {
-                            if ( kT.getDataDriver() != null && kT.getDataDriver().trim().length() > 0 )
-                            {
-                                PageData[] pageData = PageDataManager.instance().getRecords( kT.getDataDriver() );
-                                for ( PageData pD : pageData )
-                                {
-                                    TestName testName = new TestName( tK.getKey() );
-                                    testName.setIteration( i );
-                                    testName.setDataDriven( pD );
-                                    rawList.add( testName );
-                                }
-                            }
-                            else
-                            {
-                                TestName testName = new TestName( tK.getKey() );
-                                testName.setIteration( i );
-                                rawList.add( testName );
-                            }
-                        }
-                    }
-                    else
-                    {
-                        if ( kT.getDataDriver() != null && kT.getDataDriver().trim().length() > 0 )
-                        {
-                            PageData[] pageData = PageDataManager.instance().getRecords( kT.getDataDriver() );
-                            for ( PageData pD : pageData )
-                            {
-                                TestName testName = new TestName( tK.getKey() );
-                                testName.setDataDriven( pD );
-                                rawList.add( testName );
-                            }
-                        }
-                        else
-                        {
-                            TestName testName = new TestName( tK.getKey() );
-                            rawList.add( testName );
-                        }
-                    }
+                    pageData = PageDataManager.instance().getRecords( kT.getDataDriver() );
+                    if ( pageData == null )
+                        pageData = new PageData[ 0 ];
                 }
-            }
-        }
 
-        if ( personaList.size() > 0 )
-        {
-            for ( TestKey tK : personaList )
-            {
-                for ( TestName tN : rawList )
-                {
-                    TestName testName = new TestName( tN.getRawName() );
-                    testName.setIteration( tN.getIteration() );
-                    testName.setContentKey( tN.getContentKey() );
-                    testName.setPersonaName( tK.getKey() );
-                    testName.setDataDriven( tN.getDataDriven() );
-                    finalList.add( testName );
-                }
+                long instanceCount = testPlan.addTest( tK.getKey(), kT.getContentKeys(), kT.getCount(), pageData );
+                testOut.append( "\t" + tK.getKey() + (instanceCount != 1 ? " (" + instanceCount + " instances)" : "") + "\r\n" );
             }
         }
-        else
-            finalList.addAll( rawList );
-
-        TestName[] newArray = null;
-
-        newArray = new TestName[(finalList.size() == 0 ? 1 : finalList.size()) * deviceList.size()];
-
-        if ( finalList.size() > 0 )
-        {
-            for ( int i = 0; i < finalList.size(); ++i )
-            {
-                for ( int j = 0; j < deviceList.size(); j++ )
-
-                    newArray[i * deviceList.size() + j] = finalList.get( i ).clone();
-            }
-        }
-        else
-        {
-            for ( int i = 0; i < deviceList.size(); i++ )
-
-                newArray[i] = new TestName();
-        }
 
         List<Device> fullDeviceList = new ArrayList<Device>( 10 );
         for ( Device d : deviceList )
@@ -342,9 +249,14 @@ public abstract class AbstractSeleniumTest
         
         if ( xmlMode )
         {
-            logOut.append( "\r\n*********************************************************************\r\nPreparing to execute the following " + finalList.size() + " tests\r\n" );
-            for ( TestName t : finalList )
-                logOut.append( "\t" + t.getTestName() + "\r\n" );
+            logOut.append( "\r\n*********************************************************************\r\nPreparing to execute the following " + testPlan.getTestCount() + " tests\r\n" );
+            logOut.append( testOut );
+            if ( DataManager.instance().getPersonas() != null && DataManager.instance().getPersonas().length > 0 )
+            {
+                logOut.append( "Using the following " ).append( DataManager.instance().getPersonas().length ).append( " personas\r\n" );
+                for ( String pN : DataManager.instance().getPersonas() )
+                    logOut.append( "\t" + pN + "\r\n" );
+            }
         }
         else
             logOut.append( "\r\n*********************************************************************\r\nPreparing to execute\r\n" );
@@ -355,37 +267,48 @@ public abstract class AbstractSeleniumTest
             logOut.append( "\t" + d.getEnvironment() + "\r\n" );
         }
         
-        if ( finalList.isEmpty() && xmlMode )
+        if ( testPlan.isEmpty() && xmlMode )
         {
             log.fatal( "No scripts were defined - nothign to do!" );
             throw new ScriptConfigurationException( "No scripts were defined - nothign to do!" );
         }
-        
-        
-        try
-        {
-            testContext.getSuite().getXmlSuite().setDataProviderThreadCount( fullDeviceList.size() );
-            log.warn( "Thread count configured as " + fullDeviceList.size() );
-        }
-        catch( Exception e )
-        {
-            System.setProperty( "dataproviderthreadcount", fullDeviceList.size() + "" );
-            log.warn( "Thread count configured as " + fullDeviceList.size() + " via system property" );
-        }
 
-        TestContainer testContainer = new TestContainer( newArray, fullDeviceList.toArray( new Device[0] ) );
+        if ( DataManager.instance().getReportFolder() != null )
+            TestDurations.instance().load( DataManager.instance().getReportFolder() );
 
-        
-        Object[][] returnArray = new Object[newArray.length][1];
-        for ( int i = 0; i < returnArray.length; i++ )
-            returnArray[i][0] = testContainer;
+        final TestContainer testContainer = new TestContainer( testPlan, fullDeviceList.toArray( new Device[0] ) );
+        final long executionCount = testPlan.size();
         
         if ( xmlMode )
-            logOut.append( "\r\nFor a total of " ).append( returnArray.length ).append( " total execution\r\n*********************************************************************" );
+            logOut.append( "\r\nFor a total of " ).append( executionCount ).append( " total execution\r\n*********************************************************************" );
 
         log.warn( logOut.toString() );
         
-        return returnArray;
+        //
+        // Every invocation receives the same container which hands out the next test when the invocation starts - the rows are only created as TestNG asks for them
+        //
+        return new Iterator<Object[]>()
+        {
+            private long rowIndex = 0;
+
+            public boolean hasNext()
+            {
+                return rowIndex < executionCount;
+            }
+
+            public Object[] next()
+            {
+                if ( !hasNext() )
+                    throw new NoSuchElementException();
+                rowIndex++;
+                return new Object[] { testContainer };
+            }
+
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
     }
 
     /**
@@ -409,6 +332,18 @@ public abstract class AbstractSeleniumTest
      */
     @BeforeMethod ( alwaysRun = true)
     public void beforeMethod( Method currentMethod, Object[] testArgs, ITestContext testContext )
+    {
+        startMethod( currentMethod, testArgs );
+    }
+
+    /**
+     * Acquires the test package for the invocation and prepares the device and the test context.  The package is left in testPackageContainer and is null when
+     * none could be acquired
+     *
+     * @param currentMethod the current method
+     * @param testArgs the test args
+     */
+    protected void startMethod( Method currentMethod, Object[] testArgs )
     {
         try
         {
@@ -564,6 +499,19 @@ public abstract class AbstractSeleniumTest
      */
     @AfterMethod ( alwaysRun = true)
     public void afterMethod( Method currentMethod, Object[] testArgs, ITestResult testResult, ITestContext testContext )
+    {
+        completeMethod( currentMethod, testArgs, testResult.isSuccess(), testResult.getThrowable() );
+    }
+
+    /**
+     * Completes the test package acquired by beforeMethod - reports the result, releases the devices and returns the device to the container
+     *
+     * @param currentMethod the current method
+     * @param testArgs the test args
+     * @param success true if the test method succeeded
+     * @param throwable the failure raised by the test method or null
+     */
+    protected void completeMethod( Method currentMethod, Object[] testArgs, boolean success, Throwable throwable )
     {
         TestPackage testPackage = testPackageContainer.get();
         testPackageContainer.remove();
@@ -578,15 +526,15 @@ public abstract class AbstractSeleniumTest
             if ( testPackage.getConnectedDevice().getWebDriver() != null && testPackage.getConnectedDevice().getWebDriver().isConnected() )
             {
                 testPackage.getConnectedDevice().getWebDriver().getExecutionContext().setSessionId( testPackage.getConnectedDevice().getWebDriver().getExecutionId() );
-                if ( !testResult.isSuccess() )
+                if ( !success )
                 {
-                    if ( testResult.getThrowable() != null )
+                    if ( throwable != null )
                     {
                         if ( testPackage.getConnectedDevice().getWebDriver().getExecutionContext().getStep() != null )
                         {
-                            log.error( "Uncaught test failure", testResult.getThrowable() );
+                            log.error( "Uncaught test failure", throwable );
                             testPackage.getConnectedDevice().getWebDriver().getExecutionContext().getStep().getStep().dumpState( testPackage.getConnectedDevice().getWebDriver(), new HashMap<String,Object>(0), new HashMap<String,PageData>(0), testPackage.getConnectedDevice().getWebDriver().getExecutionContext() );
-                            testPackage.getConnectedDevice().getWebDriver().getExecutionContext().completeStep( StepStatus.FAILURE, new ScriptException( exceptionToString( testResult.getThrowable() ) ) );
+                            testPackage.getConnectedDevice().getWebDriver().getExecutionContext().completeStep( StepStatus.FAILURE, new ScriptException( exceptionToString( throwable ) ) );
                         }
                     }
                 }
@@ -603,23 +551,33 @@ public abstract class AbstractSeleniumTest
                 }
             }
             
-            cleanUpConnectedDevice( "DEFAULT", testPackage.getTestName(), testPackage.getConnectedDevice(), testResult, true, testPackage );
+            //
+            // The test is journaled once its deferred artifacts have finished updating the execution context
+            //
+            final TestPackage completedPackage = testPackage;
+            Runnable addExecution = new Runnable()
+            {
+                public void run()
+                {
+                    if ( testFlow.isInfoEnabled() )
+                        testFlow.info( Thread.currentThread().getName() + ": Adding Execution for " + completedPackage.getRunKey() + " - " + completedPackage.getTestName().getTest().getDevice().getKey() + " - " + completedPackage.getDevice().getKey() + " - "+ completedPackage + " - " + completedPackage.getTestName() );
+
+                    ExecutionContext.instance().addExecution( completedPackage.getTestName().getTest() );
+                }
+            };
+
+            cleanUpConnectedDevice( "DEFAULT", testPackage.getTestName(), testPackage.getConnectedDevice(), success, true, testPackage, addExecution );
             if ( testPackage.getConnectedDevice().getDevice() != null )
             {
-                DeviceManager.instance().addRun( testPackage.getConnectedDevice().getWebDriver().getPopulatedDevice(), testPackage, (TestContainer) testArgs[0], testResult.isSuccess() );
+                DeviceManager.instance().addRun( testPackage.getConnectedDevice().getWebDriver().getPopulatedDevice(), testPackage, (TestContainer) testArgs[0], success );
             }
             
-            if ( testFlow.isInfoEnabled() )
-                testFlow.info( Thread.currentThread().getName() + ": Adding Execution for " + testPackage.getRunKey() + " - " + testPackage.getTestName().getTest().getDevice().getKey() + " - " + testPackage.getDevice().getKey() + " - "+ testPackage + " - " + testPackage.getTestName() );
-            
-            ExecutionContext.instance().addExecution( testPackage.getTestName().getTest() );
-            
             while ( (keys != null) && (keys.hasNext()) )
             {
                 String name = keys.next();
                 ConnectedDevice device = map.get( name );
                 
-                cleanUpConnectedDevice( name, testPackage.getTestName(), device, testResult, true, testPackage );
+                cleanUpConnectedDevice( name, testPackage.getTestName(), device, success, true, testPackage, null );
             }
 
             try
@@ -737,7 +695,7 @@ public abstract class AbstractSeleniumTest
         return contextMap;
     }
 
-    private void cleanUpConnectedDevice( String name, TestName testName, ConnectedDevice device, ITestResult testResult, boolean primaryDevice, TestPackage testPackage )
+    private void cleanUpConnectedDevice( String name, TestName testName, ConnectedDevice device, boolean success, boolean primaryDevice, TestPackage testPackage, Runnable afterArtifacts )
     {
         DeviceWebDriver webDriver = device.getWebDriver();
         ExecutionContextTest test = null;
@@ -756,7 +714,7 @@ public abstract class AbstractSeleniumTest
                     
                     if ( test != null && !xmlMode )
                     {
-                        webDriver.getExecutionContext().completeTest( testResult.isSuccess() ? TestStatus.PASSED : TestStatus.FAILED, null );
+                        webDriver.getExecutionContext().completeTest( success ? TestStatus.PASSED : TestStatus.FAILED, null );
                     }
                     
                 }
@@ -770,7 +728,7 @@ public abstract class AbstractSeleniumTest
                     rootFolder = new File( ExecutionContext.instance().getReportFolder(), webDriver.getArtifactFolder().getPath() );
                     rootFolder.mkdirs();
                     
-                    if ( webDriver.isConnected() && !testResult.isSuccess() )
+                    if ( webDriver.isConnected() && !success )
                     {
                         List<String> aList = ArtifactManager.instance().getEnabledArtifacts( ArtifactTime.ON_FAILURE );
                         if ( aList != null )
@@ -786,9 +744,15 @@ public abstract class AbstractSeleniumTest
                 {
                     try
                     {
-                        if ( testFlow.isInfoEnabled() )
-                            testFlow.info( Thread.currentThread().getName() + ":Closing WebDriver " );
-                        webDriver.close();
+                        //
+                        // Pooled sessions are reset rather than closed when they are released
+                        //
+                        if ( !DeviceManager.instance().getSessionPool().isPooled( webDriver ) )
+                        {
+                            if ( testFlow.isInfoEnabled() )
+                                testFlow.info( Thread.currentThread().getName() + ":Closing WebDriver " );
+                            webDriver.close();
+                        }
                     }
                     catch ( Exception e )
                     {
@@ -796,34 +760,22 @@ public abstract class AbstractSeleniumTest
                     }
                 }
                 
-                List<String> aList = ArtifactManager.instance().getEnabledArtifacts( ArtifactTime.AFTER_TEST );
-                
-                if ( aList != null )
-                {
-                    for ( String artifactType : aList )
-                    {
-                        ArtifactManager.instance().generateArtifact( artifactType, rootFolder.getAbsolutePath(), webDriver );
-                    }
-                }
-            
-                aList = ArtifactManager.instance().getEnabledArtifacts( ArtifactTime.AFTER_ARTIFACTS );
-                if ( aList != null )
-                {
-                    for ( String artifactType : aList )
-                    {
-                        ArtifactManager.instance().generateArtifact( artifactType, rootFolder.getAbsolutePath(), webDriver );
-                    }
-                }
+                //
+                // Artifacts that do not need the session are generated after the device has been released
+                //
+                ArtifactManager.instance().getPipeline().generateArtifacts( rootFolder.getAbsolutePath(), webDriver, afterArtifacts, ArtifactTime.AFTER_TEST, ArtifactTime.AFTER_ARTIFACTS );
 
             }
+            else if ( afterArtifacts != null )
+                afterArtifacts.run();
         }
         finally
         {
             try
             {
                 if ( testFlow.isInfoEnabled() )
-                    testFlow.info( Thread.currentThread().getName() + ": Quiting WebDriver " );
-                webDriver.quit();
+                    testFlow.info( Thread.currentThread().getName() + ": Releasing WebDriver " );
+                DeviceManager.instance().releaseDriver( webDriver );
             }
             catch ( Exception e )
             {
@@ -0,0 +1,325 @@
+/*******************************************************************************
+ * xFramium
+ *
+ * Copyright 2016 by Moreland Labs, Ltd. (http://www.morelandlabs.com)
+ *
+ * Some open source application is free software: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Some open source application is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with xFramium.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @license GPL-3.0+ <http://spdx.org/licenses/GPL-3.0+>
+ *******************************************************************************/
+package org.xframium.device.ng;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.testng.annotations.Test;
+import org.xframium.device.DeviceManager;
+
+/**
+ * Runs the data provider invocations of a test class without the TestNG data provider thread pool.  Each device slot is served by a worker that pulls the next
+ * invocation as soon as its previous test completes.  Workers run on virtual threads when the JVM provides them and otherwise on platform threads with a reduced
+ * stack.  All of the workers for a method belong to one scope - when the runner is interrupted, the run times out or a worker fails outside of a test the remaining
+ * invocations are cancelled and the running workers are interrupted before the runner returns
+ */
+public class ExecutorTestRunner
+{
+    private static final String DATA_PROVIDER = "deviceManager";
+    private static final long CANCEL_WAIT = 30000;
+
+    private Log log = LogFactory.getLog( ExecutorTestRunner.class );
+
+    private final Class<?> testClass;
+    private final long stackSize;
+    private final long runTimeout;
+
+    private final AtomicInteger passedCount = new AtomicInteger( 0 );
+    private final AtomicInteger failedCount = new AtomicInteger( 0 );
+
+    /**
+     * @param testClass the test class - must extend AbstractSeleniumTest
+     * @param stackSize the stack size in bytes for platform worker threads or 0 for the JVM default
+     * @param runTimeout the number of milliseconds to allow for each test method before the run is cancelled or 0 to wait indefinitely
+     */
+    public ExecutorTestRunner( Class<?> testClass, long stackSize, long runTimeout )
+    {
+        if ( !AbstractSeleniumTest.class.isAssignableFrom( testClass ) )
+            throw new IllegalArgumentException( testClass.getName() + " does not extend " + AbstractSeleniumTest.class.getName() );
+
+        this.testClass = testClass;
+        this.stackSize = stackSize;
+        this.runTimeout = runTimeout;
+    }
+
+    /**
+     * Runs every test method of the test class that uses the device data provider
+     *
+     * @return true if every invocation was run, false if the run was cancelled
+     * @throws Exception if the test class could not be created
+     */
+    public boolean run() throws Exception
+    {
+        AbstractSeleniumTest testInstance = (AbstractSeleniumTest) testClass.newInstance();
+
+        List<Method> testMethods = new ArrayList<Method>( 10 );
+        for ( Method method : testClass.getMethods() )
+        {
+            Test testAnnotation = method.getAnnotation( Test.class );
+            if ( testAnnotation != null && testAnnotation.enabled() && DATA_PROVIDER.equals( testAnnotation.dataProvider() ) )
+                testMethods.add( method );
+        }
+
+        Collections.sort( testMethods, new Comparator<Method>()
+        {
+            public int compare( Method o1, Method o2 )
+            {
+                return o1.getName().compareTo( o2.getName() );
+            }
+        } );
+
+        if ( testMethods.isEmpty() )
+            log.warn( "No test methods using the " + DATA_PROVIDER + " data provider were found on " + testClass.getName() );
+
+        boolean completed = true;
+        for ( Method testMethod : testMethods )
+        {
+            if ( !runMethod( testInstance, testMethod ) )
+            {
+                completed = false;
+                break;
+            }
+        }
+
+        log.warn( "Executor run of " + testClass.getSimpleName() + " " + (completed ? "completed" : "was cancelled") + " - Passed: " + passedCount.get() + " - Failed: " + failedCount.get() );
+        return completed;
+    }
+
+    public int getPassedCount()
+    {
+        return passedCount.get();
+    }
+
+    public int getFailedCount()
+    {
+        return failedCount.get();
+    }
+
+    private boolean runMethod( final AbstractSeleniumTest testInstance, final Method testMethod ) throws InterruptedException
+    {
+        final Iterator<Object[]> testRows = testInstance.getDeviceData( DeviceManager.instance().getDevices() );
+        if ( !testRows.hasNext() )
+            return true;
+
+        final Object[] firstRow = testRows.next();
+        final AtomicBoolean firstTaken = new AtomicBoolean( false );
+        final AtomicBoolean cancelled = new AtomicBoolean( false );
+
+        int workerCount = Math.max( 1, ((TestContainer) firstRow[ 0 ]).getDeviceCount() );
+        ThreadFactory threadFactory = createThreadFactory();
+
+        List<Thread> workerList = new ArrayList<Thread>( workerCount );
+        for ( int i = 0; i < workerCount; i++ )
+        {
+            Thread worker = threadFactory.newThread( new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        while ( !cancelled.get() && !Thread.currentThread().isInterrupted() )
+                        {
+                            Object[] testArgs = null;
+                            if ( firstTaken.compareAndSet( false, true ) )
+                                testArgs = firstRow;
+                            else
+                            {
+                                synchronized ( testRows )
+                                {
+                                    if ( testRows.hasNext() )
+                                        testArgs = testRows.next();
+                                }
+                            }
+
+                            if ( testArgs == null )
+                                break;
+
+                            invoke( testInstance, testMethod, testArgs );
+                        }
+                    }
+                    catch ( Throwable e )
+                    {
+                        if ( !cancelled.getAndSet( true ) )
+                            log.fatal( Thread.currentThread().getName() + ": Cancelling the run of " + testMethod.getName() + " after an unexpected failure", e );
+                    }
+                }
+            } );
+
+            worker.setName( "xF-Runner " + i );
+            workerList.add( worker );
+        }
+
+        log.warn( "Running " + testClass.getSimpleName() + "." + testMethod.getName() + " using " + workerCount + " workers" );
+        for ( Thread worker : workerList )
+            worker.start();
+
+        try
+        {
+            long endTime = runTimeout > 0 ? System.currentTimeMillis() + runTimeout : Long.MAX_VALUE;
+            for ( Thread worker : workerList )
+            {
+                while ( worker.isAlive() )
+                {
+                    long waitTime = endTime - System.currentTimeMillis();
+                    if ( waitTime <= 0 )
+                    {
+                        log.error( "The run of " + testMethod.getName() + " did not complete in " + runTimeout + "ms" );
+                        cancelled.set( true );
+                        break;
+                    }
+
+                    worker.join( Math.min( waitTime, CANCEL_WAIT ) );
+                    if ( cancelled.get() )
+                        break;
+                }
+
+                if ( cancelled.get() )
+                    break;
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            cancelled.set( true );
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            if ( cancelled.get() )
+                cancel( workerList );
+        }
+
+        return !cancelled.get();
+    }
+
+    /**
+     * Interrupts the running workers and waits a bounded time for them to release their devices
+     *
+     * @param workerList the workers for the scope
+     */
+    private void cancel( List<Thread> workerList )
+    {
+        for ( Thread worker : workerList )
+            worker.interrupt();
+
+        long endTime = System.currentTimeMillis() + CANCEL_WAIT;
+        for ( Thread worker : workerList )
+        {
+            try
+            {
+                long waitTime = endTime - System.currentTimeMillis();
+                if ( waitTime > 0 )
+                    worker.join( waitTime );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            if ( worker.isAlive() )
+                log.error( worker.getName() + " did not stop after the run was cancelled" );
+        }
+    }
+
+    /**
+     * Runs a single invocation in the same way that TestNG would - before method, test method and after method.  An invocation that could not acquire a test
+     * package is recorded as a failure and the worker moves on to the next one
+     */
+    private void invoke( AbstractSeleniumTest testInstance, Method testMethod, Object[] testArgs )
+    {
+        testInstance.startMethod( testMethod, testArgs );
+        if ( testInstance.testPackageContainer.get() == null )
+        {
+            log.error( Thread.currentThread().getName() + ": A test package could not be acquired for " + testMethod.getName() );
+            failedCount.incrementAndGet();
+            return;
+        }
+
+        boolean success = false;
+        Throwable testFailure = null;
+        try
+        {
+            testMethod.invoke( testInstance, testArgs );
+            success = true;
+        }
+        catch ( InvocationTargetException e )
+        {
+            testFailure = e.getCause();
+        }
+        catch ( IllegalAccessException e )
+        {
+            testFailure = e;
+        }
+        finally
+        {
+            if ( success )
+                passedCount.incrementAndGet();
+            else
+                failedCount.incrementAndGet();
+
+            testInstance.completeMethod( testMethod, testArgs, success, testFailure );
+        }
+    }
+
+    /**
+     * Creates the factory for the worker threads.  Virtual threads are used when the JVM supports them (Java 21 and later) - they are looked up reflectively so
+     * that the framework still runs on older JVMs
+     *
+     * @return the thread factory
+     */
+    private ThreadFactory createThreadFactory()
+    {
+        try
+        {
+            Class<?> builderClass = Class.forName( "java.lang.Thread$Builder" );
+            Object threadBuilder = Thread.class.getMethod( "ofVirtual" ).invoke( null );
+            ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod( "factory" ).invoke( threadBuilder );
+            if ( log.isDebugEnabled() )
+                log.debug( "Using virtual threads for test workers" );
+            return threadFactory;
+        }
+        catch ( Exception e )
+        {
+            if ( log.isDebugEnabled() )
+                log.debug( "Virtual threads are not available - using platform threads with a stack size of " + stackSize );
+        }
+
+        return new ThreadFactory()
+        {
+            public Thread newThread( Runnable r )
+            {
+                Thread thread = new Thread( null, r, "xF-Runner", stackSize );
+                thread.setDaemon( true );
+                return thread;
+            }
+        };
+    }
+}
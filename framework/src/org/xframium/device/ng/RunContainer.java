@@ -1,15 +1,19 @@
 package org.xframium.device.ng;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+/**
+ * Tracks the state of each run key.  State transitions are applied with compare-and-set operations on a concurrent map so no lock is held while the data provider
+ * threads register their runs
+ */
 public class RunContainer
 {
     private Log log = LogFactory.getLog( RunContainer.class );
     private Log testFlow = LogFactory.getLog( "testFlow" );
-    
+
     public enum RunStatus
     {
         RUNNING,
@@ -18,65 +22,59 @@ public class RunContainer
         CHECK,
         RESET;
     }
-    
-    private Map<String,RunStatus> runMap = new HashMap<String,RunStatus>( 20 );
-    
+
+    private ConcurrentMap<String,RunStatus> runMap = new ConcurrentHashMap<String,RunStatus>( 20 );
+
     public void clear()
     {
         runMap.clear();
     }
-    
-    public synchronized boolean addRun( String runKey, RunStatus runStatus )
+
+    public RunStatus getStatus( String runKey )
     {
-        if (runStatus.equals( RunStatus.RESET ) )
-        {
-            testFlow.warn( Thread.currentThread().getName() + ":Issued RESET on " + runKey );
-            runMap.remove( runKey );
-            return true;
-        }
-        
-        RunStatus currentStatus = runMap.get( runKey );
-        
-        if ( runStatus.equals( RunStatus.CHECK ) )
-        {
-            testFlow.warn( Thread.currentThread().getName() + ":CHECKING on " + runKey + " - " + (currentStatus == null) );
-            return currentStatus == null;
-        }
-        
-        if ( currentStatus == null )
-        {
-            testFlow.warn( Thread.currentThread().getName() + ":ADDING " + runKey  );
-            runMap.put( runKey, runStatus );
-            return true;
-        }
-        
+        return runMap.get( runKey );
+    }
+
+    public int size()
+    {
+        return runMap.size();
+    }
+
+    public boolean addRun( String runKey, RunStatus runStatus )
+    {
+        boolean success = false;
+
         switch( runStatus )
         {
+            case RESET:
+                runMap.remove( runKey );
+                success = true;
+                break;
+
+            case CHECK:
+                success = !runMap.containsKey( runKey );
+                break;
+
+            case RUNNING:
+                success = runMap.putIfAbsent( runKey, runStatus ) == null;
+                break;
+
             case COMPLETED:
-                if ( currentStatus.equals( RunStatus.RUNNING ) )
-                {
-                    testFlow.warn(runStatus + " on " + runKey );
-                    runMap.put( runKey, runStatus);
-                    return true;
-                }
-                else
-                    return false;
             case FAILED:
-                if ( currentStatus.equals( RunStatus.RUNNING ) )
-                {
-                    testFlow.warn(runStatus + " on " + runKey );
-                    runMap.put( runKey, runStatus);
-                    return true;
-                }
-                else
-                    return false;
-            case RUNNING:
-                return false;
-                
+                //
+                // A completion replaces a running entry or is recorded when there is no entry - any other completed or failed state is kept
+                //
+                success = runMap.replace( runKey, RunStatus.RUNNING, runStatus ) || runMap.putIfAbsent( runKey, runStatus ) == null;
+                break;
+
             default:
-                return false;
+                success = false;
         }
-        
+
+        if ( testFlow.isInfoEnabled() )
+            testFlow.info( Thread.currentThread().getName() + ": " + runStatus + " on " + runKey + " - " + (success ? "ACCEPTED" : "REJECTED") );
+
+        return success;
     }
-    
+
 }
@@ -1,53 +1,119 @@
 package org.xframium.device.ng;
 
 import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.xframium.device.ConnectedDevice;
+import org.xframium.device.DeviceCircuitBreaker;
 import org.xframium.device.DeviceManager;
 import org.xframium.device.cloud.CloudDescriptor;
-import org.xframium.device.cloud.CloudRegistry;
 import org.xframium.device.cloud.action.CloudActionProvider;
 import org.xframium.device.factory.DeviceWebDriver;
 import org.xframium.device.ng.RunContainer.RunStatus;
+import org.xframium.history.TestDurations;
 import org.xframium.spi.Device;
 
-
+/**
+ * Hands out test/device pairings to the TestNG data provider threads.  Pending tests are indexed by the key of the device they are eligible to run on so that a
+ * free device can be matched to its next test without rotating through the whole test list.  Tests are pulled from the test plan as devices become free so
+ * only the running and returned instances are held in memory.  Each device key runs its tests longest first using the durations of previous runs so that the
+ * long tests do not end up trailing the run.  Threads that cannot be matched wait on a condition that is signalled whenever a device or a test is returned
+ */
 public class TestContainer
 {
+    private static final long WAIT_REPORT_INTERVAL = 30000;
+
     private Log log = LogFactory.getLog( TestContainer.class );
     private Log testFlow = LogFactory.getLog( "testFlow" );
     private RunContainer runContainer = new RunContainer();
-    private LinkedBlockingDeque<TestName> testList;
-    private List<TestName> checkedOut = new ArrayList<TestName>(64);
-    private List<TestName> completedList = new ArrayList<TestName>( 64 );
-    
-    private List<Device> checkedOutDevice = new ArrayList<Device>(64);
-    private LinkedBlockingDeque<Device> deviceList;
+
+    private TestPlan testPlan;
+
+    /** Pending tests indexed by the device key that they will run against */
+    private Map<String, PendingTests> pendingTests = new LinkedHashMap<String, PendingTests>( 20 );
+    private volatile long pendingCount = 0;
+
+    /** The device key that each checked out test instance was assigned to */
+    private Map<TestName, String> testAssignment = new ConcurrentHashMap<TestName, String>( 64 );
+
+    /** The time that each checked out test instance was handed to a device */
+    private Map<TestName, Long> startTimes = new ConcurrentHashMap<TestName, Long>( 64 );
+
+    private Set<TestName> checkedOut = Collections.newSetFromMap( new ConcurrentHashMap<TestName, Boolean>( 64 ) );
+    private AtomicLong completedCount = new AtomicLong( 0 );
+
+    private Set<Device> checkedOutDevice = Collections.newSetFromMap( new ConcurrentHashMap<Device, Boolean>( 64 ) );
+    private LinkedList<Device> deviceList = new LinkedList<Device>();
     private boolean emptyTests = false;
-    
-    private List<Device> errorOutDevice = new ArrayList<Device>(64); 
-    
-    public TestContainer( TestName[] testNames, Device[] devices )
+
+    private Queue<Device> errorOutDevice = new ConcurrentLinkedQueue<Device>();
+
+    private ReentrantLock schedulerLock = new ReentrantLock();
+    private Condition workAvailable = schedulerLock.newCondition();
+
+    public TestContainer( TestPlan testPlan, Device[] devices )
     {
-        emptyTests = testNames.length == 0;
-        testList = new LinkedBlockingDeque<TestName>( testNames.length );
-        testList.addAll( (List<TestName>) Arrays.asList( testNames ) );
-        
-        deviceList = new LinkedBlockingDeque<Device>( devices.length );
-        deviceList.addAll( (List<Device> ) Arrays.asList( devices ) );
-        
-        testFlow.warn( Thread.currentThread().getName() + ": Executing " + testList.size() + " tests across " + deviceList.size() + " devices" );
+        this.testPlan = testPlan;
+        emptyTests = testPlan.size() == 0;
+
+        Map<String, Integer> deviceKeys = new LinkedHashMap<String, Integer>( 20 );
+        for ( Device d : devices )
+        {
+            deviceList.add( d );
+            Integer slotCount = deviceKeys.get( d.getKey() );
+            deviceKeys.put( d.getKey(), slotCount != null ? slotCount + 1 : 1 );
+        }
+
+        //
+        // The plan contains one copy of each test instance per device - copy n is run against the nth device key so the copies are spread across the keys
+        //
+        TestDurations testDurations = TestDurations.instance();
+        long plannedMakespan = 0;
+        int keyIndex = 0;
+        for ( Map.Entry<String, Integer> deviceKey : deviceKeys.entrySet() )
+        {
+            long[] estimates = testPlan.getEstimates( testDurations, deviceKey.getKey() );
+
+            //
+            // When longest first is disabled the tests are handed out in plan order
+            //
+            int[] entryOrder = null;
+            if ( testDurations.isLongestFirst() && !testPlan.isEmpty() )
+                entryOrder = testPlan.getLongestFirst( estimates );
+
+            PendingTests keyTests = new PendingTests( keyIndex++, deviceKeys.size(), entryOrder );
+            pendingTests.put( deviceKey.getKey(), keyTests );
+            plannedMakespan = Math.max( plannedMakespan, testPlan.getMakespan( entryOrder != null ? entryOrder : testPlan.getLongestFirst( new long[ estimates.length ] ), estimates, keyTests.copyCount, deviceKey.getValue() ) );
+        }
+
+        if ( !deviceKeys.isEmpty() )
+            pendingCount = testPlan.size();
+
+        testDurations.startRun( plannedMakespan );
+        testFlow.warn( Thread.currentThread().getName() + ": Executing " + pendingCount + " tests across " + deviceList.size() + " devices" + ( plannedMakespan > 0 ? " - Planned makespan: " + ( plannedMakespan / 1000 ) + "s" : "" ) );
     }
-    
+
     public String getRunKey( Device currentDevice, Method currentMethod, String testContext, String personaName )
     {
-        String runKey = currentDevice.getKey() + " - " + (testContext != null ? (testContext) : "");
+        return getRunKey( currentDevice.getKey(), testContext, personaName );
+    }
+
+    private String getRunKey( String deviceKey, String testContext, String personaName )
+    {
+        String runKey = deviceKey + " - " + (testContext != null ? (testContext) : "");
 
         if ( personaName != null && !personaName.isEmpty() && !runKey.endsWith( personaName ) )
         {
@@ -56,7 +122,7 @@ public class TestContainer
 
         return runKey;
     }
-    
+
     public CloudActionProvider getCloudActionProvider( CloudDescriptor currentCloud )
     {
         try
@@ -70,225 +136,364 @@ public class TestContainer
             return null;
         }
     }
-    
+
     public TestPackage getTestPackage( Method currentMethod, boolean attachDevice )
+    {
+        return acquireTestPackage( currentMethod, attachDevice, false );
+    }
+
+    public TestPackage getNativeTestPackage( Method currentMethod, boolean attachDevice )
+    {
+        return acquireTestPackage( currentMethod, attachDevice, true );
+    }
+
+    private TestPackage acquireTestPackage( Method currentMethod, boolean attachDevice, boolean nativeTest )
     {
         Thread.currentThread().setName( "xF-Acquiring Test Package..." );
-        TestName testName = null;
-        
+        long startTime = System.currentTimeMillis();
+
         while( true )
         {
-            Device useDevice = getDevice();
-            
-            for ( int i=0; i<testList.size(); i++ )
+            Match match = awaitMatch( currentMethod );
+            long matchTime = System.currentTimeMillis() - startTime;
+            if ( testFlow.isDebugEnabled() )
+                testFlow.debug( Thread.currentThread().getName() + ": ACQUIRED " + match.device.getEnvironment() + ": Running Devices: " + checkedOutDevice.size() + " - Test Remaining: " + pendingCount );
+            Device useDevice = match.device;
+            TestName testName = nativeTest ? new TestName( currentMethod.getDeclaringClass().getSimpleName() + "." + currentMethod.getName() ) : match.testName;
+            String runKey = getRunKey( useDevice.getKey(), nativeTest ? currentMethod.getName() : testName.getTestName(), testName.getPersonaName() );
+
+            if ( runContainer.addRun( runKey, RunStatus.RUNNING ) )
             {
-                testName = getTest( currentMethod );
-                String runKey = getRunKey( useDevice, currentMethod, testName.getTestName(), testName.getPersonaName() );
-                
-                if ( runContainer.addRun( runKey, RunStatus.RUNNING ) )
+                Thread.currentThread().setName( "xF-" + testName.getRawName() + "-->" + useDevice.getEnvironment() );
+                TestPackage testPackage = new TestPackage( testName, useDevice, runKey );
+                ConnectedDevice cD = DeviceManager.instance().getDevice( testPackage, attachDevice );
+                if ( cD != null )
                 {
-                    Thread.currentThread().setName( "xF-" + testName.getRawName() + "-->" + useDevice.getEnvironment() );
-                    TestPackage testPackage = new TestPackage( testName, useDevice, runKey );
-                    ConnectedDevice cD = DeviceManager.instance().getDevice( testPackage, attachDevice );
-                    if ( cD != null )
+                    testPackage.setConnectedDevice( cD );
+
+                    //
+                    // The duration of the test is measured from here so that the time taken to connect to the device is not included
+                    //
+                    if ( !emptyTests )
+                        startTimes.put( match.testName, System.currentTimeMillis() );
+                    testFlow.warn( "Test Started: " + runKey + " - " + cD + " - " + testPackage + " - " + testName + " - matched in " + matchTime + "ms, connected in " + (System.currentTimeMillis() - startTime) + "ms" );
+                    return testPackage;
+                }
+                else
+                {
+                    runContainer.addRun( runKey, RunStatus.RESET );
+                    if ( DeviceManager.instance().isDeviceInvalid( useDevice ) )
                     {
-                        testPackage.setConnectedDevice( cD );
-                        testFlow.warn( "Test Started: " + runKey + " - " + cD + " - " + testPackage + " - " + testName );
-                        return testPackage;
-                    }
-                    else
-                    {
-                        runContainer.addRun( runKey, RunStatus.RESET );
-                        if ( DeviceManager.instance().isDeviceInvalid( useDevice ) )
-                        {
-                            testFlow.warn(  "Device Invalidated: " + useDevice.getEnvironment() );
-                            TestPackage tP = new TestPackage( testName, useDevice, runKey );
-                            DeviceWebDriver webDriver = new DeviceWebDriver( null, false, useDevice, null );
-                            tP.setConnectedDevice( new ConnectedDevice( webDriver, useDevice, null ) );
-                            return tP;
-                        }
+                        testFlow.warn(  "Device Invalidated: " + useDevice.getEnvironment() );
+                        TestPackage tP = new TestPackage( testName, useDevice, runKey );
+                        DeviceWebDriver webDriver = new DeviceWebDriver( null, false, useDevice, null );
+                        tP.setConnectedDevice( new ConnectedDevice( webDriver, useDevice, null ) );
+                        return tP;
                     }
                 }
-                
-                returnTest( testName );
+
+                returnTest( match.testName );
+            }
+            else
+            {
+                //
+                // This run key has already been executed on this device - it will never be accepted so it is dropped rather than being rotated forever
+                //
+                testFlow.warn( Thread.currentThread().getName() + ": Discarding duplicate run " + runKey );
+                discardTest( match.testName );
             }
-            
-         
+
             returnDevice( useDevice );
-            
-            
-            try { Thread.sleep( 1500 ); } catch( Exception e ) {}
         }
     }
-    
-    public TestPackage getNativeTestPackage( Method currentMethod, boolean attachDevice )
+
+    /**
+     * Blocks until an idle device with a pending test is available and removes both from the pools
+     *
+     * @param currentMethod the current method
+     * @return the matched device and test
+     */
+    private Match awaitMatch( Method currentMethod )
     {
-        Thread.currentThread().setName( "xF-Acquiring Test Package..." );
-        TestName testName = null;
-        
-        while( true )
+        schedulerLock.lock();
+        try
         {
-            Device useDevice = getDevice();
-            
-            CloudDescriptor currentCloud = CloudRegistry.instance().getCloud();
-            if ( useDevice.getCloud() != null && !useDevice.getCloud().isEmpty() )
-                currentCloud = CloudRegistry.instance().getCloud( useDevice.getCloud() );
-
-            
-            for ( int i=0; i<testList.size(); i++ )
+            long waitStart = System.currentTimeMillis();
+            while ( true )
             {
-                testName = new TestName( currentMethod.getDeclaringClass().getSimpleName() + "." + currentMethod.getName() );
-                String runKey = getRunKey( useDevice, currentMethod, currentMethod.getName(), testName.getPersonaName() );
-                
-                if ( runContainer.addRun( runKey, RunStatus.RUNNING ) )
+                long waitTime = WAIT_REPORT_INTERVAL;
+                Iterator<Device> deviceIterator = deviceList.iterator();
+                while ( deviceIterator.hasNext() )
                 {
-                    Thread.currentThread().setName( "xF-" + testName.getRawName() + "-->" + useDevice.getEnvironment() );
-                    TestPackage testPackage = new TestPackage( testName, useDevice, runKey );
-                    ConnectedDevice cD = DeviceManager.instance().getDevice( testPackage, attachDevice );
-                    if ( cD != null )
-                    {
-                        testPackage.setConnectedDevice( cD );
-                        testFlow.warn( "Test Started: " + runKey + " - " + cD + " - " + testPackage + " - " + testName );
-                        return testPackage;
-                    }
-                    else
+                    Device device = deviceIterator.next();
+                    PendingTests deviceTests = pendingTests.get( device.getKey() );
+
+                    if ( emptyTests || !deviceTests.isEmpty() )
                     {
-                        runContainer.addRun( runKey, RunStatus.RESET );
-                        if ( DeviceManager.instance().isDeviceInvalid( useDevice ) )
+                        //
+                        // Devices with an open circuit are left idle until their next retry is due
+                        //
+                        DeviceCircuitBreaker circuitBreaker = DeviceManager.instance().getCircuitBreaker( device );
+                        if ( !circuitBreaker.isDispatchable() )
                         {
-                            testFlow.warn(  "Device Invalidated: " + useDevice.getEnvironment() );
-                            TestPackage tP = new TestPackage( testName, useDevice, runKey );
-                            DeviceWebDriver webDriver = new DeviceWebDriver( null, false, useDevice, null );
-                            tP.setConnectedDevice( new ConnectedDevice( webDriver, useDevice, null ) );
-                            return tP;
+                            long retryDelay = circuitBreaker.getRetryDelay();
+                            if ( retryDelay > 0 )
+                                waitTime = Math.min( waitTime, retryDelay );
+                            continue;
                         }
+
+                        deviceIterator.remove();
+                        checkedOutDevice.add( device );
+
+                        TestName testName = null;
+                        if ( emptyTests )
+                            testName = new TestName( currentMethod.getDeclaringClass().getSimpleName() + "." + currentMethod.getName() );
+                        else
+                        {
+                            testName = deviceTests.removeFirst();
+                            pendingCount--;
+                            checkedOut.add( testName );
+                            testAssignment.put( testName, device.getKey() );
+                        }
+
+                        return new Match( device, testName );
                     }
                 }
-                
-                returnTest( testName );
+
+                try
+                {
+                    if ( !workAvailable.await( waitTime, TimeUnit.MILLISECONDS ) && waitTime == WAIT_REPORT_INTERVAL )
+                        testFlow.warn( Thread.currentThread().getName() + ": Waiting " + (System.currentTimeMillis() - waitStart) + "ms for a test package - Available Devices: " + deviceList.size() + " - Running Devices: " + checkedOutDevice.size() + " - Test Remaining: " + pendingCount );
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException( "Interrupted while waiting for a test package", e );
+                }
             }
-            
-            returnDevice( useDevice );
-            
-            
-            try { Thread.sleep( 1500 ); } catch( Exception e ) {}
+        }
+        finally
+        {
+            schedulerLock.unlock();
         }
     }
-    
+
     public int getDeviceCount()
     {
-        return deviceList.size();
-    }
-    
-    public Device getDevice()
-    {
-        Device device = null;
+        schedulerLock.lock();
         try
         {
-            while ( device == null && ( deviceList.size() > 0 || checkedOut.size() > 0 ) )
-            {
-                device = deviceList.poll( 5000, TimeUnit.MILLISECONDS );
-                if ( device != null )
-                    checkedOutDevice.add( device );
-            }
+            return deviceList.size();
         }
-        catch( Exception e )
+        finally
         {
-            e.printStackTrace();
+            schedulerLock.unlock();
         }
-
-        testFlow.debug( Thread.currentThread().getName() + ": ACQUIRED: Available Devices: " + deviceList.size() + " - Running Devices: " + checkedOutDevice.size() + " - Test Remaining: " + testList.size() );
-        
-        return device;
     }
-    
+
     public void returnDevice( Device currentDevice )
     {
+        boolean duplicateDevice = false;
+        int availableDevices = 0;
+
+        schedulerLock.lock();
         try
         {
-            StringBuilder stringBuilder = new StringBuilder();
-            stringBuilder.append( "Returning Device " ).append( currentDevice.getEnvironment() ).append( "\r\nCurrent Stored Devices:\r\n" );
-            
-            for ( Device d : deviceList )
-                stringBuilder.append(  "\t" ).append( d.getEnvironment() ).append(  "\r\n" );
-            
-            testFlow.debug( stringBuilder.toString() );
-
-            if ( !deviceList.offerLast( currentDevice, 25, TimeUnit.SECONDS ) )
+            duplicateDevice = deviceList.contains( currentDevice );
+            if ( !duplicateDevice )
             {
-                stringBuilder = new StringBuilder();
-                stringBuilder.append( "Trying to add device to full list " ).append( currentDevice.getEnvironment() ).append( "\r\nStored Devices:\r\n" );
-                
-                for ( Device d : deviceList )
-                    stringBuilder.append(  "\t" ).append( d.getEnvironment() ).append(  "\r\n" );
-                
-                log.error(  stringBuilder.toString() );
+                deviceList.addLast( currentDevice );
+                workAvailable.signal();
             }
-            checkedOutDevice.remove( currentDevice );
-            testFlow.debug( Thread.currentThread().getName() + ": RETURNED: Available Devices: " + deviceList.size() + " - Running Devices: " + checkedOutDevice.size() + " - Test Remaining: " + testList.size() );
+            availableDevices = deviceList.size();
         }
-        catch ( InterruptedException e )
+        finally
         {
-            e.printStackTrace();
+            schedulerLock.unlock();
         }
+
+        checkedOutDevice.remove( currentDevice );
+
+        if ( duplicateDevice )
+            log.error( "Trying to return a device that is already available " + currentDevice.getEnvironment() );
+
+        if ( testFlow.isDebugEnabled() )
+            testFlow.debug( Thread.currentThread().getName() + ": RETURNED " + currentDevice.getEnvironment() + ": Available Devices: " + availableDevices + " - Running Devices: " + checkedOutDevice.size() + " - Test Remaining: " + pendingCount );
     }
-    
+
     public void returnTest( TestName currentTest )
     {
+        if ( emptyTests || currentTest == null )
+            return;
+
+        checkedOut.remove( currentTest );
+        startTimes.remove( currentTest );
+
+        schedulerLock.lock();
         try
         {
-            if ( emptyTests )
-                return;
-            
-            if ( currentTest != null )
-            {
-                checkedOut.remove( currentTest );
-                testList.putLast( currentTest );
-            }
+            String deviceKey = testAssignment.get( currentTest );
+            if ( deviceKey == null )
+                deviceKey = pendingTests.keySet().iterator().next();
+            pendingTests.get( deviceKey ).addLast( currentTest );
+            testAssignment.put( currentTest, deviceKey );
+            pendingCount++;
+            workAvailable.signal();
         }
-        catch( Exception e )
+        finally
         {
-            e.printStackTrace();
+            schedulerLock.unlock();
         }
     }
-    
-    public TestName getTest( Method currentMethod )
+
+    private void discardTest( TestName currentTest )
     {
-        TestName testName = null;
-        
-        try
-        {    
-            if ( emptyTests )
-                testName = new TestName( currentMethod.getDeclaringClass().getSimpleName() + "." + currentMethod.getName() );
-            else
-            {
-                testName = testList.take();
-                if ( testName != null )
-                    checkedOut.add( testName );
-            }
-        }
-        catch( Exception e )
-        {
-            e.printStackTrace();
-        }
-        
-        return testName;
+        if ( emptyTests || currentTest == null )
+            return;
+
+        checkedOut.remove( currentTest );
+        testAssignment.remove( currentTest );
+        startTimes.remove( currentTest );
     }
-    
+
     public void destroyDevice( Device currentDevice )
     {
         checkedOutDevice.remove( currentDevice );
         errorOutDevice.add( currentDevice );
         testFlow.error( Thread.currentThread().getName() + ": ************** DESTROYING DEVICE due to errors :" + currentDevice );
     }
-    
+
     public void completeTest( TestName testName, String runKey, RunStatus runStatus )
     {
         testFlow.warn( Thread.currentThread().getName() + ": Test Completed: " + runKey + " - " + runStatus );
         runContainer.addRun( runKey, runStatus );
         if ( emptyTests )
             return;
+
         checkedOut.remove( testName );
-        completedList.add( testName );
+        String deviceKey = testAssignment.remove( testName );
+        Long startTime = startTimes.remove( testName );
+        if ( deviceKey != null && startTime != null && testName.getRawName() != null )
+            TestDurations.instance().recordDuration( testName.getRawName(), deviceKey, System.currentTimeMillis() - startTime );
+        completedCount.incrementAndGet();
+    }
+
+    public long getCompletedCount()
+    {
+        return completedCount.get();
+    }
+
+    /**
+     * The tests that are waiting for a device key.  When an entry order is given each test is taken in that order and every instance of it is run before the next
+     * test is started, otherwise the plan positions that belong to this key are taken in order.  Any tests that were returned are run once the plan is exhausted
+     */
+    private class PendingTests
+    {
+        private final int keyIndex;
+        private final int keyCount;
+        private final int[] entryOrder;
+        private final long copyCount;
+        private long nextIndex;
+        private int orderPosition = 0;
+        private long instanceIndex = 0;
+        private int copyIndex;
+        private LinkedList<TestName> returnedTests = new LinkedList<TestName>();
+
+        /**
+         * @param keyIndex the position of the device key
+         * @param keyCount the number of device keys
+         * @param entryOrder the order to run the tests in or null to run them in plan order
+         */
+        public PendingTests( int keyIndex, int keyCount, int[] entryOrder )
+        {
+            this.keyIndex = keyIndex;
+            this.keyCount = keyCount;
+            this.entryOrder = entryOrder;
+            copyCount = ( testPlan.getCopies() - keyIndex + keyCount - 1 ) / keyCount;
+            copyIndex = keyIndex;
+            if ( entryOrder == null )
+                nextIndex = seek( 0 );
+            else
+                skipEmpty();
+        }
+
+        /**
+         * @param index a position within the plan
+         * @return the first position at or after index whose device copy is assigned to this key
+         */
+        private long seek( long index )
+        {
+            int copies = testPlan.getCopies();
+            int copy = testPlan.getCopy( index );
+            long nextCopy = copy + ( ( keyIndex - copy % keyCount ) + keyCount ) % keyCount;
+            if ( nextCopy >= copies )
+                return index - copy + copies + keyIndex;
+            else
+                return index - copy + nextCopy;
+        }
+
+        /**
+         * Moves past any tests that have no instances
+         */
+        private void skipEmpty()
+        {
+            while ( orderPosition < entryOrder.length && instanceIndex >= testPlan.getInstanceCount( entryOrder[ orderPosition ] ) )
+            {
+                orderPosition++;
+                instanceIndex = 0;
+            }
+        }
+
+        private boolean hasPlanned()
+        {
+            if ( entryOrder == null )
+                return nextIndex < testPlan.size();
+            return orderPosition < entryOrder.length;
+        }
+
+        public boolean isEmpty()
+        {
+            return !hasPlanned() && returnedTests.isEmpty();
+        }
+
+        public TestName removeFirst()
+        {
+            if ( !hasPlanned() )
+                return returnedTests.removeFirst();
+
+            if ( entryOrder == null )
+            {
+                TestName testName = testPlan.getTest( nextIndex );
+                nextIndex = seek( nextIndex + 1 );
+                return testName;
+            }
+
+            TestName testName = testPlan.getTest( entryOrder[ orderPosition ], instanceIndex );
+            copyIndex += keyCount;
+            if ( copyIndex >= testPlan.getCopies() )
+            {
+                copyIndex = keyIndex;
+                instanceIndex++;
+                skipEmpty();
+            }
+            return testName;
+        }
+
+        public void addLast( TestName testName )
+        {
+            returnedTests.addLast( testName );
+        }
+    }
+
+    private static class Match
+    {
+        private final Device device;
+        private final TestName testName;
+
+        public Match( Device device, TestName testName )
+        {
+            this.device = device;
+            this.testName = testName;
+        }
     }
 }
@@ -0,0 +1,349 @@
+/*******************************************************************************
+ * xFramium
+ *
+ * Copyright 2016 by Moreland Labs, Ltd. (http://www.morelandlabs.com)
+ *
+ * Some open source application is free software: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Some open source application is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with xFramium.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @license GPL-3.0+ <http://spdx.org/licenses/GPL-3.0+>
+ *******************************************************************************/
+package org.xframium.device.ng;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import org.xframium.history.TestDurations;
+import org.xframium.page.data.PageData;
+
+/**
+ * The test instances for a run described as shared tables rather than a list.  Each instance is identified by its position in the product of personas, tests
+ * (content keys, iterations and data records) and device copies and is only created when it is requested so that building the plan is proportional to the
+ * number of tests rather than the number of executions.  The instances of a single test can also be requested directly so that a scheduler can order the tests
+ * without expanding them
+ */
+public class TestPlan
+{
+    private final List<PlanEntry> entryList = new ArrayList<PlanEntry>( 10 );
+    private final String[] personas;
+    private final int copies;
+    private long testSize = 0;
+
+    /**
+     * @param personas the personas that each test is run as or null to run without a persona
+     * @param copies the number of copies of each test instance - one per configured device
+     */
+    public TestPlan( String[] personas, int copies )
+    {
+        this.personas = personas != null && personas.length > 0 ? personas : new String[] { null };
+        this.copies = copies;
+    }
+
+    /**
+     * Adds a test to the plan
+     *
+     * @param testName the name of the test
+     * @param contentKeys the content keys to run the test against or null
+     * @param count the number of iterations
+     * @param records the data records that drive the test or null if it is not data driven
+     * @return the number of test instances added for each persona
+     */
+    public long addTest( String testName, String[] contentKeys, int count, PageData[] records )
+    {
+        PlanEntry planEntry = new PlanEntry( testName, contentKeys != null && contentKeys.length > 0 ? contentKeys : null, count > 1 ? count : 0, records, testSize );
+        entryList.add( planEntry );
+        testSize += planEntry.size;
+        return planEntry.size;
+    }
+
+    public int getEntryCount()
+    {
+        return entryList.size();
+    }
+
+    /**
+     * @param entryIndex the position of the test in the order it was added
+     * @return the name of the test
+     */
+    public String getEntryName( int entryIndex )
+    {
+        return entryList.get( entryIndex ).testName;
+    }
+
+    /**
+     * @param entryIndex the position of the test in the order it was added
+     * @return the number of instances of the test across all personas before they are copied for each device
+     */
+    public long getInstanceCount( int entryIndex )
+    {
+        return entryList.get( entryIndex ).size * personas.length;
+    }
+
+    /**
+     * @return the number of test instances before they are copied for each device
+     */
+    public long getTestCount()
+    {
+        return testSize * personas.length;
+    }
+
+    /**
+     * @return true if no test instances were added
+     */
+    public boolean isEmpty()
+    {
+        return testSize == 0;
+    }
+
+    public int getCopies()
+    {
+        return copies;
+    }
+
+    /**
+     * @return the total number of executions.  A plan without tests still has a single anonymous instance for each device
+     */
+    public long size()
+    {
+        return (testSize == 0 ? 1 : getTestCount()) * copies;
+    }
+
+    /**
+     * @param index a position within the plan
+     * @return the device copy that the instance at this position belongs to
+     */
+    public int getCopy( long index )
+    {
+        return (int) ( index % copies );
+    }
+
+    /**
+     * Creates the test instance at the specified position
+     *
+     * @param index a position within the plan
+     * @return a new test name for the instance
+     */
+    public TestName getTest( long index )
+    {
+        if ( index < 0 || index >= size() )
+            throw new IndexOutOfBoundsException( index + " is outside of a plan containing " + size() + " executions" );
+
+        if ( testSize == 0 )
+            return new TestName();
+
+        long testIndex = index / copies;
+        long entryIndex = testIndex % testSize;
+
+        PlanEntry planEntry = findEntry( entryIndex );
+        return getTest( planEntry, ( testIndex / testSize ) * planEntry.size + entryIndex - planEntry.offset );
+    }
+
+    /**
+     * Creates an instance of a test
+     *
+     * @param entryIndex the position of the test in the order it was added
+     * @param instanceIndex the instance of the test - less than getInstanceCount
+     * @return a new test name for the instance
+     */
+    public TestName getTest( int entryIndex, long instanceIndex )
+    {
+        PlanEntry planEntry = entryList.get( entryIndex );
+        if ( instanceIndex < 0 || instanceIndex >= planEntry.size * personas.length )
+            throw new IndexOutOfBoundsException( instanceIndex + " is outside of the " + ( planEntry.size * personas.length ) + " instances of " + planEntry.testName );
+
+        return getTest( planEntry, instanceIndex );
+    }
+
+    private TestName getTest( PlanEntry planEntry, long instanceIndex )
+    {
+        String personaName = personas[ (int) ( instanceIndex / planEntry.size ) ];
+        long entryOffset = instanceIndex % planEntry.size;
+
+        PageData pageData = null;
+        if ( planEntry.records != null )
+        {
+            pageData = planEntry.records[ (int) ( entryOffset % planEntry.records.length ) ];
+            entryOffset = entryOffset / planEntry.records.length;
+        }
+
+        int iteration = 0;
+        if ( planEntry.count > 1 )
+        {
+            iteration = (int) ( entryOffset % planEntry.count ) + ( planEntry.contentKeys != null ? 1 : 0 );
+            entryOffset = entryOffset / planEntry.count;
+        }
+
+        TestName testName = new TestName( planEntry.testName );
+        if ( iteration > 0 )
+            testName.setIteration( iteration );
+
+        if ( personaName != null )
+        {
+            //
+            // Persona instances are named from the test, iteration and data record only
+            //
+            testName.setPersonaName( personaName );
+        }
+        else if ( planEntry.contentKeys != null )
+            testName.setTestContext( planEntry.contentKeys[ (int) entryOffset ] );
+
+        if ( pageData != null )
+            testName.setDataDriven( pageData );
+
+        return testName;
+    }
+
+    /**
+     * Estimates the duration of a single instance of each test on a device key.  Tests without a history are expected to take the average of the tests that have
+     * one
+     *
+     * @param testDurations the durations of previous runs
+     * @param deviceKey the device key the tests will run against
+     * @return the estimated duration of each test in the order they were added or all zeros if none of the tests have been run
+     */
+    public long[] getEstimates( TestDurations testDurations, String deviceKey )
+    {
+        long[] estimates = new long[ entryList.size() ];
+        long knownTotal = 0;
+        int knownCount = 0;
+        for ( int i = 0; i < estimates.length; i++ )
+        {
+            estimates[ i ] = testDurations.getEstimate( entryList.get( i ).testName, deviceKey );
+            if ( estimates[ i ] >= 0 )
+            {
+                knownTotal += estimates[ i ];
+                knownCount++;
+            }
+        }
+
+        long averageDuration = knownCount > 0 ? knownTotal / knownCount : 0;
+        for ( int i = 0; i < estimates.length; i++ )
+        {
+            if ( estimates[ i ] < 0 )
+                estimates[ i ] = averageDuration;
+        }
+
+        return estimates;
+    }
+
+    /**
+     * Orders the tests longest first.  Tests with the same estimate keep the order they were added in
+     *
+     * @param estimates the estimated duration of each test
+     * @return the entry indexes in the order they should be run
+     */
+    public int[] getLongestFirst( final long[] estimates )
+    {
+        Integer[] entryOrder = new Integer[ estimates.length ];
+        for ( int i = 0; i < entryOrder.length; i++ )
+            entryOrder[ i ] = i;
+
+        Arrays.sort( entryOrder, new Comparator<Integer>()
+        {
+            public int compare( Integer entryOne, Integer entryTwo )
+            {
+                return Long.compare( estimates[ entryTwo ], estimates[ entryOne ] );
+            }
+        } );
+
+        int[] returnOrder = new int[ entryOrder.length ];
+        for ( int i = 0; i < returnOrder.length; i++ )
+            returnOrder[ i ] = entryOrder[ i ];
+        return returnOrder;
+    }
+
+    /**
+     * Estimates how long a set of devices sharing a key will take to run their tests when each free device takes the next test in order
+     *
+     * @param entryOrder the order the tests will be run in
+     * @param estimates the estimated duration of each test
+     * @param copyCount the number of copies of each test instance that run against this key
+     * @param slotCount the number of devices with this key
+     * @return the estimated time until the last test completes
+     */
+    public long getMakespan( int[] entryOrder, long[] estimates, long copyCount, int slotCount )
+    {
+        if ( slotCount <= 0 )
+            return 0;
+
+        long[] slotLoad = new long[ slotCount ];
+        for ( int entryIndex : entryOrder )
+        {
+            long jobCount = getInstanceCount( entryIndex ) * copyCount;
+
+            //
+            // Large batches of equal tests are spread evenly across the devices before the remainder is placed one at a time
+            //
+            if ( jobCount >= 2L * slotCount )
+            {
+                long batchSize = jobCount / slotCount - 1;
+                for ( int i = 0; i < slotCount; i++ )
+                    slotLoad[ i ] += batchSize * estimates[ entryIndex ];
+                jobCount -= batchSize * slotCount;
+            }
+
+            for ( long j = 0; j < jobCount; j++ )
+            {
+                int leastLoaded = 0;
+                for ( int i = 1; i < slotCount; i++ )
+                {
+                    if ( slotLoad[ i ] < slotLoad[ leastLoaded ] )
+                        leastLoaded = i;
+                }
+                slotLoad[ leastLoaded ] += estimates[ entryIndex ];
+            }
+        }
+
+        long makespan = 0;
+        for ( long currentLoad : slotLoad )
+            makespan = Math.max( makespan, currentLoad );
+        return makespan;
+    }
+
+    private PlanEntry findEntry( long entryIndex )
+    {
+        int low = 0;
+        int high = entryList.size() - 1;
+        while ( low < high )
+        {
+            int middle = ( low + high + 1 ) >>> 1;
+            if ( entryList.get( middle ).offset <= entryIndex )
+                low = middle;
+            else
+                high = middle - 1;
+        }
+
+        return entryList.get( low );
+    }
+
+    private static class PlanEntry
+    {
+        private final String testName;
+        private final String[] contentKeys;
+        private final int count;
+        private final PageData[] records;
+        private final long offset;
+        private final long size;
+
+        public PlanEntry( String testName, String[] contentKeys, int count, PageData[] records, long offset )
+        {
+            this.testName = testName;
+            this.contentKeys = contentKeys;
+            this.count = count;
+            this.records = records;
+            this.offset = offset;
+            this.size = ( contentKeys != null ? contentKeys.length : 1 ) * (long) Math.max( count, 1 ) * ( records != null ? records.length : 1 );
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package org.xframium.history;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * An append only index of the suites executed under a report folder.  Each suite is stored as a single serialized record followed by its length so the most
+ * recent suites can be read from the end of the file without looking at the suite folders.  A rolling aggregate of all suites is kept next to the index
+ */
+public class HistoryIndex
+{
+    public static final int MAX_HISTORY = 20;
+    public static final String INDEX_FILE = "History.index";
+    public static final String AGGREGATE_FILE = "History.aggregate";
+    public static final String HISTORY_FILE = "History.js";
+
+    private static final String SUITE_FILE = "Suite.js";
+    private static final String[] AGGREGATE_KEYS = new String[] { "suites", "tests", "passed", "failed", "skipped", "stepsPassed", "stepsFailed", "stepsIgnored" };
+
+    private Log log = LogFactory.getLog( HistoryIndex.class );
+    private final File rootFolder;
+    private final File indexFile;
+    private final File aggregateFile;
+
+    public HistoryIndex( File rootFolder )
+    {
+        this.rootFolder = rootFolder;
+        this.indexFile = new File( rootFolder, INDEX_FILE );
+        this.aggregateFile = new File( rootFolder, AGGREGATE_FILE );
+    }
+
+    /**
+     * Appends a suite to the index and rolls its results into the aggregate
+     *
+     * @param suiteFolder the report folder of the suite - a suite is only added once
+     * @param suiteRecord the serialized suite
+     * @param suiteTotals the values to add to the aggregate keyed by the aggregate names
+     */
+    public void addSuite( File suiteFolder, byte[] suiteRecord, Properties suiteTotals ) throws IOException
+    {
+        String suiteKey = suiteFolder.getName();
+        synchronized ( HistoryIndex.class )
+        {
+            if ( !rootFolder.exists() )
+                rootFolder.mkdirs();
+
+            seedIndex( suiteFolder );
+
+            RandomAccessFile indexAccess = new RandomAccessFile( indexFile, "rw" );
+            FileLock indexLock = indexAccess.getChannel().lock();
+            try
+            {
+                Properties aggregateData = readAggregate();
+                if ( suiteKey.equals( aggregateData.getProperty( "lastSuite" ) ) )
+                    return;
+
+                indexAccess.seek( indexAccess.length() );
+                indexAccess.write( suiteRecord );
+                indexAccess.writeInt( suiteRecord.length );
+
+                for ( String aggregateKey : AGGREGATE_KEYS )
+                    aggregateData.setProperty( aggregateKey, ( getLong( aggregateData, aggregateKey ) + getLong( suiteTotals, aggregateKey ) ) + "" );
+                aggregateData.setProperty( "lastSuite", suiteKey );
+                if ( aggregateData.getProperty( "firstRun" ) == null && suiteTotals.getProperty( "lastRun" ) != null )
+                    aggregateData.setProperty( "firstRun", suiteTotals.getProperty( "lastRun" ) );
+                if ( suiteTotals.getProperty( "lastRun" ) != null )
+                    aggregateData.setProperty( "lastRun", suiteTotals.getProperty( "lastRun" ) );
+                writeAggregate( aggregateData );
+            }
+            finally
+            {
+                indexLock.release();
+                indexAccess.close();
+            }
+        }
+    }
+
+    /**
+     * Reads the most recent suites from the end of the index
+     *
+     * @param maxCount the number of suites to return
+     * @return the suite records with the most recent first
+     */
+    public List<byte[]> getRecentSuites( int maxCount ) throws IOException
+    {
+        List<byte[]> suiteList = new ArrayList<byte[]>( maxCount );
+        if ( !indexFile.exists() )
+            return suiteList;
+
+        RandomAccessFile indexAccess = new RandomAccessFile( indexFile, "r" );
+        try
+        {
+            long currentPosition = indexAccess.length();
+            while ( suiteList.size() < maxCount && currentPosition >= 4 )
+            {
+                indexAccess.seek( currentPosition - 4 );
+                int recordLength = indexAccess.readInt();
+                long recordStart = currentPosition - 4 - recordLength;
+                if ( recordLength < 0 || recordStart < 0 )
+                {
+                    log.warn( "Ignoring truncated history index records before " + currentPosition + " in " + indexFile.getAbsolutePath() );
+                    break;
+                }
+
+                byte[] suiteRecord = new byte[ recordLength ];
+                indexAccess.seek( recordStart );
+                indexAccess.readFully( suiteRecord );
+                suiteList.add( suiteRecord );
+                currentPosition = recordStart;
+            }
+        }
+        finally
+        {
+            indexAccess.close();
+        }
+
+        return suiteList;
+    }
+
+    public Properties getAggregate() throws IOException
+    {
+        synchronized ( HistoryIndex.class )
+        {
+            return readAggregate();
+        }
+    }
+
+    /**
+     * Renders the history from the most recent records in the index
+     *
+     * @param outputStream where the history script is written
+     */
+    public void writeHistory( OutputStream outputStream ) throws IOException
+    {
+        seedIndex( null );
+
+        outputStream.write( "var suiteData = [".getBytes( "UTF-8" ) );
+        boolean firstSuite = true;
+        for ( byte[] suiteRecord : getRecentSuites( MAX_HISTORY ) )
+        {
+            if ( !firstSuite )
+                outputStream.write( ", ".getBytes( "UTF-8" ) );
+            outputStream.write( suiteRecord );
+            firstSuite = false;
+        }
+        outputStream.write( " ];\r\n".getBytes( "UTF-8" ) );
+
+        StringBuilder aggregateData = new StringBuilder();
+        Properties aggregateProperties = getAggregate();
+        aggregateData.append( "var historyAggregate = {" );
+        for ( String aggregateKey : AGGREGATE_KEYS )
+            aggregateData.append( "\"" ).append( aggregateKey ).append( "\": " ).append( getLong( aggregateProperties, aggregateKey ) ).append( ", " );
+        aggregateData.append( "\"firstRun\": " ).append( getLong( aggregateProperties, "firstRun" ) ).append( ", " );
+        aggregateData.append( "\"lastRun\": " ).append( getLong( aggregateProperties, "lastRun" ) ).append( " };" );
+        outputStream.write( aggregateData.toString().getBytes( "UTF-8" ) );
+    }
+
+    public File writeHistory() throws IOException
+    {
+        File historyFile = new File( rootFolder, HISTORY_FILE );
+        OutputStream outputStream = new FileOutputStream( historyFile );
+        try
+        {
+            writeHistory( outputStream );
+        }
+        finally
+        {
+            outputStream.close();
+        }
+
+        return historyFile;
+    }
+
+    /**
+     * Builds the index from the existing suite folders the first time it is used.  Only the most recent suites are needed to render the history
+     */
+    private void seedIndex( final File skipFolder ) throws IOException
+    {
+        synchronized ( HistoryIndex.class )
+        {
+            if ( indexFile.exists() || !rootFolder.isDirectory() )
+                return;
+
+            File[] suiteFolders = rootFolder.listFiles( new FileFilter()
+            {
+                public boolean accept( File pathname )
+                {
+                    return ( skipFolder == null || !pathname.getName().equals( skipFolder.getName() ) ) && new File( pathname, SUITE_FILE ).isFile();
+                }
+            } );
+
+            if ( suiteFolders == null || suiteFolders.length == 0 )
+                return;
+
+            final long[] lastModified = new long[ suiteFolders.length ];
+            List<Integer> folderOrder = new ArrayList<Integer>( suiteFolders.length );
+            for ( int i = 0; i < suiteFolders.length; i++ )
+            {
+                lastModified[ i ] = new File( suiteFolders[ i ], SUITE_FILE ).lastModified();
+                folderOrder.add( i );
+            }
+
+            Collections.sort( folderOrder, new Comparator<Integer>()
+            {
+                public int compare( Integer o1, Integer o2 )
+                {
+                    return Long.compare( lastModified[ o1 ], lastModified[ o2 ] );
+                }
+            } );
+
+            if ( log.isInfoEnabled() )
+                log.info( "Creating history index from " + suiteFolders.length + " suite folders in " + rootFolder.getAbsolutePath() );
+
+            RandomAccessFile indexAccess = new RandomAccessFile( indexFile, "rw" );
+            try
+            {
+                for ( Integer folderIndex : folderOrder.subList( Math.max( 0, folderOrder.size() - MAX_HISTORY ), folderOrder.size() ) )
+                {
+                    byte[] suiteRecord = readSuite( new File( suiteFolders[ folderIndex ], SUITE_FILE ) );
+                    if ( suiteRecord != null )
+                    {
+                        indexAccess.write( suiteRecord );
+                        indexAccess.writeInt( suiteRecord.length );
+                    }
+                }
+            }
+            finally
+            {
+                indexAccess.close();
+            }
+        }
+    }
+
+    /**
+     * Extracts the suite object from a suite script without decoding it
+     */
+    private byte[] readSuite( File suiteFile )
+    {
+        try
+        {
+            InputStream inputStream = new FileInputStream( suiteFile );
+            ByteArrayOutputStream suiteData = new ByteArrayOutputStream( (int) suiteFile.length() );
+            try
+            {
+                byte[] buffer = new byte[ 8192 ];
+                int bytesRead = 0;
+                while ( ( bytesRead = inputStream.read( buffer ) ) != -1 )
+                    suiteData.write( buffer, 0, bytesRead );
+            }
+            finally
+            {
+                inputStream.close();
+            }
+
+            byte[] suiteBytes = suiteData.toByteArray();
+            int startIndex = 0;
+            while ( startIndex < suiteBytes.length && suiteBytes[ startIndex ] != '{' )
+                startIndex++;
+            int endIndex = suiteBytes.length - 1;
+            while ( endIndex > startIndex && suiteBytes[ endIndex ] != '}' )
+                endIndex--;
+
+            if ( endIndex <= startIndex )
+                return null;
+
+            return Arrays.copyOfRange( suiteBytes, startIndex, endIndex + 1 );
+        }
+        catch ( Exception e )
+        {
+            log.warn( "Could not read " + suiteFile.getAbsolutePath(), e );
+            return null;
+        }
+    }
+
+    private Properties readAggregate() throws IOException
+    {
+        Properties aggregateData = new Properties();
+        if ( aggregateFile.exists() )
+        {
+            InputStream inputStream = new FileInputStream( aggregateFile );
+            try
+            {
+                aggregateData.load( inputStream );
+            }
+            finally
+            {
+                inputStream.close();
+            }
+        }
+        return aggregateData;
+    }
+
+    private void writeAggregate( Properties aggregateData ) throws IOException
+    {
+        File tempFile = new File( rootFolder, AGGREGATE_FILE + ".tmp" );
+        OutputStream outputStream = new FileOutputStream( tempFile );
+        try
+        {
+            aggregateData.store( outputStream, "xFramium History" );
+        }
+        finally
+        {
+            outputStream.close();
+        }
+
+        aggregateFile.delete();
+        if ( !tempFile.renameTo( aggregateFile ) )
+            throw new IOException( "Could not replace " + aggregateFile.getAbsolutePath() );
+    }
+
+    private long getLong( Properties properties, String keyName )
+    {
+        try
+        {
+            return Long.parseLong( properties.getProperty( keyName, "0" ) );
+        }
+        catch ( NumberFormatException e )
+        {
+            return 0;
+        }
+    }
+}
@@ -1,22 +1,16 @@
 package org.xframium.history;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileFilter;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.InputStream;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.LinkedList;
-import java.util.List;
+import java.io.OutputStream;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 public class HistoryWriter
 {
-    private static final int MAX_HISTORY = 20;
     private File rootFolder;
     private Log log = LogFactory.getLog(HistoryWriter.class);
     
@@ -28,62 +22,20 @@ public class HistoryWriter
     
     public void updateHistory()
     {
-        File[] suiteList = rootFolder.listFiles( new FolderFilter() );
-    
-        List<File> fileList = new LinkedList<File>(  );
-        for ( File currentFile : suiteList )
-        {
-            fileList.add( new File( currentFile, "Suite.js" ) );
-        }
-        
-        Collections.sort( fileList, new FileComparator() );
-        
-        int currentIndex = 0;
-        
-        StringBuilder stringBuilder = new StringBuilder();
-        stringBuilder.append( "var suiteData = [" );
-        for ( File currentFile : fileList )
-        {
-            if ( log.isInfoEnabled() )
-                log.info( "Reading: " + currentFile.getAbsolutePath() );
-            
-            String fileData = readFile( currentFile );
-            if ( fileData != null )
-            {
-                String mapData = fileData.substring( 15, fileData.length() - 1 );
-                stringBuilder.append( mapData ).append( ", " );
-            }
-            
-            if ( currentIndex++ > MAX_HISTORY )
-                break;
-        }
-        
-        stringBuilder.append( " ];" );
-
-        BufferedOutputStream outputStream = null;
-
         try
         {
-            outputStream = new BufferedOutputStream( new FileOutputStream( new File( rootFolder, "History.js" ) ) );
-            outputStream.write( stringBuilder.toString().getBytes() );
-            
+            new HistoryIndex( rootFolder ).writeHistory();
         }
         catch( Exception e )
         {
-            
+            log.error( "Error generating History", e );
         }
-        finally
-        {
-            try { outputStream.flush(); } catch( Exception e ){}
-            try { outputStream.close(); } catch( Exception e ){}
-        }
-        
-        outputStream = null;
+
+        OutputStream outputStream = null;
 
         File templateFile = new File( rootFolder, "index.html" );
         if ( !templateFile.exists() )
         {
-            StringBuilder stringBuffer = new StringBuilder();
             InputStream inputStream = null;
             try
             {
@@ -103,15 +55,11 @@ public class HistoryWriter
                     fileName.getParentFile().mkdirs();
                 
                 int bytesRead = 0;
-                byte[] buffer = new byte[ 512 ];
-                
-                while ( ( bytesRead = inputStream.read( buffer ) ) > 0 )
-                {
-                    stringBuffer.append( new String( buffer, 0, bytesRead ) );
-                }
+                byte[] buffer = new byte[ 8192 ];
                 
                 outputStream = new BufferedOutputStream( new FileOutputStream( fileName ) );
-                outputStream.write( stringBuffer.toString().getBytes() );
+                while ( ( bytesRead = inputStream.read( buffer ) ) > 0 )
+                    outputStream.write( buffer, 0, bytesRead );
             }
             catch( Exception e )
             {
@@ -126,70 +74,4 @@ public class HistoryWriter
         }
         
     }
-    
-    private String readFile( File currentFile )
-    {
-        try
-        {
-            StringBuilder stringBuilder = new StringBuilder();
-            BufferedInputStream inputStream = new BufferedInputStream( new FileInputStream( currentFile ) );
-            
-            int bytesRead = 0;
-            byte[] buffer = new byte[ 512 ];
-            
-            while ( ( bytesRead = inputStream.read( buffer ) ) != -1 )
-            {
-                stringBuilder.append( new String( buffer, 0, bytesRead ) );
-            }
-            
-            inputStream.close();
-            
-            return stringBuilder.toString();
-        }
-        catch( Exception e )
-        {
-            e.printStackTrace();
-        }
-        
-        return null;
-    }
-    
-    public class FileComparator implements Comparator<File>
-    {
-        @Override
-        public int compare( File fileOne, File fileTwo )
-        {
-            return Long.compare( fileTwo.lastModified(), fileOne.lastModified() );
-        }
-        
-    }
-    
-    public class FolderFilter implements FileFilter
-    {
-
-        @Override
-        public boolean accept( File pathname )
-        {
-            if ( pathname.isDirectory() )
-            {
-                File[] fileList = pathname.listFiles( new SuiteFilter() );
-                if ( fileList != null && fileList.length > 0 )
-                    return true;
-            }
-            
-            return false;
-        }
-    }
-    
-    public class SuiteFilter implements FileFilter
-    {
-        @Override
-        public boolean accept( File pathname )
-        {
-            if ( pathname.getName().equals( "Suite.js" ) )
-                return true;
-            else
-                return false;
-        }
-    }
 }
@@ -0,0 +1,208 @@
+package org.xframium.history;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * The durations of previous test runs used to plan the order of the next run.  Each test keeps a moving average of its duration overall and on each device key.
+ * The averages are kept in a properties file next to the history index and rewritten at the end of each suite.  The planned and actual makespan of the current
+ * run are tracked so that the plan can be compared to the result
+ */
+public class TestDurations
+{
+    public static final String FILE_NAME = "Durations.properties";
+    public static final String LONGEST_FIRST = "driver.scheduler.longestFirst";
+
+    private static final double AVERAGE_WEIGHT = 0.3;
+    private static final String DEVICE_SEPARATOR = "|";
+
+    private static final TestDurations singleton = new TestDurations();
+
+    public static TestDurations instance()
+    {
+        return singleton;
+    }
+
+    private Log log = LogFactory.getLog( TestDurations.class );
+    private final ConcurrentHashMap<String, Long> durationMap = new ConcurrentHashMap<String, Long>( 64 );
+    private File durationFile;
+    private volatile boolean longestFirst = true;
+    private volatile long plannedMakespan = 0;
+    private volatile long startTime = 0;
+    private volatile long endTime = 0;
+
+    public void configure( Map<String, String> configurationProperties )
+    {
+        if ( configurationProperties != null && configurationProperties.get( LONGEST_FIRST ) != null )
+            longestFirst = Boolean.parseBoolean( configurationProperties.get( LONGEST_FIRST ).trim() );
+    }
+
+    public boolean isLongestFirst()
+    {
+        return longestFirst;
+    }
+
+    /**
+     * Reads the durations stored under a report folder.  The durations are only read once for each folder
+     *
+     * @param rootFolder the folder that holds the suite folders
+     */
+    public synchronized void load( File rootFolder )
+    {
+        File loadFile = new File( rootFolder, FILE_NAME );
+        if ( loadFile.equals( durationFile ) )
+            return;
+
+        durationFile = loadFile;
+        durationMap.clear();
+        if ( !durationFile.isFile() )
+            return;
+
+        try
+        {
+            Properties durationData = new Properties();
+            InputStream inputStream = new FileInputStream( durationFile );
+            try
+            {
+                durationData.load( inputStream );
+            }
+            finally
+            {
+                inputStream.close();
+            }
+
+            for ( String keyName : durationData.stringPropertyNames() )
+            {
+                try
+                {
+                    durationMap.put( keyName, Long.parseLong( durationData.getProperty( keyName ).trim() ) );
+                }
+                catch ( NumberFormatException e )
+                {
+                    log.warn( "Ignoring invalid duration for " + keyName + " in " + durationFile.getAbsolutePath() );
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Could not read " + durationFile.getAbsolutePath(), e );
+        }
+    }
+
+    /**
+     * Writes the durations back to the file they were loaded from
+     */
+    public synchronized void save()
+    {
+        if ( durationFile == null || durationMap.isEmpty() )
+            return;
+
+        Properties durationData = new Properties();
+        for ( Map.Entry<String, Long> durationEntry : durationMap.entrySet() )
+            durationData.setProperty( durationEntry.getKey(), durationEntry.getValue() + "" );
+
+        File tempFile = new File( durationFile.getParentFile(), FILE_NAME + ".tmp" );
+        try
+        {
+            OutputStream outputStream = new FileOutputStream( tempFile );
+            try
+            {
+                durationData.store( outputStream, "xFramium Test Durations" );
+            }
+            finally
+            {
+                outputStream.close();
+            }
+
+            durationFile.delete();
+            if ( !tempFile.renameTo( durationFile ) )
+                throw new IOException( "Could not replace " + durationFile.getAbsolutePath() );
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Could not write " + durationFile.getAbsolutePath(), e );
+        }
+    }
+
+    /**
+     * @param testName the name of the test
+     * @param deviceKey the device key or null for the duration across all devices
+     * @return the average duration in milliseconds or -1 if the test has not been run
+     */
+    public long getDuration( String testName, String deviceKey )
+    {
+        Long duration = durationMap.get( deviceKey != null ? testName + DEVICE_SEPARATOR + deviceKey : testName );
+        return duration != null ? duration : -1;
+    }
+
+    /**
+     * @return the expected duration of a test on a device key - the device specific average when there is one otherwise the average across all devices or -1
+     */
+    public long getEstimate( String testName, String deviceKey )
+    {
+        long duration = getDuration( testName, deviceKey );
+        return duration >= 0 ? duration : getDuration( testName, null );
+    }
+
+    public void recordDuration( String testName, String deviceKey, long elapsedTime )
+    {
+        updateAverage( testName, elapsedTime );
+        if ( deviceKey != null )
+            updateAverage( testName + DEVICE_SEPARATOR + deviceKey, elapsedTime );
+        endTime = System.currentTimeMillis();
+    }
+
+    private void updateAverage( String keyName, long elapsedTime )
+    {
+        while ( true )
+        {
+            Long currentValue = durationMap.get( keyName );
+            if ( currentValue == null )
+            {
+                if ( durationMap.putIfAbsent( keyName, elapsedTime ) == null )
+                    return;
+            }
+            else if ( durationMap.replace( keyName, currentValue, Math.round( currentValue + AVERAGE_WEIGHT * ( elapsedTime - currentValue ) ) ) )
+                return;
+        }
+    }
+
+    /**
+     * Marks the start of a run
+     *
+     * @param plannedMakespan the expected duration of the run in milliseconds
+     */
+    public void startRun( long plannedMakespan )
+    {
+        this.plannedMakespan = plannedMakespan;
+        startTime = System.currentTimeMillis();
+        endTime = 0;
+    }
+
+    public long getPlannedMakespan()
+    {
+        return plannedMakespan;
+    }
+
+    /**
+     * @return the time from the start of the run to the completion of the last test or 0 if no test has completed
+     */
+    public long getActualMakespan()
+    {
+        return endTime > startTime ? endTime - startTime : 0;
+    }
+
+    public String toString()
+    {
+        return "Planned makespan: " + ( plannedMakespan / 1000 ) + "s - Actual makespan: " + ( getActualMakespan() / 1000 ) + "s (" + durationMap.size() + " durations)";
+    }
+}
@@ -4,6 +4,7 @@ import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferByte;
 import java.io.File;
 import javax.imageio.ImageIO;
+import org.xframium.imaging.algorithm.match.MatchData;
 import org.xframium.imaging.algorithm.match.spi.NCCMatchAlgorithm;
 
 public class Perf
@@ -19,16 +20,21 @@ public class Perf
         System.out.println( baseImage );
         System.out.println( templateImage );
 
-        NCCMatchAlgorithm x = new NCCMatchAlgorithm();
-        
-        startTime = System.currentTimeMillis();
-        double[][] y = x.findMatch( baseImage, templateImage );
+        int pyramidLevels = args.length > 0 ? Integer.parseInt( args[ 0 ] ) : 0;
+        NCCMatchAlgorithm x = new NCCMatchAlgorithm( pyramidLevels );
         
+        //
+        // Warm up before timing
+        //
+        for ( int i = 0; i < 3; i++ )
+            x.findBestMatch( baseImage, templateImage );
         
+        startTime = System.currentTimeMillis();
+        MatchData matchData = x.findBestMatch( baseImage, templateImage );
         
         System.out.println( "process time: " + (System.currentTimeMillis() - startTime) );  
         
-        System.out.println( asGrid( y ) );
+        System.out.println( "match: " + matchData.getX() + ", " + matchData.getY() + " (" + matchData.getConfidence() + "%)" );
         
 //        templateImage.pad( baseImage.getHeight(), baseImage.getWidth(), 10, 10 );
 //        
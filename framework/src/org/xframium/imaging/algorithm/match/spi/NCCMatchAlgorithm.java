@@ -1,83 +1,417 @@
 package org.xframium.imaging.algorithm.match.spi;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import org.xframium.imaging.ImageData;
 import org.xframium.imaging.algorithm.match.MatchAlgorithm;
+import org.xframium.imaging.algorithm.match.MatchData;
 
+/**
+ * Zero mean normalized cross correlation template matching.  The window sums needed for the base image statistics come from summed area tables so each offset only
+ * costs the correlation with the template itself.  Rows of offsets are scored in parallel on the common fork/join pool.  When pyramid levels are configured the
+ * search runs on downscaled images first and only the neighbourhoods of the best coarse matches are scored at full resolution
+ */
 public class NCCMatchAlgorithm implements MatchAlgorithm
 {
+    /** Offset rows scored by a single task */
+    private static final int ROW_THRESHOLD = 8;
+
+    /** The smallest template dimension a pyramid level is allowed to reduce the template to */
+    private static final int MIN_TEMPLATE_SIZE = 8;
+
+    /** The fewest coarse matches refined at each finer level */
+    private static final int CANDIDATE_COUNT = 5;
+
+    /** Peaks beyond CANDIDATE_COUNT are refined while they score within this distance of the best peak */
+    private static final float CANDIDATE_TOLERANCE = 0.1f;
+
+    /** The most coarse matches refined at each finer level */
+    private static final int MAX_CANDIDATES = 64;
+
+    /** Offsets either side of a projected candidate that are scored at the finer level - the scale between levels plus one */
+    private static final int REFINE_RADIUS = 3;
+
+    private final int pyramidLevels;
+
+    public NCCMatchAlgorithm()
+    {
+        this( 0 );
+    }
+
+    /**
+     * @param pyramidLevels the number of times the images are halved for the coarse search
+     */
+    public NCCMatchAlgorithm( int pyramidLevels )
+    {
+        this.pyramidLevels = pyramidLevels;
+    }
+
+    /**
+     * Scores every offset of the template within the base image.  The returned array is indexed by [x][y].  When pyramid levels are used only the offsets around
+     * the coarse matches are scored and all other offsets are set to -1
+     */
     @Override
     public double[][] findMatch( ImageData baseImage, ImageData templateImage )
     {
-        ImageData tI = new ImageData( templateImage.getWidth(), templateImage.getHeight() );
-        tI.setPixelData( templateImage.getPixelData() );
-        tI.setPaddedHeight( baseImage.getHeight() );
-        tI.setPaddedWidth( baseImage.getWidth() );
-
-        double[][] returnValue = new double[baseImage.getWidth() - templateImage.getWidth() ][baseImage.getHeight() - templateImage.getHeight()];
-        
-        for ( int x = 0; x < baseImage.getWidth() - templateImage.getWidth(); x++ )
+        Plane basePlane = new Plane( baseImage );
+        Plane templatePlane = new Plane( templateImage );
+        validate( basePlane, templatePlane );
+
+        float[] scores = score( basePlane, templatePlane );
+        int scoreWidth = basePlane.width - templatePlane.width + 1;
+        int scoreHeight = basePlane.height - templatePlane.height + 1;
+
+        double[][] returnValue = new double[scoreWidth][scoreHeight];
+        for ( int y = 0; y < scoreHeight; y++ )
+        {
+            int rowStart = y * scoreWidth;
+            for ( int x = 0; x < scoreWidth; x++ )
+                returnValue[x][y] = scores[rowStart + x];
+        }
+
+        return returnValue;
+    }
+
+    /**
+     * @return the offset with the highest score with the confidence as a percentage
+     */
+    public MatchData findBestMatch( ImageData baseImage, ImageData templateImage )
+    {
+        Plane basePlane = new Plane( baseImage );
+        Plane templatePlane = new Plane( templateImage );
+        validate( basePlane, templatePlane );
+
+        float[] scores = score( basePlane, templatePlane );
+        int scoreWidth = basePlane.width - templatePlane.width + 1;
+
+        int bestOffset = 0;
+        for ( int i = 1; i < scores.length; i++ )
         {
-            for ( int y = 0; y < baseImage.getHeight() - templateImage.getHeight(); y++ )
+            if ( scores[i] > scores[bestOffset] )
+                bestOffset = i;
+        }
+
+        return new MatchData( bestOffset % scoreWidth, bestOffset / scoreWidth, Math.round( Math.max( 0, scores[bestOffset] ) * 100 ), scores[bestOffset] );
+    }
+
+    private void validate( Plane basePlane, Plane templatePlane )
+    {
+        if ( templatePlane.width > basePlane.width || templatePlane.height > basePlane.height )
+            throw new IllegalArgumentException( "The template image is larger than the base image" );
+    }
+
+    private float[] score( Plane basePlane, Plane templatePlane )
+    {
+        int levels = 0;
+        while ( levels < pyramidLevels && ( templatePlane.width >> ( levels + 1 ) ) >= MIN_TEMPLATE_SIZE && ( templatePlane.height >> ( levels + 1 ) ) >= MIN_TEMPLATE_SIZE )
+            levels++;
+
+        if ( levels == 0 )
+        {
+            float[] scores = new float[( basePlane.width - templatePlane.width + 1 ) * ( basePlane.height - templatePlane.height + 1 )];
+            ForkJoinPool.commonPool().invoke( new ScoreTask( new Correlation( basePlane, templatePlane ), scores, 0, basePlane.height - templatePlane.height + 1 ) );
+            return scores;
+        }
+
+        Plane[] basePyramid = new Plane[levels + 1];
+        Plane[] templatePyramid = new Plane[levels + 1];
+        basePyramid[0] = basePlane;
+        templatePyramid[0] = templatePlane;
+        for ( int i = 1; i <= levels; i++ )
+        {
+            basePyramid[i] = basePyramid[i - 1].halve();
+            templatePyramid[i] = templatePyramid[i - 1].halve();
+        }
+
+        //
+        // Exhaustive search at the coarsest level
+        //
+        Correlation coarse = new Correlation( basePyramid[levels], templatePyramid[levels] );
+        float[] coarseScores = new float[coarse.scoreWidth * coarse.scoreHeight];
+        ForkJoinPool.commonPool().invoke( new ScoreTask( coarse, coarseScores, 0, coarse.scoreHeight ) );
+        List<int[]> candidates = selectCandidates( coarse, coarseScores );
+
+        //
+        // Refine the best candidates at each finer level
+        //
+        float[] levelScores = null;
+        for ( int level = levels - 1; level >= 0; level-- )
+        {
+            Correlation correlation = new Correlation( basePyramid[level], templatePyramid[level] );
+            levelScores = new float[correlation.scoreWidth * correlation.scoreHeight];
+            Arrays.fill( levelScores, -1 );
+
+            for ( int[] candidate : candidates )
             {
-                tI.setOffsetX( x );
-                tI.setOffsetY( y );
-                returnValue[x][y] = ncc( baseImage, tI);
-                
-                System.out.println( x + ", " + y + " = " + returnValue[x][y] );
+                int minX = Math.max( 0, candidate[0] * 2 - REFINE_RADIUS );
+                int maxX = Math.min( correlation.scoreWidth - 1, candidate[0] * 2 + REFINE_RADIUS );
+                int minY = Math.max( 0, candidate[1] * 2 - REFINE_RADIUS );
+                int maxY = Math.min( correlation.scoreHeight - 1, candidate[1] * 2 + REFINE_RADIUS );
+
+                for ( int y = minY; y <= maxY; y++ )
+                {
+                    for ( int x = minX; x <= maxX; x++ )
+                        levelScores[y * correlation.scoreWidth + x] = correlation.score( x, y );
+                }
             }
+
+            if ( level > 0 )
+                candidates = selectCandidates( correlation, levelScores );
         }
-        
-        return returnValue;
 
+        return levelScores;
+    }
+
+    /**
+     * Selects the best scoring offsets with non maximum suppression.  Offsets inside a template sized window centred on a chosen candidate are part of the same
+     * peak so the candidates cover separate peaks.  At least CANDIDATE_COUNT peaks are kept along with any other peak that scores close to the best one as repeating
+     * content can produce several peaks that only separate at full resolution
+     */
+    private List<int[]> selectCandidates( Correlation correlation, float[] scores )
+    {
+        List<int[]> candidates = new ArrayList<int[]>( CANDIDATE_COUNT );
+        boolean[] suppressed = new boolean[scores.length];
+        float bestScore = -1;
+
+        while ( candidates.size() < MAX_CANDIDATES )
+        {
+            int bestOffset = -1;
+            for ( int i = 0; i < scores.length; i++ )
+            {
+                if ( !suppressed[i] && ( bestOffset == -1 || scores[i] > scores[bestOffset] ) )
+                    bestOffset = i;
+            }
+
+            if ( bestOffset == -1 )
+                break;
+
+            if ( candidates.isEmpty() )
+                bestScore = scores[bestOffset];
+            else if ( candidates.size() >= CANDIDATE_COUNT && scores[bestOffset] < bestScore - CANDIDATE_TOLERANCE )
+                break;
+
+            int x = bestOffset % correlation.scoreWidth;
+            int y = bestOffset / correlation.scoreWidth;
+            candidates.add( new int[] { x, y } );
+
+            int minX = Math.max( 0, x - correlation.templateWidth / 2 + 1 );
+            int maxX = Math.min( correlation.scoreWidth - 1, x + correlation.templateWidth / 2 - 1 );
+            int maxY = Math.min( correlation.scoreHeight - 1, y + correlation.templateHeight / 2 - 1 );
+            for ( int v = Math.max( 0, y - correlation.templateHeight / 2 + 1 ); v <= maxY; v++ )
+                Arrays.fill( suppressed, v * correlation.scoreWidth + minX, v * correlation.scoreWidth + maxX + 1, true );
+        }
+
+        return candidates;
     }
 
-    private double ncc( ImageData baseImage, ImageData templateImage )
+    /**
+     * A grayscale image as a flat float buffer
+     */
+    private static class Plane
     {
+        private final int width;
+        private final int height;
+        private final float[] pixels;
 
-        double ncc = -1;
-        double mean0 = 0;
-        double mean1 = 0;
-        double std0 = 0;
-        double std1 = 0;
+        private Plane( int width, int height, float[] pixels )
+        {
+            this.width = width;
+            this.height = height;
+            this.pixels = pixels;
+        }
 
-        for ( int x = 0; x < baseImage.getWidth(); x++ )
+        private Plane( ImageData imageData )
         {
-            for ( int y = 0; y < baseImage.getHeight(); y++ )
+            width = imageData.getWidth();
+            height = imageData.getHeight();
+            pixels = new float[width * height];
+
+            int[] pixelData = imageData.getPixelData();
+            if ( pixelData.length == pixels.length )
             {
-                mean0 += baseImage.getPixel( x, y );
-                mean1 += templateImage.getPixel( x, y );
+                for ( int i = 0; i < pixels.length; i++ )
+                    pixels[i] = pixelData[i];
             }
+            else
+            {
+                //
+                // Padded image data
+                //
+                for ( int y = 0; y < height; y++ )
+                {
+                    for ( int x = 0; x < width; x++ )
+                        pixels[y * width + x] = imageData.getPixel( x, y );
+                }
+            }
+        }
+
+        /**
+         * @return this plane at half the resolution using a 2x2 box filter
+         */
+        private Plane halve()
+        {
+            int halfWidth = width / 2;
+            int halfHeight = height / 2;
+            float[] halfPixels = new float[halfWidth * halfHeight];
+
+            for ( int y = 0; y < halfHeight; y++ )
+            {
+                int row0 = ( y * 2 ) * width;
+                int row1 = row0 + width;
+                for ( int x = 0; x < halfWidth; x++ )
+                {
+                    int x2 = x * 2;
+                    halfPixels[y * halfWidth + x] = ( pixels[row0 + x2] + pixels[row0 + x2 + 1] + pixels[row1 + x2] + pixels[row1 + x2 + 1] ) * 0.25f;
+                }
+            }
+
+            return new Plane( halfWidth, halfHeight, halfPixels );
         }
+    }
+
+    /**
+     * The precomputed data used to score a template against a base image
+     */
+    private static class Correlation
+    {
+        private final Plane basePlane;
+        private final int templateWidth;
+        private final int templateHeight;
+        private final int scoreWidth;
+        private final int scoreHeight;
+        private final double templateCount;
+
+        /** The template with its mean removed */
+        private final float[] templateDeviation;
 
-        mean0 /= baseImage.getSize();
-        mean1 /= baseImage.getSize();
+        /** The square root of the sum of squared template deviations */
+        private final double templateNorm;
 
-        for ( int x = 0; x < baseImage.getWidth(); x++ )
+        /** Summed area tables of the base image and the squared base image with a leading row and column of zeros */
+        private final double[] baseSum;
+        private final double[] baseSquareSum;
+
+        private Correlation( Plane basePlane, Plane templatePlane )
         {
-            for ( int y = 0; y < baseImage.getHeight(); y++ )
+            this.basePlane = basePlane;
+            templateWidth = templatePlane.width;
+            templateHeight = templatePlane.height;
+            scoreWidth = basePlane.width - templateWidth + 1;
+            scoreHeight = basePlane.height - templateHeight + 1;
+            templateCount = templateWidth * templateHeight;
+
+            double templateMean = 0;
+            for ( float pixel : templatePlane.pixels )
+                templateMean += pixel;
+            templateMean /= templateCount;
+
+            templateDeviation = new float[templatePlane.pixels.length];
+            double squareSum = 0;
+            for ( int i = 0; i < templateDeviation.length; i++ )
             {
+                templateDeviation[i] = (float) ( templatePlane.pixels[i] - templateMean );
+                squareSum += templateDeviation[i] * templateDeviation[i];
+            }
+            templateNorm = Math.sqrt( squareSum );
 
-                std0 += Math.pow( baseImage.getPixel( x, y ) - mean0, 2 );
-                std1 += Math.pow( templateImage.getPixel( x, y ) - mean1, 2 );
+            int tableWidth = basePlane.width + 1;
+            baseSum = new double[tableWidth * ( basePlane.height + 1 )];
+            baseSquareSum = new double[baseSum.length];
+            for ( int y = 0; y < basePlane.height; y++ )
+            {
+                double rowSum = 0;
+                double rowSquareSum = 0;
+                int pixelRow = y * basePlane.width;
+                int tableRow = ( y + 1 ) * tableWidth;
+                for ( int x = 0; x < basePlane.width; x++ )
+                {
+                    float pixel = basePlane.pixels[pixelRow + x];
+                    rowSum += pixel;
+                    rowSquareSum += pixel * pixel;
+                    baseSum[tableRow + x + 1] = baseSum[tableRow - tableWidth + x + 1] + rowSum;
+                    baseSquareSum[tableRow + x + 1] = baseSquareSum[tableRow - tableWidth + x + 1] + rowSquareSum;
+                }
             }
         }
 
-        std0 = Math.sqrt( std0 / baseImage.getSize() );
-        std1 = Math.sqrt( std1 / templateImage.getSize() );
+        private double windowSum( double[] table, int x, int y )
+        {
+            int tableWidth = basePlane.width + 1;
+            int top = y * tableWidth;
+            int bottom = ( y + templateHeight ) * tableWidth;
+            return table[bottom + x + templateWidth] - table[bottom + x] - table[top + x + templateWidth] + table[top + x];
+        }
 
-        ncc = 0;
-        for ( int x = 0; x < baseImage.getWidth(); x++ )
+        private float score( int x, int y )
         {
-            for ( int y = 0; y < baseImage.getHeight(); y++ )
+            if ( templateNorm == 0 )
+                return 0;
+
+            double sum = windowSum( baseSum, x, y );
+            double variance = windowSum( baseSquareSum, x, y ) - ( sum * sum ) / templateCount;
+            if ( variance <= 0 )
+                return 0;
+
+            //
+            // The template deviations sum to zero so the base window mean does not need to be removed from the numerator
+            //
+            float[] basePixels = basePlane.pixels;
+            int baseWidth = basePlane.width;
+            double numerator = 0;
+            for ( int v = 0; v < templateHeight; v++ )
             {
-                ncc += ((baseImage.getPixel( x, y ) - mean0) * (templateImage.getPixel( x, y ) - mean1)) / (std0 * std1);
+                int baseIndex = ( y + v ) * baseWidth + x;
+                int templateIndex = v * templateWidth;
+                for ( int u = 0; u < templateWidth; u++ )
+                    numerator += (double) basePixels[baseIndex + u] * templateDeviation[templateIndex + u];
             }
+
+            //
+            // Rounding can take the score of an exact match slightly past one
+            //
+            return (float) Math.max( -1, Math.min( 1, numerator / ( templateNorm * Math.sqrt( variance ) ) ) );
         }
-        
+    }
+
+    /**
+     * Scores a range of offset rows
+     */
+    private static class ScoreTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
 
-        ncc /= baseImage.getSize() - 1;
+        private final Correlation correlation;
+        private final float[] scores;
+        private final int startRow;
+        private final int endRow;
 
-    return ncc;
-}
+        private ScoreTask( Correlation correlation, float[] scores, int startRow, int endRow )
+        {
+            this.correlation = correlation;
+            this.scores = scores;
+            this.startRow = startRow;
+            this.endRow = endRow;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if ( endRow - startRow > ROW_THRESHOLD )
+            {
+                int middleRow = ( startRow + endRow ) >>> 1;
+                invokeAll( new ScoreTask( correlation, scores, startRow, middleRow ), new ScoreTask( correlation, scores, middleRow, endRow ) );
+                return;
+            }
 
+            for ( int y = startRow; y < endRow; y++ )
+            {
+                int rowStart = y * correlation.scoreWidth;
+                for ( int x = 0; x < correlation.scoreWidth; x++ )
+                    scores[rowStart + x] = correlation.score( x, y );
+            }
+        }
+    }
 }
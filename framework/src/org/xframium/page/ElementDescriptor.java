@@ -62,6 +62,12 @@ public class ElementDescriptor
 	    return super.equals( obj );
 	}
 	
+	@Override
+	public int hashCode()
+	{
+	    return toString().hashCode();
+	}
+	
 	/**
 	 * Instantiates a new element descriptor.
 	 *
@@ -135,5 +135,14 @@ public class PageDataManager
     {
     	dataProvider.putRecord( pageData );
     }
+    
+    /**
+     * Returns every locked record acquired by the current thread.
+     */
+    public void releasePageData()
+    {
+        if ( dataProvider != null )
+            dataProvider.releaseRecords();
+    }
 
 }
@@ -21,14 +21,14 @@
 package org.xframium.page.data.provider;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.xframium.page.data.PageData;
@@ -63,6 +63,18 @@ public abstract class AbstractPageDataProvider implements PageDataProvider
 
 	private Map<String,String> overrideMap = new HashMap<String,String>( 20 ); 
 	
+	/** The record pools used to hand out records by type */
+	private Map<String,PageDataPool> poolMap = new ConcurrentHashMap<String,PageDataPool>( 10 );
+	
+	/** The locked records leased by the current thread */
+	private ThreadLocal<List<PageData>> leaseList = new ThreadLocal<List<PageData>>()
+	{
+	    protected List<PageData> initialValue()
+	    {
+	        return new ArrayList<PageData>( 5 );
+	    }
+	};
+	
 	public String toString()
 	{
 	    StringBuilder sB = new StringBuilder();
@@ -123,24 +135,33 @@ public abstract class AbstractPageDataProvider implements PageDataProvider
 	@Override
 	public PageData getRecord( String recordType )
 	{
+	    String useType = getRecordType( recordType );
+	    
 		try
 		{
-			Deque<PageData> dataList = recordMap.get( getRecordType( recordType ) ).getRecordList();
-			
-			Object x = recordMap.get( "SellFromTrunk-KitItems" );
-			
-			if ( dataList instanceof LinkedBlockingDeque )
-				return ( (LinkedBlockingDeque<PageData>) dataList ).pollFirst( waitTimeOut, TimeUnit.SECONDS );
-			else
-			{
-				PageData pageData = dataList.pollFirst();
-				dataList.offer( pageData );
-				return pageData;
-			}
+		    PageDataPool recordPool = poolMap.get( useType );
+		    if ( recordPool == null )
+		    {
+		        log.error( "Error acquiring page data [" + useType + "] - the record type does not exist" );
+		        return null;
+		    }
+		    
+		    PageData pageData = recordPool.acquire( waitTimeOut );
+		    
+		    if ( recordPool.isLockRecords() )
+		    {
+		        if ( pageData == null )
+		            log.error( "Timed out acquiring page data [" + useType + "] after " + waitTimeOut + " seconds - " + recordPool );
+		        else
+		            leaseList.get().add( pageData );
+		    }
+		    
+		    return pageData;
 		}
-		catch( Exception e )
+		catch( InterruptedException e )
 		{
-			log.error( "Error acquiring page data [" + getRecordType( recordType ) + "] - " + e.getMessage() );
+		    Thread.currentThread().interrupt();
+			log.error( "Interrupted acquiring page data [" + useType + "]" );
 			return null;
 		}
 	}
@@ -230,12 +251,45 @@ public abstract class AbstractPageDataProvider implements PageDataProvider
 	{
 		if ( pageData != null )
 		{
-			Deque<PageData> dataList = recordMap.get( pageData.getType() ).getRecordList();
-			if ( dataList instanceof LinkedBlockingDeque )
-				dataList.offer( pageData );
+		    PageDataPool recordPool = poolMap.get( pageData.getType() );
+			if ( recordPool != null && recordPool.release( pageData ) )
+			{
+			    List<PageData> leasedRecords = leaseList.get();
+			    for ( int i = 0; i < leasedRecords.size(); i++ )
+			    {
+			        if ( leasedRecords.get( i ) == pageData )
+			        {
+			            leasedRecords.remove( i );
+			            break;
+			        }
+			    }
+			}
 		}
 	}
 	
+	/* (non-Javadoc)
+	 * @see org.xframium.page.data.provider.PageDataProvider#releaseRecords()
+	 */
+	public void releaseRecords()
+	{
+	    List<PageData> leasedRecords = leaseList.get();
+	    for ( PageData pageData : leasedRecords )
+	    {
+	        PageDataPool recordPool = poolMap.get( pageData.getType() );
+	        if ( recordPool != null )
+	            recordPool.release( pageData );
+	    }
+	    leasedRecords.clear();
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.xframium.page.data.provider.PageDataProvider#getRecordPools()
+	 */
+	public Collection<PageDataPool> getRecordPools()
+	{
+	    return poolMap.values();
+	}
+	
 	/**
 	 * Adds the record type.
 	 *
@@ -250,6 +304,7 @@ public abstract class AbstractPageDataProvider implements PageDataProvider
 	    {
 	        dC = new PageDataContainer( typeName, lockRecords );
 			recordMap.put( typeName, dC );
+			poolMap.put( typeName, new PageDataPool( typeName, lockRecords ) );
 			
 			dC = new PageDataContainer( typeName, lockRecords );
 			pC.add( dC );
@@ -272,6 +327,7 @@ public abstract class AbstractPageDataProvider implements PageDataProvider
 		Deque<PageData> dataList = recordMap.get( pageData.getType() ).getRecordList();
 		idMap.put( pageData.getType() + "." + pageData.getName(), pageData );
 		dataList.offer( pageData );
+		poolMap.get( pageData.getType() ).addRecord( pageData );
 	}
 	
 	/**
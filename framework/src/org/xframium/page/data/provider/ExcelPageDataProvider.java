@@ -21,16 +21,12 @@
 package org.xframium.page.data.provider;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.InputStream;
-import org.apache.poi.xssf.usermodel.XSSFCell;
-import org.apache.poi.xssf.usermodel.XSSFRow;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.xframium.page.data.DefaultPageData;
 import org.xframium.page.data.PageData;
 import org.xframium.page.data.PageDataManager;
+import org.xframium.utility.ExcelSheetReader;
+import org.xframium.utility.ExcelSheetReader.ExcelRow;
+import org.xframium.utility.ExcelSheetReader.RowHandler;
 
 // TODO: Auto-generated Javadoc
 /**
@@ -90,7 +86,14 @@ public class ExcelPageDataProvider extends AbstractPageDataProvider
 			{
 			    if (log.isInfoEnabled())
 	                log.info( "Reading from CLASSPATH as " + resource );
-			    readElements( getClass().getClassLoader().getResourceAsStream( resource ) );
+			    try
+			    {
+			        readElements( new ExcelSheetReader( getClass().getClassLoader().getResourceAsStream( resource ) ) );
+			    }
+			    catch (Exception e)
+			    {
+			        log.fatal( "Could not read from " + resource, e );
+			    }
 			}
 		}
 		else
@@ -102,10 +105,10 @@ public class ExcelPageDataProvider extends AbstractPageDataProvider
 				{
 				    if (log.isInfoEnabled())
 	                    log.info( "Reading from FILE SYSTEM as [" + currentFile + "]" );
-				    readElements( new FileInputStream( currentFile ) );
+				    readElements( new ExcelSheetReader( currentFile ) );
 				}
 			}
-			catch (FileNotFoundException e)
+			catch (Exception e)
 			{
 				log.fatal( "Could not read from " + fileName, e );
 			}
@@ -123,28 +126,18 @@ public class ExcelPageDataProvider extends AbstractPageDataProvider
 	 * @param cell the cell
 	 * @return the cell value
 	 */
-	private String getCellValue( XSSFCell cell )
+	private String getCellValue( Object cell )
 	{
-		if (cell != null)
+		if (cell instanceof Double)
 		{
-			switch (cell.getCellType())
-			{
-				case XSSFCell.CELL_TYPE_BLANK:
-					return null;
-				case XSSFCell.CELL_TYPE_BOOLEAN:
-					return String.valueOf( cell.getBooleanCellValue() );
-				case XSSFCell.CELL_TYPE_NUMERIC:
-				{
-				    String useValue = String.valueOf( cell.getNumericCellValue() );
-				    if ( useValue.endsWith( ".0" ) )
-				        return useValue.split( "\\." )[0];
-				    else
-				        return useValue;
-				}
-				case XSSFCell.CELL_TYPE_STRING:
-					return cell.getRichStringCellValue().toString();
-			}
+		    String useValue = String.valueOf( cell );
+		    if ( useValue.endsWith( ".0" ) )
+		        return useValue.split( "\\." )[0];
+		    else
+		        return useValue;
 		}
+		else if (cell != null)
+			return String.valueOf( cell );
 		return null;
 	}
 	
@@ -152,42 +145,40 @@ public class ExcelPageDataProvider extends AbstractPageDataProvider
 	/**
 	 * Read elements.
 	 *
-	 * @param inputStream the input stream
+	 * @param sheetReader the sheet reader
 	 */
-	private void readElements( InputStream inputStream )
+	private void readElements( ExcelSheetReader sheetReader )
 	{
-		
-		XSSFWorkbook workbook = null;
-
 		try
 		{
-		    
-		    
-			workbook = new XSSFWorkbook( inputStream );
-			
 			String[] tabs = tabNames.split( "," );
 			
-			for ( String tabName : tabs )
+			sheetReader.readSheets( tabs, new RowHandler()
 			{
-			    if (log.isInfoEnabled())
-                    log.info( "Reading Record Type [" + tabName + "]" );
-			    
-			    XSSFSheet sheet = workbook.getSheet( tabName );
-			    
-			    if ( sheet == null )
-			        continue;
+			    private String currentSheet = null;
+			    private ExcelRow firstRow = null;
 			    
-				addRecordType( tabName, false );
-				
-				XSSFRow firstRow = sheet.getRow( 0 );
-				
-				for (int i = 1; i <= sheet.getLastRowNum(); i++)
+				public boolean handleRow( String tabName, ExcelRow currentRow )
 				{
-					XSSFRow currentRow = sheet.getRow( i );
+				    if ( !tabName.equals( currentSheet ) )
+				    {
+				        if (log.isInfoEnabled())
+				            log.info( "Reading Record Type [" + tabName + "]" );
+				        
+				        addRecordType( tabName, false );
+				        currentSheet = tabName;
+				        firstRow = null;
+				    }
+				    
+				    if ( currentRow.getRowNumber() == 0 )
+				    {
+				        firstRow = currentRow;
+				        return true;
+				    }
 
 					try
 					{
-    					DefaultPageData currentRecord = new DefaultPageData( tabName, tabName + "-" + i, true );
+    					DefaultPageData currentRecord = new DefaultPageData( tabName, tabName + "-" + currentRow.getRowNumber(), true );
     					for ( int x=0; x<firstRow.getLastCellNum(); x++ )
     					{
     					    
@@ -217,10 +208,9 @@ public class ExcelPageDataProvider extends AbstractPageDataProvider
 					    e.printStackTrace();
 					    log.error( "Ignoring Row: " + e.getMessage() );
 					}
+					return true;
 				}
-			}
-
-			
+			} );
 		}
 		catch (Exception e)
 		{
@@ -228,13 +218,7 @@ public class ExcelPageDataProvider extends AbstractPageDataProvider
 		}
 		finally
 		{
-			try
-			{
-				workbook.close();
-			}
-			catch (Exception e)
-			{
-			}
+			sheetReader.close();
 		}
 	}
 }
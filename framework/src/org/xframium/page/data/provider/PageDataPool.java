@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * xFramium
+ *
+ * Copyright 2016 by Moreland Labs, Ltd. (http://www.morelandlabs.com)
+ *
+ * Some open source application is free software: you can redistribute 
+ * it and/or modify it under the terms of the GNU General Public 
+ * License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ *  
+ * Some open source application is distributed in the hope that it will 
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty 
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with xFramium.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @license GPL-3.0+ <http://spdx.org/licenses/GPL-3.0+>
+ *******************************************************************************/
+package org.xframium.page.data.provider;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.xframium.page.data.PageData;
+
+/**
+ * The available records of a single record type.  Locked records are leased to one caller at a time and waiting callers are served in arrival order.  Shared
+ * records are handed out round robin without locking
+ */
+public class PageDataPool
+{
+    private final String recordType;
+    private final boolean lockRecords;
+
+    /** Shared records - replaced as records are added while the data is loaded */
+    private volatile PageData[] sharedRecords = new PageData[ 0 ];
+    private final AtomicInteger nextRecord = new AtomicInteger( 0 );
+
+    /** Locked records */
+    private final ConcurrentLinkedQueue<PageData> availableRecords = new ConcurrentLinkedQueue<PageData>();
+    private final Semaphore availablePermits = new Semaphore( 0, true );
+    private final ConcurrentHashMap<PageData,Boolean> leasedRecords = new ConcurrentHashMap<PageData,Boolean>( 10 );
+
+    private final AtomicLong acquireCount = new AtomicLong( 0 );
+    private final AtomicLong timeoutCount = new AtomicLong( 0 );
+    private final AtomicLong totalWaitTime = new AtomicLong( 0 );
+    private final AtomicLong maximumWaitTime = new AtomicLong( 0 );
+
+    public PageDataPool( String recordType, boolean lockRecords )
+    {
+        this.recordType = recordType;
+        this.lockRecords = lockRecords;
+    }
+
+    public synchronized void addRecord( PageData pageData )
+    {
+        if ( lockRecords )
+        {
+            availableRecords.offer( pageData );
+            availablePermits.release();
+        }
+        else
+        {
+            PageData[] newRecords = Arrays.copyOf( sharedRecords, sharedRecords.length + 1 );
+            newRecords[ newRecords.length - 1 ] = pageData;
+            sharedRecords = newRecords;
+        }
+    }
+
+    /**
+     * Acquires a record.  Locked records must be returned using release
+     *
+     * @param waitTimeOut the maximum number of seconds to wait for a locked record
+     * @return the record or null if none became available
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public PageData acquire( long waitTimeOut ) throws InterruptedException
+    {
+        acquireCount.incrementAndGet();
+
+        if ( !lockRecords )
+        {
+            PageData[] currentRecords = sharedRecords;
+            if ( currentRecords.length == 0 )
+                return null;
+            return currentRecords[ ( nextRecord.getAndIncrement() & Integer.MAX_VALUE ) % currentRecords.length ];
+        }
+
+        long startTime = System.nanoTime();
+        boolean acquired = availablePermits.tryAcquire( waitTimeOut, TimeUnit.SECONDS );
+        recordWait( System.nanoTime() - startTime );
+
+        if ( !acquired )
+        {
+            timeoutCount.incrementAndGet();
+            return null;
+        }
+
+        PageData pageData = availableRecords.poll();
+        leasedRecords.put( pageData, Boolean.TRUE );
+        return pageData;
+    }
+
+    /**
+     * Returns a leased record.  Records that are not currently leased are ignored so a record can safely be released more than once
+     *
+     * @return true if the record was returned to the pool
+     */
+    public boolean release( PageData pageData )
+    {
+        if ( !lockRecords || pageData == null || leasedRecords.remove( pageData ) == null )
+            return false;
+
+        availableRecords.offer( pageData );
+        availablePermits.release();
+        return true;
+    }
+
+    private void recordWait( long waitTime )
+    {
+        totalWaitTime.addAndGet( waitTime );
+
+        long currentMaximum = maximumWaitTime.get();
+        while ( waitTime > currentMaximum && !maximumWaitTime.compareAndSet( currentMaximum, waitTime ) )
+            currentMaximum = maximumWaitTime.get();
+    }
+
+    public String getRecordType()
+    {
+        return recordType;
+    }
+
+    public boolean isLockRecords()
+    {
+        return lockRecords;
+    }
+
+    public int getAvailableCount()
+    {
+        return lockRecords ? availablePermits.availablePermits() : sharedRecords.length;
+    }
+
+    public int getLeasedCount()
+    {
+        return leasedRecords.size();
+    }
+
+    public int getWaitingCount()
+    {
+        return availablePermits.getQueueLength();
+    }
+
+    public long getAcquireCount()
+    {
+        return acquireCount.get();
+    }
+
+    public long getTimeoutCount()
+    {
+        return timeoutCount.get();
+    }
+
+    /**
+     * @return the total time in milliseconds spent waiting for locked records
+     */
+    public long getTotalWaitTime()
+    {
+        return TimeUnit.NANOSECONDS.toMillis( totalWaitTime.get() );
+    }
+
+    /**
+     * @return the longest time in milliseconds spent waiting for a locked record
+     */
+    public long getMaximumWaitTime()
+    {
+        return TimeUnit.NANOSECONDS.toMillis( maximumWaitTime.get() );
+    }
+
+    public String toString()
+    {
+        StringBuilder sB = new StringBuilder();
+        sB.append( recordType ).append( ": Locked=" ).append( lockRecords ).append( " Acquired=" ).append( acquireCount.get() );
+        if ( lockRecords )
+        {
+            sB.append( " Available=" ).append( getAvailableCount() ).append( " Leased=" ).append( getLeasedCount() ).append( " Timeouts=" ).append( timeoutCount.get() );
+            sB.append( " Wait(ms) Total=" ).append( getTotalWaitTime() ).append( " Max=" ).append( getMaximumWaitTime() );
+        }
+        return sB.toString();
+    }
+}
@@ -20,6 +20,7 @@
  *******************************************************************************/
 package org.xframium.page.data.provider;
 
+import java.util.Collection;
 import java.util.List;
 import org.xframium.page.data.PageData;
 
@@ -45,6 +46,18 @@ public interface PageDataProvider
 	 */
 	public void putRecord( PageData pageData );
 	
+	/**
+	 * Returns every locked record acquired by the current thread.
+	 */
+	public void releaseRecords();
+	
+	/**
+	 * Gets the record pools.
+	 *
+	 * @return the record pools with their wait time metrics
+	 */
+	public Collection<PageDataPool> getRecordPools();
+	
 	/**
 	 * Read page data.
 	 */
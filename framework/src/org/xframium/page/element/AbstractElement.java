@@ -25,6 +25,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -65,6 +66,10 @@ public abstract class AbstractElement implements Element
 
 	protected List<SubElement> subElementList = new ArrayList<SubElement>( 10 );
 	
+	/** Set when the properties or sub-elements are shared with a clone and must be copied before they are changed */
+	private boolean sharedProperties = false;
+	private boolean sharedSubElements = false;
+	
 	public DeviceWebDriver getWebDriver()
     {
         return webDriver;
@@ -165,9 +170,29 @@ public abstract class AbstractElement implements Element
 	
 	public void addSubElement( SubElement subElement )
 	{
+	    if ( sharedSubElements )
+	    {
+	        subElementList = new ArrayList<SubElement>( subElementList );
+	        sharedSubElements = false;
+	    }
 	    subElementList.add( subElement );
 	}
 	
+	/**
+	 * Shares the element properties and sub-elements with a clone.  Both elements copy them on their next change
+	 *
+	 * @param clonedElement the cloned element
+	 */
+	protected void shareDefinition( AbstractElement clonedElement )
+	{
+	    sharedProperties = true;
+	    sharedSubElements = true;
+	    clonedElement.elementProperties = elementProperties;
+	    clonedElement.subElementList = subElementList;
+	    clonedElement.sharedProperties = true;
+	    clonedElement.sharedSubElements = true;
+	}
+	
 	public boolean isCacheNative()
     {
         return cacheNative;
@@ -182,7 +207,10 @@ public abstract class AbstractElement implements Element
     {
         if ( elementProperties == null )
             elementProperties = new HashMap<String,String>( 20 );
+        else if ( sharedProperties )
+            elementProperties = new HashMap<String,String>( elementProperties );
         
+        sharedProperties = false;
         elementProperties.put( name, value );
     }
     
@@ -524,6 +552,19 @@ public abstract class AbstractElement implements Element
 	    return rawElementKey;
 	}
 	
+	/**
+	 * Gets the token values applied to this element in a stable order
+	 *
+	 * @return the token values or an empty string
+	 */
+	protected String getTokenSignature()
+	{
+	    if ( tokenMap == null || tokenMap.isEmpty() )
+	        return "";
+	    
+	    return new TreeMap<String,String>( tokenMap ).toString();
+	}
+	
 	public void setKey( String elementKey )
 	{
 	    this.elementKey = elementKey;
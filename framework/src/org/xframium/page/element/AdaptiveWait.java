@@ -0,0 +1,173 @@
+package org.xframium.page.element;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.NotFoundException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+import org.xframium.device.factory.DeviceWebDriver;
+
+/**
+ * Waits for an element condition.  Conditions are polled with an interval that starts short and backs off while the condition is not met so that fast pages are
+ * detected quickly without flooding slow devices with requests.  For web content a single asynchronous script can wait in the browser using a MutationObserver
+ */
+public class AdaptiveWait
+{
+    private static final long MIN_POLL = 50;
+    private static final long MAX_POLL = 1000;
+    private static final double BACK_OFF = 1.5;
+
+    /** The script timeout allowance on top of the wait timeout */
+    private static final long SCRIPT_MARGIN = 2000;
+
+    private static final String BROWSER_WAIT = 
+            "var locatorType = arguments[0], locator = arguments[1], condition = arguments[2], timeOut = arguments[3], callback = arguments[arguments.length - 1];" +
+            "function find() {" +
+            "  if ( locatorType == 'xpath' ) return document.evaluate( locator, document, null, XPathResult.FIRST_ORDERED_NODE_TYPE, null ).singleNodeValue;" +
+            "  return document.querySelector( locator );" +
+            "}" +
+            "function visible( e ) {" +
+            "  if ( !e ) return false;" +
+            "  var s = window.getComputedStyle( e );" +
+            "  return s.visibility != 'hidden' && s.display != 'none' && ( e.offsetWidth > 0 || e.offsetHeight > 0 || e.getClientRects().length > 0 );" +
+            "}" +
+            "function check() {" +
+            "  var e = find();" +
+            "  if ( condition == 'PRESENT' ) return e != null;" +
+            "  if ( condition == 'VISIBLE' ) return visible( e );" +
+            "  return !visible( e );" +
+            "}" +
+            "if ( check() ) { callback( true ); return; }" +
+            "var done = false;" +
+            "var observer = new MutationObserver( function() { if ( !done && check() ) { done = true; observer.disconnect(); callback( true ); } } );" +
+            "observer.observe( document.documentElement, { childList: true, subtree: true, attributes: true, characterData: true } );" +
+            "setTimeout( function() { if ( !done ) { done = true; observer.disconnect(); callback( check() ); } }, timeOut );";
+
+    private static Log log = LogFactory.getLog( AdaptiveWait.class );
+
+    private final WebDriver webDriver;
+    private final long timeOut;
+    private final long startTime = System.currentTimeMillis();
+
+    /**
+     * @param webDriver the web driver
+     * @param timeOut the time out in milliseconds
+     */
+    public AdaptiveWait( WebDriver webDriver, long timeOut )
+    {
+        this.webDriver = webDriver;
+        this.timeOut = timeOut;
+    }
+
+    private long getRemaining()
+    {
+        return timeOut - ( System.currentTimeMillis() - startTime );
+    }
+
+    /**
+     * Polls the condition until it returns a value other than null or false
+     *
+     * @param condition the condition
+     * @return the value returned by the condition
+     * @throws TimeoutException if the condition was not met in time
+     */
+    public <T> T until( Function<WebDriver, T> condition )
+    {
+        long pollInterval = MIN_POLL;
+        RuntimeException lastException = null;
+
+        while ( true )
+        {
+            try
+            {
+                T returnValue = condition.apply( webDriver );
+                if ( returnValue != null && !Boolean.FALSE.equals( returnValue ) )
+                    return returnValue;
+            }
+            catch ( NotFoundException | StaleElementReferenceException e )
+            {
+                lastException = e;
+            }
+
+            long remainingTime = getRemaining();
+            if ( remainingTime <= 0 )
+                throw new TimeoutException( "Condition was not met after " + timeOut + "ms", lastException );
+
+            try
+            {
+                Thread.sleep( Math.min( pollInterval, remainingTime ) );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new TimeoutException( "Interrupted while waiting", e );
+            }
+
+            pollInterval = Math.min( (long) ( pollInterval * BACK_OFF ), MAX_POLL );
+        }
+    }
+
+    /**
+     * Waits in the browser for an element to become present, visible or invisible
+     *
+     * @param locatorType xpath or css
+     * @param locator the locator
+     * @param condition PRESENT, VISIBLE or INVISIBLE
+     * @return the result of the condition or null if the wait could not run in the browser
+     */
+    public Boolean untilInBrowser( String locatorType, String locator, String condition )
+    {
+        if ( !( webDriver instanceof JavascriptExecutor ) )
+            return null;
+
+        long remainingTime = getRemaining();
+        if ( remainingTime <= 0 )
+            return null;
+
+        //
+        // The script timeout is raised for this wait only and put back afterwards.  When the current value is not known it could not be restored so the caller polls
+        //
+        long scriptTimeout = webDriver instanceof DeviceWebDriver ? ( (DeviceWebDriver) webDriver ).getScriptTimeout() : -1;
+        if ( scriptTimeout == 0 )
+            return null;
+
+        boolean timeoutRaised = false;
+        try
+        {
+            if ( scriptTimeout > 0 && scriptTimeout < remainingTime + SCRIPT_MARGIN )
+            {
+                webDriver.manage().timeouts().setScriptTimeout( remainingTime + SCRIPT_MARGIN, TimeUnit.MILLISECONDS );
+                timeoutRaised = true;
+            }
+
+            Object returnValue = ( (JavascriptExecutor) webDriver ).executeAsyncScript( BROWSER_WAIT, locatorType, locator, condition, remainingTime );
+            if ( returnValue instanceof Boolean )
+                return (Boolean) returnValue;
+        }
+        catch ( Exception e )
+        {
+            if ( log.isDebugEnabled() )
+                log.debug( Thread.currentThread().getName() + ": Browser wait unavailable - falling back to polling", e );
+        }
+        finally
+        {
+            if ( timeoutRaised )
+            {
+                try
+                {
+                    webDriver.manage().timeouts().setScriptTimeout( scriptTimeout, TimeUnit.MILLISECONDS );
+                }
+                catch ( Exception e )
+                {
+                    log.warn( Thread.currentThread().getName() + ": Could not restore the script timeout to " + scriptTimeout + "ms", e );
+                }
+            }
+        }
+
+        return null;
+    }
+}
@@ -22,6 +22,8 @@ package org.xframium.page.element;
 
 import java.awt.Image;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.WritableRaster;
 import java.io.ByteArrayInputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -35,8 +37,8 @@ import org.apache.commons.logging.LogFactory;
 import org.openqa.selenium.By;
 import org.openqa.selenium.ContextAware;
 import org.openqa.selenium.Dimension;
-import org.openqa.selenium.OutputType;
 import org.openqa.selenium.Point;
+import org.openqa.selenium.Rectangle;
 import org.openqa.selenium.TakesScreenshot;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
@@ -48,10 +50,11 @@ import org.openqa.selenium.remote.ProtocolHandshake;
 import org.openqa.selenium.remote.RemoteWebDriver;
 import org.openqa.selenium.support.ui.ExpectedConditions;
 import org.openqa.selenium.support.ui.Select;
-import org.openqa.selenium.support.ui.WebDriverWait;
+import org.xframium.application.ApplicationDescriptor;
 import org.xframium.device.cloud.CloudRegistry;
 import org.xframium.device.cloud.action.CloudActionProvider;
 import org.xframium.device.factory.DeviceWebDriver;
+import org.xframium.device.factory.ScreenFrameCache;
 import org.xframium.exception.ObjectIdentificationException;
 import org.xframium.exception.ScriptConfigurationException;
 import org.xframium.exception.ScriptException;
@@ -120,12 +123,7 @@ public class SeleniumElement extends AbstractElement
         SeleniumElement element = new SeleniumElement( getBy(), getRawKey(), getElementName(), getPageName(), getContextElement(), locatedElement, index );
         element.setDriver( getWebDriver() );
         element.setDeviceContext( getDeviceContext() );
-        element.subElementList.addAll( subElementList );
-        if ( elementProperties != null )
-        {
-            element.elementProperties = new HashMap<String, String>( 5 );
-            element.elementProperties.putAll( elementProperties );
-        }
+        shareDefinition( element );
         element.clonedElement = true;
         return element;
     }
@@ -184,62 +182,103 @@ public class SeleniumElement extends AbstractElement
     @Override
     public Image _getImage( Resolution imageResolution )
     {
-        WebElement imageElement = getElement();
+        ScreenFrameCache frameCache = ((DeviceWebDriver) getWebDriver()).getFrameCache();
+        String elementKey = getPageName() + "." + getName() + "|" + getKey();
 
-        if ( imageElement != null )
+        //
+        // The element bounds are fetched once per frame
+        //
+        Rectangle elementBounds = frameCache.getRectangle( elementKey );
+        if ( elementBounds == null )
         {
-            if ( imageElement.getLocation() != null && imageElement.getSize() != null && imageElement.getSize().getWidth() > 0 && imageElement.getSize().getHeight() > 0 )
+            WebElement imageElement = getElement();
+            if ( imageElement == null )
+                return null;
+
+            elementBounds = getBounds( imageElement );
+            if ( elementBounds == null || elementBounds.getWidth() <= 0 || elementBounds.getHeight() <= 0 )
             {
-                String fileKey = "PRIVATE:" + getDeviceName() + ".png";
+                log.warn( Thread.currentThread().getName() + ": The element returned via " + getKey() + " did not contain a location or size" );
+                return null;
+            }
+            frameCache.putRectangle( elementKey, elementBounds );
+        }
 
-                byte[] imageData = null;
+        String cloudName = ((DeviceWebDriver) getWebDriver()).getDevice().getCloud();
+        if ( cloudName == null || cloudName.trim().isEmpty() )
+            cloudName = CloudRegistry.instance().getCloud().getName();
 
-                String cloudName = ((DeviceWebDriver) getWebDriver()).getDevice().getCloud();
-                if ( cloudName == null || cloudName.trim().isEmpty() )
-                    cloudName = CloudRegistry.instance().getCloud().getName();
+        boolean perfectoCloud = CloudRegistry.instance().getCloud( cloudName ).getProvider().equals( "PERFECTO" );
+        String frameKey = perfectoCloud ? "PERFECTO:" + imageResolution : DeviceWebDriver.SCREENSHOT_FRAME;
 
-                if ( CloudRegistry.instance().getCloud( cloudName ).getProvider().equals( "PERFECTO" ) )
+        try
+        {
+            BufferedImage fullImage = frameCache.getImage( frameKey );
+            if ( fullImage == null )
+            {
+                byte[] imageData = null;
+                if ( perfectoCloud )
                 {
+                    String fileKey = "PRIVATE:" + getDeviceName() + ".png";
                     PerfectoMobile.instance().imaging().screenShot( getExecutionId(), getDeviceName(), fileKey, Screen.primary, ImageFormat.png, imageResolution );
                     imageData = PerfectoMobile.instance().repositories().download( RepositoryType.MEDIA, fileKey );
+                    if ( imageData != null && imageData.length > 0 )
+                        frameCache.setImageData( frameKey, imageData );
                 }
-                else
+                else if ( getWebDriver() instanceof TakesScreenshot )
                 {
-                    if ( getWebDriver() instanceof TakesScreenshot )
-                    {
-                        try
-                        {
-                            imageData = ((TakesScreenshot) getWebDriver()).getScreenshotAs( OutputType.BYTES );
-                        }
-                        catch ( Exception e )
-                        {
-                            log.error( "Error taking screenshot", e );
-                        }
-                    }
+                    //
+                    // The driver stores the screenshot in the frame cache
+                    //
+                    imageData = ((DeviceWebDriver) getWebDriver()).getScreenFrame();
                 }
-                if ( imageData != null && imageData.length > 0 )
+
+                if ( imageData == null || imageData.length == 0 )
                 {
-                    try
-                    {
-                        BufferedImage fullImage = ImageIO.read( new ByteArrayInputStream( imageData ) );
-                        return fullImage.getSubimage( imageElement.getLocation().getX(), imageElement.getLocation().getY(), imageElement.getSize().getWidth(), imageElement.getSize().getHeight() );
-                    }
-                    catch ( Exception e )
-                    {
-                        log.error( Thread.currentThread().getName() + ": Error extracting image data", e );
-                    }
+                    log.warn( Thread.currentThread().getName() + ": No image data could be retrieved for " + getKey() );
+                    return null;
                 }
-                else
-                    log.warn( Thread.currentThread().getName() + ": No image data could be retrieved for [" + fileKey + "]" );
 
+                fullImage = frameCache.getImage( frameKey );
+                if ( fullImage == null )
+                    fullImage = ImageIO.read( new ByteArrayInputStream( imageData ) );
             }
-            else
-                log.warn( Thread.currentThread().getName() + ": The element returned via " + getKey() + " did not contain a location or size" );
+
+            //
+            // Copy the element out of the frame so changes to it do not affect later crops
+            //
+            BufferedImage subImage = fullImage.getSubimage( elementBounds.getX(), elementBounds.getY(), elementBounds.getWidth(), elementBounds.getHeight() );
+            ColorModel colorModel = subImage.getColorModel();
+            WritableRaster elementRaster = subImage.copyData( subImage.getRaster().createCompatibleWritableRaster( elementBounds.getWidth(), elementBounds.getHeight() ) );
+            return new BufferedImage( colorModel, elementRaster, colorModel.isAlphaPremultiplied(), null );
+        }
+        catch ( Exception e )
+        {
+            log.error( Thread.currentThread().getName() + ": Error extracting image data", e );
         }
 
         return null;
     }
 
+    /**
+     * Reads the location and size of the element in a single call where the driver supports it
+     */
+    private Rectangle getBounds( WebElement imageElement )
+    {
+        try
+        {
+            return imageElement.getRect();
+        }
+        catch ( Exception e )
+        {
+            Point location = imageElement.getLocation();
+            Dimension size = imageElement.getSize();
+            if ( location == null || size == null )
+                return null;
+            return new Rectangle( location, size );
+        }
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -330,6 +369,62 @@ public class SeleniumElement extends AbstractElement
                 ((ContextAware) getWebDriver()).context( getBy().getContext() );
         }
 
+        String locatorKey = getLocatorKey();
+        if ( locatorKey != null )
+        {
+            By cachedBy = ((DeviceWebDriver) getWebDriver()).getCachedLocator( locatorKey );
+            if ( cachedBy != null )
+                return cachedBy;
+        }
+
+        By resolvedBy = resolveBy();
+        if ( locatorKey != null && resolvedBy != null )
+            ((DeviceWebDriver) getWebDriver()).cacheLocator( locatorKey, resolvedBy );
+
+        return resolvedBy;
+    }
+
+    /**
+     * Builds the key that a resolved locator is cached under for this session.  The key covers everything that the locator is built from - the element
+     * definition, the token values, the context and the application under test
+     *
+     * @return the locator key or null if the locator should not be cached
+     */
+    private String getLocatorKey()
+    {
+        if ( !( getWebDriver() instanceof DeviceWebDriver ) || getBy() == BY.V_TEXT || getBy() == BY.V_IMAGE )
+            return null;
+
+        DeviceWebDriver deviceWebDriver = (DeviceWebDriver) getWebDriver();
+        StringBuilder keyBuilder = new StringBuilder( 128 );
+        keyBuilder.append( getPageName() ).append( '.' ).append( getElementName() ).append( '|' ).append( getBy() ).append( '|' );
+
+        if ( getBy() == BY.COMPLEX )
+        {
+            //
+            // Sub-element keys are resolved when the locator is built so content keys and visual lookups are not cached
+            //
+            for ( SubElement subElement : subElementList )
+            {
+                if ( subElement.getBy() == BY.V_TEXT || subElement.getBy() == BY.V_IMAGE || subElement.getKey().contains( "!{" ) )
+                    return null;
+            }
+            keyBuilder.append( getRawKey() ).append( getTokenSignature() );
+        }
+        else
+            keyBuilder.append( getKey() );
+
+        keyBuilder.append( '|' ).append( getDeviceContext() != null && !getDeviceContext().trim().isEmpty() ? getDeviceContext() : getBy().getContext() );
+
+        ApplicationDescriptor aut = deviceWebDriver.getAut();
+        if ( aut != null )
+            keyBuilder.append( '|' ).append( aut.getName() ).append( '|' ).append( aut.getVersion() );
+
+        return keyBuilder.toString();
+    }
+
+    private By resolveBy()
+    {
         switch ( getBy() )
         {
             case COMPLEX:
@@ -927,6 +1022,31 @@ public class SeleniumElement extends AbstractElement
     @Override
     protected boolean _waitFor( long timeOut, TimeUnit timeUnit, WAIT_FOR waitType, String value )
     {
+        String currentContext = null;
+        if ( getWebDriver() instanceof ContextAware )
+            currentContext = ((ContextAware) getWebDriver()).getContext();
+
+        AdaptiveWait wait = new AdaptiveWait( getWebDriver(), timeUnit.toMillis( timeOut ) );
+
+        //
+        // Web content can be waited on in the browser without polling or changing the implicit wait
+        //
+        Boolean browserResult = waitInBrowser( wait, waitType );
+        if ( browserResult != null )
+        {
+            if ( !browserResult )
+            {
+                log.error( Thread.currentThread().getName() + ": Could not locate " + useBy() );
+                throw new ObjectIdentificationException( getBy(), useBy() );
+            }
+
+            if ( currentContext != null && getWebDriver() instanceof ContextAware )
+                ((ContextAware) getWebDriver()).context( currentContext );
+
+            getActionProvider().getSupportedTimers( (DeviceWebDriver) getWebDriver(), getExecutionContext().getTimerName(), getExecutionContext(), null );
+            return true;
+        }
+
         long implicitWait = getWebDriver().getImplicitWait();
         getWebDriver().manage().timeouts().implicitlyWait( 1, TimeUnit.SECONDS );
 
@@ -936,12 +1056,6 @@ public class SeleniumElement extends AbstractElement
             try
             {
 
-                String currentContext = null;
-                if ( getWebDriver() instanceof ContextAware )
-                    currentContext = ((ContextAware) getWebDriver()).getContext();
-
-                WebDriverWait wait = new WebDriverWait( getWebDriver(), timeOut, 250 );
-
                 WebElement webElement = null;
                 boolean returnValue = false;
 
@@ -1062,6 +1176,41 @@ public class SeleniumElement extends AbstractElement
         }
     }
 
+    /**
+     * Runs a present, visible or invisible wait inside the browser when the element is in web content and uses an XPath or CSS locator
+     *
+     * @param wait the wait
+     * @param waitType the wait type
+     * @return the result of the wait or null if it has to be polled
+     */
+    private Boolean waitInBrowser( AdaptiveWait wait, WAIT_FOR waitType )
+    {
+        if ( waitType != WAIT_FOR.PRESENT && waitType != WAIT_FOR.VISIBLE && waitType != WAIT_FOR.INVISIBLE )
+            return null;
+
+        By useBy = useBy();
+        String locatorType = null;
+        if ( useBy instanceof By.ByXPath )
+            locatorType = "xpath";
+        else if ( useBy instanceof By.ByCssSelector )
+            locatorType = "css";
+        else
+            return null;
+
+        String webContext = getWebDriver() instanceof ContextAware ? ((ContextAware) getWebDriver()).getContext() : null;
+        if ( webContext != null )
+        {
+            if ( !webContext.toUpperCase().startsWith( "WEBVIEW" ) && !webContext.toUpperCase().startsWith( "CHROMIUM" ) )
+                return null;
+        }
+        else if ( getWebDriver().getAut() == null || !getWebDriver().getAut().isWeb() )
+            return null;
+
+        String locator = useBy.toString();
+        locator = locator.substring( locator.indexOf( ": " ) + 2 );
+        return wait.untilInBrowser( locatorType, locator, waitType.name() );
+    }
+
     public static void main( String[] args )
     {
         System.out.println(ProtocolHandshake.class
@@ -22,9 +22,9 @@ package org.xframium.page.element.provider;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import javax.xml.xpath.XPathFactory;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.xframium.container.PageContainer;
@@ -32,6 +32,7 @@ import org.xframium.container.SiteContainer;
 import org.xframium.page.ElementDescriptor;
 import org.xframium.page.activity.PageActivity;
 import org.xframium.page.element.Element;
+import org.xframium.utility.XPathCache;
 
 // TODO: Auto-generated Javadoc
 /**
@@ -42,21 +43,36 @@ public abstract class AbstractElementProvider implements ElementProvider
     private Map<String,SiteContainer> siteTree = new HashMap<String,SiteContainer>( 20 );
     private List<SiteContainer> siteList = new ArrayList<SiteContainer>( 10 );
 
-	private static XPathFactory xPathFactory = XPathFactory.newInstance();
 	/** The log. */
 	protected Log log = LogFactory.getLog(ElementProvider.class);
 	
 	private ElementProvider internalElementProvider = null;
 	
-	private ThreadLocal<Element> previousElement = new ThreadLocal<Element>();
-	private ThreadLocal<ElementDescriptor> previousElementDescriptor = new ThreadLocal<ElementDescriptor>();
+	private static final int ELEMENT_CACHE_SIZE = 256;
+	
+	/** The most recently used elements for each thread keyed by the element descriptor */
+	private ThreadLocal<Map<String,Element>> elementCache = new ThreadLocal<Map<String,Element>>()
+	{
+	    @Override
+	    protected Map<String,Element> initialValue()
+	    {
+	        return new LinkedHashMap<String,Element>( 64, 0.75f, true )
+	        {
+	            private static final long serialVersionUID = 1L;
+	            
+	            @Override
+	            protected boolean removeEldestEntry( Map.Entry<String,Element> eldest )
+	            {
+	                return size() > ELEMENT_CACHE_SIZE;
+	            }
+	        };
+	    }
+	};
 	
 	@Override
 	public void setCachedElement( Element cachedElement, ElementDescriptor elementDescriptor )
 	{
-	    this.previousElement.set( cachedElement );
-	    this.previousElementDescriptor.set( elementDescriptor );
-	    
+	    elementCache.get().put( elementDescriptor.toString(), cachedElement );
 	}
 	
 	/* (non-Javadoc)
@@ -65,15 +81,14 @@ public abstract class AbstractElementProvider implements ElementProvider
 	@Override
 	public Element getElement( ElementDescriptor elementDescriptor )
 	{
-	    if ( previousElement.get() != null && previousElementDescriptor.get() != null && elementDescriptor.equals( previousElementDescriptor.get() ) )
+	    String descriptorKey = elementDescriptor.toString();
+	    Map<String,Element> cachedElements = elementCache.get();
+	    Element cachedElement = cachedElements.get( descriptorKey );
+	    if ( cachedElement != null )
 	    {
-	        log.warn( "CACHED VALUE " + elementDescriptor.toString() );
-	        return previousElement.get();
-	    }
-	    else
-	    {
-	        previousElement.set( null );
-	        previousElementDescriptor.set( null );
+	        if ( log.isDebugEnabled() )
+	            log.debug( "Cached element returned for " + descriptorKey );
+	        return cachedElement;
 	    }
 	    
 	    Element returnElement = null;
@@ -84,11 +99,7 @@ public abstract class AbstractElementProvider implements ElementProvider
 	        returnElement = _getElement( elementDescriptor );
 	    
 	    if ( returnElement != null )
-	    {
-	       previousElement.set( returnElement );
-	       
-	       previousElementDescriptor.set( elementDescriptor );
-	    }
+	        cachedElements.put( descriptorKey, returnElement );
 	    
 	    return returnElement;
 	}
@@ -188,7 +199,7 @@ public abstract class AbstractElementProvider implements ElementProvider
     	            break;
     	        
     	        case XPATH:
-    	            xPathFactory.newXPath().compile( currentElement.getRawKey().replace( "{", "" ).replace( "}", "" ) );
+    	            XPathCache.instance().compile( currentElement.getRawKey().replace( "{", "" ).replace( "}", "" ) );
     	            
     	    }
 	    }
@@ -21,19 +21,15 @@
 package org.xframium.page.element.provider;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
-import org.apache.poi.xssf.usermodel.XSSFCell;
-import org.apache.poi.xssf.usermodel.XSSFRow;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.xframium.page.BY;
 import org.xframium.page.ElementDescriptor;
 import org.xframium.page.element.Element;
 import org.xframium.page.element.ElementFactory;
+import org.xframium.utility.ExcelSheetReader;
+import org.xframium.utility.ExcelSheetReader.ExcelRow;
+import org.xframium.utility.ExcelSheetReader.RowHandler;
 
 // TODO: Auto-generated Javadoc
 /**
@@ -106,7 +102,14 @@ public class ExcelElementProvider extends AbstractElementProvider
 			{
 			    if ( log.isInfoEnabled() )
 	                log.info( "Reading from CLASSPATH as " + resource );
-			    readElements( getClass().getClassLoader().getResourceAsStream( resource ) );
+			    try
+			    {
+			        readElements( new ExcelSheetReader( getClass().getClassLoader().getResourceAsStream( resource ) ) );
+			    }
+			    catch( Exception e )
+			    {
+			        log.fatal( "Could not read from " + resource, e );
+			    }
 			}
 		}
 		else
@@ -118,10 +121,10 @@ public class ExcelElementProvider extends AbstractElementProvider
 				{
 				    if ( log.isInfoEnabled() )
 	                    log.info( "Reading from FILE SYSTEM as [" + currentFile + "]" );
-				    readElements( new FileInputStream( currentFile ) );
+				    readElements( new ExcelSheetReader( currentFile ) );
 				}
 			}
-			catch( FileNotFoundException e )
+			catch( Exception e )
 			{
 				log.fatal( "Could not read from " + fileName, e );
 			}
@@ -134,56 +137,37 @@ public class ExcelElementProvider extends AbstractElementProvider
 	 * @param cell the cell
 	 * @return the cell value
 	 */
-	private String getCellValue( XSSFCell cell )
+	private String getCellValue( Object cell )
 	{
 		if (cell != null)
-		{
-			switch (cell.getCellType())
-			{
-				case XSSFCell.CELL_TYPE_BLANK:
-					return null;
-				case XSSFCell.CELL_TYPE_BOOLEAN:
-					return String.valueOf( cell.getBooleanCellValue() );
-				case XSSFCell.CELL_TYPE_NUMERIC:
-					return String.valueOf( cell.getNumericCellValue() );
-				case XSSFCell.CELL_TYPE_STRING:
-					return cell.getRichStringCellValue().toString();
-			}
-		}
+			return String.valueOf( cell );
 		return null;
 	}
 	
 	/**
 	 * Read elements.
 	 *
-	 * @param inputStream the input stream
+	 * @param sheetReader the sheet reader
 	 */
-	private void readElements( InputStream inputStream )
+	private void readElements( ExcelSheetReader sheetReader )
 	{
-		
-		XSSFWorkbook workbook = null;
-
 		try
 		{
-			workbook = new XSSFWorkbook( inputStream );
-			boolean elementsRead = true;
+			final boolean[] elementsRead = new boolean[] { true };
 			String[] tabs = tabNames.split( "," );
 			
-			for ( String tabName : tabs )
+			if ( getSiteName() == null )
+			    setSiteName( tabs[ 0 ] );
+			
+			sheetReader.readSheets( tabs, new RowHandler()
 			{
-			    if ( getSiteName() == null )
-                    setSiteName( tabName );
-			    
-				XSSFSheet sheet = workbook.getSheet( tabName );
-				if ( sheet == null )
-				    continue;
-	
-				for (int i = 1; i <= sheet.getLastRowNum(); i++)
+				public boolean handleRow( String tabName, ExcelRow currentRow )
 				{
-					XSSFRow currentRow = sheet.getRow( i );
+					if ( currentRow.getRowNumber() == 0 )
+						return true;
 	
 					if ( getCellValue( currentRow.getCell( 0 ) ) == null || getCellValue( currentRow.getCell( 0 ) ).isEmpty() )
-						break;
+						return false;
 					
 					ElementDescriptor elementDescriptor = new ElementDescriptor( tabName, getCellValue( currentRow.getCell( 0 ) ),  getCellValue( currentRow.getCell( 1 ) ) );
 					
@@ -193,8 +177,6 @@ public class ExcelElementProvider extends AbstractElementProvider
 						contextName = getCellValue( currentRow.getCell( 4 ) );
 					}
 					
-					
-					
 					Element currentElement = ElementFactory.instance().createElement( BY.valueOf( getCellValue( currentRow.getCell( 2 ) ) ), getCellValue( currentRow.getCell( 3 ) ).replace( "$$", ","), getCellValue( currentRow.getCell( 1 ) ), getCellValue( currentRow.getCell( 0 ) ), contextName );
 					
                     if ( getCellValue( currentRow.getCell( 5 ) ) != null && !getCellValue( currentRow.getCell( 5 ) ).isEmpty() )
@@ -204,15 +186,13 @@ public class ExcelElementProvider extends AbstractElementProvider
 
 					if ( log.isDebugEnabled() )
 						log.debug( "Adding Excel Element using [" + elementDescriptor.toString() + "] as [" + currentElement );
-					elementsRead = elementsRead & validateElement( elementDescriptor, currentElement );
+					elementsRead[ 0 ] = elementsRead[ 0 ] & validateElement( elementDescriptor, currentElement );
 					elementMap.put(elementDescriptor.toString(), currentElement );
-					
+					return true;
 				}
-			}
-			
-			setInitialized( elementsRead );
-
+			} );
 			
+			setInitialized( elementsRead[ 0 ] );
 		}
 		catch (Exception e)
 		{
@@ -220,13 +200,7 @@ public class ExcelElementProvider extends AbstractElementProvider
 		}
 		finally
 		{
-			try
-			{
-				workbook.close();
-			}
-			catch (Exception e)
-			{
-			}
+			sheetReader.close();
 		}
 	}
 	
@@ -32,6 +32,7 @@ import java.lang.reflect.Proxy;
 import org.xframium.exception.ObjectConfigurationException;
 import org.xframium.page.Page;
 import org.xframium.page.PageManager;
+import org.xframium.page.factory.PageMetadata.MethodDispatch;
 import org.xframium.reporting.ExecutionContextTest;
 
 
@@ -147,7 +148,26 @@ public class DefaultPageFactory extends LocalPageFactory implements InvocationHa
 		    currentService = super._createPage( (Class<Page>) proxy.getClass().getInterfaces()[0], webDriver);
 		    PageManager.instance().getPageCache().put(  proxy.getClass(), currentService );
 		}
-		 
+		
+		MethodDispatch methodDispatch = PageMetadata.getProxyMetadata( proxy.getClass() ).getDispatch( method, currentService.getClass() );
+		if ( methodDispatch != null )
+		{
+		    String methodKeyName = methodDispatch.getKeyName( PageManager.instance().getSiteName() );
+		    
+		    PageManager.instance().beforeExecution( methodKeyName );
+		    
+		    long startTime = System.currentTimeMillis();
+		    Object returnValue = methodDispatch.invoke( currentService, args );
+		    long runLength = System.currentTimeMillis() - startTime;
+		    
+		    PageManager.instance().afterExecution( methodKeyName, runLength );
+		    
+		    return returnValue;
+		}
+		
+		//
+		// The implementation does not declare the interface method so locate it using the arguments
+		//
 		Method methodImplemenation = findMethod( currentService.getClass(), method.getName(), args );
 		
 		if ( methodImplemenation != null )
@@ -26,7 +26,6 @@
 package org.xframium.page.factory;
 
 import java.lang.reflect.Field;
-import java.lang.reflect.Method;
 import org.xframium.page.AbstractPage;
 import org.xframium.page.ElementDescriptor;
 import org.xframium.page.Page;
@@ -46,18 +45,6 @@ import org.xframium.reporting.ExecutionContextTest;
 public class LocalPageFactory extends AbstractPageFactory
 {
 
-    /** The Constant DOT. */
-    private static final char DOT = '.';
-    
-    /** The Constant SPI. */
-    private static final String SPI = ".spi";
-    
-    /** The Constant IMPL. */
-    private static final String IMPL = "Impl";
-    
-    /** The Constant GET. */
-    private static final String GET = "get";
-    
     /**
      * Instantiates a new local page factory.
      */
@@ -74,71 +61,55 @@ public class LocalPageFactory extends AbstractPageFactory
     protected Page _createPage(Class<Page> pageInterface, Object webDriver )
     {
     	this.webDriver = webDriver;
-        String serviceName = pageInterface.getPackage().getName() + SPI + DOT + pageInterface.getSimpleName() + IMPL; 
+    	PageMetadata pageMetadata = PageMetadata.getMetadata( pageInterface );
+        String serviceName = pageMetadata.getServiceName(); 
         
         if ( log.isInfoEnabled() )
     		log.info( "Creating page implementation as " + serviceName );
         
         try
         {
-        	Page currentPage = (Page) Class.forName( serviceName ).newInstance();
+        	Page currentPage = pageMetadata.newInstance();
         	currentPage.initializePage();
         	currentPage.setDriver( webDriver );
 
-        	
-        	Method[] methodArray = currentPage.getClass().getInterfaces()[0].getMethods();
-        	
-        	for ( Method currentMethod : methodArray )
+        	for ( String elementName : pageMetadata.getElementNames() )
             {
-        		if ( currentMethod.getAnnotation( Page.ElementDefinition.class ) != null )
-            	{
-            		if ( log.isDebugEnabled() )
-                		log.debug( " Analyzing Method " + currentMethod.getName() );
-
-            		//
-            		// Strip off a 'get' if it exists for the elementName
-            		//
-            		String elementName = currentMethod.getName();
-            		if ( elementName.startsWith( GET ) )
-            			elementName = elementName.substring( 3 );
+        		if ( log.isDebugEnabled() )
+            		log.debug( " Analyzing Method " + elementName );
 
-            		try
-            		{
-            			ElementDescriptor elementDescriptor = new ElementDescriptor( PageManager.instance().getSiteName(), currentPage.getClass().getInterfaces()[0].getSimpleName(), elementName );
-                		Element currentElement = PageManager.instance().getElementProvider().getElement( elementDescriptor );
-            			( (AbstractPage) currentPage ).registerElement( elementDescriptor, currentElement );
-            		}
-            		catch( Exception e )
-            		{
-            			e.printStackTrace();
-            		}
-            	}
+        		try
+        		{
+        			ElementDescriptor elementDescriptor = new ElementDescriptor( PageManager.instance().getSiteName(), pageMetadata.getPageName(), elementName );
+            		Element currentElement = PageManager.instance().getElementProvider().getElement( elementDescriptor );
+        			( (AbstractPage) currentPage ).registerElement( elementDescriptor, currentElement );
+        		}
+        		catch( Exception e )
+        		{
+        			e.printStackTrace();
+        		}
             }
         	
-        	Field[] fieldArray = currentPage.getClass().getFields();
-        	for ( Field currentField : fieldArray )
+        	for ( Field currentField : pageMetadata.getElementFields() )
             {
-        		if ( currentField.getAnnotation( Page.ElementDefinition.class ) != null )
-            	{
-            		if ( log.isDebugEnabled() )
-                		log.debug( " Analyzing Field " + currentField.getName() );
- 
-            		String fieldValue = currentField.get( currentPage ) + "";
+        		if ( log.isDebugEnabled() )
+            		log.debug( " Analyzing Field " + currentField.getName() );
+
+        		String fieldValue = currentField.get( currentPage ) + "";
+        		
+        		try
+        		{
+        			ElementDescriptor elementDescriptor = new ElementDescriptor( PageManager.instance().getSiteName(), pageMetadata.getPageName(), fieldValue );
+            		Element currentElement = PageManager.instance().getElementProvider().getElement( elementDescriptor );
+            		
+            		currentElement.setTimed(  currentField.getAnnotation( Page.TimeMethod.class ) != null );
             		
-            		try
-            		{
-            			ElementDescriptor elementDescriptor = new ElementDescriptor( PageManager.instance().getSiteName(), currentPage.getClass().getInterfaces()[0].getSimpleName(), fieldValue );
-                		Element currentElement = PageManager.instance().getElementProvider().getElement( elementDescriptor );
-                		
-                		currentElement.setTimed(  currentField.getAnnotation( Page.TimeMethod.class ) != null );
-                		
-            			( (AbstractPage) currentPage ).registerElement( elementDescriptor, currentElement );
-            		}
-            		catch( Exception e )
-            		{
-            			e.printStackTrace();
-            		}
-            	}
+        			( (AbstractPage) currentPage ).registerElement( elementDescriptor, currentElement );
+        		}
+        		catch( Exception e )
+        		{
+        			e.printStackTrace();
+        		}
             }
 
         	
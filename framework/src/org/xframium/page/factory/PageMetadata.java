@@ -0,0 +1,269 @@
+/*******************************************************************************
+ * xFramium
+ *
+ * Copyright 2016 by Moreland Labs, Ltd. (http://www.morelandlabs.com)
+ *
+ * Some open source application is free software: you can redistribute 
+ * it and/or modify it under the terms of the GNU General Public 
+ * License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ *  
+ * Some open source application is distributed in the hope that it will 
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty 
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with xFramium.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @license GPL-3.0+ <http://spdx.org/licenses/GPL-3.0+>
+ *******************************************************************************/
+package org.xframium.page.factory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.xframium.page.Page;
+
+/**
+ * Everything the page factories need to know about a page interface, resolved once and shared by every page instance.  This includes the implementation class,
+ * the element definitions and a method handle for each interface method so a proxy call does not have to search the implementation
+ */
+public class PageMetadata
+{
+    private static final char DOT = '.';
+    private static final String SPI = ".spi";
+    private static final String IMPL = "Impl";
+    private static final String GET = "get";
+    private static final Object[] NO_ARGS = new Object[ 0 ];
+
+    private static Log log = LogFactory.getLog( PageMetadata.class );
+    private static final Map<Class<?>, PageMetadata> metadataMap = new ConcurrentHashMap<Class<?>, PageMetadata>( 20 );
+    private static final Map<Class<?>, PageMetadata> proxyMap = new ConcurrentHashMap<Class<?>, PageMetadata>( 20 );
+
+    /**
+     * Returns the metadata for a page interface building it on first use
+     */
+    public static PageMetadata getMetadata( Class<?> pageInterface )
+    {
+        PageMetadata pageMetadata = metadataMap.get( pageInterface );
+        if ( pageMetadata == null )
+        {
+            pageMetadata = new PageMetadata( pageInterface );
+            PageMetadata existingMetadata = metadataMap.putIfAbsent( pageInterface, pageMetadata );
+            if ( existingMetadata != null )
+                pageMetadata = existingMetadata;
+        }
+        return pageMetadata;
+    }
+
+    /**
+     * Returns the metadata for the page interface implemented by a proxy class
+     */
+    public static PageMetadata getProxyMetadata( Class<?> proxyClass )
+    {
+        PageMetadata pageMetadata = proxyMap.get( proxyClass );
+        if ( pageMetadata == null )
+        {
+            pageMetadata = getMetadata( proxyClass.getInterfaces()[ 0 ] );
+            proxyMap.put( proxyClass, pageMetadata );
+        }
+        return pageMetadata;
+    }
+
+    /**
+     * Builds the metadata for a page model as it is loaded so the first test does not pay for it
+     */
+    public static void register( Class<?> pageInterface )
+    {
+        if ( pageInterface != null && pageInterface.isInterface() && Page.class.isAssignableFrom( pageInterface ) )
+            getMetadata( pageInterface );
+    }
+
+    /**
+     * A resolved interface method
+     */
+    public static class MethodDispatch
+    {
+        private final Class<?> implementationClass;
+        private final MethodHandle methodHandle;
+        private final String keySuffix;
+        private volatile String[] keyName = new String[] { null, null };
+
+        private MethodDispatch( Class<?> implementationClass, MethodHandle methodHandle, String keySuffix )
+        {
+            this.implementationClass = implementationClass;
+            this.methodHandle = methodHandle;
+            this.keySuffix = keySuffix;
+        }
+
+        /**
+         * @return the name reported to the execution listeners - site.Interface.method
+         */
+        public String getKeyName( String siteName )
+        {
+            String[] currentKey = keyName;
+            if ( currentKey[ 0 ] == null || !currentKey[ 0 ].equals( siteName ) )
+            {
+                currentKey = new String[] { siteName, siteName + keySuffix };
+                keyName = currentKey;
+            }
+            return currentKey[ 1 ];
+        }
+
+        /**
+         * Calls the implementation.  Failures are wrapped as Method.invoke would have wrapped them
+         */
+        public Object invoke( Object currentPage, Object[] args ) throws InvocationTargetException
+        {
+            try
+            {
+                return (Object) methodHandle.invokeExact( currentPage, args == null ? NO_ARGS : args );
+            }
+            catch ( Throwable e )
+            {
+                throw new InvocationTargetException( e );
+            }
+        }
+    }
+
+    private static final MethodDispatch NO_DISPATCH = new MethodDispatch( null, null, null );
+
+    private final String serviceName;
+    private final String interfaceName;
+    private Class<?> implementationClass;
+    private Exception loadException;
+    private String pageName;
+    private final List<String> elementNames = new ArrayList<String>( 10 );
+    private final List<Field> elementFields = new ArrayList<Field>( 10 );
+    private final Map<Method, MethodDispatch> dispatchMap = new ConcurrentHashMap<Method, MethodDispatch>( 20 );
+
+    private PageMetadata( Class<?> pageInterface )
+    {
+        interfaceName = pageInterface.getSimpleName();
+        serviceName = pageInterface.getPackage().getName() + SPI + DOT + pageInterface.getSimpleName() + IMPL;
+
+        try
+        {
+            implementationClass = Class.forName( serviceName );
+            Class<?> pageDefinition = implementationClass.getInterfaces()[ 0 ];
+            pageName = pageDefinition.getSimpleName();
+
+            for ( Method currentMethod : pageDefinition.getMethods() )
+            {
+                if ( currentMethod.getAnnotation( Page.ElementDefinition.class ) != null )
+                {
+                    //
+                    // Strip off a 'get' if it exists for the elementName
+                    //
+                    String elementName = currentMethod.getName();
+                    if ( elementName.startsWith( GET ) )
+                        elementName = elementName.substring( 3 );
+                    elementNames.add( elementName );
+                }
+            }
+
+            for ( Field currentField : implementationClass.getFields() )
+            {
+                if ( currentField.getAnnotation( Page.ElementDefinition.class ) != null )
+                    elementFields.add( currentField );
+            }
+        }
+        catch ( Exception e )
+        {
+            loadException = e;
+            implementationClass = null;
+        }
+    }
+
+    /**
+     * @return the name of the implementation class derived from the interface
+     */
+    public String getServiceName()
+    {
+        return serviceName;
+    }
+
+    /**
+     * Creates a new instance of the implementation
+     *
+     * @throws Exception if the implementation could not be loaded
+     */
+    public Page newInstance() throws Exception
+    {
+        if ( implementationClass == null )
+            throw loadException;
+        return (Page) implementationClass.newInstance();
+    }
+
+    /**
+     * @return the page name used in the element descriptors
+     */
+    public String getPageName()
+    {
+        return pageName;
+    }
+
+    /**
+     * @return the element names defined by annotated interface methods
+     */
+    public List<String> getElementNames()
+    {
+        return elementNames;
+    }
+
+    /**
+     * @return the annotated fields of the implementation whose values are element names
+     */
+    public List<Field> getElementFields()
+    {
+        return elementFields;
+    }
+
+    /**
+     * Returns the implementation of an interface method
+     *
+     * @param interfaceMethod the method called on the proxy
+     * @param pageClass the class of the page that will be called
+     * @return the dispatch or null if the method has to be located using the arguments
+     */
+    public MethodDispatch getDispatch( Method interfaceMethod, Class<?> pageClass )
+    {
+        MethodDispatch methodDispatch = dispatchMap.get( interfaceMethod );
+        if ( methodDispatch == null )
+        {
+            methodDispatch = createDispatch( interfaceMethod, pageClass );
+            dispatchMap.put( interfaceMethod, methodDispatch );
+        }
+
+        if ( methodDispatch == NO_DISPATCH || methodDispatch.implementationClass != pageClass )
+            return null;
+        return methodDispatch;
+    }
+
+    private MethodDispatch createDispatch( Method interfaceMethod, Class<?> pageClass )
+    {
+        try
+        {
+            Method implementationMethod = pageClass.getMethod( interfaceMethod.getName(), interfaceMethod.getParameterTypes() );
+            int parameterCount = implementationMethod.getParameterTypes().length;
+            MethodHandle methodHandle = MethodHandles.publicLookup().unreflect( implementationMethod ).asType( MethodType.genericMethodType( parameterCount + 1 ) ).asSpreader( Object[].class, parameterCount );
+            return new MethodDispatch( pageClass, methodHandle, DOT + interfaceName + DOT + interfaceMethod.getName() );
+        }
+        catch ( Exception e )
+        {
+            if ( log.isDebugEnabled() )
+                log.debug( "Could not resolve " + interfaceMethod.getName() + " on " + pageClass.getName() + " - it will be located by its arguments", e );
+            return NO_DISPATCH;
+        }
+    }
+}
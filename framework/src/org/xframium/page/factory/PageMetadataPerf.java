@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * xFramium
+ *
+ * Copyright 2016 by Moreland Labs, Ltd. (http://www.morelandlabs.com)
+ *
+ * Some open source application is free software: you can redistribute 
+ * it and/or modify it under the terms of the GNU General Public 
+ * License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ *  
+ * Some open source application is distributed in the hope that it will 
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty 
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with xFramium.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @license GPL-3.0+ <http://spdx.org/licenses/GPL-3.0+>
+ *******************************************************************************/
+package org.xframium.page.factory;
+
+import java.lang.reflect.Method;
+import org.xframium.page.Page;
+import org.xframium.page.PageManager;
+import org.xframium.page.keyWord.KeyWordPage;
+import org.xframium.page.keyWord.spi.KeyWordPageImpl;
+
+/**
+ * Compares a page method called directly, through the per-call method search the page proxy used before the metadata was introduced and through the
+ * proxy dispatch.  This is run by hand rather than as part of the unit tests
+ */
+public class PageMetadataPerf
+{
+    private static final int ITERATIONS = 2000000;
+
+    public static void main( String[] args ) throws Exception
+    {
+        KeyWordPage keyWordPage = (KeyWordPage) PageManager.instance().createPage( KeyWordPage.class, null );
+        keyWordPage.setPageName( "Home" );
+        KeyWordPageImpl pageImpl = (KeyWordPageImpl) PageManager.instance().getPageCache().get( keyWordPage.getClass() );
+
+        String pageName = null;
+        for ( int i = 0; i < ITERATIONS / 10; i++ )
+        {
+            pageName = keyWordPage.getPageName();
+            pageName = reflectiveCall( keyWordPage, pageImpl, "getPageName" );
+        }
+
+        long startTime = System.nanoTime();
+        for ( int i = 0; i < ITERATIONS; i++ )
+            pageName = pageImpl.getPageName();
+        long directTime = System.nanoTime() - startTime;
+
+        startTime = System.nanoTime();
+        for ( int i = 0; i < ITERATIONS; i++ )
+            pageName = reflectiveCall( keyWordPage, pageImpl, "getPageName" );
+        long reflectiveTime = System.nanoTime() - startTime;
+
+        startTime = System.nanoTime();
+        for ( int i = 0; i < ITERATIONS; i++ )
+            pageName = keyWordPage.getPageName();
+        long proxyTime = System.nanoTime() - startTime;
+
+        System.out.println( "Page method call returning " + pageName + ": direct " + ( directTime / ITERATIONS ) + "ns, method search " + ( reflectiveTime / ITERATIONS ) + "ns, proxy dispatch " + ( proxyTime / ITERATIONS ) + "ns" );
+    }
+
+    /**
+     * The lookup the proxy performed for every call before the metadata was introduced
+     */
+    private static String reflectiveCall( Page proxy, Page currentPage, String methodName ) throws Exception
+    {
+        Page cachedPage = PageManager.instance().getPageCache().get( proxy.getClass() );
+        for ( Method currentMethod : cachedPage.getClass().getMethods() )
+        {
+            if ( currentMethod.getName().equals( methodName ) && currentMethod.getParameterTypes().length == 0 )
+            {
+                String methodKeyName = PageManager.instance().getSiteName() + "." + proxy.getClass().getInterfaces()[ 0 ].getSimpleName() + "." + methodName;
+                PageManager.instance().beforeExecution( methodKeyName );
+                Object returnValue = currentMethod.invoke( currentPage );
+                PageManager.instance().afterExecution( methodKeyName, 0 );
+                return (String) returnValue;
+            }
+        }
+        return null;
+    }
+}
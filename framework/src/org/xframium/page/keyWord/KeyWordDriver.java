@@ -43,6 +43,7 @@ import org.xframium.page.PageManager;
 import org.xframium.page.StepStatus;
 import org.xframium.page.data.PageData;
 import org.xframium.page.data.PageDataManager;
+import org.xframium.page.factory.PageMetadata;
 import org.xframium.page.keyWord.step.SyntheticStep;
 import org.xframium.page.listener.KeyWordListener;
 import org.xframium.reporting.ExecutionContextTest;
@@ -149,6 +150,7 @@ public class KeyWordDriver
         if ( log.isInfoEnabled() )
             log.info( "Mapping Page [" + useName + "] to [" + pageClass.getName() + "]" );
         pageMap.put( useName, pageClass );
+        PageMetadata.register( pageClass );
     }
 
     public void addStepListener( KeyWordListener stepListener )
@@ -690,10 +692,7 @@ public class KeyWordDriver
             if ( testStarted )
                 KeyWordDriver.instance().notifyAfterTest( webDriver, test, contextMap, dataMap, pageMap, returnValue, sC, executionContext );
             
-            for ( String key : dataMap.keySet() )
-            {
-                PageDataManager.instance().putPageData( dataMap.get( key ) );
-            }
+            PageDataManager.instance().releasePageData();
         }
     }
 
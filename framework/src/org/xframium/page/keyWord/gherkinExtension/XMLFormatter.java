@@ -264,5 +264,23 @@ public class XMLFormatter extends AbstractPageDataProvider implements Formatter
         
         return super.getRecords( recordType );
     }
+    
+    @Override
+    public void putRecord( PageData pageData )
+    {
+        if ( pageDataProvider != null )
+            pageDataProvider.putRecord( pageData );
+        
+        super.putRecord( pageData );
+    }
+    
+    @Override
+    public void releaseRecords()
+    {
+        if ( pageDataProvider != null )
+            pageDataProvider.releaseRecords();
+        
+        super.releaseRecords();
+    }
 
 }
@@ -21,22 +21,20 @@
 package org.xframium.page.keyWord.provider;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.poi.xssf.usermodel.XSSFCell;
-import org.apache.poi.xssf.usermodel.XSSFRow;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.xframium.container.SuiteContainer;
 import org.xframium.page.Page;
 import org.xframium.page.keyWord.KeyWordPage;
 import org.xframium.page.keyWord.KeyWordTest;
 import org.xframium.page.keyWord.matrixExtension.MatrixTest;
+import org.xframium.utility.ExcelSheetReader;
+import org.xframium.utility.ExcelSheetReader.ExcelRow;
+import org.xframium.utility.ExcelSheetReader.RowHandler;
 
 // TODO: Auto-generated Javadoc
 /**
@@ -85,22 +83,10 @@ public class ExcelKeyWordProvider implements KeyWordProvider
 		this.configProperties = configProperties;
 	}
 	
-	private String getCellValue( XSSFCell cell )
+	private String getCellValue( Object cell )
     {
         if (cell != null )
-        {
-            switch (cell.getCellType())
-            {
-                case XSSFCell.CELL_TYPE_BLANK:
-                    return null;
-                case XSSFCell.CELL_TYPE_BOOLEAN:
-                    return String.valueOf( cell.getBooleanCellValue() );
-                case XSSFCell.CELL_TYPE_NUMERIC:
-                    return String.valueOf( cell.getNumericCellValue() );
-                case XSSFCell.CELL_TYPE_STRING:
-                    return cell.getRichStringCellValue().toString();
-            }
-        }
+            return String.valueOf( cell );
         return null;
     }
 
@@ -117,7 +103,14 @@ public class ExcelKeyWordProvider implements KeyWordProvider
 			if (log.isInfoEnabled())
 				log.info( "Reading from CLASSPATH as XMLElementProvider.elementFile" );
 			
-			readElements( sC, getClass().getClassLoader().getResourceAsStream( resourceName ), parseDataIterators );
+			try
+			{
+				readElements( sC, new ExcelSheetReader( getClass().getClassLoader().getResourceAsStream( resourceName ) ), parseDataIterators );
+			}
+			catch (Exception e)
+			{
+				log.fatal( "Could not read from " + resourceName, e );
+			}
 		}
 		else
 		{
@@ -125,7 +118,7 @@ public class ExcelKeyWordProvider implements KeyWordProvider
 			{
 				if (log.isInfoEnabled())
 					log.info( "Reading from FILE SYSTEM as [" + fileName + "]" );
-				readElements( sC, new FileInputStream( fileName ), parseDataIterators );
+				readElements( sC, new ExcelSheetReader( fileName ), parseDataIterators );
 			}
 			catch (Exception e)
 			{
@@ -135,83 +128,90 @@ public class ExcelKeyWordProvider implements KeyWordProvider
 		return sC;
 	}
 
-	private void readElements( SuiteContainer sC, InputStream inputStream, boolean parseDataIterators )
+	private void readElements( final SuiteContainer sC, ExcelSheetReader sheetReader, boolean parseDataIterators )
     {
-        List<MatrixTest> testList = new ArrayList<MatrixTest>( 10 );
-        XSSFWorkbook workbook = null;
+        final List<MatrixTest> testList = new ArrayList<MatrixTest>( 10 );
 
         try
         {
-            workbook = new XSSFWorkbook( inputStream );
-            
-            XSSFSheet sheet = workbook.getSheet( "Model" );
             //
-            // Extract the Tests
+            // Extract the pages and the tests
             //
-            for (int i = 1; i <= sheet.getLastRowNum(); i++)
+            sheetReader.readSheets( new String[] { "Model", "Tests" }, new RowHandler()
             {
-                XSSFRow currentRow = sheet.getRow( i );
-                
-                String pageName = getCellValue( currentRow.getCell( 0 ) );
-                
-                if ( pageName.toLowerCase().equals( "name" ) )
-                    continue;
-                String className = getCellValue( currentRow.getCell( 1 ) );
-                
-                try
+                public boolean handleRow( String sheetName, ExcelRow currentRow )
                 {
-                    Class useClass = KeyWordPage.class;
-                    if (className != null && !className.isEmpty() )
-                        useClass = ( Class<Page> ) Class.forName( className );
+                    if ( currentRow.getRowNumber() == 0 )
+                        return true;
                     
-                    if (log.isDebugEnabled())
-                        log.debug( "Creating page as " + useClass.getSimpleName() + " for " + pageName );
-        
-                    sC.addPageModel( sC.getSiteName(), pageName, useClass );
-                }
-                catch( Exception e )
-                {
-                    log.error( "Error creating instance of [" + className + "]" );
+                    if ( sheetName.equals( "Model" ) )
+                    {
+                        String pageName = getCellValue( currentRow.getCell( 0 ) );
+                        
+                        if ( pageName.toLowerCase().equals( "name" ) )
+                            return true;
+                        String className = getCellValue( currentRow.getCell( 1 ) );
+                        
+                        try
+                        {
+                            Class useClass = KeyWordPage.class;
+                            if (className != null && !className.isEmpty() )
+                                useClass = ( Class<Page> ) Class.forName( className );
+                            
+                            if (log.isDebugEnabled())
+                                log.debug( "Creating page as " + useClass.getSimpleName() + " for " + pageName );
+                
+                            sC.addPageModel( sC.getSiteName(), pageName, useClass );
+                        }
+                        catch( Exception e )
+                        {
+                            log.error( "Error creating instance of [" + className + "]" );
+                        }
+                    }
+                    else
+                    {
+                        List<String> testDefinition = new ArrayList<String>( 10 );
+                        for ( int j=0; j<currentRow.getLastCellNum(); j++ )
+                            testDefinition.add( getCellValue( currentRow.getCell( j ) ) );
+                        
+                        MatrixTest currentTest = new MatrixTest( testDefinition.toArray( new String[ 0 ] ) );
+                        if ( currentTest.getName() != null && !currentTest.getName().isEmpty() && currentTest.isActive() )
+                            testList.add( currentTest );
+                    }
+                    return true;
                 }
-            }
+            } );
             
-            sheet = workbook.getSheet( "Tests" );
-
             //
-            // Extract the Tests
+            // Each test has its steps on a sheet of the same name
             //
-            for (int i = 1; i <= sheet.getLastRowNum(); i++)
+            String[] testNames = new String[ testList.size() ];
+            final Map<String,List<String[]>> stepMap = new HashMap<String,List<String[]>>( testList.size() );
+            for ( int i=0; i<testNames.length; i++ )
             {
-                XSSFRow currentRow = sheet.getRow( i );
-                
-                List<String> testDefinition = new ArrayList<String>( 10 );
-                for ( int j=0; j<currentRow.getLastCellNum(); j++ )
-                    testDefinition.add( getCellValue( currentRow.getCell( j ) ) );
-                
-                MatrixTest currentTest = new MatrixTest( testDefinition.toArray( new String[ 0 ] ) );
-                if ( currentTest.getName() != null && !currentTest.getName().isEmpty() && currentTest.isActive() )
-                    testList.add( currentTest );
+                testNames[ i ] = testList.get( i ).getName();
+                stepMap.put( testNames[ i ], new ArrayList<String[]>( 20 ) );
             }
             
-            for ( MatrixTest currentTest : testList )
+            sheetReader.readSheets( testNames, new RowHandler()
             {
-                List<String[]> stepList = new ArrayList<String[]>( 20 );
-                sheet = workbook.getSheet( currentTest.getName() );
-                if ( sheet != null )
+                public boolean handleRow( String sheetName, ExcelRow currentRow )
                 {
-                    for (int i = 1; i <= sheet.getLastRowNum(); i++)
-                    {
-                        XSSFRow currentRow = sheet.getRow( i );
-
-                        
-                        List<String> stepDefinition = new ArrayList<String>( 10 );
-                        for ( int j=0; j<currentRow.getLastCellNum(); j++ )
-                            stepDefinition.add( getCellValue( currentRow.getCell( j ) ) );
-                        
-                        stepList.add( stepDefinition.toArray( new String[ 0 ] ) );
-                    }
+                    if ( currentRow.getRowNumber() == 0 )
+                        return true;
+                    
+                    List<String> stepDefinition = new ArrayList<String>( 10 );
+                    for ( int j=0; j<currentRow.getLastCellNum(); j++ )
+                        stepDefinition.add( getCellValue( currentRow.getCell( j ) ) );
+                    
+                    stepMap.get( sheetName ).add( stepDefinition.toArray( new String[ 0 ] ) );
+                    return true;
                 }
-                
+            } );
+            
+            for ( MatrixTest currentTest : testList )
+            {
+                List<String[]> stepList = stepMap.get( currentTest.getName() );
                 currentTest.setStepDefinition( (String[][]) stepList.toArray( new String[ 0 ][ 0 ] ) );
             }
             
@@ -234,13 +234,7 @@ public class ExcelKeyWordProvider implements KeyWordProvider
         }
         finally
         {
-            try
-            {
-                workbook.close();
-            }
-            catch (Exception e)
-            {
-            }
+            sheetReader.close();
         }
     }
 }
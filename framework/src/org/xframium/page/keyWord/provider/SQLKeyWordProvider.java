@@ -155,7 +155,8 @@ public class SQLKeyWordProvider implements KeyWordProvider
         Map<String, MatrixTest> testMap = new HashMap<String, MatrixTest>( 10 );
         try
         {
-            Object[][] results = SQLUtil.getResults( username, password, url, driver, testCaseQuery, new String[] { suite } );
+            Object[][][] queryData = SQLUtil.getResults( username, password, url, driver, new String[] { testCaseQuery, testStepQuery }, new String[][] { { suite }, { suite } } );
+            Object[][] results = queryData[ 0 ];
             for ( Object[] resultRow : results )
             {
                 List<String> testDefinition = new ArrayList<String>( 10 );
@@ -167,7 +168,7 @@ public class SQLKeyWordProvider implements KeyWordProvider
                     testMap.put( currentTest.getName(), currentTest );
             }
 
-            results = SQLUtil.getResults( username, password, url, driver, testStepQuery, new String[] { suite } );
+            results = queryData[ 1 ];
 
             int currentIndex = 0;
             while ( currentIndex < results.length )
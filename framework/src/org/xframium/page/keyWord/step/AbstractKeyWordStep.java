@@ -123,6 +123,9 @@ public abstract class AbstractKeyWordStep implements KeyWordStep
 
     protected boolean orMapping = true;
 
+    /** Set by imaging steps that only read the screen so the cached screenshot frame survives them */
+    protected boolean frameSafe = false;
+
     private static Random numberGenerator = new Random();
 
     /** The s failure. */
@@ -929,7 +932,9 @@ public abstract class AbstractKeyWordStep implements KeyWordStep
                     }
                 }
 
-                
+                if ( !frameSafe && webDriver instanceof DeviceWebDriver )
+                    ((DeviceWebDriver) webDriver).getFrameCache().invalidate();
+
                 returnValue = _executeStep( pageObject, ((altWebDriver != null) ? altWebDriver : webDriver), contextMap, dataMap, pageMap, sC, executionContext );
 
                 //
@@ -1975,7 +1980,14 @@ public abstract class AbstractKeyWordStep implements KeyWordStep
             OutputStream os = null;
             try
             {
-                byte[] screenShot = ((TakesScreenshot) webDriver).getScreenshotAs( OutputType.BYTES );
+                //
+                // Imaging steps do not change the screen so they can record the frame they were checked against
+                //
+                byte[] screenShot = null;
+                if ( frameSafe && webDriver instanceof DeviceWebDriver )
+                    screenShot = ((DeviceWebDriver) webDriver).getScreenFrame();
+                else
+                    screenShot = ((TakesScreenshot) webDriver).getScreenshotAs( OutputType.BYTES );
                 if ( checkPointName != null )
                     screenFile = new File( useFolder, "grid-" + checkPointName.replace( "-", "_" ) + "-" + ((DeviceWebDriver) webDriver).getDevice().getKey() + ".png" );
                 else
@@ -38,6 +38,7 @@ public class KWSDumpState extends AbstractKeyWordStep
         kwHelp = "https://www.xframium.org/keyword.html#kw-state";
         orMapping = false;
         category = "Utility";
+        frameSafe = true;
     }
 	/* (non-Javadoc)
 	 * @see com.perfectoMobile.page.keyWord.step.AbstractKeyWordStep#_executeStep(com.perfectoMobile.page.Page, org.openqa.selenium.WebDriver, java.util.Map, java.util.Map)
@@ -16,6 +16,7 @@ import org.xframium.device.data.DataManager;
 public class ExecutionContext
 {
     private static transient ExecutionContext singleton = new ExecutionContext();
+    public static final String EXECUTION_JOURNAL = "xF-EXECUTION-JOURNAL";
     private static transient DateFormat timeFormat = new SimpleDateFormat( "MM-dd_HH-mm-ss-SSS" );
     private File reportFolder = null;
     private String suiteName;
@@ -51,7 +52,9 @@ public class ExecutionContext
         this.configProperties = configProperties;
     }
 
-    private List<Map<String, Object>> executionSummary = new ArrayList<Map<String, Object>>( 10 );
+    /** Replaced by the records from the execution journal when the suite is written */
+    private String executionSummary = EXECUTION_JOURNAL;
+    private transient ExecutionJournal executionJournal = null;
     private Map<String,String> sPMap = new HashMap<String,String>( 10 );
 
     private ExecutionContext()
@@ -67,11 +70,10 @@ public class ExecutionContext
     public void clear()
     {
         sPMap.clear();
-        executionSummary.clear();
+        if ( executionJournal != null )
+            executionJournal.clear();
     }
 
-    private transient List<ExecutionContextTest> executionList = new ArrayList<ExecutionContextTest>( 10 );
-
     public void popupateSystemProperties()
     {
         sPMap.clear();
@@ -128,18 +130,26 @@ public class ExecutionContext
 
     public synchronized void addExecution( ExecutionContextTest test )
     {
-        executionList.add( test );
-        executionSummary.add( test.toMap() );
+        getExecutionJournal().append( test.toMap() );
     }
 
     public boolean isEnabled()
     {
-        return executionList != null && executionList.size() > 0;
+        return executionJournal != null && executionJournal.getRecordCount() > 0;
+    }
+
+    public synchronized ExecutionJournal getExecutionJournal()
+    {
+        if ( executionJournal == null )
+            executionJournal = new ExecutionJournal( new File( getReportFolder(), ExecutionJournal.FILE_NAME ) );
+        return executionJournal;
     }
 
     public List<Map<String, Object>> getExecutionSummary()
     {
-        return executionSummary;
+        if ( executionJournal == null )
+            return new ArrayList<Map<String, Object>>( 0 );
+        return executionJournal.getSummaryList();
     }
 
     public File getReportFolder()
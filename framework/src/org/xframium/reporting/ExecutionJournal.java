@@ -0,0 +1,228 @@
+package org.xframium.reporting;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.xframium.device.cloud.CloudDescriptor;
+import org.xframium.spi.Device;
+import com.xframium.serialization.SerializationManager;
+
+/**
+ * Appends the serialized summary of each completed test to a file in the report folder.  Each record is written as its length followed by the JSON bytes so the
+ * suite artifacts can stream the records back without holding the tests in memory.  Only a handful of scalar values per test are kept on the heap
+ */
+public class ExecutionJournal
+{
+    public static final String FILE_NAME = "Suite.journal";
+
+    private static final String[] SUMMARY_KEYS = new String[] { "name", "testStatus", "exceptionType", "startTime", "endTime", "passed", "failed", "ignored", "total", "sessionId", "folderName", "tagNames" };
+
+    private Log log = LogFactory.getLog( ExecutionJournal.class );
+
+    private final File journalFile;
+    private DataOutputStream outputStream;
+    private int recordCount = 0;
+    private long byteCount = 0;
+    private List<Map<String, Object>> summaryList = new ArrayList<Map<String, Object>>( 10 );
+
+    public ExecutionJournal( File journalFile )
+    {
+        this.journalFile = journalFile;
+    }
+
+    public File getJournalFile()
+    {
+        return journalFile;
+    }
+
+    /**
+     * Serializes and appends a test record to the journal
+     *
+     * @param testMap the test as created by ExecutionContextTest.toMap
+     */
+    public synchronized void append( Map<String, Object> testMap )
+    {
+        Map<String, Object> testSummary = new HashMap<String, Object>( SUMMARY_KEYS.length * 2 );
+        for ( String summaryKey : SUMMARY_KEYS )
+        {
+            if ( testMap.get( summaryKey ) != null )
+                testSummary.put( summaryKey, testMap.get( summaryKey ) );
+        }
+
+        //
+        // Only the names of the cloud and device are needed to group the summaries
+        //
+        if ( testMap.get( "cloud" ) instanceof CloudDescriptor )
+            testSummary.put( "cloud", Collections.singletonMap( "name", ((CloudDescriptor) testMap.get( "cloud" )).getName() ) );
+        if ( testMap.get( "device" ) instanceof Device )
+            testSummary.put( "device", Collections.singletonMap( "key", ((Device) testMap.get( "device" )).getKey() ) );
+        summaryList.add( testSummary );
+
+        try
+        {
+            byte[] testRecord = SerializationManager.instance().toByteArray( SerializationManager.instance().getAdapter( SerializationManager.JSON_SERIALIZATION ), testMap, 0 );
+
+            if ( outputStream == null )
+            {
+                if ( !journalFile.getParentFile().exists() )
+                    journalFile.getParentFile().mkdirs();
+                outputStream = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( journalFile, recordCount > 0 ) ) );
+            }
+
+            outputStream.writeInt( testRecord.length );
+            outputStream.write( testRecord );
+            outputStream.flush();
+
+            recordCount++;
+            byteCount += testRecord.length;
+        }
+        catch ( Exception e )
+        {
+            log.error( "Could not write " + testMap.get( "name" ) + " to " + journalFile.getAbsolutePath(), e );
+        }
+    }
+
+    /**
+     * @return the number of tests written to the journal
+     */
+    public synchronized int getRecordCount()
+    {
+        return recordCount;
+    }
+
+    public synchronized long getByteCount()
+    {
+        return byteCount;
+    }
+
+    /**
+     * @return the compact summaries of the tests added to this journal
+     */
+    public synchronized List<Map<String, Object>> getSummaryList()
+    {
+        return Collections.unmodifiableList( new ArrayList<Map<String, Object>>( summaryList ) );
+    }
+
+    /**
+     * Opens a stream over the records written so far separated by commas so it can be placed inside a JSON array
+     *
+     * @return the record stream
+     * @throws IOException
+     */
+    public synchronized InputStream openRecordStream() throws IOException
+    {
+        if ( recordCount == 0 )
+            return new RecordInputStream( null, 0 );
+
+        if ( outputStream != null )
+            outputStream.flush();
+        return new RecordInputStream( new DataInputStream( new BufferedInputStream( new FileInputStream( journalFile ) ) ), recordCount );
+    }
+
+    /**
+     * Closes and removes the journal file
+     */
+    public synchronized void clear()
+    {
+        close();
+        journalFile.delete();
+        recordCount = 0;
+        byteCount = 0;
+        summaryList.clear();
+    }
+
+    public synchronized void close()
+    {
+        if ( outputStream != null )
+        {
+            try
+            {
+                outputStream.close();
+            }
+            catch ( Exception e )
+            {
+            }
+            outputStream = null;
+        }
+    }
+
+    private static class RecordInputStream extends InputStream
+    {
+        private final DataInputStream inputStream;
+        private int remainingRecords;
+        private byte[] currentRecord;
+        private int currentPosition;
+
+        public RecordInputStream( DataInputStream inputStream, int recordCount )
+        {
+            this.inputStream = inputStream;
+            this.remainingRecords = recordCount;
+        }
+
+        private boolean nextRecord() throws IOException
+        {
+            while ( currentRecord == null || currentPosition >= currentRecord.length )
+            {
+                if ( remainingRecords <= 0 )
+                    return false;
+
+                boolean firstRecord = currentRecord == null;
+                int recordLength = inputStream.readInt();
+
+                //
+                // Records after the first are prefixed with the separator
+                //
+                currentRecord = new byte[ recordLength + (firstRecord ? 0 : 1) ];
+                currentPosition = 0;
+                if ( !firstRecord )
+                    currentRecord[ 0 ] = ',';
+                inputStream.readFully( currentRecord, firstRecord ? 0 : 1, recordLength );
+                remainingRecords--;
+            }
+
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            if ( !nextRecord() )
+                return -1;
+            return currentRecord[ currentPosition++ ] & 0xFF;
+        }
+
+        @Override
+        public int read( byte[] buffer, int offset, int length ) throws IOException
+        {
+            if ( length == 0 )
+                return 0;
+            if ( !nextRecord() )
+                return -1;
+
+            int bytesRead = Math.min( length, currentRecord.length - currentPosition );
+            System.arraycopy( currentRecord, currentPosition, buffer, offset, bytesRead );
+            currentPosition += bytesRead;
+            return bytesRead;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            if ( inputStream != null )
+                inputStream.close();
+        }
+    }
+}
@@ -0,0 +1,589 @@
+/*******************************************************************************
+ * xFramium
+ *
+ * Copyright 2016 by Moreland Labs, Ltd. (http://www.morelandlabs.com)
+ *
+ * Some open source application is free software: you can redistribute 
+ * it and/or modify it under the terms of the GNU General Public 
+ * License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ *  
+ * Some open source application is distributed in the hope that it will 
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty 
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with xFramium.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @license GPL-3.0+ <http://spdx.org/licenses/GPL-3.0+>
+ *******************************************************************************/
+package org.xframium.utility;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.xml.parsers.SAXParserFactory;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Reads the sheets of an Excel workbook row by row using the POI event API instead of loading the full workbook.  Cell values are handed out as a String for text,
+ * a Boolean for booleans and a Double for numbers.  Blank, error and formula cells are null as they were when read through XSSFCell.  When several sheets are
+ * requested the first one is streamed on the calling thread while the others are parsed in parallel on a small shared pool.  A background sheet is parsed at most
+ * ROWS_AHEAD rows ahead of the caller and its rows are delivered in the order the sheets were requested
+ */
+public class ExcelSheetReader
+{
+    private static Log log = LogFactory.getLog( ExcelSheetReader.class );
+
+    private static final int THREAD_COUNT = Math.max( 2, Math.min( 4, Runtime.getRuntime().availableProcessors() ) );
+    private static final int ROWS_AHEAD = 1000;
+    private static final Object END_OF_SHEET = new Object();
+
+    private static final ThreadPoolExecutor sheetService = new ThreadPoolExecutor( THREAD_COUNT, THREAD_COUNT, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+    {
+        private final AtomicInteger threadNumber = new AtomicInteger( 0 );
+
+        public Thread newThread( Runnable r )
+        {
+            Thread sheetThread = new Thread( r, "xF-Excel Reader " + threadNumber.incrementAndGet() );
+            sheetThread.setDaemon( true );
+            return sheetThread;
+        }
+    } );
+
+    static
+    {
+        sheetService.allowCoreThreadTimeOut( true );
+    }
+
+    /**
+     * Receives the rows of a sheet in order.  Rows that do not exist in the sheet are not reported
+     */
+    public interface RowHandler
+    {
+        /**
+         * @param sheetName the sheet the row belongs to
+         * @param currentRow the row
+         * @return false to stop reading the sheet
+         */
+        public boolean handleRow( String sheetName, ExcelRow currentRow ) throws Exception;
+    }
+
+    /**
+     * A single row of a sheet
+     */
+    public static class ExcelRow
+    {
+        private final int rowNumber;
+        private final Object[] cellValues;
+
+        private ExcelRow( int rowNumber, Object[] cellValues )
+        {
+            this.rowNumber = rowNumber;
+            this.cellValues = cellValues;
+        }
+
+        /**
+         * @return the zero based row number
+         */
+        public int getRowNumber()
+        {
+            return rowNumber;
+        }
+
+        /**
+         * @return one more than the last column of the row with a cell or 0 if the row is empty
+         */
+        public int getLastCellNum()
+        {
+            return cellValues.length;
+        }
+
+        /**
+         * @param columnIndex the zero based column
+         * @return the value of the cell or null if it is blank
+         */
+        public Object getCell( int columnIndex )
+        {
+            if ( columnIndex < 0 || columnIndex >= cellValues.length )
+                return null;
+            return cellValues[ columnIndex ];
+        }
+    }
+
+    private OPCPackage excelPackage;
+    private XSSFReader xssfReader;
+    private String[] sharedStrings;
+    private File spoolFile;
+
+    public ExcelSheetReader( File excelFile ) throws Exception
+    {
+        this( excelFile, false );
+    }
+
+    /**
+     * The stream is copied to a temporary file first as POI would otherwise hold the whole uncompressed package in memory
+     */
+    public ExcelSheetReader( InputStream inputStream ) throws Exception
+    {
+        this( spool( inputStream ), true );
+    }
+
+    private ExcelSheetReader( File excelFile, boolean spooled ) throws Exception
+    {
+        if ( spooled )
+            spoolFile = excelFile;
+
+        try
+        {
+            excelPackage = OPCPackage.open( excelFile.getAbsolutePath(), PackageAccess.READ );
+            xssfReader = new XSSFReader( excelPackage );
+            sharedStrings = readSharedStrings();
+        }
+        catch ( Exception e )
+        {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads a single sheet.  Nothing is reported if the sheet does not exist
+     */
+    public void readSheet( String sheetName, RowHandler rowHandler ) throws Exception
+    {
+        readSheets( new String[] { sheetName }, rowHandler );
+    }
+
+    /**
+     * Reads the named sheets.  Sheets that do not exist are skipped
+     *
+     * @param sheetNames the sheets to read in the order their rows should be delivered
+     * @param rowHandler receives the rows on the calling thread
+     */
+    public void readSheets( String[] sheetNames, RowHandler rowHandler ) throws Exception
+    {
+        Map<String, InputStream> sheetMap = new HashMap<String, InputStream>( sheetNames.length );
+        for ( String sheetName : sheetNames )
+            sheetMap.put( sheetName, null );
+
+        XSSFReader.SheetIterator sheetIterator = (XSSFReader.SheetIterator) xssfReader.getSheetsData();
+        while ( sheetIterator.hasNext() )
+        {
+            InputStream sheetStream = sheetIterator.next();
+            String sheetName = sheetIterator.getSheetName();
+            if ( sheetMap.containsKey( sheetName ) && sheetMap.get( sheetName ) == null )
+                sheetMap.put( sheetName, sheetStream );
+            else
+                sheetStream.close();
+        }
+
+        List<String> sheetList = new ArrayList<String>( sheetNames.length );
+        for ( String sheetName : sheetNames )
+        {
+            if ( sheetMap.get( sheetName ) != null && !sheetList.contains( sheetName ) )
+                sheetList.add( sheetName );
+            else if ( sheetMap.get( sheetName ) == null && log.isDebugEnabled() )
+                log.debug( "Sheet " + sheetName + " was not found" );
+        }
+
+        List<SheetBuffer> bufferList = new ArrayList<SheetBuffer>( sheetList.size() );
+        try
+        {
+            for ( int i = 1; i < sheetList.size(); i++ )
+            {
+                SheetBuffer sheetBuffer = new SheetBuffer( sheetList.get( i ), sheetMap.remove( sheetList.get( i ) ) );
+                bufferList.add( sheetBuffer );
+                sheetService.execute( sheetBuffer );
+            }
+
+            if ( !sheetList.isEmpty() )
+                parseSheet( sheetList.get( 0 ), sheetMap.get( sheetList.get( 0 ) ), rowHandler );
+
+            for ( SheetBuffer sheetBuffer : bufferList )
+                sheetBuffer.deliver( rowHandler );
+        }
+        finally
+        {
+            for ( SheetBuffer sheetBuffer : bufferList )
+                sheetBuffer.stop();
+
+            for ( InputStream sheetStream : sheetMap.values() )
+            {
+                try { sheetStream.close(); } catch ( Exception e ) {}
+            }
+        }
+    }
+
+    public void close()
+    {
+        if ( excelPackage != null )
+        {
+            excelPackage.revert();
+            excelPackage = null;
+        }
+
+        if ( spoolFile != null )
+        {
+            spoolFile.delete();
+            spoolFile = null;
+        }
+    }
+
+    //
+    // Parsing
+    //
+
+    private static File spool( InputStream inputStream ) throws Exception
+    {
+        File spoolFile = File.createTempFile( "xF-excel", ".xlsx" );
+        spoolFile.deleteOnExit();
+
+        OutputStream outputStream = new FileOutputStream( spoolFile );
+        try
+        {
+            byte[] buffer = new byte[ 65536 ];
+            int bytesRead = 0;
+            while ( ( bytesRead = inputStream.read( buffer ) ) != -1 )
+                outputStream.write( buffer, 0, bytesRead );
+        }
+        finally
+        {
+            outputStream.close();
+            inputStream.close();
+        }
+
+        return spoolFile;
+    }
+
+    private static XMLReader createReader() throws Exception
+    {
+        SAXParserFactory parserFactory = SAXParserFactory.newInstance();
+        parserFactory.setNamespaceAware( true );
+        parserFactory.setFeature( "http://xml.org/sax/features/external-general-entities", false );
+        parserFactory.setFeature( "http://xml.org/sax/features/external-parameter-entities", false );
+        return parserFactory.newSAXParser().getXMLReader();
+    }
+
+    private String[] readSharedStrings() throws Exception
+    {
+        InputStream stringStream = null;
+        try
+        {
+            stringStream = xssfReader.getSharedStringsData();
+        }
+        catch ( Exception e )
+        {
+            if ( log.isDebugEnabled() )
+                log.debug( "The workbook does not contain shared strings" );
+        }
+
+        if ( stringStream == null )
+            return new String[ 0 ];
+
+        try
+        {
+            SharedStringHandler stringHandler = new SharedStringHandler();
+            XMLReader xmlReader = createReader();
+            xmlReader.setContentHandler( stringHandler );
+            xmlReader.parse( new InputSource( stringStream ) );
+            return stringHandler.stringList.toArray( new String[ stringHandler.stringList.size() ] );
+        }
+        finally
+        {
+            stringStream.close();
+        }
+    }
+
+    private void parseSheet( String sheetName, InputStream sheetStream, RowHandler rowHandler ) throws Exception
+    {
+        SheetHandler sheetHandler = new SheetHandler( sheetName, rowHandler );
+        XMLReader xmlReader = createReader();
+        xmlReader.setContentHandler( sheetHandler );
+        try
+        {
+            xmlReader.parse( new InputSource( sheetStream ) );
+        }
+        catch ( SAXException e )
+        {
+            if ( e == sheetHandler.stopParsing )
+                return;
+            if ( e.getException() != null )
+                throw e.getException();
+            throw e;
+        }
+    }
+
+    /**
+     * Converts a cell reference such as AB12 to a zero based column
+     */
+    private static int getColumnIndex( String cellReference )
+    {
+        int columnIndex = 0;
+        for ( int i = 0; i < cellReference.length(); i++ )
+        {
+            char currentChar = cellReference.charAt( i );
+            if ( currentChar < 'A' || currentChar > 'Z' )
+                break;
+            columnIndex = ( columnIndex * 26 ) + ( currentChar - 'A' + 1 );
+        }
+        return columnIndex - 1;
+    }
+
+    /**
+     * Parses a sheet on the shared pool into a bounded queue that the calling thread drains.  The parse blocks while the queue is full and ends once the sheet
+     * has been delivered, the row handler stopped it or the read failed
+     */
+    private class SheetBuffer implements Runnable
+    {
+        private final String sheetName;
+        private final InputStream sheetStream;
+        private final BlockingQueue<Object> rowQueue = new ArrayBlockingQueue<Object>( ROWS_AHEAD );
+        private volatile boolean stopped = false;
+
+        private SheetBuffer( String sheetName, InputStream sheetStream )
+        {
+            this.sheetName = sheetName;
+            this.sheetStream = sheetStream;
+        }
+
+        public void run()
+        {
+            Object endMarker = END_OF_SHEET;
+            try
+            {
+                if ( !stopped )
+                {
+                    parseSheet( sheetName, sheetStream, new RowHandler()
+                    {
+                        public boolean handleRow( String sheetName, ExcelRow currentRow )
+                        {
+                            return offer( currentRow );
+                        }
+                    } );
+                }
+            }
+            catch ( Throwable e )
+            {
+                endMarker = e;
+            }
+            finally
+            {
+                try { sheetStream.close(); } catch ( Exception e ) {}
+            }
+
+            offer( endMarker );
+        }
+
+        private boolean offer( Object rowValue )
+        {
+            try
+            {
+                while ( !stopped )
+                {
+                    if ( rowQueue.offer( rowValue, 100, TimeUnit.MILLISECONDS ) )
+                        return true;
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }
+
+        private void deliver( RowHandler rowHandler ) throws Exception
+        {
+            try
+            {
+                while ( true )
+                {
+                    Object rowValue = rowQueue.take();
+                    if ( rowValue == END_OF_SHEET )
+                        return;
+                    else if ( rowValue instanceof Exception )
+                        throw (Exception) rowValue;
+                    else if ( rowValue instanceof Error )
+                        throw (Error) rowValue;
+                    else if ( !rowHandler.handleRow( sheetName, (ExcelRow) rowValue ) )
+                        return;
+                }
+            }
+            finally
+            {
+                stop();
+            }
+        }
+
+        private void stop()
+        {
+            stopped = true;
+            rowQueue.clear();
+        }
+    }
+
+    private static class SharedStringHandler extends DefaultHandler
+    {
+        private final List<String> stringList = new ArrayList<String>( 1000 );
+        private final StringBuilder currentText = new StringBuilder();
+        private boolean inText = false;
+        private boolean inPhonetic = false;
+
+        @Override
+        public void startElement( String uri, String localName, String qName, Attributes attributes )
+        {
+            if ( "si".equals( localName ) )
+                currentText.setLength( 0 );
+            else if ( "rPh".equals( localName ) )
+                inPhonetic = true;
+            else if ( "t".equals( localName ) && !inPhonetic )
+                inText = true;
+        }
+
+        @Override
+        public void endElement( String uri, String localName, String qName )
+        {
+            if ( "si".equals( localName ) )
+                stringList.add( currentText.toString() );
+            else if ( "rPh".equals( localName ) )
+                inPhonetic = false;
+            else if ( "t".equals( localName ) )
+                inText = false;
+        }
+
+        @Override
+        public void characters( char[] ch, int start, int length )
+        {
+            if ( inText )
+                currentText.append( ch, start, length );
+        }
+    }
+
+    private class SheetHandler extends DefaultHandler
+    {
+        private final String sheetName;
+        private final RowHandler rowHandler;
+        private final SAXException stopParsing = new SAXException( "Stopped" );
+
+        private final List<Object> cellList = new ArrayList<Object>( 20 );
+        private final StringBuilder currentText = new StringBuilder();
+        private int rowNumber = -1;
+        private int columnIndex = -1;
+        private String cellType;
+        private boolean hasFormula;
+        private boolean inValue;
+        private boolean inInlineString;
+
+        private SheetHandler( String sheetName, RowHandler rowHandler )
+        {
+            this.sheetName = sheetName;
+            this.rowHandler = rowHandler;
+        }
+
+        @Override
+        public void startElement( String uri, String localName, String qName, Attributes attributes )
+        {
+            if ( "row".equals( localName ) )
+            {
+                String rowReference = attributes.getValue( "r" );
+                rowNumber = rowReference != null ? Integer.parseInt( rowReference ) - 1 : rowNumber + 1;
+                columnIndex = -1;
+                cellList.clear();
+            }
+            else if ( "c".equals( localName ) )
+            {
+                String cellReference = attributes.getValue( "r" );
+                columnIndex = cellReference != null ? getColumnIndex( cellReference ) : columnIndex + 1;
+                cellType = attributes.getValue( "t" );
+                hasFormula = false;
+                currentText.setLength( 0 );
+            }
+            else if ( "f".equals( localName ) )
+                hasFormula = true;
+            else if ( "v".equals( localName ) )
+                inValue = true;
+            else if ( "is".equals( localName ) )
+                inInlineString = true;
+        }
+
+        @Override
+        public void endElement( String uri, String localName, String qName ) throws SAXException
+        {
+            if ( "c".equals( localName ) )
+            {
+                while ( cellList.size() <= columnIndex )
+                    cellList.add( null );
+                cellList.set( columnIndex, getCellValue() );
+            }
+            else if ( "v".equals( localName ) )
+                inValue = false;
+            else if ( "is".equals( localName ) )
+                inInlineString = false;
+            else if ( "row".equals( localName ) )
+            {
+                try
+                {
+                    if ( !rowHandler.handleRow( sheetName, new ExcelRow( rowNumber, cellList.toArray() ) ) )
+                        throw stopParsing;
+                }
+                catch ( SAXException e )
+                {
+                    throw e;
+                }
+                catch ( Exception e )
+                {
+                    throw new SAXException( e );
+                }
+            }
+        }
+
+        @Override
+        public void characters( char[] ch, int start, int length )
+        {
+            if ( inValue || inInlineString )
+                currentText.append( ch, start, length );
+        }
+
+        private Object getCellValue()
+        {
+            if ( hasFormula )
+                return null;
+
+            String cellText = currentText.toString();
+            if ( "inlineStr".equals( cellType ) )
+                return cellText;
+            else if ( cellText.isEmpty() || "e".equals( cellType ) )
+                return null;
+            else if ( "s".equals( cellType ) )
+                return sharedStrings[ Integer.parseInt( cellText ) ];
+            else if ( "b".equals( cellType ) )
+                return Boolean.valueOf( "1".equals( cellText ) );
+            else if ( "str".equals( cellType ) || "d".equals( cellType ) )
+                return cellText;
+            else
+                return Double.valueOf( cellText );
+        }
+    }
+}
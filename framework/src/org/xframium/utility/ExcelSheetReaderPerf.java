@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * xFramium
+ *
+ * Copyright 2016 by Moreland Labs, Ltd. (http://www.morelandlabs.com)
+ *
+ * Some open source application is free software: you can redistribute 
+ * it and/or modify it under the terms of the GNU General Public 
+ * License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ *  
+ * Some open source application is distributed in the hope that it will 
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty 
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with xFramium.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @license GPL-3.0+ <http://spdx.org/licenses/GPL-3.0+>
+ *******************************************************************************/
+package org.xframium.utility;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.xframium.utility.ExcelSheetReader.ExcelRow;
+import org.xframium.utility.ExcelSheetReader.RowHandler;
+
+/**
+ * Compares the time and peak heap of reading a large workbook through XSSFWorkbook against the ExcelSheetReader.  This is run by hand rather than as part of
+ * the unit tests
+ * <p>
+ * Usage: ExcelSheetReaderPerf [rows per sheet] - the row count defaults to 30000
+ */
+public class ExcelSheetReaderPerf
+{
+    private static final String[] SHEET_NAMES = new String[] { "Devices", "Elements", "Data" };
+
+    public static void main( String[] args ) throws Exception
+    {
+        File excelFile = createWorkbook( args.length > 0 ? Integer.parseInt( args[ 0 ] ) : 30000 );
+        try
+        {
+            HeapMonitor heapMonitor = new HeapMonitor();
+            long startTime = System.currentTimeMillis();
+            int workbookRows = 0;
+            XSSFWorkbook workbook = new XSSFWorkbook( excelFile.getAbsolutePath() );
+            for ( String sheetName : SHEET_NAMES )
+            {
+                XSSFSheet sheet = workbook.getSheet( sheetName );
+                for ( int i = 1; i <= sheet.getLastRowNum(); i++ )
+                {
+                    if ( sheet.getRow( i ).getCell( 0 ) != null )
+                        workbookRows++;
+                }
+            }
+            long workbookTime = System.currentTimeMillis() - startTime;
+            long workbookHeap = heapMonitor.finish();
+            workbook.close();
+            workbook = null;
+
+            heapMonitor = new HeapMonitor();
+            startTime = System.currentTimeMillis();
+            final int[] streamedRows = new int[ 1 ];
+            ExcelSheetReader sheetReader = new ExcelSheetReader( excelFile );
+            try
+            {
+                sheetReader.readSheets( SHEET_NAMES, new RowHandler()
+                {
+                    public boolean handleRow( String sheetName, ExcelRow currentRow )
+                    {
+                        if ( currentRow.getRowNumber() > 0 && currentRow.getCell( 0 ) != null )
+                            streamedRows[ 0 ]++;
+                        return true;
+                    }
+                } );
+            }
+            finally
+            {
+                sheetReader.close();
+            }
+            long streamedTime = System.currentTimeMillis() - startTime;
+            long streamedHeap = heapMonitor.finish();
+
+            System.out.println( "Excel read of " + workbookRows + " rows (" + ( excelFile.length() / 1024 ) + "KB): XSSFWorkbook " + workbookTime + "ms " + ( workbookHeap / 1048576 ) + "MB peak heap, ExcelSheetReader " + streamedTime + "ms " + ( streamedHeap / 1048576 ) + "MB peak heap" );
+            if ( streamedRows[ 0 ] != workbookRows )
+                System.out.println( "The ExcelSheetReader delivered " + streamedRows[ 0 ] + " rows" );
+        }
+        finally
+        {
+            excelFile.delete();
+        }
+    }
+
+    private static File createWorkbook( int rowCount ) throws Exception
+    {
+        File excelFile = File.createTempFile( "xF-sheets", ".xlsx" );
+        SXSSFWorkbook workbook = new SXSSFWorkbook( 100 );
+        for ( String sheetName : SHEET_NAMES )
+        {
+            Sheet sheet = workbook.createSheet( sheetName );
+            for ( int i = 0; i <= rowCount; i++ )
+            {
+                Row currentRow = sheet.createRow( i );
+                for ( int j = 0; j < 10; j++ )
+                {
+                    if ( i > 0 && j % 3 == 2 )
+                        currentRow.createCell( j ).setCellValue( i * j );
+                    else
+                        currentRow.createCell( j ).setCellValue( i == 0 ? "Column " + j : sheetName + " value " + ( i % 1000 ) + "-" + j );
+                }
+            }
+        }
+
+        OutputStream outputStream = new FileOutputStream( excelFile );
+        try
+        {
+            workbook.write( outputStream );
+        }
+        finally
+        {
+            outputStream.close();
+            workbook.dispose();
+        }
+        return excelFile;
+    }
+
+    /**
+     * Samples the used heap until stopped and reports the peak above the starting point
+     */
+    private static class HeapMonitor extends Thread
+    {
+        private final long baseHeap;
+        private volatile boolean running = true;
+        private volatile long peakHeap = 0;
+
+        private HeapMonitor()
+        {
+            System.gc();
+            baseHeap = usedHeap();
+            setDaemon( true );
+            start();
+        }
+
+        private static long usedHeap()
+        {
+            return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+        }
+
+        public void run()
+        {
+            while ( running )
+            {
+                peakHeap = Math.max( peakHeap, usedHeap() );
+                try
+                {
+                    Thread.sleep( 5 );
+                }
+                catch ( InterruptedException e )
+                {
+                    return;
+                }
+            }
+        }
+
+        private long finish() throws InterruptedException
+        {
+            running = false;
+            join();
+            return Math.max( 0, Math.max( peakHeap, usedHeap() ) - baseHeap );
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * xFramium
+ *
+ * Copyright 2016 by Moreland Labs, Ltd. (http://www.morelandlabs.com)
+ *
+ * Some open source application is free software: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Some open source application is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with xFramium.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @license GPL-3.0+ <http://spdx.org/licenses/GPL-3.0+>
+ *******************************************************************************/
+package org.xframium.utility;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies in milliseconds.  Each bucket covers twice the range of the previous one so recording a sample is a single atomic increment and
+ * percentiles are reported as the upper bound of the bucket that contains them
+ */
+public class LatencyHistogram
+{
+    private static final int BUCKET_COUNT = 32;
+
+    private final AtomicLongArray bucketCounts = new AtomicLongArray( BUCKET_COUNT );
+    private final AtomicLong sampleCount = new AtomicLong( 0 );
+    private final AtomicLong totalTime = new AtomicLong( 0 );
+    private final AtomicLong maxTime = new AtomicLong( 0 );
+
+    /**
+     * @param elapsedTime the latency in milliseconds
+     */
+    public void record( long elapsedTime )
+    {
+        if ( elapsedTime < 0 )
+            elapsedTime = 0;
+
+        bucketCounts.incrementAndGet( getBucket( elapsedTime ) );
+        sampleCount.incrementAndGet();
+        totalTime.addAndGet( elapsedTime );
+
+        long currentMax = maxTime.get();
+        while ( elapsedTime > currentMax && !maxTime.compareAndSet( currentMax, elapsedTime ) )
+            currentMax = maxTime.get();
+    }
+
+    private static int getBucket( long elapsedTime )
+    {
+        return Math.min( 64 - Long.numberOfLeadingZeros( elapsedTime ), BUCKET_COUNT - 1 );
+    }
+
+    public long getCount()
+    {
+        return sampleCount.get();
+    }
+
+    public long getTotalTime()
+    {
+        return totalTime.get();
+    }
+
+    public long getMaxTime()
+    {
+        return maxTime.get();
+    }
+
+    public long getMeanTime()
+    {
+        long count = sampleCount.get();
+        return count == 0 ? 0 : totalTime.get() / count;
+    }
+
+    /**
+     * @param percentile a value between 0 and 100
+     * @return the latency that the specified percentage of samples did not exceed
+     */
+    public long getPercentile( double percentile )
+    {
+        long count = sampleCount.get();
+        if ( count == 0 )
+            return 0;
+
+        long targetRank = (long) Math.ceil( count * percentile / 100.0 );
+        long currentRank = 0;
+        for ( int i = 0; i < BUCKET_COUNT; i++ )
+        {
+            currentRank += bucketCounts.get( i );
+            if ( currentRank >= targetRank )
+                return Math.min( i == 0 ? 0 : ( 1L << i ) - 1, maxTime.get() );
+        }
+
+        return maxTime.get();
+    }
+
+    public String toString()
+    {
+        return "count: " + getCount() + " mean: " + getMeanTime() + "ms p50: " + getPercentile( 50 ) + "ms p90: " + getPercentile( 90 ) + "ms p99: " + getPercentile( 99 ) + "ms max: " + getMaxTime() + "ms";
+    }
+}
@@ -0,0 +1,338 @@
+/*******************************************************************************
+ * xFramium
+ *
+ * Copyright 2016 by Moreland Labs, Ltd. (http://www.morelandlabs.com)
+ *
+ * Some open source application is free software: you can redistribute 
+ * it and/or modify it under the terms of the GNU General Public 
+ * License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ *  
+ * Some open source application is distributed in the hope that it will 
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty 
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with xFramium.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @license GPL-3.0+ <http://spdx.org/licenses/GPL-3.0+>
+ *******************************************************************************/
+package org.xframium.utility;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A small pool of JDBC connections for one database and user.  Each connection keeps its own cache of prepared statements.  Idle connections are validated before
+ * they are handed out again and connections that fail validation are closed and replaced
+ */
+public class SQLConnectionPool
+{
+    public static final String MAX_CONNECTIONS = "driver.sqlPool.maxConnections";
+    public static final String STATEMENT_CACHE = "driver.sqlPool.statementCache";
+    public static final String FETCH_SIZE = "driver.sqlPool.fetchSize";
+    public static final String WAIT_TIMEOUT = "driver.sqlPool.waitTimeout";
+
+    private static final long VALIDATION_INTERVAL = 30000;
+
+    private static Log log = LogFactory.getLog( SQLConnectionPool.class );
+    private static final Map<String, SQLConnectionPool> poolMap = new ConcurrentHashMap<String, SQLConnectionPool>( 10 );
+
+    private static volatile int maxConnections = 8;
+    private static volatile int statementCacheSize = 32;
+    private static volatile int fetchSize = 500;
+    private static volatile long waitTimeout = 60000;
+
+    /**
+     * Returns the pool for a database and user creating it on first use
+     */
+    public static SQLConnectionPool getPool( String username, String password, String url, String driver )
+    {
+        String poolKey = driver + "|" + url + "|" + username;
+        SQLConnectionPool connectionPool = poolMap.get( poolKey );
+        if ( connectionPool == null )
+        {
+            synchronized ( poolMap )
+            {
+                connectionPool = poolMap.get( poolKey );
+                if ( connectionPool == null )
+                {
+                    connectionPool = new SQLConnectionPool( username, password, url, driver, maxConnections );
+                    poolMap.put( poolKey, connectionPool );
+                }
+            }
+        }
+        return connectionPool;
+    }
+
+    public static void configure( Map<String, String> configurationProperties )
+    {
+        if ( configurationProperties == null )
+            return;
+
+        maxConnections = getIntProperty( configurationProperties, MAX_CONNECTIONS, maxConnections );
+        statementCacheSize = getIntProperty( configurationProperties, STATEMENT_CACHE, statementCacheSize );
+        fetchSize = getIntProperty( configurationProperties, FETCH_SIZE, fetchSize );
+        waitTimeout = getIntProperty( configurationProperties, WAIT_TIMEOUT, (int) waitTimeout );
+    }
+
+    public static List<SQLConnectionPool> getPools()
+    {
+        return new ArrayList<SQLConnectionPool>( poolMap.values() );
+    }
+
+    /**
+     * Closes the idle connections of every pool and forgets the pools.  Connections that are in use are closed when they are released
+     */
+    public static void closeAll()
+    {
+        synchronized ( poolMap )
+        {
+            for ( SQLConnectionPool connectionPool : poolMap.values() )
+                connectionPool.close();
+            poolMap.clear();
+        }
+    }
+
+    private static int getIntProperty( Map<String, String> configurationProperties, String keyName, int defaultValue )
+    {
+        String value = configurationProperties.get( keyName );
+        if ( value != null )
+        {
+            try
+            {
+                return Integer.parseInt( value.trim() );
+            }
+            catch ( Exception e )
+            {
+                log.warn( "Invalid value for " + keyName + " [" + value + "]" );
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * A pooled connection and its prepared statements
+     */
+    public static class PooledConnection
+    {
+        private final Connection connection;
+        private long lastUsed = System.currentTimeMillis();
+        private final Map<String, PreparedStatement> statementCache = new LinkedHashMap<String, PreparedStatement>( 16, 0.75f, true )
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, PreparedStatement> eldest )
+            {
+                if ( size() > statementCacheSize )
+                {
+                    try { eldest.getValue().close(); } catch ( Exception e ) {}
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        private PooledConnection( Connection connection )
+        {
+            this.connection = connection;
+        }
+
+        public Connection getConnection()
+        {
+            return connection;
+        }
+
+        /**
+         * Returns a prepared statement for the SQL reusing the one prepared by an earlier call on this connection
+         */
+        public PreparedStatement prepareStatement( String sql ) throws SQLException
+        {
+            PreparedStatement statement = statementCache.get( sql );
+            if ( statement == null )
+            {
+                statement = connection.prepareStatement( sql );
+                statementCache.put( sql, statement );
+            }
+            else
+                statement.clearParameters();
+
+            if ( fetchSize > 0 )
+                statement.setFetchSize( fetchSize );
+
+            return statement;
+        }
+
+        private void close()
+        {
+            for ( Iterator<PreparedStatement> statements = statementCache.values().iterator(); statements.hasNext(); )
+            {
+                try { statements.next().close(); } catch ( Exception e ) {}
+            }
+            statementCache.clear();
+
+            try { connection.close(); } catch ( Exception e ) {}
+        }
+    }
+
+    private final String username;
+    private final String password;
+    private final String url;
+    private final String driver;
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idleConnections = new LinkedBlockingDeque<PooledConnection>();
+    private volatile boolean closed = false;
+
+    private final AtomicLong createCount = new AtomicLong( 0 );
+    private final AtomicLong borrowCount = new AtomicLong( 0 );
+    private final AtomicLong discardCount = new AtomicLong( 0 );
+    private final AtomicLong waitTime = new AtomicLong( 0 );
+
+    private SQLConnectionPool( String username, String password, String url, String driver, int poolSize )
+    {
+        this.username = username;
+        this.password = password;
+        this.url = url;
+        this.driver = driver;
+        this.permits = new Semaphore( Math.max( 1, poolSize ), true );
+    }
+
+    /**
+     * Takes a connection from the pool waiting if all of the connections are in use
+     *
+     * @return the connection
+     * @throws SQLException if no connection became available or a new connection could not be created
+     */
+    public PooledConnection borrow() throws Exception
+    {
+        long startTime = System.currentTimeMillis();
+        if ( !permits.tryAcquire( waitTimeout, TimeUnit.MILLISECONDS ) )
+            throw new SQLException( "Timed out waiting for a connection to " + url );
+        waitTime.addAndGet( System.currentTimeMillis() - startTime );
+        borrowCount.incrementAndGet();
+
+        try
+        {
+            PooledConnection pooledConnection = null;
+            while ( ( pooledConnection = idleConnections.pollFirst() ) != null )
+            {
+                if ( System.currentTimeMillis() - pooledConnection.lastUsed < VALIDATION_INTERVAL || isValid( pooledConnection ) )
+                    return pooledConnection;
+
+                discardCount.incrementAndGet();
+                pooledConnection.close();
+            }
+
+            Class.forName( driver );
+            pooledConnection = new PooledConnection( DriverManager.getConnection( url, username, password ) );
+            createCount.incrementAndGet();
+            return pooledConnection;
+        }
+        catch ( Exception e )
+        {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a connection to the pool.  A connection that reported an error has any open transaction rolled back so that the next borrower does not inherit it
+     *
+     * @param pooledConnection the connection from borrow
+     * @param validate true if the connection reported an error and should be checked before it is reused
+     */
+    public void release( PooledConnection pooledConnection, boolean validate )
+    {
+        try
+        {
+            if ( closed || ( validate && ( !rollback( pooledConnection ) || !isValid( pooledConnection ) ) ) )
+            {
+                discardCount.incrementAndGet();
+                pooledConnection.close();
+            }
+            else
+            {
+                pooledConnection.lastUsed = System.currentTimeMillis();
+                idleConnections.offerFirst( pooledConnection );
+            }
+        }
+        finally
+        {
+            permits.release();
+        }
+    }
+
+    /**
+     * @return false if the connection has an open transaction that could not be rolled back
+     */
+    private boolean rollback( PooledConnection pooledConnection )
+    {
+        try
+        {
+            if ( !pooledConnection.connection.getAutoCommit() )
+                pooledConnection.connection.rollback();
+            return true;
+        }
+        catch ( Throwable e )
+        {
+            log.warn( "Could not roll back a failed connection to " + url + " - " + e.getMessage() );
+            return false;
+        }
+    }
+
+    private boolean isValid( PooledConnection pooledConnection )
+    {
+        try
+        {
+            return pooledConnection.connection.isValid( 5 );
+        }
+        catch ( Throwable e )
+        {
+            return false;
+        }
+    }
+
+    private void close()
+    {
+        closed = true;
+        PooledConnection pooledConnection = null;
+        while ( ( pooledConnection = idleConnections.pollFirst() ) != null )
+            pooledConnection.close();
+    }
+
+    public int getIdleCount()
+    {
+        return idleConnections.size();
+    }
+
+    public long getCreateCount()
+    {
+        return createCount.get();
+    }
+
+    public long getBorrowCount()
+    {
+        return borrowCount.get();
+    }
+
+    public String toString()
+    {
+        return url + " (" + username + "): " + borrowCount.get() + " borrowed, " + createCount.get() + " connections created, " + discardCount.get() + " discarded, " + waitTime.get() + "ms waiting";
+    }
+}
@@ -20,15 +20,20 @@
  *******************************************************************************/
 package org.xframium.utility;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.xframium.utility.SQLConnectionPool.PooledConnection;
 
 public class SQLUtil
 {
@@ -38,284 +43,293 @@ public class SQLUtil
 
     private static final Map<String,String>[] EMPTY_MAP_ARRAY = new Map[0];
     
+    private static final ExecutorService queryService = Executors.newCachedThreadPool( new ThreadFactory()
+    {
+        private final AtomicInteger threadNumber = new AtomicInteger( 0 );
+        
+        public Thread newThread( Runnable r )
+        {
+            Thread queryThread = new Thread( r, "xF-SQL Query " + threadNumber.incrementAndGet() );
+            queryThread.setDaemon( true );
+            return queryThread;
+        }
+    } );
+    
+    /**
+     * Receives the rows of a query as they are read from the database
+     */
+    public interface RowHandler
+    {
+        /**
+         * @param rs the result set positioned on the current row
+         * @return false to stop reading rows
+         */
+        public boolean handleRow( ResultSet rs ) throws Exception;
+    }
+    
     //
     // Implementation
     //
+    
     /**
-     * This method establishes the DB connection, executes the SQL statement and returns an array of Object
+     * This method executes a query on a pooled connection and streams each row to the handler without reading the full result
      * @param username
      * @param password
      * @param url
      * @param driver
      * @param query
      * @param params
-     * @return object
+     * @param rowHandler
      * @throws Exception
      */
-    public static Object[][] getResults( String username,
-                                         String password,
-                                         String url,
-                                         String driver,
-                                         String query,
-                                         String[] params )
+    public static void query( String username,
+                              String password,
+                              String url,
+                              String driver,
+                              String query,
+                              String[] params,
+                              RowHandler rowHandler )
         throws Exception
     {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
+        SQLConnectionPool connectionPool = SQLConnectionPool.getPool( username, password, url, driver );
+        PooledConnection conn = connectionPool.borrow();
+        boolean failed = false;
         ResultSet rs = null;
 
         try
         {
-            conn = getConnection( username, password, url, driver );
-
-            pstmt = conn.prepareStatement( query );
+            PreparedStatement pstmt = conn.prepareStatement( query );
+            bind( pstmt, params );
 
-            if ( params != null )
+            rs = pstmt.executeQuery();
+            while( rs.next() )
             {
-                int offset = 1;
-                for( String param : params )
-                    pstmt.setString( offset++, param );
+                if ( !rowHandler.handleRow( rs ) )
+                    break;
             }
-
-            rs = pstmt.executeQuery();
-
-            return consume( rs );
+        }
+        catch( SQLException e )
+        {
+            failed = true;
+            throw e;
         }
         finally
         {
             try { rs.close(); }
             catch( Throwable e ) {}
 
-            try { pstmt.close(); }
-            catch( Throwable e ) {}
-            
-            try { conn.close(); }
-            catch( Throwable e ) {}
+            connectionPool.release( conn, failed );
         }
     }
-
+    
     /**
-     * This method establishes the DB connection, executes a query and returns results in a map
+     * This method executes the SQL statement and returns an array of Object
      * @param username
      * @param password
      * @param url
      * @param driver
      * @param query
      * @param params
-     * @return Map
+     * @return object
      * @throws Exception
      */
-    public static Map<String,String>[] getRow( String username,
-                              String password,
-                              String url,
-                              String driver,
-                              String query,
-                              String[] params )
+    public static Object[][] getResults( String username,
+                                         String password,
+                                         String url,
+                                         String driver,
+                                         String query,
+                                         String[] params )
         throws Exception
     {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
-
-        try
+        final List<Object[]> results = new ArrayList<Object[]>( 10 );
+        final int[] colCount = new int[ 1 ];
+        
+        query( username, password, url, driver, query, params, new RowHandler()
         {
-            conn = getConnection( username,
-                                  password,
-                                  url,
-                                  driver );
-
-            pstmt = conn.prepareStatement( query );
-
-            if ( params != null )
+            public boolean handleRow( ResultSet rs ) throws Exception
             {
-                int offset = 1;
-                for( String param : params )
+                if ( results.isEmpty() )
+                    colCount[ 0 ] = rs.getMetaData().getColumnCount();
+                
+                Object[] row = new Object[ colCount[ 0 ] ];
+                for( int i = 1; i <= colCount[ 0 ]; ++i )
                 {
-                    pstmt.setString( offset++, param );
+                    row[ i - 1 ] = rs.getObject( i );
                 }
-            }
-
-            rs = pstmt.executeQuery();
 
-            return consume2( rs );
-        }
-        finally
-        {
-            try { rs.close(); }
-            catch( Throwable e ) {}
+                results.add( row );
+                return true;
+            }
+        } );
 
-            try { pstmt.close(); }
-            catch( Throwable e ) {}
-            
-            try { conn.close(); }
-            catch( Throwable e ) {}
-        }
+        return results.toArray( new Object[ results.size() ][] );
     }
-
+    
     /**
-     * This method establishes the DB connection, executes the SQL statement and returns the modified row count
+     * This method runs several queries at the same time over the connection pool.  The first query is run on the calling thread
      * @param username
      * @param password
      * @param url
      * @param driver
-     * @param statement
-     * @param params
-     * @return Map
+     * @param queries
+     * @param params the parameters for each query or null
+     * @return the results of each query in the same order as the queries
      * @throws Exception
      */
-    public static int execute( String username,
-                                 String password,
-                                 String url,
-                                 String driver,
-                                 String statement,
-                                 String[] params )
+    public static Object[][][] getResults( final String username,
+                                           final String password,
+                                           final String url,
+                                           final String driver,
+                                           final String[] queries,
+                                           final String[][] params )
         throws Exception
     {
-        int rtn = 0;
-        
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-
-        try
+        List<Future<Object[][]>> resultList = new ArrayList<Future<Object[][]>>( queries.length );
+        for ( int i = 1; i < queries.length; i++ )
         {
-            conn = getConnection( username,
-                                  password,
-                                  url,
-                                  driver );
-
-            pstmt = conn.prepareStatement( statement );
-
-            if ( params != null )
+            final int queryIndex = i;
+            resultList.add( queryService.submit( new java.util.concurrent.Callable<Object[][]>()
             {
-                int offset = 1;
-                for( String param : params )
+                public Object[][] call() throws Exception
                 {
-                    pstmt.setString( offset++, param );
+                    return getResults( username, password, url, driver, queries[ queryIndex ], params == null ? null : params[ queryIndex ] );
                 }
-            }
-
-            rtn = pstmt.executeUpdate();
-
-            conn.commit();
+            } ) );
+        }
+        
+        Object[][][] results = new Object[ queries.length ][][];
+        try
+        {
+            results[ 0 ] = getResults( username, password, url, driver, queries[ 0 ], params == null ? null : params[ 0 ] );
+            for ( int i = 1; i < queries.length; i++ )
+                results[ i ] = resultList.get( i - 1 ).get();
+        }
+        catch( java.util.concurrent.ExecutionException e )
+        {
+            if ( e.getCause() instanceof Exception )
+                throw (Exception) e.getCause();
+            throw e;
         }
         finally
         {
-            try { pstmt.close(); }
-            catch( Throwable e ) {}
-            
-            try { conn.close(); }
-            catch( Throwable e ) {}
+            for ( Future<Object[][]> result : resultList )
+                result.cancel( false );
         }
-
-        return rtn;
+        
+        return results;
     }
 
-    //
-    // Helpers
-    //
-
     /**
-     * Gets the DB connection
+     * This method executes a query and returns results in a map
      * @param username
      * @param password
      * @param url
      * @param driver
-     * @return Connection
+     * @param query
+     * @param params
+     * @return Map
      * @throws Exception
      */
-    private static Connection getConnection( String username,
-                                             String password,
-                                             String url,
-                                             String driver )
+    public static Map<String,String>[] getRow( String username,
+                              String password,
+                              String url,
+                              String driver,
+                              String query,
+                              String[] params )
         throws Exception
     {
-        Connection conn = null;
+        final List<Map<String,String>> results = new ArrayList<Map<String,String>>( 10 );
+        
+        query( username, password, url, driver, query, params, new RowHandler()
+        {
+            private String[] columnNames = null;
+            
+            public boolean handleRow( ResultSet rs ) throws Exception
+            {
+                if ( columnNames == null )
+                {
+                    ResultSetMetaData rsmd = rs.getMetaData();
+                    columnNames = new String[ rsmd.getColumnCount() ];
+                    for( int i = 1; i <= columnNames.length; ++i )
+                        columnNames[ i - 1 ] = rsmd.getColumnName( i );
+                }
+                
+                Map<String,String> row = new HashMap<String,String>();
 
-        Class.forName( driver );
+                for( int i = 1; i <= columnNames.length; ++i )
+                {
+                    String val = String.valueOf( rs.getObject( i ) );
+                    
+                    row.put( columnNames[ i - 1 ], val );
+                    row.put( i+ "", val );
+                }
 
-        conn = DriverManager.getConnection( url,
-                                            username,
-                                            password );
+                results.add( row );
+                return true;
+            }
+        } );
 
-        return conn;
+        return toOutArray2( results );
     }
 
     /**
-     * This method converts the result set to a two dimensional array Object 
-     * @param rs - ResultSet
-     * @return Object[][]
+     * This method executes the SQL statement and returns the modified row count
+     * @param username
+     * @param password
+     * @param url
+     * @param driver
+     * @param statement
+     * @param params
+     * @return Map
      * @throws Exception
      */
-    private static Object[][] consume( ResultSet rs )
+    public static int execute( String username,
+                                 String password,
+                                 String url,
+                                 String driver,
+                                 String statement,
+                                 String[] params )
         throws Exception
     {
-        ResultSetMetaData rsmd = rs.getMetaData();
-        ArrayList results = new ArrayList();
-        int colCount = rsmd.getColumnCount();
+        SQLConnectionPool connectionPool = SQLConnectionPool.getPool( username, password, url, driver );
+        PooledConnection conn = connectionPool.borrow();
+        boolean failed = false;
 
-        while( rs.next() )
+        try
         {
-            Object[] row = new Object[ colCount ];
+            PreparedStatement pstmt = conn.prepareStatement( statement );
+            bind( pstmt, params );
 
-            for( int i = 1; i <= colCount; ++i )
-            {
-                row[ i - 1 ] = rs.getObject( i );
-            }
+            int rtn = pstmt.executeUpdate();
 
-            results.add( row );
+            if ( !conn.getConnection().getAutoCommit() )
+                conn.getConnection().commit();
+            
+            return rtn;
         }
-
-        return toOutArray( results, colCount );
-    }
-
-    /**
-     * This method converts result set to an array of Map
-     * @param rs - ResultSet
-     * @return Map[]
-     * @throws Exception
-     */
-    private static Map<String,String>[] consume2( ResultSet rs )
-        throws Exception
-    {
-        ResultSetMetaData rsmd = rs.getMetaData();
-        List<Map<String,String>> results = new ArrayList<Map<String,String>>( 10 );
-        int colCount = rsmd.getColumnCount();
-
-        while( rs.next() )
+        catch( SQLException e )
         {
-            Map<String,String> row = new HashMap<String,String>();
-
-            for( int i = 1; i <= colCount; ++i )
-            {
-                String val = String.valueOf( rs.getObject( i ) );
-                
-                row.put( rsmd.getColumnName( i ), val );
-                row.put( i+ "", val );
-            }
-
-            results.add( row );
+            failed = true;
+            throw e;
+        }
+        finally
+        {
+            connectionPool.release( conn, failed );
         }
+    }
 
-        return toOutArray2( results );
-     }
+    //
+    // Helpers
+    //
 
-    /**
-     * Converts List of Array to a two dimensional object
-     * @param listOfArray
-     * @param colCount
-     * @return Object[][]
-     */
-    private static Object[][] toOutArray( List<String[]> listOfArray, int colCount )
+    private static void bind( PreparedStatement pstmt, String[] params ) throws SQLException
     {
-        int length = listOfArray.size();
-        Object[][] rtn = new Object[ length ][colCount ];
-
-        for( int i = 0; i < rtn.length; ++i )
+        if ( params != null )
         {
-            rtn[i] = (Object[]) listOfArray.get( i );
+            int offset = 1;
+            for( String param : params )
+                pstmt.setString( offset++, param );
         }
-
-        return rtn;
     }
 
     /**
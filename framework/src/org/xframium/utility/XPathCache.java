@@ -0,0 +1,205 @@
+/*******************************************************************************
+ * xFramium
+ *
+ * Copyright 2016 by Moreland Labs, Ltd. (http://www.morelandlabs.com)
+ *
+ * Some open source application is free software: you can redistribute 
+ * it and/or modify it under the terms of the GNU General Public 
+ * License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ *  
+ * Some open source application is distributed in the hope that it will 
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty 
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with xFramium.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @license GPL-3.0+ <http://spdx.org/licenses/GPL-3.0+>
+ *******************************************************************************/
+package org.xframium.utility;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.xml.namespace.QName;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * A bounded cache of compiled XPath expressions keyed by the expression string and shared by every thread.  When the cache is full the least recently used
+ * expressions are evicted first.  Compiled expressions are not thread safe so each entry keeps a pool of compiled copies and a thread evaluates its own copy
+ */
+public class XPathCache
+{
+    private static final XPathCache singleton = new XPathCache();
+
+    public static XPathCache instance()
+    {
+        return singleton;
+    }
+
+    private XPathCache()
+    {
+    }
+
+    private volatile int maxSize = 256;
+    private final AtomicLong hitCount = new AtomicLong( 0 );
+    private final AtomicLong missCount = new AtomicLong( 0 );
+
+    private final ThreadLocal<XPath> xPath = new ThreadLocal<XPath>()
+    {
+        @Override
+        protected XPath initialValue()
+        {
+            return XPathFactory.newInstance().newXPath();
+        }
+    };
+
+    private final Map<String, CompiledPath> expressionMap = new LinkedHashMap<String, CompiledPath>( 256, 0.75f, true )
+    {
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<String, CompiledPath> eldestEntry )
+        {
+            return size() > maxSize;
+        }
+    };
+
+    /**
+     * The compiled copies of a single expression that are not being evaluated.  The pool only grows to the number of threads evaluating the expression at once
+     */
+    private class CompiledPath
+    {
+        private final String path;
+        private final Queue<XPathExpression> idleList = new ConcurrentLinkedQueue<XPathExpression>();
+
+        private CompiledPath( String path, XPathExpression xPathExpression )
+        {
+            this.path = path;
+            idleList.offer( xPathExpression );
+        }
+
+        private XPathExpression borrow() throws XPathExpressionException
+        {
+            XPathExpression xPathExpression = idleList.poll();
+            return xPathExpression != null ? xPathExpression : xPath.get().compile( path );
+        }
+
+        private void release( XPathExpression xPathExpression )
+        {
+            idleList.offer( xPathExpression );
+        }
+    }
+
+    private CompiledPath getCompiledPath( String path ) throws XPathExpressionException
+    {
+        CompiledPath compiledPath = null;
+        synchronized ( expressionMap )
+        {
+            compiledPath = expressionMap.get( path );
+        }
+
+        if ( compiledPath != null )
+        {
+            hitCount.incrementAndGet();
+            return compiledPath;
+        }
+
+        missCount.incrementAndGet();
+        compiledPath = new CompiledPath( path, xPath.get().compile( path ) );
+        synchronized ( expressionMap )
+        {
+            CompiledPath existingPath = expressionMap.get( path );
+            if ( existingPath != null )
+                return existingPath;
+            expressionMap.put( path, compiledPath );
+        }
+
+        return compiledPath;
+    }
+
+    /**
+     * Returns a compiled copy of an XPath expression, compiling and caching it on the first use.  The copy belongs to the caller and is not shared with other threads
+     *
+     * @param path the XPath expression
+     * @return the compiled expression
+     * @throws XPathExpressionException if the expression is not valid
+     */
+    public XPathExpression compile( String path ) throws XPathExpressionException
+    {
+        return getCompiledPath( path ).borrow();
+    }
+
+    public NodeList getNodes( Object context, String path ) throws XPathExpressionException
+    {
+        return (NodeList) evaluate( context, path, XPathConstants.NODESET );
+    }
+
+    public Node getNode( Object context, String path ) throws XPathExpressionException
+    {
+        return (Node) evaluate( context, path, XPathConstants.NODE );
+    }
+
+    private Object evaluate( Object context, String path, QName returnType ) throws XPathExpressionException
+    {
+        CompiledPath compiledPath = getCompiledPath( path );
+        XPathExpression xPathExpression = compiledPath.borrow();
+        try
+        {
+            return xPathExpression.evaluate( context, returnType );
+        }
+        finally
+        {
+            compiledPath.release( xPathExpression );
+        }
+    }
+
+    public int size()
+    {
+        synchronized ( expressionMap )
+        {
+            return expressionMap.size();
+        }
+    }
+
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    public void setMaxSize( int maxSize )
+    {
+        this.maxSize = maxSize;
+    }
+
+    public long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+    public long getMissCount()
+    {
+        return missCount.get();
+    }
+
+    public void resetCounters()
+    {
+        hitCount.set( 0 );
+        missCount.set( 0 );
+    }
+
+    public String toString()
+    {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return "XPath Cache: " + hits + " hits, " + ( total - hits ) + " misses" + ( total > 0 ? " (" + ( hits * 100 / total ) + "% hit rate)" : "" );
+    }
+}
@@ -26,6 +26,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Iterator;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 import java.io.FileReader;
 import org.w3c.dom.Node;
 
@@ -51,7 +53,12 @@ public class XPathGenerator
     public static final MobileOS ANDROID = new MobileOS();
     private static final String EXTERNAL_SUBSTITUTIONS_PARAM = "xframium.xpath.substitutions";
     private static final String INTERNAL_SUBSTITUTIONS_PARAM = "xpath.substitution.properties";
+    private static final int MAX_CACHE_SIZE = 4096;
     private static Properties substitutions = null;
+    private static Map<String,SubstitutionRule> ruleMap = null;
+    
+    private static final Map<String,String> conversionCache = new ConcurrentHashMap<String,String>( 64 );
+    private static final Map<String,String> propertyCache = new ConcurrentHashMap<String,String>( 64 );
 
     /**
      * Generate an XPath expression from properties.
@@ -61,6 +68,19 @@ public class XPathGenerator
      * @return the xpath expression
      */
     public static String generateXPathFromProperty( Map<String,String> propertyMap, String propertyDefinition )
+    {
+        String cacheKey = propertyMap.get( RESOURCE_ID ) + "\u0000" + propertyDefinition;
+        String xpath = propertyCache.get( cacheKey );
+        if ( xpath == null )
+        {
+            xpath = buildXPathFromProperty( propertyMap, propertyDefinition );
+            cachePut( propertyCache, cacheKey, xpath );
+        }
+        
+        return xpath;
+    }
+    
+    private static String buildXPathFromProperty( Map<String,String> propertyMap, String propertyDefinition )
     {
         StringBuilder xpathBuilder = new StringBuilder();
         String[] ors = propertyDefinition.split( COMMA );
@@ -118,7 +138,34 @@ public class XPathGenerator
      */
     public static String convertXPath( MobileOS os, String xpath )
     {
-        boolean isIOS = IOS.equals( os );
+        String cacheKey = ( IOS.equals( os ) ? "ios" : "android" ) + "\u0000" + xpath;
+        String convertedXPath = conversionCache.get( cacheKey );
+        if ( convertedXPath == null )
+        {
+            convertedXPath = createConversionPlan( os, xpath ).apply( xpath );
+            cachePut( conversionCache, cacheKey, convertedXPath );
+        }
+        
+        return convertedXPath;
+    }
+    
+    private static void cachePut( Map<String,String> cacheMap, String cacheKey, String cacheValue )
+    {
+        //
+        // The expressions come from the object repository so the caches only fill up when expressions are being generated dynamically
+        //
+        if ( cacheMap.size() >= MAX_CACHE_SIZE )
+            cacheMap.clear();
+        cacheMap.put( cacheKey, cacheValue );
+    }
+    
+    /**
+     * Creates the ordered list of substitutions to apply to an expression.  The expression is parsed once to find its element and attribute names and each
+     * name is matched to a precompiled rule
+     */
+    private static ConversionPlan createConversionPlan( MobileOS os, String xpath )
+    {
+        String osName = IOS.equals( os ) ? "ios" : "android";
 
         ArrayList elementNames = new ArrayList();
         ArrayList attributeNames = new ArrayList();
@@ -132,35 +179,26 @@ public class XPathGenerator
 
         elementNames.add( "text" );
 
-        Properties substitutions = loadSubstitutions();
+        Map<String,SubstitutionRule> ruleMap = loadRules();
+        ConversionPlan conversionPlan = new ConversionPlan();
 
         Iterator elements = elementNames.iterator();
         while( elements.hasNext() )
         {
-            String element = (String) elements.next();
-            String substitution = substitutions.getProperty( ((isIOS) ? "ios" : "android" ) +
-                                                             "." + "element" +
-                                                             "." + element );
-            if ( substitution != null )
-            {
-                xpath = replaceAll( xpath, element, substitution );
-            }
+            SubstitutionRule rule = ruleMap.get( osName + ".element." + elements.next() );
+            if ( rule != null )
+                conversionPlan.add( rule );
         }
 
         Iterator attrs = attributeNames.iterator();
         while( attrs.hasNext() )
         {
-            String attr = (String) attrs.next();
-            String substitution = substitutions.getProperty( ((isIOS) ? "ios" : "android" ) +
-                                                             "." + "attribute" +
-                                                             "." + attr );
-            if ( substitution != null )
-            {
-                xpath = xpath.replaceAll( "@" + attr, "@" + substitution );
-            }
+            SubstitutionRule rule = ruleMap.get( osName + ".attribute." + attrs.next() );
+            if ( rule != null )
+                conversionPlan.add( rule );
         }
 
-        return xpath;
+        return conversionPlan;
     }
 
 
@@ -235,11 +273,31 @@ public class XPathGenerator
         public void exitPredicate(XPathParser.PredicateContext ctx) { inPred = false; }
     }
 
-    private static Properties loadSubstitutions()
+    private static synchronized Map<String,SubstitutionRule> loadRules()
+    {
+        if ( ruleMap == null )
+        {
+            Map<String,SubstitutionRule> newRules = new HashMap<String,SubstitutionRule>( 64 );
+            Properties substitutions = loadSubstitutions();
+            for ( String propertyName : substitutions.stringPropertyNames() )
+            {
+                String substitution = substitutions.getProperty( propertyName );
+                if ( propertyName.contains( ".element." ) )
+                    newRules.put( propertyName, new ElementRule( propertyName.substring( propertyName.indexOf( ".element." ) + 9 ), substitution ) );
+                else if ( propertyName.contains( ".attribute." ) )
+                    newRules.put( propertyName, new AttributeRule( propertyName.substring( propertyName.indexOf( ".attribute." ) + 11 ), substitution ) );
+            }
+            ruleMap = newRules;
+        }
+        
+        return ruleMap;
+    }
+    
+    private static synchronized Properties loadSubstitutions()
     {
         if ( substitutions == null )
         {
-            substitutions = new Properties();
+            Properties substitutions = new Properties();
 
             try
             {
@@ -266,26 +324,89 @@ public class XPathGenerator
             {
                 e.printStackTrace();
             }
+            
+            XPathGenerator.substitutions = substitutions;
         }
             
         return substitutions;
     }
 
-    private static String replaceAll( String xpath, String element, String substitution )
+    private interface SubstitutionRule
     {
-        //
-        // The problem is that a perfecto element (ex. text) can also be a function name (ex. text()) or an attribute (ex. @text).  So,
-        // we'll hide functions and attributes with this element's name before replacing the element name.
-        //
-
-        xpath = xpath.replaceAll( element + "\\(\\)", "zzzzzz" );
-        xpath = xpath.replaceAll( "\\@" + element, "yyyyyy" );
-
-        xpath = xpath.replaceAll( element, substitution );
+        String apply( String xpath );
+    }
+    
+    private static class ConversionPlan
+    {
+        private final List<SubstitutionRule> ruleList = new ArrayList<SubstitutionRule>( 10 );
+        
+        public void add( SubstitutionRule rule )
+        {
+            ruleList.add( rule );
+        }
+        
+        public String apply( String xpath )
+        {
+            for ( SubstitutionRule rule : ruleList )
+                xpath = rule.apply( xpath );
+            return xpath;
+        }
+    }
+    
+    private static class ElementRule implements SubstitutionRule
+    {
+        private static final Pattern FUNCTION_MARKER = Pattern.compile( "zzzzzz" );
+        private static final Pattern ATTRIBUTE_MARKER = Pattern.compile( "yyyyyy" );
+        
+        private final Pattern functionPattern;
+        private final Pattern attributePattern;
+        private final Pattern elementPattern;
+        private final String function;
+        private final String attribute;
+        private final String substitution;
+        
+        public ElementRule( String element, String substitution )
+        {
+            functionPattern = Pattern.compile( element + "\\(\\)" );
+            attributePattern = Pattern.compile( "\\@" + element );
+            elementPattern = Pattern.compile( element );
+            function = element + "\\(\\)";
+            attribute = "\\@" + element;
+            this.substitution = substitution;
+        }
+        
+        public String apply( String xpath )
+        {
+            //
+            // The problem is that a perfecto element (ex. text) can also be a function name (ex. text()) or an attribute (ex. @text).  So,
+            // we'll hide functions and attributes with this element's name before replacing the element name.
+            //
+            xpath = functionPattern.matcher( xpath ).replaceAll( "zzzzzz" );
+            xpath = attributePattern.matcher( xpath ).replaceAll( "yyyyyy" );
 
-        xpath = xpath.replaceAll( "zzzzzz", element + "\\(\\)" );
-        xpath = xpath.replaceAll( "yyyyyy", "\\@" + element );
+            xpath = elementPattern.matcher( xpath ).replaceAll( substitution );
 
-        return xpath;
+            xpath = FUNCTION_MARKER.matcher( xpath ).replaceAll( function );
+            xpath = ATTRIBUTE_MARKER.matcher( xpath ).replaceAll( attribute );
+            
+            return xpath;
+        }
+    }
+    
+    private static class AttributeRule implements SubstitutionRule
+    {
+        private final Pattern attributePattern;
+        private final String substitution;
+        
+        public AttributeRule( String attribute, String substitution )
+        {
+            attributePattern = Pattern.compile( "@" + attribute );
+            this.substitution = "@" + substitution;
+        }
+        
+        public String apply( String xpath )
+        {
+            return attributePattern.matcher( xpath ).replaceAll( substitution );
+        }
     }
 }
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * xFramium
+ *
+ * Copyright 2016 by Moreland Labs, Ltd. (http://www.morelandlabs.com)
+ *
+ * Some open source application is free software: you can redistribute 
+ * it and/or modify it under the terms of the GNU General Public 
+ * License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ *  
+ * Some open source application is distributed in the hope that it will 
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty 
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with xFramium.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @license GPL-3.0+ <http://spdx.org/licenses/GPL-3.0+>
+ *******************************************************************************/
+package org.xframium.utility;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Times the conversion of the XPath locators found in an object repository - first use against the memoized conversions.  This is run by hand rather than
+ * as part of the unit tests
+ * <p>
+ * Usage: XPathGeneratorPerf [repository folder] - the folder defaults to ../testing/objectRepository
+ */
+public class XPathGeneratorPerf
+{
+    private static final int ITERATIONS = 200;
+
+    public static void main( String[] args ) throws Exception
+    {
+        File repositoryFolder = new File( args.length > 0 ? args[ 0 ] : "../testing/objectRepository" );
+        List<String> expressionList = readExpressions( repositoryFolder );
+        if ( expressionList.isEmpty() )
+        {
+            System.out.println( "No XPath locators were found under " + repositoryFolder.getAbsolutePath() );
+            return;
+        }
+
+        long startTime = System.nanoTime();
+        for ( String expression : expressionList )
+            XPathGenerator.convertXPath( XPathGenerator.ANDROID, expression );
+        long firstTime = System.nanoTime() - startTime;
+
+        startTime = System.nanoTime();
+        for ( int i = 0; i < ITERATIONS; i++ )
+        {
+            for ( String expression : expressionList )
+                XPathGenerator.convertXPath( XPathGenerator.ANDROID, expression );
+        }
+        long cachedTime = System.nanoTime() - startTime;
+
+        System.out.println( "XPath conversion of " + expressionList.size() + " repository locators: " + ( firstTime / expressionList.size() ) + "ns first use, " + ( cachedTime / ( ITERATIONS * expressionList.size() ) ) + "ns cached" );
+    }
+
+    private static List<String> readExpressions( File repositoryFolder ) throws Exception
+    {
+        List<String> expressionList = new ArrayList<String>( 200 );
+        Pattern xpathPattern = Pattern.compile( "value=\"([^\"]*)\"\\s+descriptor=\"XPATH\"" );
+        List<File> folderList = new ArrayList<File>( 10 );
+        folderList.add( repositoryFolder );
+        while ( !folderList.isEmpty() )
+        {
+            File[] fileList = folderList.remove( 0 ).listFiles();
+            if ( fileList == null )
+                continue;
+            for ( File currentFile : fileList )
+            {
+                if ( currentFile.isDirectory() )
+                    folderList.add( currentFile );
+                else if ( currentFile.getName().endsWith( ".xml" ) )
+                {
+                    Matcher xpathMatcher = xpathPattern.matcher( new String( Files.readAllBytes( currentFile.toPath() ), "UTF-8" ) );
+                    while ( xpathMatcher.find() )
+                        expressionList.add( xpathMatcher.group( 1 ).replace( "&apos;", "'" ).replace( "&quot;", "\"" ).replace( "&amp;", "&" ) );
+                }
+            }
+        }
+        return expressionList;
+    }
+}
@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * xFramium
+ *
+ * Copyright 2016 by Moreland Labs LTD (http://www.morelandlabs.com)
+ *
+ * Some open source application is free software: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Some open source application is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with xFramium.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @license GPL-3.0+ <http://spdx.org/licenses/GPL-3.0+>
+ *******************************************************************************/
+package com.xframium.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.xframium.utility.ExcelSheetReader;
+import org.xframium.utility.ExcelSheetReader.ExcelRow;
+import org.xframium.utility.ExcelSheetReader.RowHandler;
+
+public class ExcelSheetReaderTest
+{
+    private static final String[] SHEET_NAMES = new String[] { "Devices", "Elements", "Data" };
+
+    @Test
+    public void testCellValues() throws Exception
+    {
+        File excelFile = File.createTempFile( "xF-cells", ".xlsx" );
+        XSSFWorkbook workbook = new XSSFWorkbook();
+        Row currentRow = workbook.createSheet( "Values" ).createRow( 1 );
+        currentRow.createCell( 0 ).setCellValue( "text" );
+        currentRow.createCell( 1 ).setCellValue( 12 );
+        currentRow.createCell( 2 ).setCellValue( 1.5 );
+        currentRow.createCell( 3 ).setCellValue( true );
+        currentRow.createCell( 4 ).setCellFormula( "B2*2" );
+        currentRow.createCell( 6 );
+        write( workbook, excelFile );
+
+        final List<ExcelRow> rowList = new ArrayList<ExcelRow>();
+        ExcelSheetReader sheetReader = new ExcelSheetReader( excelFile );
+        try
+        {
+            sheetReader.readSheet( "Values", new RowHandler()
+            {
+                public boolean handleRow( String sheetName, ExcelRow currentRow )
+                {
+                    rowList.add( currentRow );
+                    return true;
+                }
+            } );
+        }
+        finally
+        {
+            sheetReader.close();
+            excelFile.delete();
+        }
+
+        Assert.assertEquals( rowList.size(), 1, "Missing rows are not reported" );
+        ExcelRow excelRow = rowList.get( 0 );
+        Assert.assertEquals( excelRow.getRowNumber(), 1 );
+        Assert.assertEquals( excelRow.getLastCellNum(), 7 );
+        Assert.assertEquals( excelRow.getCell( 0 ), "text" );
+        Assert.assertEquals( excelRow.getCell( 1 ), Double.valueOf( 12 ) );
+        Assert.assertEquals( excelRow.getCell( 2 ), Double.valueOf( 1.5 ) );
+        Assert.assertEquals( excelRow.getCell( 3 ), Boolean.TRUE );
+        Assert.assertNull( excelRow.getCell( 4 ), "Formula cells are not evaluated" );
+        Assert.assertNull( excelRow.getCell( 5 ) );
+        Assert.assertNull( excelRow.getCell( 6 ) );
+        Assert.assertNull( excelRow.getCell( 20 ) );
+    }
+
+    @Test
+    public void testSheetsMatchWorkbook() throws Exception
+    {
+        File excelFile = createWorkbook( 500 );
+        try
+        {
+            XSSFWorkbook workbook = new XSSFWorkbook( excelFile.getAbsolutePath() );
+            final List<String> expectedValues = new ArrayList<String>( 10000 );
+            for ( String sheetName : new String[] { "Data", "Devices" } )
+            {
+                XSSFSheet sheet = workbook.getSheet( sheetName );
+                for ( int i = 0; i <= sheet.getLastRowNum(); i++ )
+                {
+                    XSSFRow currentRow = sheet.getRow( i );
+                    for ( int j = 0; j < currentRow.getLastCellNum(); j++ )
+                    {
+                        XSSFCell currentCell = currentRow.getCell( j );
+                        expectedValues.add( sheetName + i + ( currentCell.getCellType() == Cell.CELL_TYPE_NUMERIC ? String.valueOf( currentCell.getNumericCellValue() ) : currentCell.getStringCellValue() ) );
+                    }
+                }
+            }
+            workbook.close();
+
+            final List<String> actualValues = new ArrayList<String>( 10000 );
+            ExcelSheetReader sheetReader = new ExcelSheetReader( new java.io.FileInputStream( excelFile ) );
+            try
+            {
+                sheetReader.readSheets( new String[] { "Data", "Missing", "Devices" }, new RowHandler()
+                {
+                    public boolean handleRow( String sheetName, ExcelRow currentRow )
+                    {
+                        for ( int j = 0; j < currentRow.getLastCellNum(); j++ )
+                            actualValues.add( sheetName + currentRow.getRowNumber() + currentRow.getCell( j ) );
+                        return true;
+                    }
+                } );
+            }
+            finally
+            {
+                sheetReader.close();
+            }
+
+            Assert.assertEquals( actualValues, expectedValues, "Sheets are delivered in the requested order" );
+        }
+        finally
+        {
+            excelFile.delete();
+        }
+    }
+
+    private File createWorkbook( int rowCount ) throws Exception
+    {
+        File excelFile = File.createTempFile( "xF-sheets", ".xlsx" );
+        SXSSFWorkbook workbook = new SXSSFWorkbook( 100 );
+        for ( String sheetName : SHEET_NAMES )
+        {
+            Sheet sheet = workbook.createSheet( sheetName );
+            for ( int i = 0; i <= rowCount; i++ )
+            {
+                Row currentRow = sheet.createRow( i );
+                for ( int j = 0; j < 10; j++ )
+                {
+                    if ( i > 0 && j % 3 == 2 )
+                        currentRow.createCell( j ).setCellValue( i * j );
+                    else
+                        currentRow.createCell( j ).setCellValue( i == 0 ? "Column " + j : sheetName + " value " + ( i % 1000 ) + "-" + j );
+                }
+            }
+        }
+        write( workbook, excelFile );
+        workbook.dispose();
+        return excelFile;
+    }
+
+    private void write( Workbook workbook, File excelFile ) throws Exception
+    {
+        OutputStream outputStream = new FileOutputStream( excelFile );
+        try
+        {
+            workbook.write( outputStream );
+        }
+        finally
+        {
+            outputStream.close();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * xFramium
+ *
+ * Copyright 2016 by Moreland Labs LTD (http://www.morelandlabs.com)
+ *
+ * Some open source application is free software: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Some open source application is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with xFramium.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @license GPL-3.0+ <http://spdx.org/licenses/GPL-3.0+>
+ *******************************************************************************/
+package com.xframium.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.xframium.reporting.ExecutionJournal;
+
+public class ExecutionJournalTest
+{
+    private String readRecords( ExecutionJournal executionJournal ) throws Exception
+    {
+        InputStream inputStream = executionJournal.openRecordStream();
+        try
+        {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[ 7 ];
+            int bytesRead = 0;
+            while ( ( bytesRead = inputStream.read( buffer ) ) > 0 )
+                outputStream.write( buffer, 0, bytesRead );
+            return new String( outputStream.toByteArray() );
+        }
+        finally
+        {
+            inputStream.close();
+        }
+    }
+
+    private Map<String, Object> createTest( String testName, String testStatus )
+    {
+        Map<String, Object> testMap = new HashMap<String, Object>( 10 );
+        testMap.put( "name", testName );
+        testMap.put( "testStatus", testStatus );
+        testMap.put( "passed", 3 );
+        testMap.put( "callMap", new HashMap<String, Object>( 10 ) );
+        return testMap;
+    }
+
+    @Test
+    public void testRecordsStreamAsArrayContent() throws Exception
+    {
+        File journalFile = File.createTempFile( "xF", ".journal" );
+        ExecutionJournal executionJournal = new ExecutionJournal( journalFile );
+        try
+        {
+            Assert.assertEquals( readRecords( executionJournal ), "" );
+
+            executionJournal.append( createTest( "firstTest", "PASSED" ) );
+            executionJournal.append( createTest( "secondTest", "FAILED" ) );
+            executionJournal.close();
+            executionJournal.append( createTest( "thirdTest", "PASSED" ) );
+
+            String records = readRecords( executionJournal );
+            Assert.assertTrue( records.indexOf( "firstTest" ) < records.indexOf( "secondTest" ) );
+            Assert.assertTrue( records.indexOf( "secondTest" ) < records.indexOf( "thirdTest" ) );
+            Assert.assertEquals( executionJournal.getRecordCount(), 3 );
+            Assert.assertEquals( journalFile.length(), executionJournal.getByteCount() + 3 * 4 );
+
+            List<Map<String, Object>> summaryList = executionJournal.getSummaryList();
+            Assert.assertEquals( summaryList.size(), 3 );
+            Assert.assertEquals( summaryList.get( 1 ).get( "testStatus" ), "FAILED" );
+            Assert.assertFalse( summaryList.get( 0 ).containsKey( "callMap" ) );
+        }
+        finally
+        {
+            executionJournal.clear();
+        }
+
+        Assert.assertFalse( journalFile.exists() );
+        Assert.assertEquals( executionJournal.getRecordCount(), 0 );
+    }
+}
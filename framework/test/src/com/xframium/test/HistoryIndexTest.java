@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * xFramium
+ *
+ * Copyright 2016 by Moreland Labs LTD (http://www.morelandlabs.com)
+ *
+ * Some open source application is free software: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Some open source application is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with xFramium.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @license GPL-3.0+ <http://spdx.org/licenses/GPL-3.0+>
+ *******************************************************************************/
+package com.xframium.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+import java.util.Properties;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.xframium.history.HistoryIndex;
+
+public class HistoryIndexTest
+{
+    private File createFolder() throws Exception
+    {
+        File rootFolder = File.createTempFile( "xFHistory", "" );
+        rootFolder.delete();
+        rootFolder.mkdirs();
+        return rootFolder;
+    }
+
+    private void writeSuite( File rootFolder, String folderName, String suiteData, long lastModified ) throws Exception
+    {
+        File suiteFolder = new File( rootFolder, folderName );
+        suiteFolder.mkdirs();
+        File suiteFile = new File( suiteFolder, "Suite.js" );
+        FileOutputStream outputStream = new FileOutputStream( suiteFile );
+        outputStream.write( ( "var testData = " + suiteData + ";" ).getBytes( "UTF-8" ) );
+        outputStream.close();
+        suiteFile.setLastModified( lastModified );
+    }
+
+    private Properties getTotals( int passed, int failed )
+    {
+        Properties suiteTotals = new Properties();
+        suiteTotals.setProperty( "suites", "1" );
+        suiteTotals.setProperty( "tests", ( passed + failed ) + "" );
+        suiteTotals.setProperty( "passed", passed + "" );
+        suiteTotals.setProperty( "failed", failed + "" );
+        return suiteTotals;
+    }
+
+    @Test
+    public void testSeedAndAppend() throws Exception
+    {
+        File rootFolder = createFolder();
+        writeSuite( rootFolder, "older", "{\"pageData\": {\"suiteName\": \"one\"}}", 1000000 );
+        writeSuite( rootFolder, "newer", "{\"pageData\": {\"suiteName\": \"tw\u00f6\"}}", 2000000 );
+        writeSuite( rootFolder, "current", "{\"pageData\": {\"suiteName\": \"full\"}}", 3000000 );
+
+        HistoryIndex historyIndex = new HistoryIndex( rootFolder );
+        historyIndex.addSuite( new File( rootFolder, "current" ), "{\"pageData\": {\"suiteName\": \"three\"}}".getBytes( "UTF-8" ), getTotals( 2, 1 ) );
+        historyIndex.addSuite( new File( rootFolder, "current" ), "{\"pageData\": {\"suiteName\": \"three\"}}".getBytes( "UTF-8" ), getTotals( 2, 1 ) );
+
+        List<byte[]> suiteList = historyIndex.getRecentSuites( 10 );
+        Assert.assertEquals( suiteList.size(), 3 );
+        Assert.assertEquals( new String( suiteList.get( 0 ), "UTF-8" ), "{\"pageData\": {\"suiteName\": \"three\"}}" );
+        Assert.assertEquals( new String( suiteList.get( 1 ), "UTF-8" ), "{\"pageData\": {\"suiteName\": \"tw\u00f6\"}}" );
+        Assert.assertEquals( new String( suiteList.get( 2 ), "UTF-8" ), "{\"pageData\": {\"suiteName\": \"one\"}}" );
+        Assert.assertEquals( historyIndex.getRecentSuites( 1 ).size(), 1 );
+
+        Properties aggregateData = historyIndex.getAggregate();
+        Assert.assertEquals( aggregateData.getProperty( "suites" ), "1" );
+        Assert.assertEquals( aggregateData.getProperty( "passed" ), "2" );
+        Assert.assertEquals( aggregateData.getProperty( "failed" ), "1" );
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        historyIndex.writeHistory( outputStream );
+        String historyData = new String( outputStream.toByteArray(), "UTF-8" );
+        Assert.assertTrue( historyData.startsWith( "var suiteData = [{\"pageData\": {\"suiteName\": \"three\"}}, {\"pageData\": {\"suiteName\": \"tw\u00f6\"}}" ) );
+        Assert.assertTrue( historyData.contains( "var historyAggregate = {\"suites\": 1, \"tests\": 3" ) );
+    }
+
+    @Test
+    public void testHistoryIsBounded() throws Exception
+    {
+        File rootFolder = createFolder();
+        HistoryIndex historyIndex = new HistoryIndex( rootFolder );
+        for ( int i = 0; i < HistoryIndex.MAX_HISTORY + 5; i++ )
+            historyIndex.addSuite( new File( rootFolder, "suite" + i ), ( "{\"index\": " + i + "}" ).getBytes( "UTF-8" ), getTotals( 1, 0 ) );
+
+        List<byte[]> suiteList = historyIndex.getRecentSuites( HistoryIndex.MAX_HISTORY );
+        Assert.assertEquals( suiteList.size(), HistoryIndex.MAX_HISTORY );
+        Assert.assertEquals( new String( suiteList.get( 0 ), "UTF-8" ), "{\"index\": " + ( HistoryIndex.MAX_HISTORY + 4 ) + "}" );
+        Assert.assertEquals( historyIndex.getAggregate().getProperty( "suites" ), ( HistoryIndex.MAX_HISTORY + 5 ) + "" );
+    }
+}
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * xFramium
+ *
+ * Copyright 2016 by Moreland Labs LTD (http://www.morelandlabs.com)
+ *
+ * Some open source application is free software: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Some open source application is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with xFramium.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @license GPL-3.0+ <http://spdx.org/licenses/GPL-3.0+>
+ *******************************************************************************/
+package com.xframium.test;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.xframium.imaging.ImageData;
+import org.xframium.imaging.algorithm.match.MatchData;
+import org.xframium.imaging.algorithm.match.spi.NCCMatchAlgorithm;
+
+public class NCCMatchAlgorithmTest
+{
+    @Test
+    public void testPyramidMatchesExhaustive()
+    {
+        //
+        // A smooth repeating image has many near perfect matches at the coarse levels
+        //
+        ImageData baseImage = createImage( 256, 160 );
+        ImageData templateImage = crop( baseImage, 123, 77, 32, 32 );
+
+        MatchData exhaustiveMatch = new NCCMatchAlgorithm( 0 ).findBestMatch( baseImage, templateImage );
+        Assert.assertEquals( exhaustiveMatch.getX(), 123 );
+        Assert.assertEquals( exhaustiveMatch.getY(), 77 );
+
+        for ( int pyramidLevels = 1; pyramidLevels <= 2; pyramidLevels++ )
+        {
+            MatchData pyramidMatch = new NCCMatchAlgorithm( pyramidLevels ).findBestMatch( baseImage, templateImage );
+            Assert.assertEquals( pyramidMatch.getX(), exhaustiveMatch.getX() );
+            Assert.assertEquals( pyramidMatch.getY(), exhaustiveMatch.getY() );
+        }
+    }
+
+    @Test
+    public void testScoreBounds()
+    {
+        ImageData templateImage = crop( createImage( 256, 160 ), 40, 20, 48, 48 );
+        MatchData selfMatch = new NCCMatchAlgorithm().findBestMatch( templateImage, templateImage );
+
+        Assert.assertTrue( selfMatch.getData() <= 1.0 );
+        Assert.assertTrue( selfMatch.getData() > 0.9999 );
+        Assert.assertEquals( selfMatch.getConfidence(), 100 );
+    }
+
+    private ImageData createImage( int width, int height )
+    {
+        ImageData imageData = new ImageData( width, height );
+        for ( int y = 0; y < height; y++ )
+        {
+            for ( int x = 0; x < width; x++ )
+                imageData.getPixelData()[y * width + x] = (int) ( 128 + 60 * Math.sin( x * 2 * Math.PI / 85 ) + 50 * Math.cos( y * 2 * Math.PI / 41 ) + x * 0.05 + y * 0.03 );
+        }
+        return imageData;
+    }
+
+    private ImageData crop( ImageData imageData, int offsetX, int offsetY, int width, int height )
+    {
+        ImageData cropData = new ImageData( width, height );
+        for ( int y = 0; y < height; y++ )
+            System.arraycopy( imageData.getPixelData(), ( y + offsetY ) * imageData.getWidth() + offsetX, cropData.getPixelData(), y * width, width );
+        return cropData;
+    }
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * xFramium
+ *
+ * Copyright 2016 by Moreland Labs LTD (http://www.morelandlabs.com)
+ *
+ * Some open source application is free software: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Some open source application is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with xFramium.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @license GPL-3.0+ <http://spdx.org/licenses/GPL-3.0+>
+ *******************************************************************************/
+package com.xframium.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.xframium.page.data.DefaultPageData;
+import org.xframium.page.data.PageData;
+import org.xframium.page.data.provider.PageDataPool;
+
+public class PageDataPoolTest
+{
+    private static final int THREAD_COUNT = 40;
+    private static final int RECORD_COUNT = 5;
+    private static final int LEASES_PER_THREAD = 25;
+
+    @Test
+    public void testLockedRecordsAreLeasedExclusively() throws Exception
+    {
+        final PageDataPool recordPool = new PageDataPool( "user", true );
+        for ( int i = 0; i < RECORD_COUNT; i++ )
+            recordPool.addRecord( new DefaultPageData( "user", "user" + i, true ) );
+
+        final AtomicInteger inUse = new AtomicInteger( 0 );
+        final AtomicInteger maximumInUse = new AtomicInteger( 0 );
+        final AtomicInteger failures = new AtomicInteger( 0 );
+        final CountDownLatch doneLatch = new CountDownLatch( THREAD_COUNT );
+
+        ExecutorService executorService = Executors.newFixedThreadPool( THREAD_COUNT );
+        for ( int t = 0; t < THREAD_COUNT; t++ )
+        {
+            executorService.execute( new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        for ( int i = 0; i < LEASES_PER_THREAD; i++ )
+                        {
+                            PageData pageData = recordPool.acquire( 30 );
+                            if ( pageData == null )
+                            {
+                                failures.incrementAndGet();
+                                continue;
+                            }
+
+                            int currentUse = inUse.incrementAndGet();
+                            if ( currentUse > maximumInUse.get() )
+                                maximumInUse.set( currentUse );
+                            inUse.decrementAndGet();
+
+                            if ( !recordPool.release( pageData ) )
+                                failures.incrementAndGet();
+                        }
+                    }
+                    catch( InterruptedException e )
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                    finally
+                    {
+                        doneLatch.countDown();
+                    }
+                }
+            } );
+        }
+
+        Assert.assertTrue( doneLatch.await( 60, TimeUnit.SECONDS ), "All threads finished" );
+        executorService.shutdown();
+
+        Assert.assertEquals( failures.get(), 0, "Every lease was acquired and released" );
+        Assert.assertTrue( maximumInUse.get() <= RECORD_COUNT, "No more leases than records" );
+        Assert.assertEquals( recordPool.getAvailableCount(), RECORD_COUNT );
+        Assert.assertEquals( recordPool.getLeasedCount(), 0 );
+    }
+
+    @Test
+    public void testReleaseIsIdempotent() throws Exception
+    {
+        PageDataPool recordPool = new PageDataPool( "user", true );
+        recordPool.addRecord( new DefaultPageData( "user", "user0", true ) );
+
+        PageData pageData = recordPool.acquire( 1 );
+        Assert.assertNotNull( pageData );
+        Assert.assertNull( recordPool.acquire( 0 ) );
+        Assert.assertEquals( recordPool.getTimeoutCount(), 1 );
+
+        Assert.assertTrue( recordPool.release( pageData ) );
+        Assert.assertFalse( recordPool.release( pageData ) );
+        Assert.assertEquals( recordPool.getAvailableCount(), 1 );
+    }
+
+    @Test
+    public void testSharedRecordsRotate() throws Exception
+    {
+        PageDataPool recordPool = new PageDataPool( "site", false );
+        for ( int i = 0; i < 3; i++ )
+            recordPool.addRecord( new DefaultPageData( "site", "site" + i, true ) );
+
+        for ( int i = 0; i < 9; i++ )
+            Assert.assertEquals( recordPool.acquire( 0 ).getName(), "site" + ( i % 3 ) );
+
+        Assert.assertFalse( recordPool.release( recordPool.acquire( 0 ) ) );
+    }
+}
@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * xFramium
+ *
+ * Copyright 2016 by Moreland Labs LTD (http://www.morelandlabs.com)
+ *
+ * Some open source application is free software: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Some open source application is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with xFramium.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @license GPL-3.0+ <http://spdx.org/licenses/GPL-3.0+>
+ *******************************************************************************/
+package com.xframium.test;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.xframium.page.PageManager;
+import org.xframium.page.factory.PageMetadata;
+import org.xframium.page.keyWord.KeyWordPage;
+import org.xframium.page.keyWord.spi.KeyWordPageImpl;
+
+public class PageMetadataTest
+{
+    @Test
+    public void testMetadata() throws Exception
+    {
+        PageMetadata pageMetadata = PageMetadata.getMetadata( KeyWordPage.class );
+
+        Assert.assertEquals( pageMetadata.getServiceName(), KeyWordPageImpl.class.getName() );
+        Assert.assertEquals( pageMetadata.getPageName(), "KeyWordPage" );
+        Assert.assertTrue( pageMetadata.newInstance() instanceof KeyWordPageImpl );
+        Assert.assertSame( PageMetadata.getMetadata( KeyWordPage.class ), pageMetadata, "Metadata is built once" );
+        Assert.assertNotNull( pageMetadata.getDispatch( KeyWordPage.class.getMethod( "getPageName" ), KeyWordPageImpl.class ) );
+        Assert.assertNull( pageMetadata.getDispatch( KeyWordPage.class.getMethod( "getPageName" ), Object.class ), "A different implementation is not dispatched" );
+    }
+
+    @Test
+    public void testProxyDispatch()
+    {
+        KeyWordPage keyWordPage = (KeyWordPage) PageManager.instance().createPage( KeyWordPage.class, null );
+        keyWordPage.setPageName( "Home" );
+
+        Assert.assertEquals( keyWordPage.getPageName(), "Home" );
+        Assert.assertSame( PageMetadata.getProxyMetadata( keyWordPage.getClass() ), PageMetadata.getMetadata( KeyWordPage.class ) );
+    }
+}
@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * xFramium
+ *
+ * Copyright 2016 by Moreland Labs LTD (http://www.morelandlabs.com)
+ *
+ * Some open source application is free software: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Some open source application is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with xFramium.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @license GPL-3.0+ <http://spdx.org/licenses/GPL-3.0+>
+ *******************************************************************************/
+package com.xframium.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.xframium.device.ng.RunContainer;
+import org.xframium.device.ng.RunContainer.RunStatus;
+
+public class RunContainerStressTest
+{
+    private static final int THREAD_COUNT = 50;
+    private static final int RUN_COUNT = 2000;
+
+    @Test
+    public void testNoLostOrDuplicatedRuns() throws Exception
+    {
+        final RunContainer runContainer = new RunContainer();
+        final AtomicIntegerArray started = new AtomicIntegerArray( RUN_COUNT );
+        final AtomicIntegerArray completed = new AtomicIntegerArray( RUN_COUNT );
+        final CountDownLatch startLatch = new CountDownLatch( 1 );
+        final CountDownLatch doneLatch = new CountDownLatch( THREAD_COUNT );
+
+        ExecutorService executorService = Executors.newFixedThreadPool( THREAD_COUNT );
+        for ( int t = 0; t < THREAD_COUNT; t++ )
+        {
+            final int offset = t;
+            executorService.execute( new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        startLatch.await();
+                        for ( int i = 0; i < RUN_COUNT; i++ )
+                        {
+                            int runIndex = ( i + offset ) % RUN_COUNT;
+                            String runKey = "Device - Test " + runIndex;
+
+                            if ( runContainer.addRun( runKey, RunStatus.RUNNING ) )
+                            {
+                                started.incrementAndGet( runIndex );
+                                if ( runContainer.addRun( runKey, runIndex % 2 == 0 ? RunStatus.COMPLETED : RunStatus.FAILED ) )
+                                    completed.incrementAndGet( runIndex );
+                            }
+
+                            runContainer.addRun( runKey, RunStatus.COMPLETED );
+                        }
+                    }
+                    catch( InterruptedException e )
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                    finally
+                    {
+                        doneLatch.countDown();
+                    }
+                }
+            } );
+        }
+
+        startLatch.countDown();
+        Assert.assertTrue( doneLatch.await( 60, TimeUnit.SECONDS ), "All threads finished" );
+        executorService.shutdown();
+
+        for ( int i = 0; i < RUN_COUNT; i++ )
+        {
+            Assert.assertEquals( started.get( i ), 1, "Run " + i + " started exactly once" );
+            Assert.assertEquals( completed.get( i ), 1, "Run " + i + " completed exactly once" );
+            Assert.assertEquals( runContainer.getStatus( "Device - Test " + i ), i % 2 == 0 ? RunStatus.COMPLETED : RunStatus.FAILED, "Run " + i + " kept its final status" );
+        }
+
+        Assert.assertEquals( runContainer.size(), RUN_COUNT, "No runs were lost" );
+    }
+
+    @Test
+    public void testResetAllowsRestart()
+    {
+        RunContainer runContainer = new RunContainer();
+
+        Assert.assertTrue( runContainer.addRun( "Device - Test", RunStatus.RUNNING ) );
+        Assert.assertFalse( runContainer.addRun( "Device - Test", RunStatus.RUNNING ) );
+        Assert.assertFalse( runContainer.addRun( "Device - Test", RunStatus.CHECK ) );
+        Assert.assertTrue( runContainer.addRun( "Device - Test", RunStatus.RESET ) );
+        Assert.assertTrue( runContainer.addRun( "Device - Test", RunStatus.CHECK ) );
+        Assert.assertTrue( runContainer.addRun( "Device - Test", RunStatus.RUNNING ) );
+        Assert.assertTrue( runContainer.addRun( "Device - Test", RunStatus.COMPLETED ) );
+        Assert.assertFalse( runContainer.addRun( "Device - Test", RunStatus.FAILED ) );
+    }
+}
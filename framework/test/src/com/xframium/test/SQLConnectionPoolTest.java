@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * xFramium
+ *
+ * Copyright 2016 by Moreland Labs LTD (http://www.morelandlabs.com)
+ *
+ * Some open source application is free software: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Some open source application is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with xFramium.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @license GPL-3.0+ <http://spdx.org/licenses/GPL-3.0+>
+ *******************************************************************************/
+package com.xframium.test;
+
+import java.sql.ResultSet;
+import java.util.Map;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.xframium.utility.SQLConnectionPool;
+import org.xframium.utility.SQLConnectionPool.PooledConnection;
+import org.xframium.utility.SQLUtil;
+import org.xframium.utility.SQLUtil.RowHandler;
+
+public class SQLConnectionPoolTest
+{
+    private static final String DRIVER = "org.h2.Driver";
+    private static final String URL = "jdbc:h2:mem:xfPoolTest;DB_CLOSE_DELAY=-1";
+    private static final String USER = "sa";
+    private static final String PASSWORD = "";
+
+    @BeforeClass
+    public void createData() throws Exception
+    {
+        SQLUtil.execute( USER, PASSWORD, URL, DRIVER, "CREATE TABLE DEVICE( NAME VARCHAR(64), OS VARCHAR(64) )", null );
+        for ( int i = 0; i < 1000; i++ )
+            SQLUtil.execute( USER, PASSWORD, URL, DRIVER, "INSERT INTO DEVICE VALUES( ?, ? )", new String[] { "Device " + i, i % 2 == 0 ? "Android" : "iOS" } );
+    }
+
+    @AfterClass
+    public void dropData() throws Exception
+    {
+        SQLUtil.execute( USER, PASSWORD, URL, DRIVER, "DROP TABLE DEVICE", null );
+        SQLConnectionPool.closeAll();
+    }
+
+    @Test
+    public void testConnectionsAreReused() throws Exception
+    {
+        SQLConnectionPool connectionPool = SQLConnectionPool.getPool( USER, PASSWORD, URL, DRIVER );
+        long createCount = connectionPool.getCreateCount();
+
+        for ( int i = 0; i < 50; i++ )
+            Assert.assertEquals( SQLUtil.getResults( USER, PASSWORD, URL, DRIVER, "SELECT NAME FROM DEVICE WHERE NAME = ?", new String[] { "Device " + i } ).length, 1 );
+
+        Assert.assertTrue( connectionPool.getCreateCount() - createCount <= 1, "Sequential queries share a connection" );
+        Assert.assertTrue( connectionPool.getIdleCount() > 0, "Connections are returned to the pool" );
+    }
+
+    @Test
+    public void testStreamingRows() throws Exception
+    {
+        final int[] rowCount = new int[ 1 ];
+        SQLUtil.query( USER, PASSWORD, URL, DRIVER, "SELECT NAME, OS FROM DEVICE WHERE OS = ?", new String[] { "iOS" }, new RowHandler()
+        {
+            public boolean handleRow( ResultSet rs ) throws Exception
+            {
+                Assert.assertEquals( rs.getString( 2 ), "iOS" );
+                return ++rowCount[ 0 ] < 10;
+            }
+        } );
+
+        Assert.assertEquals( rowCount[ 0 ], 10, "The handler stopped reading" );
+
+        Map<String, String>[] rows = SQLUtil.getRow( USER, PASSWORD, URL, DRIVER, "SELECT NAME, OS FROM DEVICE WHERE NAME = ?", new String[] { "Device 7" } );
+        Assert.assertEquals( rows.length, 1 );
+        Assert.assertEquals( rows[ 0 ].get( "OS" ), "iOS" );
+    }
+
+    @Test
+    public void testParallelQueries() throws Exception
+    {
+        Object[][][] results = SQLUtil.getResults( USER, PASSWORD, URL, DRIVER,
+                                                   new String[] { "SELECT NAME FROM DEVICE WHERE OS = ?", "SELECT NAME FROM DEVICE WHERE OS = ?", "SELECT COUNT(*) FROM DEVICE" },
+                                                   new String[][] { { "Android" }, { "iOS" }, null } );
+
+        Assert.assertEquals( results.length, 3 );
+        Assert.assertEquals( results[ 0 ].length, 500 );
+        Assert.assertEquals( results[ 1 ].length, 500 );
+        Assert.assertEquals( ( (Number) results[ 2 ][ 0 ][ 0 ] ).intValue(), 1000 );
+    }
+
+    @Test
+    public void testFailedQueryReleasesConnection() throws Exception
+    {
+        SQLConnectionPool connectionPool = SQLConnectionPool.getPool( USER, PASSWORD, URL, DRIVER );
+        for ( int i = 0; i < 20; i++ )
+        {
+            try
+            {
+                SQLUtil.getResults( USER, PASSWORD, URL, DRIVER, "SELECT MISSING FROM DEVICE", null );
+                Assert.fail( "The query should fail" );
+            }
+            catch ( java.sql.SQLException e )
+            {
+            }
+        }
+
+        Assert.assertEquals( SQLUtil.getResults( USER, PASSWORD, URL, DRIVER, "SELECT COUNT(*) FROM DEVICE", null ).length, 1, "The pool still hands out connections" );
+        Assert.assertTrue( connectionPool.getIdleCount() > 0 );
+    }
+
+    @Test
+    public void testFailedTransactionIsRolledBack() throws Exception
+    {
+        SQLConnectionPool connectionPool = SQLConnectionPool.getPool( USER, PASSWORD, URL, DRIVER );
+        PooledConnection pooledConnection = connectionPool.borrow();
+        pooledConnection.getConnection().setAutoCommit( false );
+        pooledConnection.prepareStatement( "DELETE FROM DEVICE" ).executeUpdate();
+        connectionPool.release( pooledConnection, true );
+
+        Object[][] results = SQLUtil.getResults( USER, PASSWORD, URL, DRIVER, "SELECT COUNT(*) FROM DEVICE", null );
+        Assert.assertEquals( ( (Number) results[ 0 ][ 0 ] ).intValue(), 1000, "The failed transaction was not committed by the next borrower" );
+    }
+}
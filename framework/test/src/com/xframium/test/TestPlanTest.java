@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * xFramium
+ *
+ * Copyright 2016 by Moreland Labs LTD (http://www.morelandlabs.com)
+ *
+ * Some open source application is free software: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Some open source application is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with xFramium.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @license GPL-3.0+ <http://spdx.org/licenses/GPL-3.0+>
+ *******************************************************************************/
+package com.xframium.test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.xframium.device.ng.TestName;
+import org.xframium.device.ng.TestPlan;
+import org.xframium.history.TestDurations;
+import org.xframium.page.data.DefaultPageData;
+import org.xframium.page.data.PageData;
+
+public class TestPlanTest
+{
+    @Test
+    public void testExpansionOrder()
+    {
+        TestPlan testPlan = new TestPlan( null, 2 );
+        testPlan.addTest( "A", new String[] { "c1", "c2" }, 2, null );
+        testPlan.addTest( "B", null, 3, null );
+        testPlan.addTest( "C", null, 1, new PageData[] { new DefaultPageData( "user", "u1", true ), new DefaultPageData( "user", "u2", true ) } );
+
+        Assert.assertEquals( testPlan.getTestCount(), 9 );
+        Assert.assertEquals( testPlan.size(), 18 );
+
+        String[] expected = new String[] { "A [c1] #1", "A [c1] #2", "A [c2] #1", "A [c2] #2", "B", "B #1", "B #2", "C (u1)", "C (u2)" };
+        for ( int i = 0; i < expected.length; i++ )
+        {
+            for ( int copy = 0; copy < 2; copy++ )
+            {
+                long index = i * 2 + copy;
+                Assert.assertEquals( testPlan.getTest( index ).getTestName(), expected[ i ] );
+                Assert.assertEquals( testPlan.getCopy( index ), copy );
+            }
+        }
+    }
+
+    @Test
+    public void testPersonas()
+    {
+        TestPlan testPlan = new TestPlan( new String[] { "p1", "p2" }, 1 );
+        testPlan.addTest( "A", null, 2, null );
+
+        List<String> testNames = new ArrayList<String>();
+        for ( long i = 0; i < testPlan.size(); i++ )
+        {
+            TestName testName = testPlan.getTest( i );
+            testNames.add( testName.getTestName() );
+            Assert.assertEquals( testName.getRawName(), "A" );
+        }
+
+        Assert.assertEquals( testNames.toString(), "[A using p1, A #1 using p1, A using p2, A #1 using p2]" );
+    }
+
+    @Test
+    public void testEmptyPlan()
+    {
+        TestPlan testPlan = new TestPlan( null, 3 );
+        testPlan.addTest( "A", null, 1, new PageData[ 0 ] );
+
+        Assert.assertTrue( testPlan.isEmpty() );
+        Assert.assertEquals( testPlan.size(), 3 );
+        Assert.assertNull( testPlan.getTest( 2 ).getTestName() );
+    }
+
+    @Test
+    public void testLargePlan()
+    {
+        PageData[] records = new PageData[ 10000 ];
+        for ( int i = 0; i < records.length; i++ )
+            records[ i ] = new DefaultPageData( "user", "user" + i, true );
+
+        TestPlan testPlan = new TestPlan( new String[] { "p1", "p2" }, 30 );
+        testPlan.addTest( "A", null, 1, new PageData[] { records[ 0 ] } );
+        testPlan.addTest( "B", new String[] { "c1", "c2" }, 5, records );
+
+        Assert.assertEquals( testPlan.size(), 2L * ( 1 + 2 * 5 * 10000 ) * 30 );
+        Assert.assertEquals( testPlan.getTest( testPlan.size() - 1 ).getTestName(), "B (user9999) #5 using p2" );
+        Assert.assertEquals( testPlan.getTest( 30 ).getTestName(), "B (user0) #1 using p1" );
+        Assert.assertEquals( testPlan.getTest( 1, 2 * 5 * 10000 ).getTestName(), "B (user0) #1 using p2" );
+    }
+
+    @Test
+    public void testLongestFirst() throws Exception
+    {
+        File durationFolder = Files.createTempDirectory( "durations" ).toFile();
+        TestDurations testDurations = new TestDurations();
+        testDurations.load( durationFolder );
+        testDurations.recordDuration( "A", "k1", 1000 );
+        testDurations.recordDuration( "C", "k1", 5000 );
+        testDurations.recordDuration( "C", "k1", 10000 );
+        testDurations.recordDuration( "B", "k2", 3000 );
+        testDurations.save();
+
+        TestPlan testPlan = new TestPlan( null, 2 );
+        testPlan.addTest( "A", null, 1, null );
+        testPlan.addTest( "B", null, 2, null );
+        testPlan.addTest( "C", null, 1, null );
+        testPlan.addTest( "D", null, 1, null );
+
+        TestDurations savedDurations = new TestDurations();
+        savedDurations.load( durationFolder );
+        Assert.assertEquals( savedDurations.getDuration( "C", "k1" ), 6500 );
+        Assert.assertEquals( savedDurations.getDuration( "C", null ), 6500 );
+
+        long[] estimates = testPlan.getEstimates( savedDurations, "k1" );
+        Assert.assertEquals( Arrays.toString( estimates ), "[1000, 3000, 6500, 3500]" );
+
+        int[] entryOrder = testPlan.getLongestFirst( estimates );
+        Assert.assertEquals( Arrays.toString( entryOrder ), "[2, 3, 1, 0]" );
+        Assert.assertEquals( testPlan.getTest( entryOrder[ 0 ], 0 ).getTestName(), "C" );
+        Assert.assertEquals( testPlan.getMakespan( entryOrder, estimates, 1, 2 ), 9500 );
+        Assert.assertEquals( Arrays.toString( testPlan.getLongestFirst( new long[ 4 ] ) ), "[0, 1, 2, 3]" );
+
+        new File( durationFolder, TestDurations.FILE_NAME ).delete();
+        durationFolder.delete();
+    }
+}
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * xFramium
+ *
+ * Copyright 2016 by Moreland Labs LTD (http://www.morelandlabs.com)
+ *
+ * Some open source application is free software: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Some open source application is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with xFramium.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @license GPL-3.0+ <http://spdx.org/licenses/GPL-3.0+>
+ *******************************************************************************/
+package com.xframium.test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.xframium.utility.XPathGenerator;
+
+public class XPathGeneratorTest
+{
+    private static final String[] EXPRESSIONS = new String[] { "//text[@text='Login']", "//view/button[@label='OK']", "//window//text[contains(@value,'Total')]", "//cell[2]/image" };
+
+    @Test
+    public void testConvertXPath()
+    {
+        Assert.assertEquals( XPathGenerator.convertXPath( XPathGenerator.ANDROID, "//text[@text='Login']" ), "//android.widget.TextView[@text='Login']" );
+        Assert.assertEquals( XPathGenerator.convertXPath( XPathGenerator.IOS, "//text[@text='Login']" ), "//UIAStaticText[@text='Login']" );
+        Assert.assertEquals( XPathGenerator.convertXPath( XPathGenerator.ANDROID, "//text[@text='Login']" ), "//android.widget.TextView[@text='Login']" );
+    }
+
+    @Test
+    public void testGenerateXPathFromProperty()
+    {
+        Map<String, String> propertyMap = new HashMap<String, String>( 10 );
+        propertyMap.put( "resource-id", "com.xframium" );
+        Assert.assertEquals( XPathGenerator.generateXPathFromProperty( propertyMap, "resource-id=login&text=Go,text=Login" ), "//*[@resource-id='com.xframium:id/login'][@text='Go']|//*[@text='Login']" );
+
+        propertyMap.put( "resource-id", "org.xframium" );
+        Assert.assertEquals( XPathGenerator.generateXPathFromProperty( propertyMap, "resource-id=login&text=Go,text=Login" ), "//*[@resource-id='org.xframium:id/login'][@text='Go']|//*[@text='Login']" );
+    }
+
+    @Test
+    public void testConcurrentConversion() throws Exception
+    {
+        final List<String> expectedList = new ArrayList<String>( EXPRESSIONS.length );
+        for ( String expression : EXPRESSIONS )
+            expectedList.add( XPathGenerator.convertXPath( XPathGenerator.IOS, expression ) );
+
+        ExecutorService executorService = Executors.newFixedThreadPool( 8 );
+        try
+        {
+            List<Future<Boolean>> resultList = new ArrayList<Future<Boolean>>( 8 );
+            for ( int t = 0; t < 8; t++ )
+            {
+                resultList.add( executorService.submit( new Callable<Boolean>()
+                {
+                    public Boolean call()
+                    {
+                        for ( int i = 0; i < 500; i++ )
+                        {
+                            int expressionIndex = i % EXPRESSIONS.length;
+                            if ( !expectedList.get( expressionIndex ).equals( XPathGenerator.convertXPath( XPathGenerator.IOS, EXPRESSIONS[ expressionIndex ] ) ) )
+                                return false;
+                        }
+                        return true;
+                    }
+                } ) );
+            }
+
+            for ( Future<Boolean> result : resultList )
+                Assert.assertTrue( result.get() );
+        }
+        finally
+        {
+            executorService.shutdown();
+        }
+    }
+}